@@ -83,6 +83,238 @@ public class Constants {
      */
     public static final String BCRYPT_WORK_ENV = "DOCS_BCRYPT_WORK";
 
+    /**
+     * Lucene index durability mode environment variable (SYNC or BATCH).
+     */
+    public static final String LUCENE_DURABILITY_ENV = "DOCS_LUCENE_DURABILITY";
+
+    /**
+     * Maximum staleness of the Lucene searcher in milliseconds environment variable.
+     */
+    public static final String LUCENE_MAX_STALENESS_ENV = "DOCS_LUCENE_MAX_STALENESS";
+
+    /**
+     * Interval between two Lucene index commits in seconds environment variable.
+     */
+    public static final String LUCENE_COMMIT_INTERVAL_ENV = "DOCS_LUCENE_COMMIT_INTERVAL";
+
+    /**
+     * Number of uncommitted Lucene changes triggering a commit environment variable.
+     */
+    public static final String LUCENE_COMMIT_MAX_CHANGES_ENV = "DOCS_LUCENE_COMMIT_MAX_CHANGES";
+
+    /**
+     * Maximum number of hits collected by a Lucene fulltext search environment variable.
+     */
+    public static final String LUCENE_MAX_HITS_ENV = "DOCS_LUCENE_MAX_HITS";
+
+    /**
+     * Lucene document listing environment variable (true to filter, sort and count documents in the index).
+     */
+    public static final String LUCENE_LISTING_ENV = "DOCS_LUCENE_LISTING";
+
+    /**
+     * Number of Lucene changes triggering a rebuild of the title suggester environment variable.
+     */
+    public static final String LUCENE_SUGGESTER_REBUILD_THRESHOLD_ENV = "DOCS_LUCENE_SUGGESTER_REBUILD_THRESHOLD";
+
+    /**
+     * Maximum memory used by the title suggester in megabytes environment variable.
+     */
+    public static final String LUCENE_SUGGESTER_MAX_MEMORY_ENV = "DOCS_LUCENE_SUGGESTER_MAX_MEMORY";
+
+    /**
+     * Number of threads building Lucene documents during an index rebuild environment variable.
+     */
+    public static final String LUCENE_REBUILD_THREADS_ENV = "DOCS_LUCENE_REBUILD_THREADS";
+
+    /**
+     * Number of Lucene documents committed at once during an index rebuild environment variable.
+     */
+    public static final String LUCENE_REBUILD_COMMIT_SIZE_ENV = "DOCS_LUCENE_REBUILD_COMMIT_SIZE";
+
+    /**
+     * Maximum number of keys derived from user private keys kept in memory environment variable.
+     */
+    public static final String KEY_CACHE_SIZE_ENV = "DOCS_KEY_CACHE_SIZE";
+
+    /**
+     * Maximum number of authenticated principals kept in memory environment variable.
+     */
+    public static final String PRINCIPAL_CACHE_SIZE_ENV = "DOCS_PRINCIPAL_CACHE_SIZE";
+
+    /**
+     * Time to live in seconds of the authenticated principals kept in memory environment variable, 0 to disable the cache.
+     */
+    public static final String PRINCIPAL_CACHE_TTL_ENV = "DOCS_PRINCIPAL_CACHE_TTL";
+
+    /**
+     * Time in seconds the effective group memberships are cached environment variable.
+     */
+    public static final String GROUP_MEMBERSHIP_CACHE_TTL_ENV = "DOCS_GROUP_MEMBERSHIP_CACHE_TTL";
+
+    /**
+     * Second-level cache of the entities and queries environment variable.
+     */
+    public static final String ENTITY_CACHE_ENV = "DOCS_ENTITY_CACHE";
+
+    /**
+     * Maximum number of entries per cache region environment variable, suffixed by _REGION to configure a single region.
+     */
+    public static final String ENTITY_CACHE_SIZE_ENV = "DOCS_ENTITY_CACHE_SIZE";
+
+    /**
+     * Time to live in seconds of the cache entries environment variable, suffixed by _REGION to configure a single region.
+     */
+    public static final String ENTITY_CACHE_TTL_ENV = "DOCS_ENTITY_CACHE_TTL";
+
+    /**
+     * Number of threads processing the files environment variable, suffixed by _LANE to configure a single lane.
+     */
+    public static final String FILE_PROCESSING_THREADS_ENV = "DOCS_FILE_PROCESSING_THREADS";
+
+    /**
+     * Maximum number of files waiting to be processed environment variable, suffixed by _LANE to configure a single lane.
+     */
+    public static final String FILE_PROCESSING_QUEUE_SIZE_ENV = "DOCS_FILE_PROCESSING_QUEUE_SIZE";
+
+    /**
+     * Maximum time in seconds waiting for room in a full processing queue environment variable,
+     * 0 to wait indefinitely outside of HTTP requests and not at all in requests.
+     * Suffixed by _LANE to configure a single lane.
+     */
+    public static final String FILE_PROCESSING_QUEUE_TIMEOUT_ENV = "DOCS_FILE_PROCESSING_QUEUE_TIMEOUT";
+
+    /**
+     * Quality of the generated thumbnails between 1 and 100 environment variable.
+     */
+    public static final String THUMBNAIL_QUALITY_ENV = "DOCS_THUMBNAIL_QUALITY";
+
+    /**
+     * Number of threads OCR-izing the pages of the documents environment variable.
+     */
+    public static final String OCR_THREADS_ENV = "DOCS_OCR_THREADS";
+
+    /**
+     * Maximum memory in megabytes used by the pages being OCR-ized environment variable.
+     */
+    public static final String OCR_MEMORY_ENV = "DOCS_OCR_MEMORY";
+
+    /**
+     * OCR engine environment variable, see {@link OcrEngineType}.
+     */
+    public static final String OCR_ENGINE_ENV = "DOCS_OCR_ENGINE";
+
+    /**
+     * Maximum number of tesseract instances per language environment variable.
+     */
+    public static final String OCR_WORKERS_ENV = "DOCS_OCR_WORKERS";
+
+    /**
+     * Maximum time in seconds to OCR an image environment variable.
+     */
+    public static final String OCR_TIMEOUT_ENV = "DOCS_OCR_TIMEOUT";
+
+    /**
+     * Time in seconds after which a file processing job not completed is processed again environment variable.
+     */
+    public static final String FILE_PROCESSING_LEASE_ENV = "DOCS_FILE_PROCESSING_LEASE";
+
+    /**
+     * Maximum number of attempts to process a file environment variable.
+     */
+    public static final String FILE_PROCESSING_MAX_ATTEMPTS_ENV = "DOCS_FILE_PROCESSING_MAX_ATTEMPTS";
+
+    /**
+     * Interval in seconds between two polls of the file processing jobs environment variable.
+     */
+    public static final String FILE_PROCESSING_POLL_INTERVAL_ENV = "DOCS_FILE_PROCESSING_POLL_INTERVAL";
+
+    /**
+     * Number of days the completed and cancelled file processing jobs are kept environment variable.
+     */
+    public static final String FILE_PROCESSING_HISTORY_DAYS_ENV = "DOCS_FILE_PROCESSING_HISTORY_DAYS";
+
+    /**
+     * Number of threads storing the sizes of the files uploaded by older versions environment variable.
+     */
+    public static final String FILE_SIZE_THREADS_ENV = "DOCS_FILE_SIZE_THREADS";
+
+    /**
+     * Time in seconds the webhook registrations are cached environment variable.
+     */
+    public static final String WEBHOOK_CACHE_TTL_ENV = "DOCS_WEBHOOK_CACHE_TTL";
+
+    /**
+     * Maximum number of concurrent calls to a webhook host environment variable.
+     */
+    public static final String WEBHOOK_CONCURRENCY_ENV = "DOCS_WEBHOOK_CONCURRENCY";
+
+    /**
+     * Maximum number of attempts to deliver a webhook event environment variable.
+     */
+    public static final String WEBHOOK_MAX_ATTEMPTS_ENV = "DOCS_WEBHOOK_MAX_ATTEMPTS";
+
+    /**
+     * Interval in seconds between two polls of the webhook deliveries environment variable.
+     */
+    public static final String WEBHOOK_POLL_INTERVAL_ENV = "DOCS_WEBHOOK_POLL_INTERVAL";
+
+    /**
+     * Number of days the webhook delivery history is kept environment variable.
+     */
+    public static final String WEBHOOK_HISTORY_DAYS_ENV = "DOCS_WEBHOOK_HISTORY_DAYS";
+
+    /**
+     * Time in milliseconds the updates of a document are coalesced environment variable.
+     */
+    public static final String DOCUMENT_UPDATED_WINDOW_ENV = "DOCS_DOCUMENT_UPDATED_WINDOW";
+
+    /**
+     * Files with the same content share their stored content environment variable.
+     */
+    public static final String STORAGE_DEDUP_ENV = "DOCS_STORAGE_DEDUP";
+
+    /**
+     * Storage backend environment variable, see {@link StorageBackendType}.
+     */
+    public static final String STORAGE_BACKEND_ENV = "DOCS_STORAGE_BACKEND";
+
+    /**
+     * S3 storage endpoint URL environment variable.
+     */
+    public static final String S3_ENDPOINT_ENV = "DOCS_S3_ENDPOINT";
+
+    /**
+     * S3 storage region environment variable.
+     */
+    public static final String S3_REGION_ENV = "DOCS_S3_REGION";
+
+    /**
+     * S3 storage bucket environment variable.
+     */
+    public static final String S3_BUCKET_ENV = "DOCS_S3_BUCKET";
+
+    /**
+     * Prefix of the S3 object names environment variable.
+     */
+    public static final String S3_PREFIX_ENV = "DOCS_S3_PREFIX";
+
+    /**
+     * S3 storage access key environment variable.
+     */
+    public static final String S3_ACCESS_KEY_ENV = "DOCS_S3_ACCESS_KEY";
+
+    /**
+     * S3 storage secret key environment variable.
+     */
+    public static final String S3_SECRET_KEY_ENV = "DOCS_S3_SECRET_KEY";
+
+    /**
+     * Size in megabytes of the parts of the S3 multipart uploads environment variable.
+     */
+    public static final String S3_PART_SIZE_ENV = "DOCS_S3_PART_SIZE";
+
     /**
      * Expiration time of the password recovery in hours.
      */
@@ -0,0 +1,31 @@
+package com.sismics.docs.core.constant;
+
+/**
+ * File processing job status.
+ */
+public enum FileProcessingJobStatus {
+    /**
+     * Waiting to be processed.
+     */
+    PENDING,
+
+    /**
+     * Processing by a node.
+     */
+    PROCESSING,
+
+    /**
+     * Processed.
+     */
+    DONE,
+
+    /**
+     * Failed too many times.
+     */
+    FAILED,
+
+    /**
+     * Cancelled by an administrator, or the file has been deleted.
+     */
+    CANCELLED
+}
@@ -0,0 +1,16 @@
+package com.sismics.docs.core.constant;
+
+/**
+ * File processing lanes, each one processed by its own threads.
+ */
+public enum FileProcessingLane {
+    /**
+     * Files uploaded by the users, waiting for the result.
+     */
+    INTERACTIVE,
+
+    /**
+     * Files imported from the inbox and files processed again.
+     */
+    BULK
+}
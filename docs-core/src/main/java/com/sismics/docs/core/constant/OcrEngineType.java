@@ -0,0 +1,16 @@
+package com.sismics.docs.core.constant;
+
+/**
+ * OCR engines.
+ */
+public enum OcrEngineType {
+    /**
+     * Tesseract library called in process, with a pool of initialized instances per language.
+     */
+    LIBRARY,
+
+    /**
+     * Tesseract process run for each image.
+     */
+    PROCESS
+}
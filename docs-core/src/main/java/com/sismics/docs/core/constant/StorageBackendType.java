@@ -0,0 +1,16 @@
+package com.sismics.docs.core.constant;
+
+/**
+ * Storage backends of the file contents.
+ */
+public enum StorageBackendType {
+    /**
+     * Local filesystem, in the storage directory.
+     */
+    LOCAL,
+
+    /**
+     * S3-compatible object store.
+     */
+    S3
+}
@@ -0,0 +1,26 @@
+package com.sismics.docs.core.constant;
+
+/**
+ * Webhook delivery status.
+ */
+public enum WebhookDeliveryStatus {
+    /**
+     * Waiting to be sent.
+     */
+    PENDING,
+
+    /**
+     * Sending by a node.
+     */
+    SENDING,
+
+    /**
+     * Delivered.
+     */
+    DELIVERED,
+
+    /**
+     * Failed too many times, or the webhook has been deleted.
+     */
+    FAILED
+}
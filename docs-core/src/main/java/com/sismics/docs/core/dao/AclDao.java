@@ -8,6 +8,7 @@ import com.sismics.docs.core.dao.dto.AclDto;
 import com.sismics.docs.core.model.jpa.Acl;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.docs.core.util.SecurityUtil;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
@@ -181,5 +182,6 @@ public class AclDao {
         q.setParameter("type", type);
         q.setParameter("dateNow", new Date());
         q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.model.jpa.AuthenticationToken;
+import com.sismics.docs.core.util.authentication.PrincipalCache;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 import org.joda.time.DateTime;
 
 import jakarta.persistence.EntityManager;
@@ -54,6 +57,7 @@ public class AuthenticationTokenDao {
         AuthenticationToken authenticationToken = em.find(AuthenticationToken.class, authenticationTokenId);
         if (authenticationToken != null) {
             em.remove(authenticationToken);
+            PrincipalCache.invalidateToken(authenticationTokenId);
         } else {
             throw new Exception("Token not found: " + authenticationTokenId);
         }
@@ -75,7 +79,10 @@ public class AuthenticationTokenDao {
         q.setParameter("userId", userId);
         q.setParameter("longLasted", false);
         q.setParameter("minDate", DateTime.now().minusDays(1).toDate());
+        q.setHint(HibernateHints.HINT_NATIVE_SPACES, "T_AUTHENTICATION_TOKEN");
         q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+        PrincipalCache.invalidateUser(userId);
     }
 
     /**
@@ -93,7 +100,9 @@ public class AuthenticationTokenDao {
         Query q = em.createNativeQuery(sb.toString());
         q.setParameter("currentDate", new Date());
         q.setParameter("id", id);
+        q.setHint(HibernateHints.HINT_NATIVE_SPACES, "T_AUTHENTICATION_TOKEN");
         q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
     }
     
     /**
@@ -121,5 +130,7 @@ public class AuthenticationTokenDao {
         q.setParameter("userId", userId);
         q.setParameter("id", id);
         q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+        PrincipalCache.invalidateUser(userId);
     }
 }
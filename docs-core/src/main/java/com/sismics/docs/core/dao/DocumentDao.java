@@ -5,7 +5,9 @@ import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.dto.DocumentDto;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.util.AuditLogUtil;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -59,6 +61,25 @@ public class DocumentDao {
         return q.getResultList();
     }
 
+    /**
+     * Returns a page of active documents ordered by ID.
+     * Pages are read after the last ID of the previous page, which stays fast on large tables unlike an offset.
+     *
+     * @param lastId ID of the last document of the previous page, null for the first page
+     * @param limit Limit
+     * @return List of documents
+     */
+    public List<Document> findAllAfter(String lastId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Document> q = em.createQuery("select d from Document d where d.deleteDate is null"
+                + (lastId == null ? "" : " and d.id > :lastId") + " order by d.id", Document.class);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
+
     /**
      * Returns the list of all active documents from a user.
      * 
@@ -169,6 +190,7 @@ public class DocumentDao {
         
         // Create audit log
         AuditLogUtil.create(documentDb, AuditLogType.DELETE, userId);
+        QueryUtil.clearPersistenceContext();
     }
     
     /**
@@ -236,7 +258,9 @@ public class DocumentDao {
         query.setParameter("updateDate", new Date());
         query.setParameter("fileId", document.getFileId());
         query.setParameter("id", document.getId());
+        query.setHint(HibernateHints.HINT_NATIVE_SPACES, "T_DOCUMENT");
         query.executeUpdate();
+        QueryUtil.clearPersistenceContext();
     }
 
     /**
@@ -0,0 +1,101 @@
+package com.sismics.docs.core.dao;
+
+import com.sismics.docs.core.model.jpa.FileBlob;
+import com.sismics.docs.core.util.jpa.QueryUtil;
+import com.sismics.util.context.ThreadLocalContext;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * File blob DAO.
+ */
+public class FileBlobDao {
+    /**
+     * Creates a new blob referenced by one file.
+     *
+     * @param blob Blob
+     * @return New ID
+     */
+    public String create(FileBlob blob) {
+        // Create the UUID
+        blob.setId(UUID.randomUUID().toString());
+
+        // Create the blob
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        blob.setReferenceCount(1)
+                .setCreateDate(new Date());
+        em.persist(blob);
+
+        return blob.getId();
+    }
+
+    /**
+     * Returns an active blob by ID.
+     *
+     * @param id Blob ID
+     * @return Blob
+     */
+    public FileBlob getActiveById(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<FileBlob> q = em.createQuery("select b from FileBlob b where b.id = :id and b.deleteDate is null", FileBlob.class);
+        q.setParameter("id", id);
+        List<FileBlob> blobList = q.getResultList();
+        return blobList.isEmpty() ? null : blobList.get(0);
+    }
+
+    /**
+     * Returns the active blobs of a user with a content.
+     *
+     * @param userId User ID
+     * @param hash SHA-256 hash of the unencrypted content
+     * @return Blobs, oldest first
+     */
+    public List<FileBlob> findByHash(String userId, String hash) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<FileBlob> q = em.createQuery("select b from FileBlob b where b.userId = :userId and b.hash = :hash" +
+                " and b.deleteDate is null order by b.createDate asc", FileBlob.class);
+        q.setParameter("userId", userId);
+        q.setParameter("hash", hash);
+        return q.getResultList();
+    }
+
+    /**
+     * Adds a file referencing a blob.
+     *
+     * @param id Blob ID
+     * @return True if the blob is still active and now referenced by the file
+     */
+    public boolean addReference(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileBlob b set b.referenceCount = b.referenceCount + 1 where b.id = :id and b.deleteDate is null");
+        q.setParameter("id", id);
+        boolean added = q.executeUpdate() == 1;
+        QueryUtil.clearPersistenceContext();
+        return added;
+    }
+
+    /**
+     * Removes a file referencing a blob, the blob is deleted once no file references it.
+     *
+     * @param id Blob ID
+     * @return True if the blob is deleted and its content can be removed from the storage
+     */
+    public boolean removeReference(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileBlob b set b.referenceCount = b.referenceCount - 1 where b.id = :id and b.deleteDate is null");
+        q.setParameter("id", id);
+        q.executeUpdate();
+
+        q = em.createQuery("update FileBlob b set b.deleteDate = :dateNow where b.id = :id and b.referenceCount <= 0 and b.deleteDate is null");
+        q.setParameter("dateNow", new Date());
+        q.setParameter("id", id);
+        boolean deleted = q.executeUpdate() == 1;
+        QueryUtil.clearPersistenceContext();
+        return deleted;
+    }
+}
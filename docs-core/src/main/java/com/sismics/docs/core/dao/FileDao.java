@@ -3,6 +3,7 @@ package com.sismics.docs.core.dao;
 import com.sismics.docs.core.constant.AuditLogType;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.AuditLogUtil;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -58,6 +59,25 @@ public class FileDao {
         q.setMaxResults(limit);
         return q.getResultList();
     }
+
+    /**
+     * Returns a page of active files ordered by ID.
+     * Pages are read after the last ID of the previous page, which stays fast on large tables unlike an offset.
+     *
+     * @param lastId ID of the last file of the previous page, null for the first page
+     * @param limit Limit
+     * @return List of files
+     */
+    public List<File> findAllAfter(String lastId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<File> q = em.createQuery("select f from File f where f.deleteDate is null"
+                + (lastId == null ? "" : " and f.id > :lastId") + " order by f.id", File.class);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
     
     /**
      * Returns the list of all files from a user.
@@ -247,11 +267,73 @@ public class FileDao {
         return q.getResultList();
     }
 
-    public List<File> getFilesWithUnknownSize(int limit) {
+    /**
+     * Get all active files sharing a blob.
+     *
+     * @param blobId Blob ID
+     * @return List of files
+     */
+    public List<File> getByBlobId(String blobId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<File> q = em.createQuery("select f from File f where f.blobId = :blobId and f.deleteDate is null order by f.createDate asc", File.class);
+        q.setParameter("blobId", blobId);
+        return q.getResultList();
+    }
+
+    /**
+     * Get active files whose size is not stored, by ID.
+     *
+     * @param afterId Only return the files after this ID, null to start from the first file
+     * @param limit Maximum number of files
+     * @return List of files
+     */
+    public List<File> getFilesWithUnknownSize(String afterId, int limit) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<File> q = em.createQuery("select f from File f where f.size = :size and f.deleteDate is null order by f.order asc", File.class);
+        TypedQuery<File> q = em.createQuery("select f from File f where f.size = :size and f.deleteDate is null" +
+                (afterId == null ? "" : " and f.id > :afterId") + " order by f.id asc", File.class);
         q.setParameter("size", File.UNKNOWN_SIZE);
+        if (afterId != null) {
+            q.setParameter("afterId", afterId);
+        }
         q.setMaxResults(limit);
         return q.getResultList();
     }
+
+    /**
+     * Returns the number of active files whose size is not stored.
+     *
+     * @return Number of files
+     */
+    public long getUnknownSizeCount() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select count(f) from File f where f.size = :size and f.deleteDate is null");
+        q.setParameter("size", File.UNKNOWN_SIZE);
+        return ((Number) q.getSingleResult()).longValue();
+    }
+
+    /**
+     * Store the size of a file.
+     *
+     * @param id File ID
+     * @param size Size in bytes
+     */
+    public void updateSize(String id, long size) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update File f set f.size = :size where f.id = :id");
+        q.setParameter("size", size);
+        q.setParameter("id", id);
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+    }
+
+    /**
+     * Returns the number of active files.
+     *
+     * @return Number of files
+     */
+    public long getFileCount() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query query = em.createNativeQuery("select count(f.FIL_ID_C) from T_FILE f where f.FIL_DELETEDATE_D is null");
+        return ((Number) query.getSingleResult()).longValue();
+    }
 }
@@ -0,0 +1,378 @@
+package com.sismics.docs.core.dao;
+
+import com.google.common.base.Joiner;
+import com.sismics.docs.core.constant.FileProcessingJobStatus;
+import com.sismics.docs.core.dao.criteria.FileProcessingJobCriteria;
+import com.sismics.docs.core.dao.dto.FileProcessingJobDto;
+import com.sismics.docs.core.model.jpa.FileProcessingJob;
+import com.sismics.docs.core.util.jpa.PaginatedList;
+import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.jpa.QueryParam;
+import com.sismics.docs.core.util.jpa.QueryUtil;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.EMF;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.jpa.HibernateHints;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * File processing job DAO.
+ */
+public class FileProcessingJobDao {
+    /**
+     * Creates a new pending job.
+     *
+     * @param job Job
+     * @return New ID
+     */
+    public String create(FileProcessingJob job) {
+        // Create the UUID
+        job.setId(UUID.randomUUID().toString());
+
+        // Create the job
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+        job.setStatus(FileProcessingJobStatus.PENDING)
+                .setAttempts(0)
+                .setCreateDate(dateNow)
+                .setUpdateDate(dateNow);
+        em.persist(job);
+
+        return job.getId();
+    }
+
+    /**
+     * Returns a job by ID.
+     *
+     * @param id Job ID
+     * @return Job
+     */
+    public FileProcessingJob getById(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        return em.find(FileProcessingJob.class, id);
+    }
+
+    /**
+     * Returns true if a file is waiting to be processed or processing.
+     *
+     * @param fileId File ID
+     * @return True if the file is processing
+     */
+    public boolean isProcessing(String fileId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Long> q = em.createQuery("select count(j) from FileProcessingJob j where j.fileId = :fileId and j.status in :statusList", Long.class);
+        q.setParameter("fileId", fileId);
+        q.setParameter("statusList", List.of(FileProcessingJobStatus.PENDING, FileProcessingJobStatus.PROCESSING));
+        return q.getSingleResult() > 0;
+    }
+
+    /**
+     * Returns true if a processing of a file has been done.
+     *
+     * @param fileId File ID
+     * @return True if the file has been processed
+     */
+    public boolean isDone(String fileId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Long> q = em.createQuery("select count(j) from FileProcessingJob j where j.fileId = :fileId and j.status = :done", Long.class);
+        q.setParameter("fileId", fileId);
+        q.setParameter("done", FileProcessingJobStatus.DONE);
+        return q.getSingleResult() > 0;
+    }
+
+    /**
+     * Claim a pending job, which can be claimed by one node only.
+     *
+     * @param id Job ID
+     * @param owner Node claiming the job
+     * @param leaseDate Date until which the node processes the job
+     * @return True if the job is claimed
+     */
+    public boolean claim(String id, String owner, Date leaseDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileProcessingJob j set j.status = :processing, j.attempts = j.attempts + 1, j.leaseOwner = :owner," +
+                " j.leaseDate = :leaseDate, j.updateDate = :dateNow where j.id = :id and j.status = :pending");
+        q.setParameter("processing", FileProcessingJobStatus.PROCESSING);
+        q.setParameter("owner", owner);
+        q.setParameter("leaseDate", leaseDate);
+        q.setParameter("dateNow", new Date());
+        q.setParameter("id", id);
+        q.setParameter("pending", FileProcessingJobStatus.PENDING);
+        boolean claimed = q.executeUpdate() == 1;
+        QueryUtil.clearPersistenceContext();
+        return claimed;
+    }
+
+    /**
+     * Marks a job as processed, if it is still processed by this node.
+     *
+     * @param id Job ID
+     * @param owner Node processing the job
+     */
+    public void complete(String id, String owner) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileProcessingJob j set j.status = :done, j.leaseDate = null, j.error = null, j.updateDate = :dateNow" +
+                " where j.id = :id and j.status = :processing and j.leaseOwner = :owner");
+        q.setParameter("done", FileProcessingJobStatus.DONE);
+        q.setParameter("dateNow", new Date());
+        q.setParameter("id", id);
+        q.setParameter("processing", FileProcessingJobStatus.PROCESSING);
+        q.setParameter("owner", owner);
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+    }
+
+    /**
+     * Marks a job as failed: it is processed again later, or never if it failed too many times.
+     *
+     * @param id Job ID
+     * @param owner Node processing the job
+     * @param error Error message
+     * @param maxAttempts Maximum number of attempts
+     * @param nextDate Date of the next attempt
+     */
+    public void fail(String id, String owner, String error, int maxAttempts, Date nextDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+        Query q = em.createQuery("update FileProcessingJob j set j.status = :failed, j.leaseDate = null, j.error = :error, j.updateDate = :dateNow" +
+                " where j.id = :id and j.status = :processing and j.leaseOwner = :owner and j.attempts >= :maxAttempts");
+        q.setParameter("failed", FileProcessingJobStatus.FAILED);
+        q.setParameter("error", StringUtils.abbreviate(error, 4000));
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("id", id);
+        q.setParameter("processing", FileProcessingJobStatus.PROCESSING);
+        q.setParameter("owner", owner);
+        q.setParameter("maxAttempts", maxAttempts);
+        q.executeUpdate();
+
+        q = em.createQuery("update FileProcessingJob j set j.status = :pending, j.nextDate = :nextDate, j.leaseDate = null, j.error = :error, j.updateDate = :dateNow" +
+                " where j.id = :id and j.status = :processing and j.leaseOwner = :owner");
+        q.setParameter("pending", FileProcessingJobStatus.PENDING);
+        q.setParameter("nextDate", nextDate);
+        q.setParameter("error", StringUtils.abbreviate(error, 4000));
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("id", id);
+        q.setParameter("processing", FileProcessingJobStatus.PROCESSING);
+        q.setParameter("owner", owner);
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+    }
+
+    /**
+     * Cancels a job not completed yet.
+     *
+     * @param id Job ID
+     * @param error Reason of the cancellation
+     * @return True if the job is cancelled
+     */
+    public boolean cancel(String id, String error) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileProcessingJob j set j.status = :cancelled, j.leaseDate = null, j.error = :error, j.updateDate = :dateNow" +
+                " where j.id = :id and j.status in :statusList");
+        q.setParameter("cancelled", FileProcessingJobStatus.CANCELLED);
+        q.setParameter("error", error);
+        q.setParameter("dateNow", new Date());
+        q.setParameter("id", id);
+        q.setParameter("statusList", List.of(FileProcessingJobStatus.PENDING, FileProcessingJobStatus.PROCESSING, FileProcessingJobStatus.FAILED));
+        boolean cancelled = q.executeUpdate() == 1;
+        QueryUtil.clearPersistenceContext();
+        return cancelled;
+    }
+
+    /**
+     * Puts back a failed or cancelled job in the queue, its attempts are reset.
+     *
+     * @param id Job ID
+     * @return True if the job is pending again
+     */
+    public boolean retry(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+        Query q = em.createQuery("update FileProcessingJob j set j.status = :pending, j.attempts = 0, j.leaseOwner = null, j.leaseDate = null," +
+                " j.nextDate = :dateNow, j.updateDate = :dateNow where j.id = :id and j.status in :statusList");
+        q.setParameter("pending", FileProcessingJobStatus.PENDING);
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("id", id);
+        q.setParameter("statusList", List.of(FileProcessingJobStatus.FAILED, FileProcessingJobStatus.CANCELLED));
+        boolean retried = q.executeUpdate() == 1;
+        QueryUtil.clearPersistenceContext();
+        return retried;
+    }
+
+    /**
+     * Reserves the jobs due for processing: pending jobs not processed in time, and jobs processed by a node which stopped.
+     * The reserved jobs are not returned again until the reservation date, they must be claimed in the meantime.
+     * The jobs are locked while they are reserved, concurrent nodes skip them on PostgreSQL.
+     *
+     * @param limit Maximum number of jobs
+     * @param owner Node reserving the jobs
+     * @param maxAttempts Maximum number of attempts, jobs processed more times are marked as failed
+     * @param reservationDate Date until which the jobs are reserved
+     * @return Reserved jobs
+     */
+    public List<FileProcessingJob> reserveDueJobs(int limit, String owner, int maxAttempts, Date reservationDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+
+        // Select the due jobs
+        StringBuilder sb = new StringBuilder("select j.FPJ_ID_C from T_FILE_PROCESSING_JOB j")
+                .append(" where (j.FPJ_STATUS_C = :pending and j.FPJ_NEXTDATE_D <= :dateNow)")
+                .append(" or (j.FPJ_STATUS_C = :processing and j.FPJ_LEASEDATE_D < :dateNow)")
+                .append(" order by j.FPJ_NEXTDATE_D limit ").append(limit);
+        if (EMF.isDriverPostgresql()) {
+            sb.append(" for update skip locked");
+        }
+        Query q = em.createNativeQuery(sb.toString());
+        q.setHint(HibernateHints.HINT_NATIVE_SPACES, "T_FILE_PROCESSING_JOB");
+        q.setParameter("pending", FileProcessingJobStatus.PENDING.name());
+        q.setParameter("processing", FileProcessingJobStatus.PROCESSING.name());
+        q.setParameter("dateNow", dateNow);
+        @SuppressWarnings("unchecked")
+        List<String> idList = q.getResultList();
+        if (idList.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Interrupted too many times
+        q = em.createQuery("update FileProcessingJob j set j.status = :failed, j.leaseDate = null, j.error = :error, j.updateDate = :dateNow" +
+                " where j.id in :idList and j.status = :processing and j.attempts >= :maxAttempts");
+        q.setParameter("failed", FileProcessingJobStatus.FAILED);
+        q.setParameter("error", "Processing interrupted");
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("idList", idList);
+        q.setParameter("processing", FileProcessingJobStatus.PROCESSING);
+        q.setParameter("maxAttempts", maxAttempts);
+        q.executeUpdate();
+
+        // Reserve the others
+        q = em.createQuery("update FileProcessingJob j set j.status = :pending, j.leaseOwner = :owner, j.leaseDate = null," +
+                " j.nextDate = :reservationDate, j.updateDate = :dateNow where j.id in :idList and j.status in :statusList");
+        q.setParameter("pending", FileProcessingJobStatus.PENDING);
+        q.setParameter("owner", owner);
+        q.setParameter("reservationDate", reservationDate);
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("idList", idList);
+        q.setParameter("statusList", List.of(FileProcessingJobStatus.PENDING, FileProcessingJobStatus.PROCESSING));
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+
+        TypedQuery<FileProcessingJob> jobQuery = em.createQuery("select j from FileProcessingJob j where j.id in :idList and j.status = :pending", FileProcessingJob.class);
+        jobQuery.setParameter("idList", idList);
+        jobQuery.setParameter("pending", FileProcessingJobStatus.PENDING);
+        return jobQuery.getResultList();
+    }
+
+    /**
+     * Postpones a pending job to a date, for any node to process it.
+     *
+     * @param id Job ID
+     * @param nextDate Date from which the job can be processed
+     */
+    public void postpone(String id, Date nextDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileProcessingJob j set j.leaseOwner = null, j.nextDate = :nextDate, j.updateDate = :dateNow" +
+                " where j.id = :id and j.status = :pending");
+        q.setParameter("nextDate", nextDate);
+        q.setParameter("dateNow", new Date());
+        q.setParameter("id", id);
+        q.setParameter("pending", FileProcessingJobStatus.PENDING);
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+    }
+
+    /**
+     * Deletes the completed and cancelled jobs last updated before a date.
+     *
+     * @param date Date
+     * @return Number of deleted jobs
+     */
+    public int deleteHistory(Date date) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("delete from FileProcessingJob j where j.status in :statusList and j.updateDate < :date");
+        q.setParameter("statusList", List.of(FileProcessingJobStatus.DONE, FileProcessingJobStatus.CANCELLED));
+        q.setParameter("date", date);
+        int count = q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+        return count;
+    }
+
+    /**
+     * Releases the jobs reserved or processed by a node, to process them again immediately.
+     * Called when the node starts, the jobs were interrupted by its previous run.
+     *
+     * @param owner Node
+     * @return Number of released jobs
+     */
+    public int release(String owner) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+        Query q = em.createQuery("update FileProcessingJob j set j.status = :pending, j.leaseOwner = null, j.leaseDate = null," +
+                " j.nextDate = :dateNow, j.updateDate = :dateNow where j.leaseOwner = :owner and j.status in :statusList");
+        q.setParameter("pending", FileProcessingJobStatus.PENDING);
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("owner", owner);
+        q.setParameter("statusList", List.of(FileProcessingJobStatus.PENDING, FileProcessingJobStatus.PROCESSING));
+        int count = q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+        return count;
+    }
+
+    /**
+     * Searches jobs by criteria.
+     *
+     * @param paginatedList List of jobs (updated by side effects)
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     */
+    public void findByCriteria(PaginatedList<FileProcessingJobDto> paginatedList, FileProcessingJobCriteria criteria, SortCriteria sortCriteria) {
+        Map<String, Object> parameterMap = new HashMap<>();
+        List<String> criteriaList = new ArrayList<>();
+
+        StringBuilder sb = new StringBuilder("select j.FPJ_ID_C c0, j.FPJ_IDFILE_C c1, f.FIL_NAME_C c2, j.FPJ_LANE_C c3, j.FPJ_STATUS_C c4, j.FPJ_ATTEMPTS_N c5,")
+                .append(" j.FPJ_LEASEOWNER_C c6, j.FPJ_ERROR_C c7, j.FPJ_CREATEDATE_D c8, j.FPJ_UPDATEDATE_D c9")
+                .append(" from T_FILE_PROCESSING_JOB j")
+                .append(" left join T_FILE f on f.FIL_ID_C = j.FPJ_IDFILE_C");
+
+        // Add search criterias
+        if (criteria.getStatus() != null) {
+            criteriaList.add("j.FPJ_STATUS_C = :status");
+            parameterMap.put("status", criteria.getStatus().name());
+        }
+        if (criteria.getFileId() != null) {
+            criteriaList.add("j.FPJ_IDFILE_C = :fileId");
+            parameterMap.put("fileId", criteria.getFileId());
+        }
+        if (!criteriaList.isEmpty()) {
+            sb.append(" where ");
+            sb.append(Joiner.on(" and ").join(criteriaList));
+        }
+
+        // Perform the search
+        List<Object[]> l = PaginatedLists.executePaginatedQuery(paginatedList, new QueryParam(sb.toString(), parameterMap), sortCriteria);
+
+        // Assemble results
+        List<FileProcessingJobDto> jobDtoList = new ArrayList<>();
+        for (Object[] o : l) {
+            int i = 0;
+            FileProcessingJobDto jobDto = new FileProcessingJobDto()
+                    .setId((String) o[i++])
+                    .setFileId((String) o[i++])
+                    .setFileName((String) o[i++])
+                    .setLane((String) o[i++])
+                    .setStatus((String) o[i++])
+                    .setAttempts(((Number) o[i++]).intValue())
+                    .setLeaseOwner((String) o[i++])
+                    .setError((String) o[i++])
+                    .setCreateTimestamp(((Timestamp) o[i++]).getTime())
+                    .setUpdateTimestamp(((Timestamp) o[i]).getTime());
+            jobDtoList.add(jobDto);
+        }
+        paginatedList.setResultList(jobDtoList);
+    }
+}
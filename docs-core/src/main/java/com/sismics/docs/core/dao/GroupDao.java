@@ -7,10 +7,13 @@ import com.sismics.docs.core.dao.dto.GroupDto;
 import com.sismics.docs.core.model.jpa.Group;
 import com.sismics.docs.core.model.jpa.UserGroup;
 import com.sismics.docs.core.util.AuditLogUtil;
+import com.sismics.docs.core.util.authentication.GroupMembershipSnapshot;
+import com.sismics.docs.core.util.authentication.PrincipalCache;
 import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -33,6 +36,7 @@ public class GroupDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.name = :name and g.deleteDate is null");
         q.setParameter("name", name);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         try {
             return (Group) q.getSingleResult();
         } catch (NoResultException e) {
@@ -50,6 +54,7 @@ public class GroupDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.id = :id and g.deleteDate is null");
         q.setParameter("id", id);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         try {
             return (Group) q.getSingleResult();
         } catch (NoResultException e) {
@@ -72,6 +77,14 @@ public class GroupDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         em.persist(group);
         
+        // Link the group to itself and its ancestors
+        Query q = createClosureQuery("insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) values (:groupId, :groupId, 0)");
+        q.setParameter("groupId", group.getId());
+        q.executeUpdate();
+        if (group.getParentId() != null) {
+            linkAncestors(group.getId(), group.getParentId());
+        }
+        
         // Create audit log
         AuditLogUtil.create(group, AuditLogType.CREATE, userId);
         
@@ -111,8 +124,17 @@ public class GroupDao {
         q.setParameter("groupId", groupDb.getId());
         q.executeUpdate();
 
+        // Unlink the group and its sub-groups from the group and its ancestors, the sub-groups are now top level groups
+        q = createClosureQuery("delete from T_GROUP_CLOSURE where GCL_IDGROUP_C in (select c.GCL_IDGROUP_C from T_GROUP_CLOSURE c where c.GCL_IDANCESTOR_C = :groupId)" +
+                " and GCL_IDANCESTOR_C in (select c.GCL_IDANCESTOR_C from T_GROUP_CLOSURE c where c.GCL_IDGROUP_C = :groupId)");
+        q.setParameter("groupId", groupDb.getId());
+        q.executeUpdate();
+
         // Create audit log
         AuditLogUtil.create(groupDb, AuditLogType.DELETE, userId);
+        QueryUtil.clearPersistenceContext();
+        PrincipalCache.invalidateAll();
+        GroupMembershipSnapshot.invalidate();
     }
     
     /**
@@ -128,6 +150,8 @@ public class GroupDao {
         // Create the user group
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         em.persist(userGroup);
+        PrincipalCache.invalidateUser(userGroup.getUserId());
+        GroupMembershipSnapshot.invalidate();
         
         return userGroup.getId();
     }
@@ -150,6 +174,8 @@ public class GroupDao {
         // Delete the user group
         Date dateNow = new Date();
         userGroupDb.setDeleteDate(dateNow);
+        PrincipalCache.invalidateUser(userId);
+        GroupMembershipSnapshot.invalidate();
     }
     
     /**
@@ -164,9 +190,6 @@ public class GroupDao {
         List<String> criteriaList = new ArrayList<>();
         
         StringBuilder sb = new StringBuilder("select g.GRP_ID_C as c0, g.GRP_NAME_C as c1, g.GRP_IDPARENT_C as c2, gp.GRP_NAME_C as c3, g.GRP_IDROLE_C ");
-        if (criteria.getUserId() != null) {
-            sb.append(" , ug.UGP_ID_C ");
-        }
         sb.append(" from T_GROUP g ");
         sb.append(" left join T_GROUP gp on g.GRP_IDPARENT_C = gp.GRP_ID_C ");
         
@@ -175,9 +198,15 @@ public class GroupDao {
             criteriaList.add("lower(g.GRP_NAME_C) like lower(:search)");
             parameterMap.put("search", "%" + criteria.getSearch() + "%");
         }
-        if (criteria.getUserId() != null) {
-            // Left join and post-filtering for recursive groups
-            sb.append(criteria.isRecursive() ? " left " : "");
+        if (criteria.getUserId() != null && criteria.isRecursive()) {
+            // Direct and indirect groups are resolved from the group closure
+            Set<String> groupIdSet = GroupMembershipSnapshot.getGroupIdSet(criteria.getUserId());
+            if (groupIdSet.isEmpty()) {
+                return new ArrayList<>();
+            }
+            criteriaList.add("g.GRP_ID_C in (:groupIdList)");
+            parameterMap.put("groupIdList", groupIdSet);
+        } else if (criteria.getUserId() != null) {
             sb.append(" join T_USER_GROUP ug on ug.UGP_IDGROUP_C = g.GRP_ID_C and ug.UGP_IDUSER_C = :userId and ug.UGP_DELETEDATE_D is null ");
             parameterMap.put("userId", criteria.getUserId());
         }
@@ -194,7 +223,6 @@ public class GroupDao {
         
         // Assemble results
         List<GroupDto> groupDtoList = new ArrayList<>();
-        List<GroupDto> userGroupDtoList = new ArrayList<>();
         for (Object[] o : l) {
             int i = 0;
             GroupDto groupDto = new GroupDto()
@@ -202,47 +230,13 @@ public class GroupDao {
                 .setName((String) o[i++])
                 .setParentId((String) o[i++])
                 .setParentName((String) o[i++])
-                .setRoleId((String) o[i++]);
+                .setRoleId((String) o[i]);
             groupDtoList.add(groupDto);
-            if (criteria.getUserId() != null && o[i] != null) {
-                userGroupDtoList.add(groupDto);
-            }
-        }
-        
-        // Post-query filtering for recursive groups
-        if (criteria.getUserId() != null && criteria.isRecursive()) {
-            Set<GroupDto> filteredGroupDtoSet = new HashSet<>();
-            for (GroupDto userGroupDto : userGroupDtoList) {
-                filteredGroupDtoSet.add(userGroupDto); // Direct group
-                findGroupParentHierarchy(filteredGroupDtoSet, groupDtoList, userGroupDto, 0); // Indirect groups
-            }
-            groupDtoList = new ArrayList<>(filteredGroupDtoSet);
         }
         
         return groupDtoList;
     }
     
-    /**
-     * Recursively search group's parents.
-     * 
-     * @param parentGroupDtoSet Resulting parents
-     * @param groupDtoList All groups
-     * @param userGroupDto Reference group to search from
-     * @param depth Depth
-     */
-    private void findGroupParentHierarchy(Set<GroupDto> parentGroupDtoSet, List<GroupDto> groupDtoList, GroupDto userGroupDto, int depth) {
-        if (userGroupDto.getParentId() == null || depth == 10) { // Max depth 10 to avoid infinite loop
-            return;
-        }
-        
-        for (GroupDto groupDto : groupDtoList) {
-            if (groupDto.getId().equals(userGroupDto.getParentId())) {
-                parentGroupDtoSet.add(groupDto); // Add parent
-                findGroupParentHierarchy(parentGroupDtoSet, groupDtoList, groupDto, depth + 1); // Find parent's parents
-            }
-        }
-    }
-    
     /**
      * Update a group.
      * 
@@ -258,6 +252,23 @@ public class GroupDao {
         q.setParameter("id", group.getId());
         Group groupDb = (Group) q.getSingleResult();
         
+        // Move the group and its sub-groups if the parent changed
+        q = createClosureQuery("select c.GCL_IDANCESTOR_C from T_GROUP_CLOSURE c where c.GCL_IDGROUP_C = :groupId and c.GCL_DEPTH_N = 1");
+        q.setParameter("groupId", group.getId());
+        @SuppressWarnings("unchecked")
+        List<String> oldParentIdList = q.getResultList();
+        String oldParentId = oldParentIdList.isEmpty() ? null : oldParentIdList.get(0);
+        if (!Objects.equals(oldParentId, group.getParentId())) {
+            unlinkAncestors(group.getId());
+            if (group.getParentId() != null) {
+                linkAncestors(group.getId(), group.getParentId());
+            }
+
+            // The members of the sub-groups are affected too
+            PrincipalCache.invalidateAll();
+            GroupMembershipSnapshot.invalidate();
+        }
+
         // Update the group
         groupDb.setName(group.getName());
         groupDb.setParentId(group.getParentId());
@@ -267,5 +278,78 @@ public class GroupDao {
         
         return groupDb;
     }
-}
 
+    /**
+     * Returns true if a group is the same as or an ancestor of another group.
+     *
+     * @param ancestorId Ancestor group ID
+     * @param groupId Group ID
+     * @return True if the group is the same or an ancestor
+     */
+    public boolean isAncestor(String ancestorId, String groupId) {
+        Query q = createClosureQuery("select c.GCL_DEPTH_N from T_GROUP_CLOSURE c where c.GCL_IDGROUP_C = :groupId and c.GCL_IDANCESTOR_C = :ancestorId");
+        q.setParameter("groupId", groupId);
+        q.setParameter("ancestorId", ancestorId);
+        return !q.getResultList().isEmpty();
+    }
+
+    /**
+     * Returns the effective groups of all users, including parent groups.
+     *
+     * @return Group IDs by user ID
+     */
+    public Map<String, Set<String>> findEffectiveGroupIdMap() {
+        Query q = createClosureQuery("select ug.UGP_IDUSER_C, c.GCL_IDANCESTOR_C from T_USER_GROUP ug" +
+                " join T_GROUP_CLOSURE c on c.GCL_IDGROUP_C = ug.UGP_IDGROUP_C" +
+                " where ug.UGP_DELETEDATE_D is null");
+        @SuppressWarnings("unchecked")
+        List<Object[]> l = q.getResultList();
+
+        Map<String, Set<String>> groupIdMap = new HashMap<>();
+        for (Object[] o : l) {
+            groupIdMap.computeIfAbsent((String) o[0], k -> new HashSet<>()).add((String) o[1]);
+        }
+        return groupIdMap;
+    }
+
+    /**
+     * Link a group and its sub-groups to a parent group and its ancestors.
+     *
+     * @param groupId Group ID
+     * @param parentId Parent group ID
+     */
+    private void linkAncestors(String groupId, String parentId) {
+        Query q = createClosureQuery("insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N)" +
+                " select sub.GCL_IDGROUP_C, sup.GCL_IDANCESTOR_C, sup.GCL_DEPTH_N + sub.GCL_DEPTH_N + 1" +
+                " from T_GROUP_CLOSURE sup, T_GROUP_CLOSURE sub" +
+                " where sup.GCL_IDGROUP_C = :parentId and sub.GCL_IDANCESTOR_C = :groupId");
+        q.setParameter("groupId", groupId);
+        q.setParameter("parentId", parentId);
+        q.executeUpdate();
+    }
+
+    /**
+     * Unlink a group and its sub-groups from the ancestors of the group.
+     *
+     * @param groupId Group ID
+     */
+    private void unlinkAncestors(String groupId) {
+        Query q = createClosureQuery("delete from T_GROUP_CLOSURE where GCL_IDGROUP_C in (select c.GCL_IDGROUP_C from T_GROUP_CLOSURE c where c.GCL_IDANCESTOR_C = :groupId)" +
+                " and GCL_IDANCESTOR_C in (select c.GCL_IDANCESTOR_C from T_GROUP_CLOSURE c where c.GCL_IDGROUP_C = :groupId and c.GCL_DEPTH_N > 0)");
+        q.setParameter("groupId", groupId);
+        q.executeUpdate();
+    }
+
+    /**
+     * Creates a native query on the group closure.
+     *
+     * @param sql SQL query
+     * @return Native query
+     */
+    private Query createClosureQuery(String sql) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery(sql);
+        q.setHint(HibernateHints.HINT_NATIVE_SPACES, new String[] { "T_GROUP_CLOSURE", "T_USER_GROUP" });
+        return q;
+    }
+}
@@ -2,6 +2,7 @@ package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.model.jpa.PasswordRecovery;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import org.joda.time.DateTime;
 import org.joda.time.DurationFieldType;
@@ -64,5 +65,6 @@ public class PasswordRecoveryDao {
         q.setParameter("deleteDate", new Date());
         q.setParameter("createDateMin", new DateTime().withFieldAdded(DurationFieldType.hours(), -1 * Constants.PASSWORD_RECOVERY_EXPIRATION_HOUR).toDate());
         q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
     }
 }
@@ -2,6 +2,7 @@ package com.sismics.docs.core.dao;
 
 import com.google.common.collect.Sets;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
@@ -27,6 +28,8 @@ public class RoleBaseFunctionDao {
         sb.append(" and r.ROL_ID_C = rbf.RBF_IDROLE_C and r.ROL_DELETEDATE_D is null");
         Query q = em.createNativeQuery(sb.toString());
         q.setParameter("roleIdSet", roleIdSet);
+        q.setHint(HibernateHints.HINT_NATIVE_SPACES, new String[] { "T_ROLE_BASE_FUNCTION", "T_ROLE" });
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         return Sets.newHashSet(q.getResultList());
     }
 }
@@ -10,6 +10,7 @@ import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import java.sql.Timestamp;
@@ -101,11 +102,14 @@ public class RouteDao {
         em.createNativeQuery("update T_ROUTE_STEP rs set RTP_DELETEDATE_D = :dateNow where rs.RTP_IDROUTE_C = :routeId and rs.RTP_DELETEDATE_D is null")
                 .setParameter("routeId", routeId)
                 .setParameter("dateNow", new Date())
+                .setHint(HibernateHints.HINT_NATIVE_SPACES, "T_ROUTE_STEP")
                 .executeUpdate();
 
         em.createNativeQuery("update T_ROUTE r set RTE_DELETEDATE_D = :dateNow where r.RTE_ID_C = :routeId and r.RTE_DELETEDATE_D is null")
                 .setParameter("routeId", routeId)
                 .setParameter("dateNow", new Date())
+                .setHint(HibernateHints.HINT_NATIVE_SPACES, "T_ROUTE")
                 .executeUpdate();
+        QueryUtil.clearPersistenceContext();
     }
 }
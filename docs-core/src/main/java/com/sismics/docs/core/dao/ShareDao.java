@@ -1,6 +1,7 @@
 package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.model.jpa.Share;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
@@ -54,5 +55,6 @@ public class ShareDao {
         q.setParameter("targetId", id);
         q.setParameter("dateNow", dateNow);
         q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
     }
 }
@@ -138,6 +138,7 @@ public class TagDao {
         
         // Create audit log
         AuditLogUtil.create(tagDb, AuditLogType.DELETE, userId);
+        QueryUtil.clearPersistenceContext();
     }
     
     /**
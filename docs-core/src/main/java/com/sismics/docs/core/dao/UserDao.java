@@ -14,10 +14,12 @@ import com.sismics.docs.core.dao.dto.UserDto;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
+import com.sismics.docs.core.util.authentication.PrincipalCache;
 import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -114,6 +116,7 @@ public class UserDao {
         userDb.setStorageCurrent(user.getStorageCurrent());
         userDb.setTotpKey(user.getTotpKey());
         userDb.setDisableDate(user.getDisableDate());
+        PrincipalCache.invalidateUser(userDb.getId());
 
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.UPDATE, userId);
@@ -228,6 +231,7 @@ public class UserDao {
         try {
             Query q = em.createQuery("select u from User u where u.username = :username and u.deleteDate is null");
             q.setParameter("username", username);
+            q.setHint(HibernateHints.HINT_CACHEABLE, true);
             return (User) q.getSingleResult();
         } catch (NoResultException e) {
             return null;
@@ -251,6 +255,8 @@ public class UserDao {
         // Delete the user
         Date dateNow = new Date();
         userDb.setDeleteDate(dateNow);
+        EncryptionUtil.evictKey(userDb.getPrivateKey());
+        PrincipalCache.invalidateUser(userDb.getId());
 
         // Delete linked data
         q = em.createQuery("delete from AuthenticationToken at where at.userId = :userId");
@@ -279,6 +285,7 @@ public class UserDao {
         
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.DELETE, userId);
+        QueryUtil.clearPersistenceContext();
     }
 
     /**
@@ -2,6 +2,7 @@ package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.model.jpa.Vocabulary;
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.jpa.HibernateHints;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
@@ -45,6 +46,7 @@ public class VocabularyDao {
         // Get the entries
         Query q = em.createQuery("select v from Vocabulary v where v.name = :name order by v.order");
         q.setParameter("name", name);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         return q.getResultList();
     }
 
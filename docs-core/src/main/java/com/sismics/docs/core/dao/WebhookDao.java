@@ -4,6 +4,7 @@ import com.google.common.base.Joiner;
 import com.sismics.docs.core.dao.criteria.WebhookCriteria;
 import com.sismics.docs.core.dao.dto.WebhookDto;
 import com.sismics.docs.core.model.jpa.Webhook;
+import com.sismics.docs.core.util.WebhookCache;
 import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
@@ -32,7 +33,7 @@ public class WebhookDao {
         Map<String, Object> parameterMap = new HashMap<>();
         List<String> criteriaList = new ArrayList<>();
         
-        StringBuilder sb = new StringBuilder("select w.WHK_ID_C as c0, w.WHK_EVENT_C as c1, w.WHK_URL_C as c2, w.WHK_CREATEDATE_D as c3 ");
+        StringBuilder sb = new StringBuilder("select w.WHK_ID_C as c0, w.WHK_EVENT_C as c1, w.WHK_URL_C as c2, w.WHK_BATCH_B as c3, w.WHK_CREATEDATE_D as c4 ");
         sb.append(" from T_WEBHOOK w ");
 
         // Add search criterias
@@ -58,6 +59,7 @@ public class WebhookDao {
                 .setId((String) o[i++])
                 .setEvent((String) o[i++])
                 .setUrl((String) o[i++])
+                .setBatch((Boolean) o[i++])
                 .setCreateTimestamp(((Timestamp) o[i]).getTime());
             webhookDtoList.add(webhookDto);
         }
@@ -96,6 +98,7 @@ public class WebhookDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         webhook.setCreateDate(new Date());
         em.persist(webhook);
+        WebhookCache.invalidate();
 
         return webhook.getId();
     }
@@ -116,6 +119,7 @@ public class WebhookDao {
         // Delete the group
         Date dateNow = new Date();
         webhookDb.setDeleteDate(dateNow);
+        WebhookCache.invalidate();
     }
 }
 
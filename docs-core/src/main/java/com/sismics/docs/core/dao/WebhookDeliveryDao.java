@@ -0,0 +1,297 @@
+package com.sismics.docs.core.dao;
+
+import com.google.common.base.Joiner;
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
+import com.sismics.docs.core.dao.criteria.WebhookDeliveryCriteria;
+import com.sismics.docs.core.dao.dto.WebhookDeliveryDto;
+import com.sismics.docs.core.dao.dto.WebhookDeliveryStatsDto;
+import com.sismics.docs.core.model.jpa.WebhookDelivery;
+import com.sismics.docs.core.util.jpa.PaginatedList;
+import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.jpa.QueryParam;
+import com.sismics.docs.core.util.jpa.QueryUtil;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.EMF;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.jpa.HibernateHints;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Webhook delivery DAO.
+ */
+public class WebhookDeliveryDao {
+    /**
+     * Creates a new delivery.
+     * If a lease is given, the delivery is reserved to be sent immediately, otherwise it is pending.
+     *
+     * @param delivery Delivery
+     * @param lease Reservation or null
+     * @param leaseDate Date until which the delivery is reserved
+     * @return New ID
+     */
+    public String create(WebhookDelivery delivery, String lease, Date leaseDate) {
+        // Create the UUID
+        delivery.setId(UUID.randomUUID().toString());
+
+        // Create the delivery
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+        if (lease == null) {
+            delivery.setStatus(WebhookDeliveryStatus.PENDING)
+                    .setAttempts(0)
+                    .setNextDate(dateNow);
+        } else {
+            delivery.setStatus(WebhookDeliveryStatus.SENDING)
+                    .setAttempts(1)
+                    .setLease(lease)
+                    .setNextDate(leaseDate);
+        }
+        delivery.setCreateDate(dateNow)
+                .setUpdateDate(dateNow);
+        em.persist(delivery);
+
+        return delivery.getId();
+    }
+
+    /**
+     * Reserves the deliveries due for sending: pending deliveries, and deliveries sent by a node which stopped.
+     * The deliveries are locked while they are reserved, concurrent nodes skip them on PostgreSQL.
+     *
+     * @param limit Maximum number of deliveries
+     * @param lease Reservation
+     * @param maxAttempts Maximum number of attempts, deliveries sent more times are marked as failed
+     * @param leaseDate Date until which the deliveries are reserved
+     * @return Reserved deliveries
+     */
+    public List<WebhookDelivery> reserveDue(int limit, String lease, int maxAttempts, Date leaseDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+
+        // Select the due deliveries
+        StringBuilder sb = new StringBuilder("select d.WHD_ID_C from T_WEBHOOK_DELIVERY d")
+                .append(" where (d.WHD_STATUS_C = :pending and d.WHD_NEXTDATE_D <= :dateNow)")
+                .append(" or (d.WHD_STATUS_C = :sending and d.WHD_NEXTDATE_D < :dateNow)")
+                .append(" order by d.WHD_NEXTDATE_D limit ").append(limit);
+        if (EMF.isDriverPostgresql()) {
+            sb.append(" for update skip locked");
+        }
+        Query q = em.createNativeQuery(sb.toString());
+        q.setHint(HibernateHints.HINT_NATIVE_SPACES, "T_WEBHOOK_DELIVERY");
+        q.setParameter("pending", WebhookDeliveryStatus.PENDING.name());
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING.name());
+        q.setParameter("dateNow", dateNow);
+        @SuppressWarnings("unchecked")
+        List<String> idList = q.getResultList();
+        if (idList.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Interrupted too many times
+        q = em.createQuery("update WebhookDelivery d set d.status = :failed, d.lease = null, d.error = :error, d.updateDate = :dateNow" +
+                " where d.id in :idList and d.status = :sending and d.nextDate < :dateNow and d.attempts >= :maxAttempts");
+        q.setParameter("failed", WebhookDeliveryStatus.FAILED);
+        q.setParameter("error", "Sending interrupted");
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("idList", idList);
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        q.setParameter("maxAttempts", maxAttempts);
+        q.executeUpdate();
+
+        // Reserve the others, the conditions are checked again in case another node reserved them meanwhile
+        q = em.createQuery("update WebhookDelivery d set d.status = :sending, d.attempts = d.attempts + 1, d.lease = :lease," +
+                " d.nextDate = :leaseDate, d.updateDate = :dateNow where d.id in :idList" +
+                " and ((d.status = :pending and d.nextDate <= :dateNow) or (d.status = :sending and d.nextDate < :dateNow))");
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        q.setParameter("lease", lease);
+        q.setParameter("leaseDate", leaseDate);
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("idList", idList);
+        q.setParameter("pending", WebhookDeliveryStatus.PENDING);
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+
+        TypedQuery<WebhookDelivery> deliveryQuery = em.createQuery("select d from WebhookDelivery d where d.id in :idList and d.lease = :lease" +
+                " and d.status = :sending order by d.createDate", WebhookDelivery.class);
+        deliveryQuery.setParameter("idList", idList);
+        deliveryQuery.setParameter("lease", lease);
+        deliveryQuery.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        return deliveryQuery.getResultList();
+    }
+
+    /**
+     * Marks deliveries as delivered, if they are still reserved.
+     *
+     * @param idList Delivery IDs
+     * @param lease Reservation
+     * @param responseCode HTTP status code
+     * @param duration Duration in milliseconds
+     */
+    public void deliver(List<String> idList, String lease, int responseCode, long duration) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update WebhookDelivery d set d.status = :delivered, d.lease = null, d.responseCode = :responseCode," +
+                " d.duration = :duration, d.error = null, d.updateDate = :dateNow where d.id in :idList and d.status = :sending and d.lease = :lease");
+        q.setParameter("delivered", WebhookDeliveryStatus.DELIVERED);
+        q.setParameter("responseCode", responseCode);
+        q.setParameter("duration", duration);
+        q.setParameter("dateNow", new Date());
+        q.setParameter("idList", idList);
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        q.setParameter("lease", lease);
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+    }
+
+    /**
+     * Marks deliveries as failed: they are sent again later, or never if they failed too many times.
+     *
+     * @param idList Delivery IDs
+     * @param lease Reservation
+     * @param responseCode HTTP status code, null if there is no response
+     * @param duration Duration in milliseconds
+     * @param error Error message
+     * @param maxAttempts Maximum number of attempts
+     * @param nextDate Date of the next attempt
+     */
+    public void fail(List<String> idList, String lease, Integer responseCode, long duration, String error, int maxAttempts, Date nextDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Date dateNow = new Date();
+        Query q = em.createQuery("update WebhookDelivery d set d.status = :failed, d.lease = null, d.responseCode = :responseCode," +
+                " d.duration = :duration, d.error = :error, d.updateDate = :dateNow" +
+                " where d.id in :idList and d.status = :sending and d.lease = :lease and d.attempts >= :maxAttempts");
+        q.setParameter("failed", WebhookDeliveryStatus.FAILED);
+        q.setParameter("responseCode", responseCode);
+        q.setParameter("duration", duration);
+        q.setParameter("error", StringUtils.abbreviate(error, 4000));
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("idList", idList);
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        q.setParameter("lease", lease);
+        q.setParameter("maxAttempts", maxAttempts);
+        q.executeUpdate();
+
+        q = em.createQuery("update WebhookDelivery d set d.status = :pending, d.lease = null, d.nextDate = :nextDate, d.responseCode = :responseCode," +
+                " d.duration = :duration, d.error = :error, d.updateDate = :dateNow" +
+                " where d.id in :idList and d.status = :sending and d.lease = :lease");
+        q.setParameter("pending", WebhookDeliveryStatus.PENDING);
+        q.setParameter("nextDate", nextDate);
+        q.setParameter("responseCode", responseCode);
+        q.setParameter("duration", duration);
+        q.setParameter("error", StringUtils.abbreviate(error, 4000));
+        q.setParameter("dateNow", dateNow);
+        q.setParameter("idList", idList);
+        q.setParameter("sending", WebhookDeliveryStatus.SENDING);
+        q.setParameter("lease", lease);
+        q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+    }
+
+    /**
+     * Deletes the delivered and failed deliveries last updated before a date.
+     *
+     * @param date Date
+     * @return Number of deleted deliveries
+     */
+    public int deleteHistory(Date date) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("delete from WebhookDelivery d where d.status in :statusList and d.updateDate < :date");
+        q.setParameter("statusList", List.of(WebhookDeliveryStatus.DELIVERED, WebhookDeliveryStatus.FAILED));
+        q.setParameter("date", date);
+        int count = q.executeUpdate();
+        QueryUtil.clearPersistenceContext();
+        return count;
+    }
+
+    /**
+     * Returns the delivery statistics of all webhooks.
+     *
+     * @return Statistics by webhook ID
+     */
+    public Map<String, WebhookDeliveryStatsDto> getStats() {
+        String sql = "select d.WHD_IDWEBHOOK_C, d.WHD_STATUS_C, count(d.WHD_ID_C), avg(d.WHD_DURATION_N), max(d.WHD_UPDATEDATE_D)" +
+                " from T_WEBHOOK_DELIVERY d group by d.WHD_IDWEBHOOK_C, d.WHD_STATUS_C";
+        @SuppressWarnings("unchecked")
+        List<Object[]> l = QueryUtil.getNativeQuery(new QueryParam(sql, new HashMap<>())).getResultList();
+
+        Map<String, WebhookDeliveryStatsDto> statsMap = new HashMap<>();
+        for (Object[] o : l) {
+            WebhookDeliveryStatsDto stats = statsMap.computeIfAbsent((String) o[0], webhookId -> new WebhookDeliveryStatsDto());
+            long count = ((Number) o[2]).longValue();
+            switch (WebhookDeliveryStatus.valueOf((String) o[1])) {
+                case PENDING:
+                case SENDING:
+                    stats.setPendingCount(stats.getPendingCount() + count);
+                    break;
+                case DELIVERED:
+                    stats.setDeliveredCount(count);
+                    stats.setAverageDuration(o[3] == null ? 0 : ((Number) o[3]).doubleValue());
+                    stats.setLastDeliveryTimestamp(((Timestamp) o[4]).getTime());
+                    break;
+                case FAILED:
+                    stats.setFailedCount(count);
+                    break;
+            }
+        }
+        return statsMap;
+    }
+
+    /**
+     * Searches deliveries by criteria.
+     *
+     * @param paginatedList List of deliveries (updated by side effects)
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     */
+    public void findByCriteria(PaginatedList<WebhookDeliveryDto> paginatedList, WebhookDeliveryCriteria criteria, SortCriteria sortCriteria) {
+        Map<String, Object> parameterMap = new HashMap<>();
+        List<String> criteriaList = new ArrayList<>();
+
+        StringBuilder sb = new StringBuilder("select d.WHD_ID_C c0, d.WHD_IDWEBHOOK_C c1, d.WHD_EVENT_C c2, d.WHD_ENTITYID_C c3, d.WHD_STATUS_C c4,")
+                .append(" d.WHD_ATTEMPTS_N c5, d.WHD_RESPONSECODE_N c6, d.WHD_DURATION_N c7, d.WHD_ERROR_C c8, d.WHD_CREATEDATE_D c9, d.WHD_UPDATEDATE_D c10")
+                .append(" from T_WEBHOOK_DELIVERY d");
+
+        // Add search criterias
+        if (criteria.getWebhookId() != null) {
+            criteriaList.add("d.WHD_IDWEBHOOK_C = :webhookId");
+            parameterMap.put("webhookId", criteria.getWebhookId());
+        }
+        if (criteria.getStatus() != null) {
+            criteriaList.add("d.WHD_STATUS_C = :status");
+            parameterMap.put("status", criteria.getStatus().name());
+        }
+        if (!criteriaList.isEmpty()) {
+            sb.append(" where ");
+            sb.append(Joiner.on(" and ").join(criteriaList));
+        }
+
+        // Perform the search
+        List<Object[]> l = PaginatedLists.executePaginatedQuery(paginatedList, new QueryParam(sb.toString(), parameterMap), sortCriteria);
+
+        // Assemble results
+        List<WebhookDeliveryDto> deliveryDtoList = new ArrayList<>();
+        for (Object[] o : l) {
+            int i = 0;
+            WebhookDeliveryDto deliveryDto = new WebhookDeliveryDto()
+                    .setId((String) o[i++])
+                    .setWebhookId((String) o[i++])
+                    .setEvent((String) o[i++])
+                    .setEntityId((String) o[i++])
+                    .setStatus((String) o[i++])
+                    .setAttempts(((Number) o[i++]).intValue());
+            Number responseCode = (Number) o[i++];
+            Number duration = (Number) o[i++];
+            deliveryDto.setResponseCode(responseCode == null ? null : responseCode.intValue())
+                    .setDuration(duration == null ? null : duration.longValue())
+                    .setError((String) o[i++])
+                    .setCreateTimestamp(((Timestamp) o[i++]).getTime())
+                    .setUpdateTimestamp(((Timestamp) o[i]).getTime());
+            deliveryDtoList.add(deliveryDto);
+        }
+        paginatedList.setResultList(deliveryDtoList);
+    }
+}
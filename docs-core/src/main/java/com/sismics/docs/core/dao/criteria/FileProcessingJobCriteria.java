@@ -0,0 +1,36 @@
+package com.sismics.docs.core.dao.criteria;
+
+import com.sismics.docs.core.constant.FileProcessingJobStatus;
+
+/**
+ * File processing job criteria.
+ */
+public class FileProcessingJobCriteria {
+    /**
+     * Job status.
+     */
+    private FileProcessingJobStatus status;
+
+    /**
+     * File ID.
+     */
+    private String fileId;
+
+    public FileProcessingJobStatus getStatus() {
+        return status;
+    }
+
+    public FileProcessingJobCriteria setStatus(FileProcessingJobStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public FileProcessingJobCriteria setFileId(String fileId) {
+        this.fileId = fileId;
+        return this;
+    }
+}
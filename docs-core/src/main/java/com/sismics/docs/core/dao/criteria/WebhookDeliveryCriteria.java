@@ -0,0 +1,36 @@
+package com.sismics.docs.core.dao.criteria;
+
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
+
+/**
+ * Webhook delivery criteria.
+ */
+public class WebhookDeliveryCriteria {
+    /**
+     * Webhook ID.
+     */
+    private String webhookId;
+
+    /**
+     * Delivery status.
+     */
+    private WebhookDeliveryStatus status;
+
+    public String getWebhookId() {
+        return webhookId;
+    }
+
+    public WebhookDeliveryCriteria setWebhookId(String webhookId) {
+        this.webhookId = webhookId;
+        return this;
+    }
+
+    public WebhookDeliveryStatus getStatus() {
+        return status;
+    }
+
+    public WebhookDeliveryCriteria setStatus(WebhookDeliveryStatus status) {
+        this.status = status;
+        return this;
+    }
+}
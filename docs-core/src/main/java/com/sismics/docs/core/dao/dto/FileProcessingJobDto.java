@@ -0,0 +1,146 @@
+package com.sismics.docs.core.dao.dto;
+
+/**
+ * File processing job DTO.
+ */
+public class FileProcessingJobDto {
+    /**
+     * Job ID.
+     */
+    private String id;
+
+    /**
+     * File ID.
+     */
+    private String fileId;
+
+    /**
+     * File name.
+     */
+    private String fileName;
+
+    /**
+     * Processing lane.
+     */
+    private String lane;
+
+    /**
+     * Status.
+     */
+    private String status;
+
+    /**
+     * Number of processing attempts.
+     */
+    private Integer attempts;
+
+    /**
+     * Node processing the file.
+     */
+    private String leaseOwner;
+
+    /**
+     * Last error.
+     */
+    private String error;
+
+    /**
+     * Creation date.
+     */
+    private Long createTimestamp;
+
+    /**
+     * Update date.
+     */
+    private Long updateTimestamp;
+
+    public String getId() {
+        return id;
+    }
+
+    public FileProcessingJobDto setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public FileProcessingJobDto setFileId(String fileId) {
+        this.fileId = fileId;
+        return this;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public FileProcessingJobDto setFileName(String fileName) {
+        this.fileName = fileName;
+        return this;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public FileProcessingJobDto setLane(String lane) {
+        this.lane = lane;
+        return this;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public FileProcessingJobDto setStatus(String status) {
+        this.status = status;
+        return this;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public FileProcessingJobDto setAttempts(Integer attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public FileProcessingJobDto setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+        return this;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public FileProcessingJobDto setError(String error) {
+        this.error = error;
+        return this;
+    }
+
+    public Long getCreateTimestamp() {
+        return createTimestamp;
+    }
+
+    public FileProcessingJobDto setCreateTimestamp(Long createTimestamp) {
+        this.createTimestamp = createTimestamp;
+        return this;
+    }
+
+    public Long getUpdateTimestamp() {
+        return updateTimestamp;
+    }
+
+    public FileProcessingJobDto setUpdateTimestamp(Long updateTimestamp) {
+        this.updateTimestamp = updateTimestamp;
+        return this;
+    }
+}
@@ -0,0 +1,160 @@
+package com.sismics.docs.core.dao.dto;
+
+/**
+ * Webhook delivery DTO.
+ */
+public class WebhookDeliveryDto {
+    /**
+     * Delivery ID.
+     */
+    private String id;
+
+    /**
+     * Webhook ID.
+     */
+    private String webhookId;
+
+    /**
+     * Event.
+     */
+    private String event;
+
+    /**
+     * ID of the document or file.
+     */
+    private String entityId;
+
+    /**
+     * Status.
+     */
+    private String status;
+
+    /**
+     * Number of sending attempts.
+     */
+    private Integer attempts;
+
+    /**
+     * HTTP status code of the last attempt.
+     */
+    private Integer responseCode;
+
+    /**
+     * Duration of the last attempt in milliseconds.
+     */
+    private Long duration;
+
+    /**
+     * Last error.
+     */
+    private String error;
+
+    /**
+     * Creation date.
+     */
+    private Long createTimestamp;
+
+    /**
+     * Update date.
+     */
+    private Long updateTimestamp;
+
+    public String getId() {
+        return id;
+    }
+
+    public WebhookDeliveryDto setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getWebhookId() {
+        return webhookId;
+    }
+
+    public WebhookDeliveryDto setWebhookId(String webhookId) {
+        this.webhookId = webhookId;
+        return this;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public WebhookDeliveryDto setEvent(String event) {
+        this.event = event;
+        return this;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public WebhookDeliveryDto setEntityId(String entityId) {
+        this.entityId = entityId;
+        return this;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public WebhookDeliveryDto setStatus(String status) {
+        this.status = status;
+        return this;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public WebhookDeliveryDto setAttempts(Integer attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+
+    public Integer getResponseCode() {
+        return responseCode;
+    }
+
+    public WebhookDeliveryDto setResponseCode(Integer responseCode) {
+        this.responseCode = responseCode;
+        return this;
+    }
+
+    public Long getDuration() {
+        return duration;
+    }
+
+    public WebhookDeliveryDto setDuration(Long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public WebhookDeliveryDto setError(String error) {
+        this.error = error;
+        return this;
+    }
+
+    public Long getCreateTimestamp() {
+        return createTimestamp;
+    }
+
+    public WebhookDeliveryDto setCreateTimestamp(Long createTimestamp) {
+        this.createTimestamp = createTimestamp;
+        return this;
+    }
+
+    public Long getUpdateTimestamp() {
+        return updateTimestamp;
+    }
+
+    public WebhookDeliveryDto setUpdateTimestamp(Long updateTimestamp) {
+        this.updateTimestamp = updateTimestamp;
+        return this;
+    }
+}
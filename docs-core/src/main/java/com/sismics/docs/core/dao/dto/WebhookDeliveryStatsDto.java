@@ -0,0 +1,76 @@
+package com.sismics.docs.core.dao.dto;
+
+/**
+ * Delivery statistics of a webhook.
+ */
+public class WebhookDeliveryStatsDto {
+    /**
+     * Number of events waiting to be delivered.
+     */
+    private long pendingCount;
+
+    /**
+     * Number of events delivered.
+     */
+    private long deliveredCount;
+
+    /**
+     * Number of events which could not be delivered.
+     */
+    private long failedCount;
+
+    /**
+     * Average delivery time in milliseconds.
+     */
+    private double averageDuration;
+
+    /**
+     * Date of the last delivery.
+     */
+    private Long lastDeliveryTimestamp;
+
+    public long getPendingCount() {
+        return pendingCount;
+    }
+
+    public WebhookDeliveryStatsDto setPendingCount(long pendingCount) {
+        this.pendingCount = pendingCount;
+        return this;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public WebhookDeliveryStatsDto setDeliveredCount(long deliveredCount) {
+        this.deliveredCount = deliveredCount;
+        return this;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public WebhookDeliveryStatsDto setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+        return this;
+    }
+
+    public double getAverageDuration() {
+        return averageDuration;
+    }
+
+    public WebhookDeliveryStatsDto setAverageDuration(double averageDuration) {
+        this.averageDuration = averageDuration;
+        return this;
+    }
+
+    public Long getLastDeliveryTimestamp() {
+        return lastDeliveryTimestamp;
+    }
+
+    public WebhookDeliveryStatsDto setLastDeliveryTimestamp(Long lastDeliveryTimestamp) {
+        this.lastDeliveryTimestamp = lastDeliveryTimestamp;
+        return this;
+    }
+}
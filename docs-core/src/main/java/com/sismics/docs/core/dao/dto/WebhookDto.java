@@ -21,6 +21,11 @@ public class WebhookDto {
      */
     private String url;
 
+    /**
+     * True if the events are sent in batches.
+     */
+    private boolean batch;
+
     /**
      * Creation date.
      */
@@ -53,6 +58,15 @@ public class WebhookDto {
         return this;
     }
 
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public WebhookDto setBatch(boolean batch) {
+        this.batch = batch;
+        return this;
+    }
+
     public Long getCreateTimestamp() {
         return createTimestamp;
     }
@@ -2,6 +2,9 @@ package com.sismics.docs.core.event;
 
 import com.google.common.base.MoreObjects;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * Document updated event.
  *
@@ -12,7 +15,12 @@ public class DocumentUpdatedAsyncEvent extends UserEvent {
      * Document ID.
      */
     private String documentId;
-    
+
+    /**
+     * IDs of the other users who updated the document, if several updates are coalesced in this event.
+     */
+    private final Set<String> otherUserIdSet = new LinkedHashSet<>();
+
     public String getDocumentId() {
         return documentId;
     }
@@ -21,10 +29,35 @@ public class DocumentUpdatedAsyncEvent extends UserEvent {
         this.documentId = documentId;
     }
 
+    /**
+     * Merge another update of the same document in this event.
+     *
+     * @param event Other event
+     */
+    public void merge(DocumentUpdatedAsyncEvent event) {
+        otherUserIdSet.add(event.getUserId());
+        otherUserIdSet.addAll(event.otherUserIdSet);
+        otherUserIdSet.remove(getUserId());
+    }
+
+    /**
+     * Returns the IDs of all the users who updated the document.
+     *
+     * @return User IDs
+     */
+    public Set<String> getUserIdSet() {
+        Set<String> userIdSet = new LinkedHashSet<>();
+        userIdSet.add(getUserId());
+        userIdSet.addAll(otherUserIdSet);
+        return userIdSet;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
             .add("documentId", documentId)
+            .add("otherUserIdSet", otherUserIdSet.isEmpty() ? null : otherUserIdSet)
+            .omitNullValues()
             .toString();
     }
-}
\ No newline at end of file
+}
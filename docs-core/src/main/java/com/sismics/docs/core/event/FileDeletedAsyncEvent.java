@@ -15,6 +15,11 @@ public class FileDeletedAsyncEvent extends UserEvent {
 
     private Long fileSize;
 
+    /**
+     * ID of the blob storing the file content, null if the content is stored under the file ID.
+     */
+    private String blobId;
+
     public String getFileId() {
         return fileId;
     }
@@ -31,11 +36,30 @@ public class FileDeletedAsyncEvent extends UserEvent {
         this.fileSize = fileSize;
     }
 
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(String blobId) {
+        this.blobId = blobId;
+    }
+
+    /**
+     * Returns the ID under which the content of the file is stored.
+     *
+     * @return Storage ID
+     */
+    public String getStorageId() {
+        return blobId == null ? fileId : blobId;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
             .add("fileId", fileId)
             .add("fileSize", fileSize)
+            .add("blobId", blobId)
+            .omitNullValues()
             .toString();
     }
 }
@@ -1,6 +1,7 @@
 package com.sismics.docs.core.event;
 
 import com.google.common.base.MoreObjects;
+import com.sismics.docs.core.constant.FileProcessingLane;
 
 import java.nio.file.Path;
 
@@ -25,6 +26,16 @@ public abstract class FileEvent extends UserEvent {
      */
     private Path unencryptedFile;
 
+    /**
+     * Processing lane.
+     */
+    private FileProcessingLane lane = FileProcessingLane.INTERACTIVE;
+
+    /**
+     * Processing job ID.
+     */
+    private String jobId;
+
     public String getFileId() {
         return fileId;
     }
@@ -50,11 +61,31 @@ public abstract class FileEvent extends UserEvent {
         return this;
     }
 
+    public FileProcessingLane getLane() {
+        return lane;
+    }
+
+    public FileEvent setLane(FileProcessingLane lane) {
+        this.lane = lane;
+        return this;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public FileEvent setJobId(String jobId) {
+        this.jobId = jobId;
+        return this;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
             .add("fileId", fileId)
             .add("language", language)
+            .add("lane", lane)
+            .add("jobId", jobId)
             .toString();
     }
 }
\ No newline at end of file
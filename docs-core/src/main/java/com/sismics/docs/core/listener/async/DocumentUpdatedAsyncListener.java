@@ -15,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Listener on document updated.
@@ -39,45 +40,48 @@ public class DocumentUpdatedAsyncListener {
             log.info("Document updated event: " + event.toString());
         }
 
-        TransactionUtil.handle(() -> {
-            // Get the document
-            DocumentDao documentDao = new DocumentDao();
-            Document document = documentDao.getById(event.getDocumentId());
-            if (document == null) {
-                // Document deleted since event fired
-                return;
-            }
+        try {
+            TransactionUtil.handle(() -> {
+                // Get the document
+                DocumentDao documentDao = new DocumentDao();
+                Document document = documentDao.getById(event.getDocumentId());
+                if (document == null) {
+                    // Document deleted since event fired
+                    return;
+                }
 
-            // Set the main file
-            FileDao fileDao = new FileDao();
-            List<File> fileList = fileDao.getByDocumentId(null, event.getDocumentId());
-            if (fileList.isEmpty()) {
-                document.setFileId(null);
-            } else {
-                document.setFileId(fileList.get(0).getId());
-            }
+                // Set the main file
+                FileDao fileDao = new FileDao();
+                List<File> fileList = fileDao.getByDocumentId(null, event.getDocumentId());
+                if (fileList.isEmpty()) {
+                    document.setFileId(null);
+                } else {
+                    document.setFileId(fileList.get(0).getId());
+                }
 
-            // Update database and index
-            documentDao.updateFileId(document);
-            AppContext.getInstance().getIndexingHandler().updateDocument(document);
+                // Update database and index
+                documentDao.updateFileId(document);
+                AppContext.getInstance().getIndexingHandler().updateDocument(document);
 
-            // Update contributors list
-            ContributorDao contributorDao = new ContributorDao();
-            List<Contributor> contributorList = contributorDao.findByDocumentId(event.getDocumentId());
+                // Update contributors list
+                ContributorDao contributorDao = new ContributorDao();
+                List<Contributor> contributorList = contributorDao.findByDocumentId(event.getDocumentId());
 
-            // Check if the user firing this event is not already a contributor
-            for (Contributor contributor : contributorList) {
-                if (contributor.getUserId().equals(event.getUserId())) {
-                    // The current user is already a contributor on this document, don't do anything
-                    return;
+                // Add the users firing this event who are not already contributors
+                Set<String> userIdSet = event.getUserIdSet();
+                for (Contributor contributor : contributorList) {
+                    userIdSet.remove(contributor.getUserId());
                 }
-            }
-
-            // Add a new contributor
-            Contributor contributor = new Contributor();
-            contributor.setDocumentId(event.getDocumentId());
-            contributor.setUserId(event.getUserId());
-            contributorDao.create(contributor);
-        });
+                for (String userId : userIdSet) {
+                    Contributor contributor = new Contributor();
+                    contributor.setDocumentId(event.getDocumentId());
+                    contributor.setUserId(userId);
+                    contributorDao.create(contributor);
+                }
+            });
+        } finally {
+            // Post the updates of the document received meanwhile
+            AppContext.getInstance().getDocumentUpdatedCoalescer().complete(event);
+        }
     }
 }
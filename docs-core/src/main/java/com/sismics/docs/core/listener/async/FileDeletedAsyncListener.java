@@ -2,6 +2,7 @@ package com.sismics.docs.core.listener.async;
 
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.sismics.docs.core.dao.FileBlobDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.FileDeletedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
@@ -12,6 +13,8 @@ import com.sismics.docs.core.util.TransactionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Listener on file deleted.
  *
@@ -43,8 +46,8 @@ public class FileDeletedAsyncListener {
                 Long fileSize = event.getFileSize();
 
                 if (fileSize.equals(File.UNKNOWN_SIZE)) {
-                    // The file size was not in the database, in this case we need to get from the unencrypted size.
-                    fileSize = FileUtil.getFileSize(event.getFileId(), user);
+                    // The file size was not in the database, in this case we get it from the stored content
+                    fileSize = FileUtil.getFileSize(event.getStorageId());
                 }
 
                 if (! fileSize.equals(File.UNKNOWN_SIZE)) {
@@ -54,8 +57,14 @@ public class FileDeletedAsyncListener {
             }
         });
 
-        // Delete the file from storage
-        FileUtil.delete(event.getFileId());
+        // Delete the file from storage, unless its content is still shared with other files
+        AtomicBoolean unused = new AtomicBoolean(event.getBlobId() == null);
+        if (event.getBlobId() != null) {
+            TransactionUtil.handle(() -> unused.set(new FileBlobDao().removeReference(event.getBlobId())));
+        }
+        if (unused.get()) {
+            FileUtil.delete(event.getStorageId());
+        }
 
         TransactionUtil.handle(() -> {
             // Update index
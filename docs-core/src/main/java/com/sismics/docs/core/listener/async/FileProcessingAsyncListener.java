@@ -3,6 +3,7 @@ package com.sismics.docs.core.listener.async;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.FileProcessingJobDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.FileCreatedAsyncEvent;
 import com.sismics.docs.core.event.FileEvent;
@@ -10,24 +11,21 @@ import com.sismics.docs.core.event.FileUpdatedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
-import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.service.FileProcessingJobService;
 import com.sismics.docs.core.util.EncryptionUtil;
-import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.ThumbnailUtil;
 import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.format.FormatHandler;
+import com.sismics.docs.core.util.format.FormatHandlerSession;
 import com.sismics.docs.core.util.format.FormatHandlerUtil;
-import com.sismics.util.ImageUtil;
-import com.sismics.util.Scalr;
+import com.sismics.util.EnvironmentUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import java.awt.image.BufferedImage;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -78,8 +76,21 @@ public class FileProcessingAsyncListener {
      * @param isFileCreated True if the file was just created
      */
     private void processFile(FileEvent event, boolean isFileCreated) {
+        // Claim the processing job, it may have been processed by another node since
+        String owner = EnvironmentUtil.getNodeId();
+        if (event.getJobId() != null) {
+            AtomicBoolean claimed = new AtomicBoolean();
+            TransactionUtil.handle(() -> claimed.set(new FileProcessingJobDao()
+                    .claim(event.getJobId(), owner, FileProcessingJobService.getLeaseDate())));
+            if (!claimed.get()) {
+                log.info("File processing job already claimed: " + event.getJobId());
+                return;
+            }
+        }
+
         AtomicReference<File> file = new AtomicReference<>();
         AtomicReference<User> user = new AtomicReference<>();
+        AtomicReference<File> processedFile = new AtomicReference<>();
 
         // Open a first transaction to get what we need to start the processing
         TransactionUtil.handle(() -> {
@@ -93,23 +104,39 @@ public class FileProcessingAsyncListener {
             // Get the creating user from the database for its private key
             UserDao userDao = new UserDao();
             user.set(userDao.getById(file.get().getUserId()));
+
+            // A new file sharing its content with a processed file reuses its thumbnails and text content
+            if (isFileCreated && file.get().getBlobId() != null) {
+                processedFile.set(findProcessedFile(file.get()));
+            }
         });
 
         // Process the file outside of a transaction
         if (user.get() == null || file.get() == null) {
             // The user or file has been deleted
-            FileUtil.endProcessingFile(event.getFileId());
+            cancelJob(event);
             return;
         }
-        String content = extractContent(event, user.get(), file.get());
+        String content;
+        if (processedFile.get() == null) {
+            content = extractContent(event, user.get(), file.get());
+        } else {
+            log.info("Content reused from the file: " + processedFile.get().getId());
+            content = processedFile.get().getContent();
+        }
 
         // Open a new transaction to save the file content
+        AtomicBoolean saved = new AtomicBoolean();
         TransactionUtil.handle(() -> {
             // Save the file to database
             FileDao fileDao = new FileDao();
             File freshFile = fileDao.getActiveById(event.getFileId());
             if (freshFile == null) {
                 // The file has been deleted since the text extraction started, ignore the result
+                if (event.getJobId() != null) {
+                    new FileProcessingJobDao().cancel(event.getJobId(), "File deleted");
+                }
+                saved.set(true);
                 return;
             }
 
@@ -122,9 +149,49 @@ public class FileProcessingAsyncListener {
             } else {
                 AppContext.getInstance().getIndexingHandler().updateFile(freshFile);
             }
+
+            if (event.getJobId() != null) {
+                new FileProcessingJobDao().complete(event.getJobId(), owner);
+            }
+            saved.set(true);
         });
 
-        FileUtil.endProcessingFile(event.getFileId());
+        // The content has not been saved, process the file again later
+        if (!saved.get() && event.getJobId() != null) {
+            TransactionUtil.handle(() -> new FileProcessingJobDao().fail(event.getJobId(), owner, "Error saving the file content",
+                    FileProcessingJobService.getMaxAttempts(), FileProcessingJobService.getRetryDate()));
+        }
+    }
+
+    /**
+     * Find a processed file sharing the content of a file.
+     * Files whose processing failed or has been cancelled have no content nor thumbnails, they are not reused.
+     *
+     * @param file File
+     * @return Processed file or null if none
+     */
+    private File findProcessedFile(File file) {
+        FileProcessingJobDao fileProcessingJobDao = new FileProcessingJobDao();
+        for (File otherFile : new FileDao().getByBlobId(file.getBlobId())) {
+            if (otherFile.getId().equals(file.getId()) || fileProcessingJobDao.isProcessing(otherFile.getId())) {
+                continue;
+            }
+            if (otherFile.getContent() != null || fileProcessingJobDao.isDone(otherFile.getId())) {
+                return otherFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cancel the processing job of a deleted file.
+     *
+     * @param event File event
+     */
+    private void cancelJob(FileEvent event) {
+        if (event.getJobId() != null) {
+            TransactionUtil.handle(() -> new FileProcessingJobDao().cancel(event.getJobId(), "File deleted"));
+        }
     }
 
     /**
@@ -144,42 +211,33 @@ public class FileProcessingAsyncListener {
             return null;
         }
 
-        // Generate file variations
-        try {
-            Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-            BufferedImage image = formatHandler.generateThumbnail(event.getUnencryptedFile());
-            if (image != null) {
-                // Generate thumbnails from image
-                BufferedImage web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 1280);
-                BufferedImage thumbnail = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 256);
-                image.flush();
-
-                // Write "web" encrypted image
-                Path outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_web");
-                try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
-                    ImageUtil.writeJpeg(web, outputStream);
-                }
-
-                // Write "thumb" encrypted image
-                outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_thumb");
-                try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
-                    ImageUtil.writeJpeg(thumbnail, outputStream);
+        // Parse the file once for the thumbnails and the text content
+        String content = null;
+        try (FormatHandlerSession session = formatHandler.openSession(event.getUnencryptedFile())) {
+            // Generate file variations
+            try {
+                Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
+                BufferedImage image = session.generateThumbnail();
+                if (image != null) {
+                    // Generate thumbnails from image
+                    ThumbnailUtil.writeThumbnails(image, file.getStorageId(), cipher);
                 }
+            } catch (Throwable e) {
+                log.error("Unable to generate thumbnails for: " + file, e);
             }
-        } catch (Throwable e) {
-            log.error("Unable to generate thumbnails for: " + file, e);
-        }
 
-        // Extract text content from the file
-        long startTime = System.currentTimeMillis();
-        String content = null;
-        log.info("Start extracting content from: " + file);
-        try {
-            content = formatHandler.extractContent(event.getLanguage(), event.getUnencryptedFile());
+            // Extract text content from the file
+            long startTime = System.currentTimeMillis();
+            log.info("Start extracting content from: " + file);
+            try {
+                content = session.extractContent(event.getLanguage());
+            } catch (Throwable e) {
+                log.error("Error extracting content from: " + file, e);
+            }
+            log.info(MessageFormat.format("File content extracted in {0}ms: " + file.getId(), System.currentTimeMillis() - startTime));
         } catch (Throwable e) {
-            log.error("Error extracting content from: " + file, e);
+            log.error("Unable to open the file: " + file, e);
         }
-        log.info(MessageFormat.format("File content extracted in {0}ms: " + file.getId(), System.currentTimeMillis() - startTime));
 
         return content;
     }
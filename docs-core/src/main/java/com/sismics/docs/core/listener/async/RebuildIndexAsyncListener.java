@@ -9,14 +9,19 @@ import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.docs.core.util.indexing.IndexingHandler;
+import com.sismics.docs.core.util.indexing.RebuildIndexProgress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * Listener on rebuild index.
- * 
+ *
  * @author bgamard
  */
 public class RebuildIndexAsyncListener {
@@ -25,9 +30,14 @@ public class RebuildIndexAsyncListener {
      */
     private static final Logger log = LoggerFactory.getLogger(RebuildIndexAsyncListener.class);
 
+    /**
+     * Number of documents or files read from the database at once.
+     */
+    private static final int PAGE_SIZE = 500;
+
     /**
      * Rebuild Lucene index.
-     * 
+     *
      * @param event Index rebuild event
      */
     @Subscribe
@@ -37,35 +47,75 @@ public class RebuildIndexAsyncListener {
             log.info("Rebuild index event: " + event.toString());
         }
 
-        // Clear the index
-        AppContext.getInstance().getIndexingHandler().clearIndex();
+        // The current index is searched until the rebuilt one replaces it
+        IndexingHandler indexingHandler = AppContext.getInstance().getIndexingHandler();
+        RebuildIndexProgress progress;
+        try {
+            progress = indexingHandler.startRebuild();
+        } catch (Exception e) {
+            log.error("Unable to start rebuilding the index", e);
+            return;
+        }
+        if (progress == null) {
+            log.info("The index is already being rebuilt");
+            return;
+        }
+
+        try {
+            TransactionUtil.handle(() -> {
+                progress.setDocumentTotal(new DocumentDao().getDocumentCount());
+                progress.setFileTotal(new FileDao().getFileCount());
+            });
 
-        // Index all documents
-        TransactionUtil.handle(() -> {
-            int offset = 0;
-            DocumentDao documentDao = new DocumentDao();
-            List<Document> documentList;
-            do {
-                documentList = documentDao.findAll(offset, 100);
-                AppContext.getInstance().getIndexingHandler().createDocuments(documentList);
-                offset += 100;
-            } while (documentList.size() > 0);
-        });
+            // Index all documents, one page per transaction
+            if (progress.getPhase() == RebuildIndexProgress.Phase.DOCUMENTS) {
+                List<Document> documentList;
+                do {
+                    documentList = findPage(() -> new DocumentDao().findAllAfter(progress.getLastDocumentId(), PAGE_SIZE));
+                    indexingHandler.rebuildDocuments(documentList);
+                } while (documentList.size() == PAGE_SIZE);
+                progress.setPhase(RebuildIndexProgress.Phase.FILES);
+            }
 
-        // Index all files
-        TransactionUtil.handle(() -> {
-            int offset = 0;
-            FileDao fileDao = new FileDao();
-            List<File> fileList;
-            do {
-                fileList = fileDao.findAll(offset, 100);
-                AppContext.getInstance().getIndexingHandler().createFiles(fileList);
-                offset += 100;
-            } while (fileList.size() > 0);
-        });
+            // Index all files, one page per transaction
+            if (progress.getPhase() == RebuildIndexProgress.Phase.FILES) {
+                List<File> fileList;
+                do {
+                    fileList = findPage(() -> new FileDao().findAllAfter(progress.getLastFileId(), PAGE_SIZE));
+                    indexingHandler.rebuildFiles(fileList);
+                } while (fileList.size() == PAGE_SIZE);
+            }
+
+            indexingHandler.finishRebuild();
+        } catch (Exception e) {
+            log.error("Error rebuilding the index, it will be resumed by the next rebuild", e);
+            indexingHandler.abortRebuild();
+            return;
+        }
 
         if (log.isInfoEnabled()) {
             log.info("Rebuilding index done");
         }
     }
+
+    /**
+     * Read a page of entities in its own transaction.
+     *
+     * @param finder Page finder
+     * @param <T> Entity type
+     * @return Page of entities
+     * @throws Exception e
+     */
+    private static <T> List<T> findPage(Supplier<List<T>> finder) throws Exception {
+        List<T> page = new ArrayList<>();
+        AtomicBoolean done = new AtomicBoolean();
+        TransactionUtil.handle(() -> {
+            page.addAll(finder.get());
+            done.set(true);
+        });
+        if (!done.get()) {
+            throw new Exception("Error reading the entities to index");
+        }
+        return page;
+    }
 }
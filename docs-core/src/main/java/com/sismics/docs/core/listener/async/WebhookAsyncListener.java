@@ -1,20 +1,20 @@
 package com.sismics.docs.core.listener.async;
 
-import com.google.common.collect.Lists;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.sismics.docs.core.constant.WebhookEvent;
-import com.sismics.docs.core.dao.WebhookDao;
-import com.sismics.docs.core.dao.criteria.WebhookCriteria;
+import com.sismics.docs.core.dao.WebhookDeliveryDao;
 import com.sismics.docs.core.dao.dto.WebhookDto;
 import com.sismics.docs.core.event.*;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.WebhookDelivery;
+import com.sismics.docs.core.service.WebhookService;
 import com.sismics.docs.core.util.TransactionUtil;
-import okhttp3.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.sismics.docs.core.util.WebhookCache;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Listener for triggering webhooks.
@@ -22,17 +22,6 @@ import java.util.List;
  * @author bgamard
  */
 public class WebhookAsyncListener {
-    /**
-     * Logger.
-     */
-    private static final Logger log = LoggerFactory.getLogger(WebhookAsyncListener.class);
-
-    /**
-     * OkHttp client.
-     */
-    private static final OkHttpClient client = new OkHttpClient();
-    public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-
     @Subscribe
     @AllowConcurrentEvents
     public void on(final DocumentCreatedAsyncEvent event) {
@@ -71,33 +60,36 @@ public class WebhookAsyncListener {
 
     /**
      * Trigger the webhooks for the specified event.
+     * The deliveries are saved in the outbox, those which are not batched are sent immediately.
      *
      * @param event Event
      * @param id ID
      */
     private void triggerWebhook(WebhookEvent event, String id) {
-        List<String> webhookUrlList = Lists.newArrayList();
+        List<WebhookDto> webhookDtoList = WebhookCache.getByEvent(event);
+        if (webhookDtoList.isEmpty()) {
+            return;
+        }
 
+        String lease = UUID.randomUUID().toString();
+        List<WebhookDelivery> deliveryList = new ArrayList<>();
         TransactionUtil.handle(() -> {
-            WebhookDao webhookDao = new WebhookDao();
-            List<WebhookDto> webhookDtoList = webhookDao.findByCriteria(new WebhookCriteria().setEvent(event), null);
+            WebhookDeliveryDao webhookDeliveryDao = new WebhookDeliveryDao();
             for (WebhookDto webhookDto : webhookDtoList) {
-                webhookUrlList.add(webhookDto.getUrl());
+                WebhookDelivery delivery = new WebhookDelivery()
+                        .setWebhookId(webhookDto.getId())
+                        .setEvent(event)
+                        .setEntityId(id);
+                if (webhookDto.isBatch()) {
+                    // Sent with the other events of the webhook on the next poll
+                    webhookDeliveryDao.create(delivery, null, null);
+                } else {
+                    webhookDeliveryDao.create(delivery, lease, WebhookService.getLeaseDate());
+                    deliveryList.add(delivery);
+                }
             }
         });
 
-        RequestBody body = RequestBody.create("{\"event\": \"" + event.name() + "\", \"id\": \"" + id + "\"}", JSON);
-
-        for (String webhookUrl : webhookUrlList) {
-            Request request = new Request.Builder()
-                    .url(webhookUrl)
-                    .post(body)
-                    .build();
-            try (Response response = client.newCall(request).execute()) {
-                log.info("Successfully called the webhook at: " + webhookUrl + " - " + response.code());
-            } catch (IOException e) {
-                log.error("Error calling the webhook at: " + webhookUrl, e);
-            }
-        }
+        AppContext.getInstance().getWebhookService().send(deliveryList, lease);
     }
 }
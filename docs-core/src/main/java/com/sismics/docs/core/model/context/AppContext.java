@@ -5,21 +5,37 @@ import com.google.common.collect.Lists;
 import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.FileProcessingLane;
+import com.sismics.docs.core.constant.OcrEngineType;
+import com.sismics.docs.core.constant.StorageBackendType;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.listener.async.*;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.service.FileService;
+import com.sismics.docs.core.service.FileProcessingJobService;
 import com.sismics.docs.core.service.FileSizeService;
 import com.sismics.docs.core.service.InboxService;
+import com.sismics.docs.core.service.StorageMigrationService;
+import com.sismics.docs.core.service.WebhookService;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.PdfUtil;
 import com.sismics.docs.core.util.indexing.IndexingHandler;
+import com.sismics.docs.core.util.ocr.LibraryOcrEngine;
+import com.sismics.docs.core.util.ocr.OcrEngine;
+import com.sismics.docs.core.util.ocr.ProcessOcrEngine;
+import com.sismics.docs.core.util.storage.LocalStorageBackend;
+import com.sismics.docs.core.util.storage.S3StorageBackend;
+import com.sismics.docs.core.util.storage.StorageBackend;
 import com.sismics.util.ClasspathScanner;
 import com.sismics.util.EnvironmentUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -51,6 +67,41 @@ public class AppContext {
      */
     private EventBus mailEventBus;
 
+    /**
+     * Coalescer of the document updates posted to the generic bus.
+     */
+    private DocumentUpdatedCoalescer documentUpdatedCoalescer;
+
+    /**
+     * Asynchronous buses for file processing, by lane.
+     */
+    private Map<FileProcessingLane, EventBus> fileProcessingEventBusMap;
+
+    /**
+     * File processing executors, by lane.
+     */
+    private Map<FileProcessingLane, FileProcessingExecutor> fileProcessingExecutorMap;
+
+    /**
+     * Executor of the OCR of document pages.
+     */
+    private PageOcrExecutor pageOcrExecutor;
+
+    /**
+     * OCR engine.
+     */
+    private OcrEngine ocrEngine;
+
+    /**
+     * Storage backend of the file contents.
+     */
+    private StorageBackend storageBackend;
+
+    /**
+     * Storage migration service, null if there is nothing to migrate.
+     */
+    private StorageMigrationService storageMigrationService;
+
     /**
      * Indexing handler.
      */
@@ -71,6 +122,16 @@ public class AppContext {
      */
     private FileSizeService fileSizeService;
 
+    /**
+     * File processing job service.
+     */
+    private FileProcessingJobService fileProcessingJobService;
+
+    /**
+     * Webhook service.
+     */
+    private WebhookService webhookService;
+
     /**
      * Asynchronous executors.
      */
@@ -80,6 +141,14 @@ public class AppContext {
      * Start the application context.
      */
     private void startUp() {
+        // Open the storage backend, and move the objects stored by older versions to the sharded layout
+        storageBackend = newStorageBackend();
+        if (storageBackend instanceof LocalStorageBackend && !EnvironmentUtil.isUnitTest()) {
+            storageMigrationService = new StorageMigrationService((LocalStorageBackend) storageBackend);
+            storageMigrationService.startAsync();
+            storageMigrationService.awaitRunning();
+        }
+
         resetEventBus();
 
         // Start indexing handler
@@ -98,6 +167,9 @@ public class AppContext {
             log.error("Error starting the indexing handler", e);
         }
 
+        // Start the OCR engine
+        ocrEngine = newOcrEngine();
+
         // Start file service
         fileService = new FileService();
         fileService.startAsync();
@@ -109,10 +181,20 @@ public class AppContext {
         inboxService.awaitRunning();
 
         // Start file size service
-        fileSizeService = new FileSizeService();
+        fileSizeService = new FileSizeService(Math.max(ConfigUtil.getEnvIntegerValue(Constants.FILE_SIZE_THREADS_ENV, 4), 1));
         fileSizeService.startAsync();
         fileSizeService.awaitRunning();
 
+        // Start file processing job service
+        fileProcessingJobService = new FileProcessingJobService();
+        fileProcessingJobService.startAsync();
+        fileProcessingJobService.awaitRunning();
+
+        // Start webhook service
+        webhookService = new WebhookService();
+        webhookService.startAsync();
+        webhookService.awaitRunning();
+
         // Register fonts
         PdfUtil.registerFonts();
 
@@ -146,7 +228,6 @@ public class AppContext {
         asyncExecutorList = new ArrayList<>();
 
         asyncEventBus = newAsyncEventBus();
-        asyncEventBus.register(new FileProcessingAsyncListener());
         asyncEventBus.register(new FileDeletedAsyncListener());
         asyncEventBus.register(new DocumentCreatedAsyncListener());
         asyncEventBus.register(new DocumentUpdatedAsyncListener());
@@ -156,9 +237,34 @@ public class AppContext {
         asyncEventBus.register(new AclDeletedAsyncListener());
         asyncEventBus.register(new WebhookAsyncListener());
 
+        // Documents updated in bursts are reprocessed once, shut down first to post the pending updates
+        long documentUpdatedWindow = EnvironmentUtil.isUnitTest() ? 0 :
+                Math.max(ConfigUtil.getEnvLongValue(Constants.DOCUMENT_UPDATED_WINDOW_ENV, 2000), 0);
+        documentUpdatedCoalescer = new DocumentUpdatedCoalescer(asyncEventBus, documentUpdatedWindow);
+        asyncExecutorList.add(0, documentUpdatedCoalescer);
+
         mailEventBus = newAsyncEventBus();
         mailEventBus.register(new PasswordLostAsyncListener());
         mailEventBus.register(new RouteStepValidateAsyncListener());
+
+        // File processing takes minutes per file, it must not starve the other listeners
+        fileProcessingEventBusMap = new EnumMap<>(FileProcessingLane.class);
+        fileProcessingExecutorMap = new EnumMap<>(FileProcessingLane.class);
+        FileProcessingAsyncListener fileProcessingAsyncListener = new FileProcessingAsyncListener();
+        for (FileProcessingLane lane : FileProcessingLane.values()) {
+            EventBus fileProcessingEventBus = newFileProcessingEventBus(lane);
+            fileProcessingEventBus.register(fileProcessingAsyncListener);
+            fileProcessingEventBusMap.put(lane, fileProcessingEventBus);
+        }
+
+        // Pages are OCR-ized in parallel, sharing the CPU and memory between the files processing
+        int ocrThreadCount = Math.max(ConfigUtil.getEnvIntegerValue(Constants.OCR_THREADS_ENV,
+                Runtime.getRuntime().availableProcessors()), 1);
+        long ocrMemory = Math.max(ConfigUtil.getEnvLongValue(Constants.OCR_MEMORY_ENV,
+                Runtime.getRuntime().maxMemory() / 4 / 1024 / 1024), 1) * 1024 * 1024;
+        pageOcrExecutor = new PageOcrExecutor(ocrThreadCount, ocrMemory);
+        asyncExecutorList.add(pageOcrExecutor);
+        log.info("Page OCR: {} threads, {}MB of pages in flight", ocrThreadCount, ocrMemory / 1024 / 1024);
     }
 
     /**
@@ -192,6 +298,86 @@ public class AppContext {
         }
     }
 
+    /**
+     * Creates a new asynchronous event bus processing the files of a lane.
+     * Each lane has its own threads and a bounded queue.
+     *
+     * @param lane File processing lane
+     * @return Async event bus
+     */
+    private EventBus newFileProcessingEventBus(FileProcessingLane lane) {
+        if (EnvironmentUtil.isUnitTest()) {
+            return new EventBus();
+        }
+
+        String suffix = "_" + lane.name();
+        int defaultThreadCount = Math.max(Runtime.getRuntime().availableProcessors() / 4, 1);
+        int threadCount = Math.max(ConfigUtil.getEnvIntegerValue(Constants.FILE_PROCESSING_THREADS_ENV + suffix,
+                ConfigUtil.getEnvIntegerValue(Constants.FILE_PROCESSING_THREADS_ENV, defaultThreadCount)), 1);
+        int queueSize = Math.max(ConfigUtil.getEnvIntegerValue(Constants.FILE_PROCESSING_QUEUE_SIZE_ENV + suffix,
+                ConfigUtil.getEnvIntegerValue(Constants.FILE_PROCESSING_QUEUE_SIZE_ENV, 1000)), 1);
+
+        // Interactive uploads are rejected after a while, bulk producers wait for the processing to catch up,
+        // except in requests where the files are rejected at once and processed later by the job poller
+        long queueTimeout = ConfigUtil.getEnvLongValue(Constants.FILE_PROCESSING_QUEUE_TIMEOUT_ENV + suffix,
+                ConfigUtil.getEnvLongValue(Constants.FILE_PROCESSING_QUEUE_TIMEOUT_ENV, lane == FileProcessingLane.INTERACTIVE ? 60 : 0));
+
+        FileProcessingExecutor executor = new FileProcessingExecutor(lane.name().toLowerCase(), threadCount, queueSize, queueTimeout);
+        asyncExecutorList.add(executor);
+        fileProcessingExecutorMap.put(lane, executor);
+        log.info("File processing lane {}: {} threads, {} queued files", lane, threadCount, queueSize);
+        return new AsyncEventBus(executor);
+    }
+
+    /**
+     * Creates the OCR engine.
+     * The tesseract library is used if it is installed, otherwise a tesseract process is run for each image.
+     *
+     * @return OCR engine
+     */
+    private OcrEngine newOcrEngine() {
+        long timeout = Math.max(ConfigUtil.getEnvLongValue(Constants.OCR_TIMEOUT_ENV, 300), 1);
+        if (ConfigUtil.getEnvEnumValue(Constants.OCR_ENGINE_ENV, OcrEngineType.LIBRARY) == OcrEngineType.LIBRARY) {
+            int maxWorkers = Math.max(ConfigUtil.getEnvIntegerValue(Constants.OCR_WORKERS_ENV,
+                    Runtime.getRuntime().availableProcessors()), 1);
+            try {
+                OcrEngine libraryOcrEngine = new LibraryOcrEngine(maxWorkers, timeout);
+                log.info("OCR engine: tesseract library, {} workers per language", maxWorkers);
+                return libraryOcrEngine;
+            } catch (UnsatisfiedLinkError e) {
+                log.warn("Tesseract library not found, falling back to the tesseract command: " + e.getMessage());
+            }
+        }
+        log.info("OCR engine: tesseract command");
+        return new ProcessOcrEngine(timeout);
+    }
+
+    /**
+     * Creates the storage backend.
+     * The file contents are stored in the storage directory, unless an S3-compatible object store is configured.
+     *
+     * @return Storage backend
+     */
+    private StorageBackend newStorageBackend() {
+        if (ConfigUtil.getEnvEnumValue(Constants.STORAGE_BACKEND_ENV, StorageBackendType.LOCAL) == StorageBackendType.S3) {
+            String endpoint = System.getenv(Constants.S3_ENDPOINT_ENV);
+            String bucket = System.getenv(Constants.S3_BUCKET_ENV);
+            if (Strings.isNullOrEmpty(endpoint) || Strings.isNullOrEmpty(bucket)) {
+                throw new IllegalStateException("The S3 storage requires " + Constants.S3_ENDPOINT_ENV + " and " + Constants.S3_BUCKET_ENV);
+            }
+            String region = Strings.isNullOrEmpty(System.getenv(Constants.S3_REGION_ENV)) ? "us-east-1" : System.getenv(Constants.S3_REGION_ENV);
+            int partSize = Math.max(ConfigUtil.getEnvIntegerValue(Constants.S3_PART_SIZE_ENV, 8), 5);
+            log.info("Storage backend: S3 bucket {} at {}", bucket, endpoint);
+            return new S3StorageBackend(endpoint, region, bucket,
+                    Strings.nullToEmpty(System.getenv(Constants.S3_PREFIX_ENV)),
+                    Strings.nullToEmpty(System.getenv(Constants.S3_ACCESS_KEY_ENV)),
+                    Strings.nullToEmpty(System.getenv(Constants.S3_SECRET_KEY_ENV)),
+                    partSize * 1024 * 1024);
+        }
+        log.info("Storage backend: local directory");
+        return new LocalStorageBackend(DirectoryUtil.getStorageDirectory());
+    }
+
     /**
      * Return the current number of queued tasks waiting to be processed.
      *
@@ -209,10 +395,31 @@ public class AppContext {
         return asyncEventBus;
     }
 
+    public DocumentUpdatedCoalescer getDocumentUpdatedCoalescer() {
+        return documentUpdatedCoalescer;
+    }
+
     public EventBus getMailEventBus() {
         return mailEventBus;
     }
 
+    public EventBus getFileProcessingEventBus(FileProcessingLane lane) {
+        return fileProcessingEventBusMap.get(lane);
+    }
+
+    /**
+     * Returns the file processing executors.
+     *
+     * @return Executors by lane, empty if the files are processed synchronously
+     */
+    public Map<FileProcessingLane, FileProcessingExecutor> getFileProcessingExecutorMap() {
+        return fileProcessingExecutorMap;
+    }
+
+    public PageOcrExecutor getPageOcrExecutor() {
+        return pageOcrExecutor;
+    }
+
     public IndexingHandler getIndexingHandler() {
         return indexingHandler;
     }
@@ -221,10 +428,30 @@ public class AppContext {
         return inboxService;
     }
 
+    public OcrEngine getOcrEngine() {
+        return ocrEngine;
+    }
+
+    public StorageBackend getStorageBackend() {
+        return storageBackend;
+    }
+
+    public StorageMigrationService getStorageMigrationService() {
+        return storageMigrationService;
+    }
+
     public FileService getFileService() {
         return fileService;
     }
 
+    public FileSizeService getFileSizeService() {
+        return fileSizeService;
+    }
+
+    public WebhookService getWebhookService() {
+        return webhookService;
+    }
+
     public void shutDown() {
         for (ExecutorService executor : asyncExecutorList) {
             // Shutdown executor, don't accept any more tasks (can cause error with nested events)
@@ -245,6 +472,10 @@ public class AppContext {
             inboxService.awaitTerminated();
         }
 
+        if (ocrEngine != null) {
+            ocrEngine.close();
+        }
+
         if (fileService != null) {
             fileService.stopAsync();
         }
@@ -253,6 +484,23 @@ public class AppContext {
             fileSizeService.stopAsync();
         }
 
+        if (fileProcessingJobService != null) {
+            fileProcessingJobService.stopAsync();
+        }
+
+        if (webhookService != null) {
+            webhookService.stopAsync();
+        }
+
+        if (storageMigrationService != null) {
+            storageMigrationService.stopAsync();
+            storageMigrationService.awaitTerminated();
+        }
+
+        if (storageBackend != null) {
+            storageBackend.close();
+        }
+
         instance = null;
     }
 }
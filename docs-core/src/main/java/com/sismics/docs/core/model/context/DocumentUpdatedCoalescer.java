@@ -0,0 +1,191 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.event.DocumentUpdatedAsyncEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces the updates of a document before posting them to the event bus.
+ * An update is posted after a short window, the updates of the same document received meanwhile are merged in it.
+ * While an update is processed, the next updates of the document are merged and posted once it is completed,
+ * so that a burst of updates, like files added one by one to a document, reprocesses the document at most twice.
+ */
+public class DocumentUpdatedCoalescer extends ScheduledThreadPoolExecutor {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(DocumentUpdatedCoalescer.class);
+
+    /**
+     * Event bus.
+     */
+    private final EventBus eventBus;
+
+    /**
+     * Time in milliseconds an update waits for the next ones.
+     */
+    private final long window;
+
+    /**
+     * Updates not completed yet, by document ID.
+     */
+    private final Map<String, Entry> entryMap = new HashMap<>();
+
+    /**
+     * Number of submitted updates.
+     */
+    private final LongAdder submittedCount = new LongAdder();
+
+    /**
+     * Number of updates posted to the event bus.
+     */
+    private final LongAdder postedCount = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param eventBus Event bus
+     * @param window Time in milliseconds an update waits for the next ones, 0 to post them immediately
+     */
+    public DocumentUpdatedCoalescer(EventBus eventBus, long window) {
+        super(1, new ThreadFactoryBuilder().setNameFormat("document-updated-coalescer-%d").build());
+        this.eventBus = eventBus;
+        this.window = window;
+    }
+
+    /**
+     * Submit a document update.
+     *
+     * @param event Document updated event
+     */
+    public void submit(DocumentUpdatedAsyncEvent event) {
+        submittedCount.increment();
+        if (window <= 0) {
+            post(event);
+            return;
+        }
+
+        synchronized (entryMap) {
+            Entry entry = entryMap.computeIfAbsent(event.getDocumentId(), documentId -> new Entry());
+            if (entry.pending != null) {
+                entry.pending.merge(event);
+                return;
+            }
+            entry.pending = event;
+            if (entry.inFlight == null) {
+                scheduleFlush(event.getDocumentId());
+            }
+        }
+    }
+
+    /**
+     * Complete the processing of an update, called by the listener processing it.
+     * The updates of the document received meanwhile are posted.
+     *
+     * @param event Document updated event
+     */
+    public void complete(DocumentUpdatedAsyncEvent event) {
+        synchronized (entryMap) {
+            Entry entry = entryMap.get(event.getDocumentId());
+            if (entry == null || entry.inFlight != event) {
+                // Not coalesced
+                return;
+            }
+            entry.inFlight = null;
+            if (entry.pending == null) {
+                entryMap.remove(event.getDocumentId());
+            } else {
+                scheduleFlush(event.getDocumentId());
+            }
+        }
+    }
+
+    /**
+     * Schedule the posting of the pending update of a document.
+     *
+     * @param documentId Document ID
+     */
+    private void scheduleFlush(String documentId) {
+        try {
+            schedule(() -> flush(documentId), window, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the update is posted now
+            flush(documentId);
+        }
+    }
+
+    /**
+     * Post the pending update of a document.
+     *
+     * @param documentId Document ID
+     */
+    private void flush(String documentId) {
+        DocumentUpdatedAsyncEvent event;
+        synchronized (entryMap) {
+            Entry entry = entryMap.get(documentId);
+            event = entry.pending;
+            entry.pending = null;
+            entry.inFlight = event;
+        }
+
+        try {
+            post(event);
+        } catch (RuntimeException e) {
+            log.error("Error posting the document update: " + event, e);
+            complete(event);
+        }
+    }
+
+    /**
+     * Post an update to the event bus.
+     *
+     * @param event Document updated event
+     */
+    private void post(DocumentUpdatedAsyncEvent event) {
+        postedCount.increment();
+        eventBus.post(event);
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getPostedCount() {
+        return postedCount.sum();
+    }
+
+    /**
+     * Returns the number of documents with updates not completed yet.
+     *
+     * @return Number of documents
+     */
+    public int getPendingCount() {
+        synchronized (entryMap) {
+            return entryMap.size();
+        }
+    }
+
+    /**
+     * Updates of a document.
+     */
+    private static class Entry {
+        /**
+         * Update waiting to be posted, with the updates merged in it.
+         */
+        private DocumentUpdatedAsyncEvent pending;
+
+        /**
+         * Update posted and not completed yet.
+         */
+        private DocumentUpdatedAsyncEvent inFlight;
+    }
+}
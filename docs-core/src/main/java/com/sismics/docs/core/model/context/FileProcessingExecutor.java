@@ -0,0 +1,163 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.util.context.ThreadLocalContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor of a file processing lane.
+ * The queue is bounded: when it is full, the submitting thread waits for room, then the task is rejected.
+ * Request threads never wait indefinitely, their tasks are rejected at once and left to the job poller.
+ * Records the time spent by the tasks waiting in the queue and running.
+ */
+public class FileProcessingExecutor extends ThreadPoolExecutor {
+    /**
+     * Maximum number of queued tasks.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Number of submitted tasks.
+     */
+    private final LongAdder submittedCount = new LongAdder();
+
+    /**
+     * Number of rejected tasks.
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Number of processed tasks.
+     */
+    private final LongAdder processedCount = new LongAdder();
+
+    /**
+     * Total time waiting in the queue in nanoseconds.
+     */
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Longest time waiting in the queue in nanoseconds.
+     */
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Total running time in nanoseconds.
+     */
+    private final LongAdder runNanos = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param name Lane name, used to name the threads
+     * @param threadCount Number of threads
+     * @param queueCapacity Maximum number of queued tasks
+     * @param queueTimeout Maximum time in seconds waiting for room in the queue, 0 to wait indefinitely outside of requests
+     */
+    public FileProcessingExecutor(String name, int threadCount, int queueCapacity, long queueTimeout) {
+        super(threadCount, threadCount, 1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("file-processing-" + name + "-%d").build(),
+                (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("File processing stopped");
+                    }
+                    try {
+                        boolean queued;
+                        if (queueTimeout > 0) {
+                            queued = executor.getQueue().offer(runnable, queueTimeout, TimeUnit.SECONDS);
+                        } else if (ThreadLocalContext.get().isRequestThread()) {
+                            // Waiting would hold the request until the whole queue is processed
+                            queued = executor.getQueue().offer(runnable);
+                        } else {
+                            executor.getQueue().put(runnable);
+                            queued = true;
+                        }
+                        if (!queued) {
+                            throw new RejectedExecutionException("File processing queue full: " + name);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted waiting for the file processing queue", e);
+                    }
+                });
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long queuedTime = System.nanoTime();
+        submittedCount.increment();
+        try {
+            super.execute(() -> {
+                long startTime = System.nanoTime();
+                waitNanos.add(startTime - queuedTime);
+                maxWaitNanos.accumulate(startTime - queuedTime);
+                try {
+                    command.run();
+                } finally {
+                    runNanos.add(System.nanoTime() - startTime);
+                    processedCount.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw e;
+        }
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+
+    /**
+     * Returns the average time waiting in the queue.
+     *
+     * @return Time in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = processedCount.sum();
+        return count == 0 ? 0 : (double) waitNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the longest time waiting in the queue.
+     *
+     * @return Time in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return (double) maxWaitNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the average running time.
+     *
+     * @return Time in milliseconds
+     */
+    public double getAverageRunMillis() {
+        long count = processedCount.sum();
+        return count == 0 ? 0 : (double) runNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,219 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.util.FileUtil;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor of the OCR of document pages, shared by all the files processing.
+ * Rendered pages are large images: the memory they use is reserved before rendering them,
+ * and released once they are OCR-ized, so that the pages in flight fit in a memory budget.
+ */
+public class PageOcrExecutor extends ThreadPoolExecutor {
+    /**
+     * Size in bytes of a memory permit.
+     */
+    private static final long PERMIT_SIZE = 1024;
+
+    /**
+     * Longest side of the image given to tesseract, see {@link FileUtil#ocrFile(String, BufferedImage)}.
+     */
+    private static final int OCR_IMAGE_SIZE = 3500;
+
+    /**
+     * Memory permits, in kilobytes.
+     */
+    private final Semaphore memory;
+
+    /**
+     * Memory budget, in kilobytes.
+     */
+    private final int memoryBudget;
+
+    /**
+     * Number of OCR-ized pages.
+     */
+    private final LongAdder pageCount = new LongAdder();
+
+    /**
+     * Number of pages which failed.
+     */
+    private final LongAdder errorCount = new LongAdder();
+
+    /**
+     * Total rendering time in nanoseconds.
+     */
+    private final LongAdder renderNanos = new LongAdder();
+
+    /**
+     * Total OCR time in nanoseconds.
+     */
+    private final LongAdder ocrNanos = new LongAdder();
+
+    /**
+     * Longest OCR time in nanoseconds.
+     */
+    private final LongAccumulator maxOcrNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Total time waiting for memory in nanoseconds.
+     */
+    private final LongAdder admissionNanos = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param threadCount Number of threads
+     * @param memoryBudget Maximum memory used by the pages in flight, in bytes
+     */
+    public PageOcrExecutor(int threadCount, long memoryBudget) {
+        super(threadCount, threadCount, 1L, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("page-ocr-%d").build());
+        this.memoryBudget = (int) Math.min(Math.max(memoryBudget / PERMIT_SIZE, 1), Integer.MAX_VALUE);
+        this.memory = new Semaphore(this.memoryBudget, true);
+    }
+
+    /**
+     * Estimates the memory used to render and OCR a page.
+     * The page is rendered in grayscale, then upscaled and deskewed in RGB.
+     *
+     * @param width Width of the rendered page in pixels
+     * @param height Height of the rendered page in pixels
+     * @return Memory in bytes
+     */
+    public static long estimateMemory(long width, long height) {
+        double scale = (double) OCR_IMAGE_SIZE / Math.max(Math.max(width, height), 1);
+        long ocrPixels = (long) (width * scale * height * scale);
+        return width * height + ocrPixels * 4 * 2;
+    }
+
+    /**
+     * Reserves memory for a page, waiting for the pages in flight to be processed if needed.
+     * A page bigger than the budget waits for all the memory.
+     *
+     * @param bytes Estimated memory in bytes
+     * @return Reservation, to give to {@link #submit(String, BufferedImage, int, long)} or {@link #release(int)}
+     * @throws InterruptedException e
+     */
+    public int reserve(long bytes) throws InterruptedException {
+        int permits = (int) Math.min(Math.max(bytes / PERMIT_SIZE, 1), memoryBudget);
+        long startTime = System.nanoTime();
+        memory.acquire(permits);
+        admissionNanos.add(System.nanoTime() - startTime);
+        return permits;
+    }
+
+    /**
+     * Releases the memory reserved for a page.
+     *
+     * @param reservation Reservation
+     */
+    public void release(int reservation) {
+        memory.release(reservation);
+    }
+
+    /**
+     * OCR a rendered page asynchronously.
+     * The reserved memory is released when the page is processed, even if it fails.
+     *
+     * @param language Language to OCR
+     * @param image Rendered page
+     * @param reservation Memory reserved for the page
+     * @param renderTime Time spent rendering the page in nanoseconds
+     * @return Content extracted
+     */
+    public Future<String> submit(String language, BufferedImage image, int reservation, long renderTime) {
+        renderNanos.add(renderTime);
+        try {
+            return submit(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    return FileUtil.ocrFile(language, image);
+                } catch (Exception e) {
+                    errorCount.increment();
+                    throw e;
+                } finally {
+                    long ocrTime = System.nanoTime() - startTime;
+                    ocrNanos.add(ocrTime);
+                    maxOcrNanos.accumulate(ocrTime);
+                    pageCount.increment();
+                    image.flush();
+                    release(reservation);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(reservation);
+            throw e;
+        }
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget * PERMIT_SIZE;
+    }
+
+    /**
+     * Returns the memory reserved by the pages in flight.
+     *
+     * @return Memory in bytes
+     */
+    public long getMemoryUsed() {
+        return (memoryBudget - (long) memory.availablePermits()) * PERMIT_SIZE;
+    }
+
+    public long getPageCount() {
+        return pageCount.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /**
+     * Returns the average page rendering time.
+     *
+     * @return Time in milliseconds
+     */
+    public double getAverageRenderMillis() {
+        long count = pageCount.sum();
+        return count == 0 ? 0 : (double) renderNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the average page OCR time.
+     *
+     * @return Time in milliseconds
+     */
+    public double getAverageOcrMillis() {
+        long count = pageCount.sum();
+        return count == 0 ? 0 : (double) ocrNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the longest page OCR time.
+     *
+     * @return Time in milliseconds
+     */
+    public double getMaxOcrMillis() {
+        return (double) maxOcrNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the average time waiting for memory before rendering a page.
+     *
+     * @return Time in milliseconds
+     */
+    public double getAverageAdmissionMillis() {
+        long count = pageCount.sum();
+        return count == 0 ? 0 : (double) admissionNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -96,6 +96,18 @@ public class File implements Loggable {
     @Column(name = "FIL_SIZE_N", nullable = false)
     private Long size;
 
+    /**
+     * ID of the stored content shared with the files with the same content, null if the content is stored under the file ID.
+     */
+    @Column(name = "FIL_IDBLOB_C", length = 36)
+    private String blobId;
+
+    /**
+     * SHA-256 hash of the unencrypted content, null for the files uploaded by older versions.
+     */
+    @Column(name = "FIL_HASH_C", length = 64)
+    private String hash;
+
     /**
      * Private key to decrypt the file.
      * Not saved to database, of course.
@@ -224,6 +236,33 @@ public class File implements Loggable {
         return this;
     }
 
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public File setBlobId(String blobId) {
+        this.blobId = blobId;
+        return this;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public File setHash(String hash) {
+        this.hash = hash;
+        return this;
+    }
+
+    /**
+     * Returns the ID under which the content of this file is stored.
+     *
+     * @return Storage ID
+     */
+    public String getStorageId() {
+        return blobId == null ? id : blobId;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
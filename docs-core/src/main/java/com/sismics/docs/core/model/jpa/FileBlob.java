@@ -0,0 +1,128 @@
+package com.sismics.docs.core.model.jpa;
+
+import com.google.common.base.MoreObjects;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Stored content shared by the files of a user with the same content.
+ */
+@Entity
+@Table(name = "T_FILE_BLOB")
+public class FileBlob {
+    /**
+     * Blob ID, under which the content is stored.
+     */
+    @Id
+    @Column(name = "FBL_ID_C", length = 36)
+    private String id;
+
+    /**
+     * ID of the user whose private key encrypts the content.
+     */
+    @Column(name = "FBL_IDUSER_C", nullable = false, length = 36)
+    private String userId;
+
+    /**
+     * SHA-256 hash of the unencrypted content.
+     */
+    @Column(name = "FBL_HASH_C", nullable = false, length = 64)
+    private String hash;
+
+    /**
+     * Size of the unencrypted content.
+     */
+    @Column(name = "FBL_SIZE_N", nullable = false)
+    private long size;
+
+    /**
+     * Number of files referencing this blob.
+     */
+    @Column(name = "FBL_REFERENCES_N", nullable = false)
+    private int referenceCount;
+
+    /**
+     * Creation date.
+     */
+    @Column(name = "FBL_CREATEDATE_D", nullable = false)
+    private Date createDate;
+
+    /**
+     * Deletion date, once no file references this blob.
+     */
+    @Column(name = "FBL_DELETEDATE_D")
+    private Date deleteDate;
+
+    public String getId() {
+        return id;
+    }
+
+    public FileBlob setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public FileBlob setUserId(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public FileBlob setHash(String hash) {
+        this.hash = hash;
+        return this;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public FileBlob setSize(long size) {
+        this.size = size;
+        return this;
+    }
+
+    public int getReferenceCount() {
+        return referenceCount;
+    }
+
+    public FileBlob setReferenceCount(int referenceCount) {
+        this.referenceCount = referenceCount;
+        return this;
+    }
+
+    public Date getCreateDate() {
+        return createDate;
+    }
+
+    public FileBlob setCreateDate(Date createDate) {
+        this.createDate = createDate;
+        return this;
+    }
+
+    public Date getDeleteDate() {
+        return deleteDate;
+    }
+
+    public FileBlob setDeleteDate(Date deleteDate) {
+        this.deleteDate = deleteDate;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("hash", hash)
+                .add("referenceCount", referenceCount)
+                .toString();
+    }
+}
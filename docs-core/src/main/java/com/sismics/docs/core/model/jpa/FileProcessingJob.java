@@ -0,0 +1,238 @@
+package com.sismics.docs.core.model.jpa;
+
+import com.google.common.base.MoreObjects;
+import com.sismics.docs.core.constant.FileProcessingJobStatus;
+import com.sismics.docs.core.constant.FileProcessingLane;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * File processing job: thumbnails generation and text content extraction of a file.
+ */
+@Entity
+@Table(name = "T_FILE_PROCESSING_JOB")
+public class FileProcessingJob {
+    /**
+     * Job ID.
+     */
+    @Id
+    @Column(name = "FPJ_ID_C", length = 36)
+    private String id;
+
+    /**
+     * File ID.
+     */
+    @Column(name = "FPJ_IDFILE_C", nullable = false, length = 36)
+    private String fileId;
+
+    /**
+     * ID of the user requesting the processing.
+     */
+    @Column(name = "FPJ_IDUSER_C", nullable = false, length = 36)
+    private String userId;
+
+    /**
+     * Language of the file.
+     */
+    @Column(name = "FPJ_LANGUAGE_C", length = 7)
+    private String language;
+
+    /**
+     * Processing lane.
+     */
+    @Column(name = "FPJ_LANE_C", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private FileProcessingLane lane;
+
+    /**
+     * True if the file was just created, false if it is processed again.
+     */
+    @Column(name = "FPJ_FILECREATED_B", nullable = false)
+    private boolean fileCreated;
+
+    /**
+     * Status.
+     */
+    @Column(name = "FPJ_STATUS_C", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private FileProcessingJobStatus status;
+
+    /**
+     * Number of processing attempts.
+     */
+    @Column(name = "FPJ_ATTEMPTS_N", nullable = false)
+    private int attempts;
+
+    /**
+     * Node processing the file.
+     */
+    @Column(name = "FPJ_LEASEOWNER_C", length = 200)
+    private String leaseOwner;
+
+    /**
+     * Date until which the node is processing the file.
+     */
+    @Column(name = "FPJ_LEASEDATE_D")
+    private Date leaseDate;
+
+    /**
+     * Date from which the file can be processed.
+     */
+    @Column(name = "FPJ_NEXTDATE_D", nullable = false)
+    private Date nextDate;
+
+    /**
+     * Last error.
+     */
+    @Column(name = "FPJ_ERROR_C", length = 4000)
+    private String error;
+
+    /**
+     * Creation date.
+     */
+    @Column(name = "FPJ_CREATEDATE_D", nullable = false)
+    private Date createDate;
+
+    /**
+     * Update date.
+     */
+    @Column(name = "FPJ_UPDATEDATE_D", nullable = false)
+    private Date updateDate;
+
+    public String getId() {
+        return id;
+    }
+
+    public FileProcessingJob setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public FileProcessingJob setFileId(String fileId) {
+        this.fileId = fileId;
+        return this;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public FileProcessingJob setUserId(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public FileProcessingJob setLanguage(String language) {
+        this.language = language;
+        return this;
+    }
+
+    public FileProcessingLane getLane() {
+        return lane;
+    }
+
+    public FileProcessingJob setLane(FileProcessingLane lane) {
+        this.lane = lane;
+        return this;
+    }
+
+    public boolean isFileCreated() {
+        return fileCreated;
+    }
+
+    public FileProcessingJob setFileCreated(boolean fileCreated) {
+        this.fileCreated = fileCreated;
+        return this;
+    }
+
+    public FileProcessingJobStatus getStatus() {
+        return status;
+    }
+
+    public FileProcessingJob setStatus(FileProcessingJobStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public FileProcessingJob setAttempts(int attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public FileProcessingJob setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+        return this;
+    }
+
+    public Date getLeaseDate() {
+        return leaseDate;
+    }
+
+    public FileProcessingJob setLeaseDate(Date leaseDate) {
+        this.leaseDate = leaseDate;
+        return this;
+    }
+
+    public Date getNextDate() {
+        return nextDate;
+    }
+
+    public FileProcessingJob setNextDate(Date nextDate) {
+        this.nextDate = nextDate;
+        return this;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public FileProcessingJob setError(String error) {
+        this.error = error;
+        return this;
+    }
+
+    public Date getCreateDate() {
+        return createDate;
+    }
+
+    public FileProcessingJob setCreateDate(Date createDate) {
+        this.createDate = createDate;
+        return this;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public FileProcessingJob setUpdateDate(Date updateDate) {
+        this.updateDate = updateDate;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("fileId", fileId)
+                .add("status", status)
+                .add("attempts", attempts)
+                .toString();
+    }
+}
@@ -2,6 +2,9 @@ package com.sismics.docs.core.model.jpa;
 
 import com.google.common.base.MoreObjects;
 import com.sismics.docs.core.constant.MetadataType;
+import com.sismics.util.jpa.EntityCache;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import jakarta.persistence.*;
 import java.util.Date;
@@ -12,6 +15,8 @@ import java.util.Date;
  * @author bgamard
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCache.METADATA)
 @Table(name = "T_METADATA")
 public class Metadata implements Loggable {
     /**
@@ -2,12 +2,16 @@ package com.sismics.docs.core.model.jpa;
 
 import java.util.Date;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
 import com.google.common.base.MoreObjects;
+import com.sismics.util.jpa.EntityCache;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Role (set of base functions).
@@ -15,6 +19,8 @@ import com.google.common.base.MoreObjects;
  * @author jtremeaux
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCache.ROLE)
 @Table(name = "T_ROLE")
 public class Role {
     /**
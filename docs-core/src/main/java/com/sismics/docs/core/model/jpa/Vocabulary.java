@@ -1,11 +1,15 @@
 package com.sismics.docs.core.model.jpa;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
 import com.google.common.base.MoreObjects;
+import com.sismics.util.jpa.EntityCache;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Vocabulary entry entity.
@@ -13,6 +17,8 @@ import com.google.common.base.MoreObjects;
  * @author bgamard
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCache.VOCABULARY)
 @Table(name = "T_VOCABULARY")
 public class Vocabulary {
     /**
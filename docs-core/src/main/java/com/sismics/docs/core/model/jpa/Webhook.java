@@ -34,6 +34,12 @@ public class Webhook implements Loggable {
     @Column(name = "WHK_URL_C", nullable = false, length = 1024)
     private String url;
 
+    /**
+     * True if the events are sent in batches.
+     */
+    @Column(name = "WHK_BATCH_B", nullable = false)
+    private boolean batch;
+
     /**
      * Creation date.
      */
@@ -73,6 +79,15 @@ public class Webhook implements Loggable {
         return this;
     }
 
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public Webhook setBatch(boolean batch) {
+        this.batch = batch;
+        return this;
+    }
+
     public Date getCreateDate() {
         return createDate;
     }
@@ -98,6 +113,7 @@ public class Webhook implements Loggable {
                 .add("id", id)
                 .add("event", event)
                 .add("url", url)
+                .add("batch", batch)
                 .toString();
     }
 
@@ -0,0 +1,225 @@
+package com.sismics.docs.core.model.jpa;
+
+import com.google.common.base.MoreObjects;
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
+import com.sismics.docs.core.constant.WebhookEvent;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Webhook delivery: an event to send to a webhook, kept as history once sent.
+ */
+@Entity
+@Table(name = "T_WEBHOOK_DELIVERY")
+public class WebhookDelivery {
+    /**
+     * Delivery ID.
+     */
+    @Id
+    @Column(name = "WHD_ID_C", length = 36)
+    private String id;
+
+    /**
+     * Webhook ID.
+     */
+    @Column(name = "WHD_IDWEBHOOK_C", nullable = false, length = 36)
+    private String webhookId;
+
+    /**
+     * Event.
+     */
+    @Column(name = "WHD_EVENT_C", nullable = false, length = 50)
+    @Enumerated(EnumType.STRING)
+    private WebhookEvent event;
+
+    /**
+     * ID of the document or file.
+     */
+    @Column(name = "WHD_ENTITYID_C", nullable = false, length = 36)
+    private String entityId;
+
+    /**
+     * Status.
+     */
+    @Column(name = "WHD_STATUS_C", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private WebhookDeliveryStatus status;
+
+    /**
+     * Number of sending attempts.
+     */
+    @Column(name = "WHD_ATTEMPTS_N", nullable = false)
+    private int attempts;
+
+    /**
+     * Reservation of the delivery while it is sending.
+     */
+    @Column(name = "WHD_LEASE_C", length = 36)
+    private String lease;
+
+    /**
+     * Date from which the delivery can be sent, or until which it is sending.
+     */
+    @Column(name = "WHD_NEXTDATE_D", nullable = false)
+    private Date nextDate;
+
+    /**
+     * HTTP status code of the last attempt.
+     */
+    @Column(name = "WHD_RESPONSECODE_N")
+    private Integer responseCode;
+
+    /**
+     * Duration of the last attempt in milliseconds.
+     */
+    @Column(name = "WHD_DURATION_N")
+    private Long duration;
+
+    /**
+     * Last error.
+     */
+    @Column(name = "WHD_ERROR_C", length = 4000)
+    private String error;
+
+    /**
+     * Creation date.
+     */
+    @Column(name = "WHD_CREATEDATE_D", nullable = false)
+    private Date createDate;
+
+    /**
+     * Update date.
+     */
+    @Column(name = "WHD_UPDATEDATE_D", nullable = false)
+    private Date updateDate;
+
+    public String getId() {
+        return id;
+    }
+
+    public WebhookDelivery setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getWebhookId() {
+        return webhookId;
+    }
+
+    public WebhookDelivery setWebhookId(String webhookId) {
+        this.webhookId = webhookId;
+        return this;
+    }
+
+    public WebhookEvent getEvent() {
+        return event;
+    }
+
+    public WebhookDelivery setEvent(WebhookEvent event) {
+        this.event = event;
+        return this;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public WebhookDelivery setEntityId(String entityId) {
+        this.entityId = entityId;
+        return this;
+    }
+
+    public WebhookDeliveryStatus getStatus() {
+        return status;
+    }
+
+    public WebhookDelivery setStatus(WebhookDeliveryStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public WebhookDelivery setAttempts(int attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+
+    public String getLease() {
+        return lease;
+    }
+
+    public WebhookDelivery setLease(String lease) {
+        this.lease = lease;
+        return this;
+    }
+
+    public Date getNextDate() {
+        return nextDate;
+    }
+
+    public WebhookDelivery setNextDate(Date nextDate) {
+        this.nextDate = nextDate;
+        return this;
+    }
+
+    public Integer getResponseCode() {
+        return responseCode;
+    }
+
+    public WebhookDelivery setResponseCode(Integer responseCode) {
+        this.responseCode = responseCode;
+        return this;
+    }
+
+    public Long getDuration() {
+        return duration;
+    }
+
+    public WebhookDelivery setDuration(Long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public WebhookDelivery setError(String error) {
+        this.error = error;
+        return this;
+    }
+
+    public Date getCreateDate() {
+        return createDate;
+    }
+
+    public WebhookDelivery setCreateDate(Date createDate) {
+        this.createDate = createDate;
+        return this;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public WebhookDelivery setUpdateDate(Date updateDate) {
+        this.updateDate = updateDate;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("webhookId", webhookId)
+                .add("event", event)
+                .add("entityId", entityId)
+                .add("status", status)
+                .add("attempts", attempts)
+                .toString();
+    }
+}
@@ -0,0 +1,214 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.FileProcessingJobDao;
+import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.event.FileCreatedAsyncEvent;
+import com.sismics.docs.core.event.FileEvent;
+import com.sismics.docs.core.event.FileUpdatedAsyncEvent;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.FileProcessingJob;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.EnvironmentUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service that processes the file processing jobs not processed in time:
+ * jobs whose event was lost on restart or rejected, and jobs interrupted or failed on any node.
+ */
+public class FileProcessingJobService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileProcessingJobService.class);
+
+    /**
+     * Maximum number of jobs reserved on each iteration.
+     */
+    private static final int BATCH_SIZE = 20;
+
+    /**
+     * Delay in seconds before processing a failed job again.
+     */
+    private static final long RETRY_DELAY = 300;
+
+    /**
+     * Time in seconds a node has to process a job before it can be processed by another node.
+     */
+    private static final long LEASE = Math.max(ConfigUtil.getEnvLongValue(Constants.FILE_PROCESSING_LEASE_ENV, 3600), 1);
+
+    /**
+     * Maximum number of attempts to process a file.
+     */
+    private static final int MAX_ATTEMPTS = Math.max(ConfigUtil.getEnvIntegerValue(Constants.FILE_PROCESSING_MAX_ATTEMPTS_ENV, 3), 1);
+
+    /**
+     * Interval in seconds between two iterations.
+     */
+    private static final long POLL_INTERVAL = Math.max(ConfigUtil.getEnvLongValue(Constants.FILE_PROCESSING_POLL_INTERVAL_ENV, 60), 1);
+
+    /**
+     * Interval in milliseconds between two purges of the job history.
+     */
+    private static final long PURGE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Number of days the completed and cancelled jobs are kept.
+     */
+    private static final long HISTORY_DAYS = Math.max(ConfigUtil.getEnvLongValue(Constants.FILE_PROCESSING_HISTORY_DAYS_ENV, 30), 1);
+
+    /**
+     * Last purge of the job history.
+     */
+    private long lastPurgeTime = 0;
+
+    @Override
+    protected void startUp() {
+        log.info("File processing job service starting up");
+
+        // Jobs left by the previous run of this node are processed again right away
+        TransactionUtil.handle(() -> {
+            int count = new FileProcessingJobDao().release(EnvironmentUtil.getNodeId());
+            if (count > 0) {
+                log.info(count + " interrupted file processing jobs released");
+            }
+        });
+    }
+
+    @Override
+    protected void shutDown() {
+        log.info("File processing job service shutting down");
+    }
+
+    @Override
+    protected void runOneIteration() {
+        try {
+            purgeHistory();
+
+            List<FileProcessingJob> jobList = new ArrayList<>();
+            TransactionUtil.handle(() -> jobList.addAll(new FileProcessingJobDao()
+                    .reserveDueJobs(BATCH_SIZE, EnvironmentUtil.getNodeId(), MAX_ATTEMPTS, getLeaseDate())));
+            for (FileProcessingJob job : jobList) {
+                submit(job);
+            }
+        } catch (Throwable e) {
+            log.error("Exception during file processing job service iteration", e);
+        }
+    }
+
+    /**
+     * Deletes the old completed and cancelled jobs.
+     */
+    private void purgeHistory() {
+        if (System.currentTimeMillis() - lastPurgeTime < PURGE_INTERVAL) {
+            return;
+        }
+        lastPurgeTime = System.currentTimeMillis();
+        TransactionUtil.handle(() -> {
+            int count = new FileProcessingJobDao().deleteHistory(new Date(lastPurgeTime - TimeUnit.DAYS.toMillis(HISTORY_DAYS)));
+            if (count > 0) {
+                log.info(count + " file processing jobs deleted from the history");
+            }
+        });
+    }
+
+    /**
+     * Submit a reserved job to its processing lane.
+     *
+     * @param job Job
+     */
+    private void submit(FileProcessingJob job) {
+        AtomicReference<FileEvent> event = new AtomicReference<>();
+        TransactionUtil.handle(() -> {
+            File file = new FileDao().getActiveById(job.getFileId());
+            User user = file == null ? null : new UserDao().getById(file.getUserId());
+            FileProcessingJobDao fileProcessingJobDao = new FileProcessingJobDao();
+            if (user == null) {
+                fileProcessingJobDao.cancel(job.getId(), "File deleted");
+                return;
+            }
+
+            try {
+                Path unencryptedFile = FileUtil.decryptFile(file.getStorageId(), user.getPrivateKey());
+                FileEvent fileEvent = job.isFileCreated() ? new FileCreatedAsyncEvent() : new FileUpdatedAsyncEvent();
+                fileEvent.setUserId(job.getUserId());
+                fileEvent.setLanguage(job.getLanguage());
+                fileEvent.setFileId(file.getId());
+                fileEvent.setUnencryptedFile(unencryptedFile);
+                fileEvent.setLane(job.getLane()).setJobId(job.getId());
+                event.set(fileEvent);
+            } catch (Exception e) {
+                log.error("Unable to decrypt the file: " + file.getId(), e);
+                fileProcessingJobDao.cancel(job.getId(), "Unable to decrypt the file");
+            }
+        });
+
+        if (event.get() == null) {
+            return;
+        }
+        try {
+            AppContext.getInstance().getFileProcessingEventBus(job.getLane()).post(event.get());
+        } catch (RejectedExecutionException e) {
+            log.warn("File processing postponed: " + event.get(), e);
+            postpone(Collections.singletonList(job.getId()));
+        }
+    }
+
+    /**
+     * Postpone the jobs whose event has been rejected by a full lane to the next iteration, on any node.
+     *
+     * @param jobIdList Job IDs
+     */
+    public static void postpone(List<String> jobIdList) {
+        Date nextDate = new Date();
+        TransactionUtil.handle(() -> {
+            FileProcessingJobDao fileProcessingJobDao = new FileProcessingJobDao();
+            for (String jobId : jobIdList) {
+                fileProcessingJobDao.postpone(jobId, nextDate);
+            }
+        });
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(POLL_INTERVAL, POLL_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the date until which a node processes a job.
+     *
+     * @return Lease date
+     */
+    public static Date getLeaseDate() {
+        return new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LEASE));
+    }
+
+    /**
+     * Returns the date from which a failed job is processed again.
+     *
+     * @return Retry date
+     */
+    public static Date getRetryDate() {
+        return new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(RETRY_DELAY));
+    }
+
+    public static int getMaxAttempts() {
+        return MAX_ATTEMPTS;
+    }
+}
@@ -1,28 +1,72 @@
 package com.sismics.docs.core.service;
 
-import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sismics.docs.core.dao.FileDao;
-import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.model.jpa.File;
-import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.FileUtil;
 import com.sismics.docs.core.util.TransactionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Service that retrieve files sizes when they are not in the database.
+ * Service that stores the sizes of the files uploaded before they were stored in the database.
+ * The sizes are read from the stored contents once at startup, in parallel.
  */
-public class FileSizeService extends AbstractScheduledService {
+public class FileSizeService extends AbstractExecutionThreadService {
     /**
      * Logger.
      */
     private static final Logger log = LoggerFactory.getLogger(FileSizeService.class);
 
-    public FileSizeService() {
+    /**
+     * Number of files read from the database at once.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Number of files updated in a transaction.
+     */
+    private static final int CHUNK_SIZE = 50;
+
+    /**
+     * Number of threads reading the sizes.
+     */
+    private final int threadCount;
+
+    /**
+     * Number of files whose size is not stored, at startup.
+     */
+    private volatile long totalCount;
+
+    /**
+     * Number of files whose size is now stored.
+     */
+    private final AtomicLong processedCount = new AtomicLong();
+
+    /**
+     * Number of files whose content is not found.
+     */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param threadCount Number of threads reading the sizes
+     */
+    public FileSizeService(int threadCount) {
+        this.threadCount = threadCount;
     }
 
     @Override
@@ -35,44 +79,70 @@ public class FileSizeService extends AbstractScheduledService {
         log.info("File size service shutting down");
     }
 
-    private static final int BATCH_SIZE = 30;
-    
     @Override
-    protected void runOneIteration() {
+    protected void run() {
+        TransactionUtil.handle(() -> totalCount = new FileDao().getUnknownSizeCount());
+        if (totalCount == 0) {
+            return;
+        }
+        log.info("Storing the size of {} files", totalCount);
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+                new ThreadFactoryBuilder().setNameFormat("file-size-%d").setDaemon(true).build());
+        AtomicReference<String> lastId = new AtomicReference<>();
         try {
-            TransactionUtil.handle(() -> {
-                FileDao fileDao = new FileDao();
-                List<File> files = fileDao.getFilesWithUnknownSize(BATCH_SIZE);
-                for(File file : files) {
-                    processFile(file);
+            while (isRunning()) {
+                List<File> fileList = new ArrayList<>();
+                TransactionUtil.handle(() -> fileList.addAll(new FileDao().getFilesWithUnknownSize(lastId.get(), BATCH_SIZE)));
+                if (fileList.isEmpty()) {
+                    break;
+                }
+                lastId.set(fileList.get(fileList.size() - 1).getId());
+
+                // Read the sizes in parallel, each chunk in its own transaction
+                List<Future<?>> futureList = new ArrayList<>();
+                for (List<File> chunk : Lists.partition(fileList, CHUNK_SIZE)) {
+                    futureList.add(executor.submit(() -> TransactionUtil.handle(() -> chunk.forEach(this::processFile))));
                 }
-                if(files.size() < BATCH_SIZE) {
-                    log.info("No more file to process, stopping the service");
-                    stopAsync();
+                for (Future<?> future : futureList) {
+                    future.get();
                 }
-            });
-        } catch (Throwable e) {
-            log.error("Exception during file service iteration", e);
+                log.info("File sizes stored: {}/{} in {}, {} not found", processedCount.get(), totalCount, stopwatch, failedCount.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Error storing the file sizes", e);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    /**
+     * Store the size of a file, from its stored content.
+     *
+     * @param file File
+     */
     void processFile(File file) {
-        UserDao userDao = new UserDao();
-        User user = userDao.getById(file.getUserId());
-        if(user == null) {
+        long fileSize = FileUtil.getFileSize(file.getStorageId());
+        if (fileSize == File.UNKNOWN_SIZE) {
+            failedCount.incrementAndGet();
             return;
         }
+        new FileDao().updateSize(file.getId(), fileSize);
+        processedCount.incrementAndGet();
+    }
 
-        long fileSize = FileUtil.getFileSize(file.getId(), user);
-        if(fileSize != File.UNKNOWN_SIZE){
-            FileDao fileDao = new FileDao();
-            file.setSize(fileSize);
-            fileDao.update(file);
-        }
+    public long getTotalCount() {
+        return totalCount;
     }
 
-    @Override
-    protected Scheduler scheduler() {
-        return Scheduler.newFixedDelaySchedule(0, 1, TimeUnit.MINUTES);
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
     }
 }
@@ -0,0 +1,97 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.sismics.docs.core.util.storage.LocalStorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Service that moves the objects stored flat in the storage directory to the sharded layout.
+ * The objects are served from both layouts while they are moved.
+ */
+public class StorageMigrationService extends AbstractExecutionThreadService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(StorageMigrationService.class);
+
+    /**
+     * Number of objects moved between two progress logs.
+     */
+    private static final int LOG_INTERVAL = 10000;
+
+    /**
+     * Storage backend.
+     */
+    private final LocalStorageBackend storageBackend;
+
+    /**
+     * Number of objects moved.
+     */
+    private volatile long migratedCount;
+
+    /**
+     * Number of objects which couldn't be moved.
+     */
+    private volatile long failedCount;
+
+    /**
+     * Constructor.
+     *
+     * @param storageBackend Storage backend
+     */
+    public StorageMigrationService(LocalStorageBackend storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    @Override
+    protected void startUp() {
+        log.info("Storage migration service starting up");
+    }
+
+    @Override
+    protected void shutDown() {
+        log.info("Storage migration service shutting down");
+    }
+
+    @Override
+    protected void run() {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try (Stream<String> stream = storageBackend.listUnsharded()) {
+            Iterator<String> iterator = stream.iterator();
+            while (isRunning() && iterator.hasNext()) {
+                String key = iterator.next();
+                try {
+                    if (storageBackend.migrate(key)) {
+                        migratedCount++;
+                        if (migratedCount % LOG_INTERVAL == 0) {
+                            log.info("{} stored objects moved to the sharded layout in {}", migratedCount, stopwatch);
+                        }
+                    }
+                } catch (Exception e) {
+                    failedCount++;
+                    log.error("Error moving the stored object " + key + " to the sharded layout", e);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error listing the stored objects to move to the sharded layout", e);
+            return;
+        }
+
+        if (migratedCount > 0 || failedCount > 0) {
+            log.info("{} stored objects moved to the sharded layout in {}, {} failed", migratedCount, stopwatch, failedCount);
+        }
+    }
+
+    public long getMigratedCount() {
+        return migratedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+}
@@ -0,0 +1,387 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.dao.WebhookDeliveryDao;
+import com.sismics.docs.core.dao.dto.WebhookDto;
+import com.sismics.docs.core.model.jpa.WebhookDelivery;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.docs.core.util.WebhookCache;
+import com.sismics.util.EnvironmentUtil;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Service that sends the webhook deliveries.
+ * Deliveries to webhooks receiving single events are sent as soon as they are created,
+ * this service sends the batched deliveries and retries the failed ones with an exponential backoff.
+ * Calls are asynchronous, the number of concurrent calls to a host is limited.
+ */
+public class WebhookService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(WebhookService.class);
+
+    /**
+     * JSON media type.
+     */
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    /**
+     * Maximum number of deliveries reserved on each iteration, and of events in a batch.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Time in seconds a node has to send a delivery before it can be sent by another node.
+     */
+    private static final long LEASE = 300;
+
+    /**
+     * Delay in seconds before the first retry, doubled on each attempt.
+     */
+    private static final long RETRY_DELAY = 30;
+
+    /**
+     * Maximum delay in seconds between two attempts.
+     */
+    private static final long MAX_RETRY_DELAY = TimeUnit.HOURS.toSeconds(6);
+
+    /**
+     * Interval in milliseconds between two purges of the delivery history.
+     */
+    private static final long PURGE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Maximum number of attempts to deliver an event.
+     */
+    private static final int MAX_ATTEMPTS = Math.max(ConfigUtil.getEnvIntegerValue(Constants.WEBHOOK_MAX_ATTEMPTS_ENV, 10), 1);
+
+    /**
+     * Interval in seconds between two iterations, batched events are sent at this interval.
+     */
+    private static final long POLL_INTERVAL = Math.max(ConfigUtil.getEnvLongValue(Constants.WEBHOOK_POLL_INTERVAL_ENV, 10), 1);
+
+    /**
+     * Number of days the delivery history is kept.
+     */
+    private static final long HISTORY_DAYS = Math.max(ConfigUtil.getEnvLongValue(Constants.WEBHOOK_HISTORY_DAYS_ENV, 30), 1);
+
+    /**
+     * OkHttp client.
+     */
+    private final OkHttpClient client;
+
+    /**
+     * Number of calls in flight.
+     */
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    /**
+     * Number of calls.
+     */
+    private final LongAdder callCount = new LongAdder();
+
+    /**
+     * Number of calls which failed.
+     */
+    private final LongAdder errorCount = new LongAdder();
+
+    /**
+     * Number of events delivered.
+     */
+    private final LongAdder deliveredCount = new LongAdder();
+
+    /**
+     * Total call time in milliseconds.
+     */
+    private final LongAdder callMillis = new LongAdder();
+
+    /**
+     * Longest call time in milliseconds.
+     */
+    private final LongAccumulator maxCallMillis = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Last purge of the delivery history.
+     */
+    private long lastPurgeTime = 0;
+
+    public WebhookService() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(Math.max(ConfigUtil.getEnvIntegerValue(Constants.WEBHOOK_CONCURRENCY_ENV, 4), 1));
+        client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .callTimeout(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    protected void startUp() {
+        log.info("Webhook service starting up");
+    }
+
+    @Override
+    protected void shutDown() {
+        log.info("Webhook service shutting down");
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    @Override
+    protected void runOneIteration() {
+        try {
+            purgeHistory();
+
+            // Let the calls in flight complete before reserving more deliveries
+            if (inFlightCount.get() >= BATCH_SIZE) {
+                return;
+            }
+
+            String lease = UUID.randomUUID().toString();
+            List<WebhookDelivery> deliveryList = new ArrayList<>();
+            TransactionUtil.handle(() -> deliveryList.addAll(new WebhookDeliveryDao()
+                    .reserveDue(BATCH_SIZE, lease, MAX_ATTEMPTS, getLeaseDate())));
+            send(deliveryList, lease);
+        } catch (Throwable e) {
+            log.error("Exception during webhook service iteration", e);
+        }
+    }
+
+    /**
+     * Deletes the old delivery history.
+     */
+    private void purgeHistory() {
+        if (System.currentTimeMillis() - lastPurgeTime < PURGE_INTERVAL) {
+            return;
+        }
+        lastPurgeTime = System.currentTimeMillis();
+        TransactionUtil.handle(() -> {
+            int count = new WebhookDeliveryDao().deleteHistory(new Date(lastPurgeTime - TimeUnit.DAYS.toMillis(HISTORY_DAYS)));
+            if (count > 0) {
+                log.info(count + " webhook deliveries deleted from the history");
+            }
+        });
+    }
+
+    /**
+     * Send reserved deliveries.
+     * The deliveries of a batched webhook are sent in one call, the others are sent one by one.
+     *
+     * @param deliveryList Deliveries
+     * @param lease Reservation of the deliveries
+     */
+    public void send(List<WebhookDelivery> deliveryList, String lease) {
+        if (deliveryList.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<WebhookDelivery>> deliveryListMap = deliveryList.stream()
+                .collect(Collectors.groupingBy(WebhookDelivery::getWebhookId, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<WebhookDelivery>> entry : deliveryListMap.entrySet()) {
+            WebhookDto webhook = WebhookCache.getById(entry.getKey());
+            if (webhook == null) {
+                List<String> idList = entry.getValue().stream().map(WebhookDelivery::getId).collect(Collectors.toList());
+                TransactionUtil.handle(() -> new WebhookDeliveryDao().fail(idList, lease, null, 0, "Webhook deleted", 0, new Date()));
+            } else if (webhook.isBatch()) {
+                call(webhook, entry.getValue(), lease);
+            } else {
+                for (WebhookDelivery delivery : entry.getValue()) {
+                    call(webhook, Collections.singletonList(delivery), lease);
+                }
+            }
+        }
+    }
+
+    /**
+     * Call a webhook asynchronously.
+     *
+     * @param webhook Webhook
+     * @param deliveryList Deliveries sent in this call
+     * @param lease Reservation of the deliveries
+     */
+    private void call(WebhookDto webhook, List<WebhookDelivery> deliveryList, String lease) {
+        JsonObject payload;
+        if (webhook.isBatch()) {
+            JsonArrayBuilder events = Json.createArrayBuilder();
+            for (WebhookDelivery delivery : deliveryList) {
+                events.add(Json.createObjectBuilder()
+                        .add("event", delivery.getEvent().name())
+                        .add("id", delivery.getEntityId()));
+            }
+            payload = Json.createObjectBuilder()
+                    .add("events", events)
+                    .build();
+        } else {
+            WebhookDelivery delivery = deliveryList.get(0);
+            payload = Json.createObjectBuilder()
+                    .add("event", delivery.getEvent().name())
+                    .add("id", delivery.getEntityId())
+                    .build();
+        }
+
+        Request request;
+        try {
+            request = new Request.Builder()
+                    .url(webhook.getUrl())
+                    .post(RequestBody.create(payload.toString(), JSON))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            complete(webhook, deliveryList, lease, null, 0, "Invalid URL", MAX_ATTEMPTS);
+            return;
+        }
+
+        int attempts = deliveryList.stream().mapToInt(WebhookDelivery::getAttempts).max().orElse(1);
+        long startTime = System.currentTimeMillis();
+        inFlightCount.incrementAndGet();
+        Callback callback = new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    complete(webhook, deliveryList, lease, response.code(), endCall(startTime),
+                            response.isSuccessful() ? null : "HTTP " + response.code(), attempts);
+                }
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                complete(webhook, deliveryList, lease, null, endCall(startTime), e.toString(), attempts);
+            }
+        };
+
+        Call call = client.newCall(request);
+        if (EnvironmentUtil.isUnitTest()) {
+            // Synchronous calls in unit tests, like the event buses
+            try {
+                callback.onResponse(call, call.execute());
+            } catch (IOException e) {
+                callback.onFailure(call, e);
+            }
+        } else {
+            call.enqueue(callback);
+        }
+    }
+
+    /**
+     * Record the end of a call in the metrics.
+     *
+     * @param startTime Start time of the call in milliseconds
+     * @return Call time in milliseconds
+     */
+    private long endCall(long startTime) {
+        long duration = System.currentTimeMillis() - startTime;
+        inFlightCount.decrementAndGet();
+        callCount.increment();
+        callMillis.add(duration);
+        maxCallMillis.accumulate(duration);
+        return duration;
+    }
+
+    /**
+     * Record the result of a call.
+     *
+     * @param webhook Webhook
+     * @param deliveryList Deliveries sent in the call
+     * @param lease Reservation of the deliveries
+     * @param responseCode HTTP status code, null if there is no response
+     * @param duration Call time in milliseconds
+     * @param error Error message, null if the deliveries succeeded
+     * @param attempts Number of attempts of the deliveries
+     */
+    private void complete(WebhookDto webhook, List<WebhookDelivery> deliveryList, String lease,
+                          Integer responseCode, long duration, String error, int attempts) {
+        List<String> idList = deliveryList.stream().map(WebhookDelivery::getId).collect(Collectors.toList());
+        if (error == null) {
+            deliveredCount.add(idList.size());
+            log.info("Successfully called the webhook at: " + webhook.getUrl() + " - " + responseCode);
+        } else {
+            errorCount.increment();
+            log.error("Error calling the webhook at: " + webhook.getUrl() + " - " + error + " (attempt " + attempts + "/" + MAX_ATTEMPTS + ")");
+        }
+
+        TransactionUtil.handle(() -> {
+            WebhookDeliveryDao webhookDeliveryDao = new WebhookDeliveryDao();
+            if (error == null) {
+                webhookDeliveryDao.deliver(idList, lease, responseCode, duration);
+            } else {
+                webhookDeliveryDao.fail(idList, lease, responseCode, duration, error, MAX_ATTEMPTS, getRetryDate(attempts));
+            }
+        });
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(POLL_INTERVAL, POLL_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the date until which a node sends a delivery.
+     *
+     * @return Lease date
+     */
+    public static Date getLeaseDate() {
+        return new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LEASE));
+    }
+
+    /**
+     * Returns the date from which a failed delivery is sent again.
+     *
+     * @param attempts Number of attempts so far
+     * @return Retry date
+     */
+    private static Date getRetryDate(int attempts) {
+        long delay = Math.min(RETRY_DELAY << Math.min(Math.max(attempts - 1, 0), 20), MAX_RETRY_DELAY);
+        return new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delay));
+    }
+
+    public int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * Returns the average call time.
+     *
+     * @return Time in milliseconds
+     */
+    public double getAverageCallMillis() {
+        long count = callCount.sum();
+        return count == 0 ? 0 : (double) callMillis.sum() / count;
+    }
+
+    /**
+     * Returns the longest call time.
+     *
+     * @return Time in milliseconds
+     */
+    public long getMaxCallMillis() {
+        return maxCallMillis.get();
+    }
+}
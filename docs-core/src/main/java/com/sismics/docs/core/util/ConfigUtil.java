@@ -1,8 +1,11 @@
 package com.sismics.docs.core.util;
 
+import com.google.common.base.Strings;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.dao.ConfigDao;
 import com.sismics.docs.core.model.jpa.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ResourceBundle;
 
@@ -11,6 +14,11 @@ import java.util.ResourceBundle;
  *
  */
 public class ConfigUtil {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ConfigUtil.class);
+
     /**
      * Returns the textual value of a configuration parameter.
      *
@@ -88,4 +96,71 @@ public class ConfigUtil {
             return defaultValue;
         }
     }
+
+    /**
+     * Returns the integer value of an environment variable with a default value.
+     *
+     * @param env Name of the environment variable
+     * @param defaultValue Default value to return if the environment variable is undefined or invalid
+     * @return Integer value of the environment variable
+     */
+    public static int getEnvIntegerValue(String env, int defaultValue) {
+        return (int) getEnvLongValue(env, defaultValue);
+    }
+
+    /**
+     * Returns the long value of an environment variable with a default value.
+     *
+     * @param env Name of the environment variable
+     * @param defaultValue Default value to return if the environment variable is undefined or invalid
+     * @return Long value of the environment variable
+     */
+    public static long getEnvLongValue(String env, long defaultValue) {
+        String value = System.getenv(env);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn(env + " needs to be a number. Falling back to " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the boolean value of an environment variable with a default value.
+     *
+     * @param env Name of the environment variable
+     * @param defaultValue Default value to return if the environment variable is undefined
+     * @return Boolean value of the environment variable
+     */
+    public static boolean getEnvBooleanValue(String env, boolean defaultValue) {
+        String value = System.getenv(env);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Returns the enum value of an environment variable with a default value.
+     *
+     * @param env Name of the environment variable
+     * @param defaultValue Default value to return if the environment variable is undefined or invalid
+     * @param <E> Enum type
+     * @return Enum value of the environment variable
+     */
+    public static <E extends Enum<E>> E getEnvEnumValue(String env, E defaultValue) {
+        String value = System.getenv(env);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn(env + " has an invalid value. Falling back to " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
 }
@@ -67,6 +67,15 @@ public class DirectoryUtil {
     public static Path getLuceneDirectory() {
         return getDataSubDirectory("lucene");
     }
+
+    /**
+     * Returns the directory of the lucene index being rebuilt.
+     *
+     * @return Lucene rebuild directory.
+     */
+    public static Path getLuceneRebuildDirectory() {
+        return getDataSubDirectory("lucene_rebuild");
+    }
     
     /**
      * Returns the storage directory.
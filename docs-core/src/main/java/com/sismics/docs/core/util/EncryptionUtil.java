@@ -1,6 +1,11 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.model.context.AppContext;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
@@ -8,15 +13,19 @@ import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Encryption utilities.
@@ -28,6 +37,21 @@ public class EncryptionUtil {
      * Salt.
      */
     private static final String SALT = "LEpxZmm2SMu2PeKzPNrar2rhVAS6LrrgvXKeL9uyXC4vgKHg";
+
+    /**
+     * AES block size in bytes.
+     */
+    private static final int AES_BLOCK_SIZE = 16;
+
+    /**
+     * Keys derived from private keys, by hash of the private key.
+     * Key derivation is expensive and the same user keys are used over and over.
+     */
+    private static final Cache<String, DerivedKey> KEY_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(ConfigUtil.getEnvLongValue(Constants.KEY_CACHE_SIZE_ENV, 1000))
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .recordStats()
+            .build();
     
     static {
         // Initialize Bouncy Castle provider
@@ -62,23 +86,44 @@ public class EncryptionUtil {
     }
 
     /**
-     * Decrypt a file to a temporary file using the specified private key.
+     * Decrypt an InputStream starting at a given position, using the specified private key.
+     * The CTR keystream is positioned directly at the offset, nothing before it is decrypted.
      *
-     * @param file Encrypted file
+     * @param is InputStream to decrypt, already positioned at the offset
+     * @param privateKey Private key
+     * @param offset Position in the encrypted data
+     * @return Decrypted stream
+     * @throws Exception e
+     */
+    public static InputStream decryptInputStream(InputStream is, String privateKey, long offset) throws Exception {
+        // Start the counter at the block containing the offset
+        Cipher cipher = getCipher(privateKey, Cipher.DECRYPT_MODE, offset / AES_BLOCK_SIZE);
+
+        // Consume the keystream up to the offset in this block
+        int blockOffset = (int) (offset % AES_BLOCK_SIZE);
+        if (blockOffset > 0) {
+            cipher.update(new byte[blockOffset]);
+        }
+        return new CipherInputStream(is, cipher);
+    }
+
+    /**
+     * Decrypt a stored content to a temporary file using the specified private key.
+     *
+     * @param is Encrypted content
      * @param privateKey Private key
      * @return Decrypted temporary file
      * @throws Exception e
      */
-    public static Path decryptFile(Path file, String privateKey) throws Exception {
+    public static Path decryptFile(InputStream is, String privateKey) throws Exception {
+        Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
         if (privateKey == null) {
             // For unit testing
-            return file;
+            Files.copy(is, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            return tmpFile;
         }
 
-        Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
-        try (InputStream is = Files.newInputStream(file)) {
-            Files.copy(new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE)), tmpFile, StandardCopyOption.REPLACE_EXISTING);
-        }
+        Files.copy(new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE)), tmpFile, StandardCopyOption.REPLACE_EXISTING);
         return tmpFile;
     }
 
@@ -105,11 +150,106 @@ public class EncryptionUtil {
      * @throws Exception e
      */
     private static Cipher getCipher(String privateKey, int mode) throws Exception {
+        return getCipher(privateKey, mode, 0);
+    }
+
+    /**
+     * Initialize a Cipher with its counter moved forward.
+     *
+     * @param privateKey Private key
+     * @param mode Mode (encrypt or decrypt)
+     * @param blocks Number of blocks to skip
+     * @return Cipher
+     * @throws Exception e
+     */
+    private static Cipher getCipher(String privateKey, int mode, long blocks) throws Exception {
+        DerivedKey derivedKey = KEY_CACHE.get(Hashing.sha256().hashString(privateKey, StandardCharsets.UTF_8).toString(),
+                () -> deriveKey(privateKey));
+        Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
+        cipher.init(mode, derivedKey.key, new IvParameterSpec(addToCounter(derivedKey.iv, blocks)));
+        return cipher;
+    }
+
+    /**
+     * Derive the secret key and the initial counter from a private key.
+     *
+     * @param privateKey Private key
+     * @return Derived key
+     * @throws Exception e
+     */
+    private static DerivedKey deriveKey(String privateKey) throws Exception {
         PBEKeySpec keySpec = new PBEKeySpec(privateKey.toCharArray(), SALT.getBytes(), 2000, 256);
         SecretKeyFactory skf = SecretKeyFactory.getInstance("PBEWITHSHA256AND256BITAES-CBC-BC");
-        SecretKey desKey = skf.generateSecret(keySpec);
+        SecretKey pbeKey = skf.generateSecret(keySpec);
+
+        // The PBE key carries the initial counter, which is set in the cipher
         Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
-        cipher.init(mode, desKey);
-        return cipher;
+        cipher.init(Cipher.ENCRYPT_MODE, pbeKey);
+        return new DerivedKey(new SecretKeySpec(pbeKey.getEncoded(), "AES"), cipher.getIV());
+    }
+
+    /**
+     * Remove the derived key of a private key from the cache.
+     *
+     * @param privateKey Private key
+     */
+    public static void evictKey(String privateKey) {
+        KEY_CACHE.invalidate(Hashing.sha256().hashString(privateKey, StandardCharsets.UTF_8).toString());
+    }
+
+    /**
+     * Returns the statistics of the derived keys cache.
+     *
+     * @return Cache statistics
+     */
+    public static CacheStats getKeyCacheStats() {
+        return KEY_CACHE.stats();
+    }
+
+    /**
+     * Returns the number of derived keys in the cache.
+     *
+     * @return Number of derived keys
+     */
+    public static long getKeyCacheSize() {
+        return KEY_CACHE.size();
+    }
+
+    /**
+     * Add a number of blocks to a CTR counter.
+     *
+     * @param counter Counter (big-endian)
+     * @param blocks Number of blocks
+     * @return New counter
+     */
+    private static byte[] addToCounter(byte[] counter, long blocks) {
+        byte[] result = counter.clone();
+        long carry = blocks;
+        for (int i = result.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (result[i] & 0xff) + (carry & 0xff);
+            result[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return result;
+    }
+
+    /**
+     * Key derived from a private key.
+     */
+    private static class DerivedKey {
+        /**
+         * AES key.
+         */
+        private final SecretKey key;
+
+        /**
+         * Initial counter.
+         */
+        private final byte[] iv;
+
+        private DerivedKey(SecretKey key, byte[] iv) {
+            this.key = key;
+            this.iv = iv;
+        }
     }
 }
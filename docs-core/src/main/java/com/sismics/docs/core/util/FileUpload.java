@@ -0,0 +1,212 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.util.mime.MimeTypeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.CipherOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File received in a single pass.
+ * While the content is read, it is measured, hashed, sniffed for its MIME type and encrypted to the storage.
+ * The unencrypted content is kept in a temporary file for the processing of the file.
+ */
+public class FileUpload {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileUpload.class);
+
+    /**
+     * Suffix of the storage keys of the contents waiting for their file ID.
+     */
+    public static final String STORED_KEY_SUFFIX = "_upload";
+
+    /**
+     * Time in milliseconds after which a content still waiting for its file ID is abandoned.
+     */
+    public static final long STORED_KEY_EXPIRATION = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Number of leading bytes kept to sniff the MIME type.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Size of the copy buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * File name, can be null.
+     */
+    private final String name;
+
+    /**
+     * Temporary unencrypted file.
+     */
+    private final Path unencryptedFile;
+
+    /**
+     * Key of the encrypted content in the storage, waiting for its file ID.
+     */
+    private final String storedKey;
+
+    /**
+     * Size in bytes.
+     */
+    private long size;
+
+    /**
+     * SHA-256 hash of the unencrypted content.
+     */
+    private String hash;
+
+    /**
+     * MIME type.
+     */
+    private String mimeType;
+
+    /**
+     * Constructor.
+     *
+     * @param name File name
+     * @param unencryptedFile Temporary unencrypted file
+     */
+    private FileUpload(String name, Path unencryptedFile) {
+        this.name = name;
+        this.unencryptedFile = unencryptedFile;
+        this.storedKey = UUID.randomUUID() + STORED_KEY_SUFFIX;
+    }
+
+    /**
+     * Receive a file from a stream.
+     * The unencrypted content is copied to a temporary file.
+     *
+     * @param inputStream Unencrypted content
+     * @param name File name, can be null
+     * @param privateKey Private key of the user creating the file
+     * @return Received file
+     * @throws Exception e
+     */
+    public static FileUpload receive(InputStream inputStream, String name, String privateKey) throws Exception {
+        FileUpload upload = new FileUpload(name, AppContext.getInstance().getFileService().createTemporaryFile(name));
+        try (OutputStream unencryptedOutputStream = Files.newOutputStream(upload.unencryptedFile)) {
+            upload.write(inputStream, unencryptedOutputStream, privateKey);
+        }
+        return upload;
+    }
+
+    /**
+     * Receive a file already written to a temporary file.
+     *
+     * @param unencryptedFile Temporary unencrypted file
+     * @param name File name, can be null
+     * @param privateKey Private key of the user creating the file
+     * @return Received file
+     * @throws Exception e
+     */
+    public static FileUpload of(Path unencryptedFile, String name, String privateKey) throws Exception {
+        FileUpload upload = new FileUpload(name, unencryptedFile);
+        try (InputStream inputStream = Files.newInputStream(unencryptedFile)) {
+            upload.write(inputStream, null, privateKey);
+        }
+        return upload;
+    }
+
+    /**
+     * Read the content once, writing it to the storage and to the unencrypted copy if any.
+     *
+     * @param inputStream Unencrypted content
+     * @param unencryptedOutputStream Unencrypted copy, can be null
+     * @param privateKey Private key
+     * @throws Exception e
+     */
+    private void write(InputStream inputStream, OutputStream unencryptedOutputStream, String privateKey) throws Exception {
+        Hasher hasher = Hashing.sha256().newHasher();
+        byte[] header = new byte[HEADER_SIZE];
+        int headerLength = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (OutputStream storedOutputStream = new CipherOutputStream(AppContext.getInstance().getStorageBackend().put(storedKey),
+                EncryptionUtil.getEncryptionCipher(privateKey))) {
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                if (headerLength < HEADER_SIZE) {
+                    int headerCopyLength = Math.min(length, HEADER_SIZE - headerLength);
+                    System.arraycopy(buffer, 0, header, headerLength, headerCopyLength);
+                    headerLength += headerCopyLength;
+                }
+                hasher.putBytes(buffer, 0, length);
+                size += length;
+                if (unencryptedOutputStream != null) {
+                    unencryptedOutputStream.write(buffer, 0, length);
+                }
+                storedOutputStream.write(buffer, 0, length);
+            }
+        } catch (Exception e) {
+            discard();
+            throw e;
+        }
+        hash = hasher.hash().toString();
+
+        try {
+            mimeType = MimeTypeUtil.guessMimeType(Arrays.copyOf(header, headerLength), unencryptedFile, name);
+        } catch (IOException e) {
+            discard();
+            throw new IOException("ErrorGuessMime", e);
+        }
+    }
+
+    /**
+     * Move the encrypted content to its final key in the storage.
+     *
+     * @param fileId File ID
+     * @throws IOException e
+     */
+    public void store(String fileId) throws IOException {
+        AppContext.getInstance().getStorageBackend().move(storedKey, fileId);
+    }
+
+    /**
+     * Delete the encrypted content if it is not stored.
+     */
+    public void discard() {
+        try {
+            AppContext.getInstance().getStorageBackend().delete(storedKey);
+        } catch (IOException e) {
+            log.error("Error deleting the uploaded file: " + storedKey, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getUnencryptedFile() {
+        return unencryptedFile;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+}
@@ -1,37 +1,34 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
-import com.google.common.io.CharStreams;
 import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.FileProcessingLane;
+import com.sismics.docs.core.dao.FileBlobDao;
 import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.FileProcessingJobDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.DocumentUpdatedAsyncEvent;
 import com.sismics.docs.core.event.FileCreatedAsyncEvent;
+import com.sismics.docs.core.event.FileEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.FileBlob;
+import com.sismics.docs.core.model.jpa.FileProcessingJob;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.service.FileProcessingJobService;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import com.sismics.docs.core.util.storage.StorageObject;
+import com.sismics.util.EnvironmentUtil;
 import com.sismics.util.ImageDeskew;
 import com.sismics.util.Scalr;
 import com.sismics.util.context.ThreadLocalContext;
-import com.sismics.util.io.InputStreamReaderThread;
-import com.sismics.util.mime.MimeTypeUtil;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.CountingInputStream;
-import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -46,11 +43,6 @@ public class FileUtil {
      */
     private static final Logger log = LoggerFactory.getLogger(FileUtil.class);
 
-    /**
-     * File ID of files currently being processed.
-     */
-    private static final Set<String> processingFileSet = Collections.synchronizedSet(new HashSet<>());
-    
     /**
      * Optical character recognition on an image.
      *
@@ -66,41 +58,38 @@ public class FileUtil {
         ImageDeskew imageDeskew = new ImageDeskew(resizedImage);
         BufferedImage deskewedImage = Scalr.rotate(resizedImage, - imageDeskew.getSkewAngle(), Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
         resizedImage.flush();
-        Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
-        ImageIO.write(deskewedImage, "tiff", tmpFile.toFile());
-
-        List<String> result = Lists.newLinkedList(Arrays.asList("tesseract", tmpFile.toAbsolutePath().toString(), "stdout", "-l", language));
-        ProcessBuilder pb = new ProcessBuilder(result);
-        Process process = pb.start();
 
-        // Consume the process error stream
-        final String commandName = pb.command().get(0);
-        new InputStreamReaderThread(process.getErrorStream(), commandName).start();
-
-        // Consume the data as text
-        try (InputStream is = process.getInputStream()) {
-            return CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
+        // Recognize the text
+        try {
+            return AppContext.getInstance().getOcrEngine().ocr(language, deskewedImage);
+        } finally {
+            deskewedImage.flush();
         }
     }
 
     /**
-     * Remove a file from the storage filesystem.
+     * Remove a stored content and its thumbnails from the storage.
      * 
-     * @param fileId ID of file to delete
+     * @param storageId ID under which the content is stored, see {@link File#getStorageId()}
      */
-    public static void delete(String fileId) throws IOException {
-        Path storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
-        Path webFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_web");
-        Path thumbnailFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_thumb");
-        
-        if (Files.exists(storedFile)) {
-            Files.delete(storedFile);
-        }
-        if (Files.exists(webFile)) {
-            Files.delete(webFile);
-        }
-        if (Files.exists(thumbnailFile)) {
-            Files.delete(thumbnailFile);
+    public static void delete(String storageId) throws IOException {
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        storageBackend.delete(storageId);
+        storageBackend.delete(storageId + "_web");
+        storageBackend.delete(storageId + "_thumb");
+    }
+
+    /**
+     * Decrypt a stored content to a temporary file.
+     *
+     * @param storageId ID under which the content is stored, see {@link File#getStorageId()}
+     * @param privateKey Private key of the file owner
+     * @return Decrypted temporary file
+     * @throws Exception e
+     */
+    public static Path decryptFile(String storageId, String privateKey) throws Exception {
+        try (InputStream inputStream = AppContext.getInstance().getStorageBackend().get(storageId)) {
+            return EncryptionUtil.decryptFile(inputStream, privateKey);
         }
     }
 
@@ -110,21 +99,74 @@ public class FileUtil {
      * @param name File name, can be null
      * @param previousFileId ID of the previous version of the file, if the new file is a new version
      * @param unencryptedFile Path to the unencrypted file
-     * @param fileSize File size
      * @param language File language, can be null if associated to no document
      * @param userId User ID creating the file
      * @param documentId Associated document ID or null if no document
      * @return File ID
      * @throws Exception e
      */
-    public static String createFile(String name, String previousFileId, Path unencryptedFile, long fileSize, String language, String userId, String documentId) throws Exception {
-        // Validate mime type
-        String mimeType;
+    public static String createFile(String name, String previousFileId, Path unencryptedFile, String language, String userId, String documentId) throws Exception {
+        return createFile(name, previousFileId, unencryptedFile, language, userId, documentId, FileProcessingLane.INTERACTIVE);
+    }
+
+    /**
+     * Create a new file.
+     *
+     * @param name File name, can be null
+     * @param previousFileId ID of the previous version of the file, if the new file is a new version
+     * @param unencryptedFile Path to the unencrypted file
+     * @param language File language, can be null if associated to no document
+     * @param userId User ID creating the file
+     * @param documentId Associated document ID or null if no document
+     * @param lane Processing lane of the file
+     * @return File ID
+     * @throws Exception e
+     */
+    public static String createFile(String name, String previousFileId, Path unencryptedFile, String language, String userId, String documentId,
+                                    FileProcessingLane lane) throws Exception {
+        User user = new UserDao().getById(userId);
+        FileUpload upload = FileUpload.of(unencryptedFile, name, user.getPrivateKey());
+        return createFile(upload, previousFileId, language, userId, documentId, lane);
+    }
+
+    /**
+     * Create a new file from a received file.
+     * The received file is discarded if the file cannot be created.
+     *
+     * @param upload Received file
+     * @param previousFileId ID of the previous version of the file, if the new file is a new version
+     * @param language File language, can be null if associated to no document
+     * @param userId User ID creating the file
+     * @param documentId Associated document ID or null if no document
+     * @param lane Processing lane of the file
+     * @return File ID
+     * @throws Exception e
+     */
+    public static String createFile(FileUpload upload, String previousFileId, String language, String userId, String documentId,
+                                    FileProcessingLane lane) throws Exception {
         try {
-            mimeType = MimeTypeUtil.guessMimeType(unencryptedFile, name);
-        } catch (IOException e) {
-            throw new IOException("ErrorGuessMime", e);
+            return doCreateFile(upload, previousFileId, language, userId, documentId, lane);
+        } catch (Exception e) {
+            upload.discard();
+            throw e;
         }
+    }
+
+    /**
+     * Create a new file from a received file.
+     *
+     * @param upload Received file
+     * @param previousFileId ID of the previous version of the file, if the new file is a new version
+     * @param language File language, can be null if associated to no document
+     * @param userId User ID creating the file
+     * @param documentId Associated document ID or null if no document
+     * @param lane Processing lane of the file
+     * @return File ID
+     * @throws Exception e
+     */
+    private static String doCreateFile(FileUpload upload, String previousFileId, String language, String userId, String documentId,
+                                       FileProcessingLane lane) throws Exception {
+        long fileSize = upload.getSize();
 
         // Validate user quota
         UserDao userDao = new UserDao();
@@ -149,10 +191,11 @@ public class FileUtil {
         file.setVersion(0);
         file.setLatestVersion(true);
         file.setDocumentId(documentId);
-        file.setName(StringUtils.abbreviate(name, 200));
-        file.setMimeType(mimeType);
+        file.setName(StringUtils.abbreviate(upload.getName(), 200));
+        file.setMimeType(upload.getMimeType());
         file.setUserId(userId);
         file.setSize(fileSize);
+        file.setHash(upload.getHash());
 
         // Get files of this document
         FileDao fileDao = new FileDao();
@@ -182,14 +225,18 @@ public class FileUtil {
             }
         }
 
+        // Share the stored content of a file with the same content
+        boolean deduplicated = ConfigUtil.getEnvBooleanValue(Constants.STORAGE_DEDUP_ENV, false);
+        if (deduplicated) {
+            file.setBlobId(storeBlob(upload, userId));
+        }
+
         // Create the file
         String fileId = fileDao.create(file, userId);
 
-        // Save the file
-        Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-        Path path = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-        try (InputStream inputStream = Files.newInputStream(unencryptedFile)) {
-            Files.copy(new CipherInputStream(inputStream, cipher), path);
+        // Save the file, already encrypted while received
+        if (!deduplicated) {
+            upload.store(fileId);
         }
 
         // Update the user quota
@@ -197,13 +244,13 @@ public class FileUtil {
         userDao.updateQuota(user);
 
         // Raise a new file created event and document updated event if we have a document
-        startProcessingFile(fileId);
         FileCreatedAsyncEvent fileCreatedAsyncEvent = new FileCreatedAsyncEvent();
         fileCreatedAsyncEvent.setUserId(userId);
         fileCreatedAsyncEvent.setLanguage(language);
         fileCreatedAsyncEvent.setFileId(file.getId());
-        fileCreatedAsyncEvent.setUnencryptedFile(unencryptedFile);
-        ThreadLocalContext.get().addAsyncEvent(fileCreatedAsyncEvent);
+        fileCreatedAsyncEvent.setUnencryptedFile(upload.getUnencryptedFile());
+        fileCreatedAsyncEvent.setLane(lane);
+        startProcessingFile(fileCreatedAsyncEvent);
 
         if (documentId != null) {
             DocumentUpdatedAsyncEvent documentUpdatedAsyncEvent = new DocumentUpdatedAsyncEvent();
@@ -216,23 +263,53 @@ public class FileUtil {
     }
 
     /**
-     * Start processing a file.
+     * Store a received file as a blob, or reference the blob of a file of the user with the same content.
+     * The blobs are encrypted with the private key of their user, so they are not shared between users.
      *
-     * @param fileId File ID
+     * @param upload Received file
+     * @param userId User ID creating the file
+     * @return Blob ID
+     * @throws IOException e
      */
-    public static void startProcessingFile(String fileId) {
-        processingFileSet.add(fileId);
-        log.info("Processing started for file: " + fileId);
+    private static String storeBlob(FileUpload upload, String userId) throws IOException {
+        FileBlobDao fileBlobDao = new FileBlobDao();
+        for (FileBlob blob : fileBlobDao.findByHash(userId, upload.getHash())) {
+            if (blob.getSize() == upload.getSize()
+                    && AppContext.getInstance().getStorageBackend().stat(blob.getId()) != null
+                    && fileBlobDao.addReference(blob.getId())) {
+                log.info("Content already stored in blob: " + blob.getId());
+                upload.discard();
+                return blob.getId();
+            }
+        }
+
+        String blobId = fileBlobDao.create(new FileBlob()
+                .setUserId(userId)
+                .setHash(upload.getHash())
+                .setSize(upload.getSize()));
+        upload.store(blobId);
+        return blobId;
     }
 
     /**
-     * End processing a file.
+     * Start processing a file.
+     * A processing job is persisted with the file, then the event is raised after the commit.
+     * The job is reserved to this node until its lease expires, then any node can process it.
      *
-     * @param fileId File ID
+     * @param event File created or updated event
      */
-    public static void endProcessingFile(String fileId) {
-        processingFileSet.remove(fileId);
-        log.info("Processing ended for file: " + fileId);
+    public static void startProcessingFile(FileEvent event) {
+        FileProcessingJob job = new FileProcessingJob()
+                .setFileId(event.getFileId())
+                .setUserId(event.getUserId())
+                .setLanguage(event.getLanguage())
+                .setLane(event.getLane())
+                .setFileCreated(event instanceof FileCreatedAsyncEvent)
+                .setLeaseOwner(EnvironmentUtil.getNodeId())
+                .setNextDate(FileProcessingJobService.getLeaseDate());
+        event.setJobId(new FileProcessingJobDao().create(job));
+        ThreadLocalContext.get().addAsyncEvent(event);
+        log.info("Processing started for file: " + event.getFileId());
     }
 
     /**
@@ -242,32 +319,26 @@ public class FileUtil {
      * @return True if the file is processing
      */
     public static boolean isProcessingFile(String fileId) {
-        return processingFileSet.contains(fileId);
+        return new FileProcessingJobDao().isProcessing(fileId);
     }
 
     /**
-     * Get the size of a file on disk.
+     * Get the size of a file from its stored content.
+     * The contents are encrypted with AES in CTR mode without padding, so they have the size of the unencrypted contents.
      *
-     * @param fileId the file id
-     * @param user   the file owner
+     * @param storageId the id under which the file content is stored
      * @return the size or -1 if something went wrong
      */
-    public static long getFileSize(String fileId, User user) {
-        // To get the size we copy the decrypted content into a null output stream
-        // and count the copied byte size.
-        Path storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
-        if (! Files.exists(storedFile)) {
-            log.debug("File does not exist " + fileId);
-            return File.UNKNOWN_SIZE;
-        }
-        try (InputStream fileInputStream = Files.newInputStream(storedFile);
-             InputStream inputStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey());
-             CountingInputStream countingInputStream = new CountingInputStream(inputStream);
-        ) {
-            IOUtils.copy(countingInputStream, NullOutputStream.NULL_OUTPUT_STREAM);
-            return countingInputStream.getByteCount();
-        } catch (Exception e) {
-            log.debug("Can't find size of file " + fileId, e);
+    public static long getFileSize(String storageId) {
+        try {
+            StorageObject storageObject = AppContext.getInstance().getStorageBackend().stat(storageId);
+            if (storageObject == null) {
+                log.debug("File does not exist " + storageId);
+                return File.UNKNOWN_SIZE;
+            }
+            return storageObject.getSize();
+        } catch (IOException e) {
+            log.debug("Can't find size of file " + storageId, e);
             return File.UNKNOWN_SIZE;
         }
     }
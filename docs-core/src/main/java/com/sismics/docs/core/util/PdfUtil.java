@@ -103,10 +103,8 @@ public class PdfUtil {
             
             // Add files
             for (File file : fileList) {
-                Path storedFile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-
                 // Decrypt the file to a temporary file
-                Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, file.getPrivateKey());
+                Path unencryptedFile = FileUtil.decryptFile(file.getStorageId(), file.getPrivateKey());
                 FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType());
                 if (formatHandler != null) {
                     formatHandler.appendToPdf(unencryptedFile, doc, fitImageToPage, margin, memUsageSettings, closer);
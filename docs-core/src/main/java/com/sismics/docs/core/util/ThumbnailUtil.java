@@ -0,0 +1,64 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import com.sismics.util.ImageUtil;
+import com.sismics.util.Scalr;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Thumbnail utilities.
+ */
+public class ThumbnailUtil {
+    /**
+     * Size of the "web" image.
+     */
+    public static final int WEB_SIZE = 1280;
+
+    /**
+     * Size of the thumbnail.
+     */
+    public static final int THUMBNAIL_SIZE = 256;
+
+    /**
+     * JPEG quality of the generated images.
+     */
+    private static final float QUALITY = Math.min(Math.max(
+            ConfigUtil.getEnvIntegerValue(Constants.THUMBNAIL_QUALITY_ENV, 85), 1), 100) / 100f;
+
+    /**
+     * Generate and store the encrypted "web" image and thumbnail of a file.
+     * The thumbnail is derived from the "web" image, not from the full image.
+     *
+     * @param image Image of the file, flushed afterwards
+     * @param storageId ID under which the file content is stored
+     * @param cipher Encryption cipher
+     * @throws IOException e
+     */
+    public static void writeThumbnails(BufferedImage image, String storageId, Cipher cipher) throws IOException {
+        BufferedImage web = Scalr.resize(image, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, WEB_SIZE);
+        if (web != image) {
+            image.flush();
+        }
+        BufferedImage thumbnail = Scalr.resize(web, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, THUMBNAIL_SIZE);
+
+        // Write "web" encrypted image
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        try (OutputStream outputStream = new CipherOutputStream(storageBackend.put(storageId + "_web"), cipher)) {
+            ImageUtil.writeJpeg(web, outputStream, QUALITY);
+        }
+        web.flush();
+
+        // Write "thumb" encrypted image
+        try (OutputStream outputStream = new CipherOutputStream(storageBackend.put(storageId + "_thumb"), cipher)) {
+            ImageUtil.writeJpeg(thumbnail, outputStream, QUALITY);
+        }
+        thumbnail.flush();
+    }
+}
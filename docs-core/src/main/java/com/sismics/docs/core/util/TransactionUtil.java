@@ -2,6 +2,9 @@ package com.sismics.docs.core.util;
 
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.EMF;
+import jakarta.transaction.Synchronization;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -93,4 +96,31 @@ public class TransactionUtil {
         tx.commit();
         tx.begin();
     }
+
+    /**
+     * Run an action when the current transaction completes, committed or rolled back.
+     * The action is run immediately outside of a transaction.
+     *
+     * @param runnable Action
+     */
+    public static void afterCompletion(Runnable runnable) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        if (em == null || !em.isOpen() || !em.getTransaction().isActive()) {
+            runnable.run();
+            return;
+        }
+
+        Transaction tx = em.unwrap(Session.class).getTransaction();
+        tx.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // NOP
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                runnable.run();
+            }
+        });
+    }
 }
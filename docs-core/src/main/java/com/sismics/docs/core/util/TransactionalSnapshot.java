@@ -0,0 +1,141 @@
+package com.sismics.docs.core.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * In-memory snapshot of data loaded from the database, dropped by the transactions changing this data.
+ * The snapshot is not shared again until the changing transactions complete, so that it never holds uncommitted data.
+ * A transaction which doesn't complete in time no longer prevents the sharing,
+ * it still drops the snapshot when it completes.
+ *
+ * @param <T> Type of the snapshot
+ */
+public class TransactionalSnapshot<T> {
+    /**
+     * Default time in milliseconds after which a pending change no longer prevents the sharing.
+     */
+    private static final long PENDING_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Loads the snapshot from the database, returns null if it cannot be loaded.
+     */
+    private final Supplier<T> loader;
+
+    /**
+     * Time to live of the snapshot in milliseconds.
+     */
+    private final long ttl;
+
+    /**
+     * Time in milliseconds after which a pending change no longer prevents the sharing.
+     */
+    private final long pendingTimeout;
+
+    /**
+     * Shared snapshot, null if it must be loaded.
+     */
+    private volatile T value;
+
+    /**
+     * Load time of the shared snapshot in milliseconds.
+     */
+    private volatile long loadTime;
+
+    /**
+     * Start time of the changing transactions which are not completed yet, by invalidation generation.
+     */
+    private final Map<Long, Long> pendingMap = new HashMap<>();
+
+    /**
+     * Incremented on each invalidation, to discard the snapshots loaded concurrently.
+     */
+    private long generation = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param loader Loads the snapshot from the database, returns null if it cannot be loaded
+     * @param ttl Time to live of the snapshot in milliseconds, Long.MAX_VALUE to keep it until it is invalidated
+     */
+    public TransactionalSnapshot(Supplier<T> loader, long ttl) {
+        this(loader, ttl, PENDING_TIMEOUT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param loader Loads the snapshot from the database, returns null if it cannot be loaded
+     * @param ttl Time to live of the snapshot in milliseconds, Long.MAX_VALUE to keep it until it is invalidated
+     * @param pendingTimeout Time in milliseconds after which a pending change no longer prevents the sharing
+     */
+    TransactionalSnapshot(Supplier<T> loader, long ttl, long pendingTimeout) {
+        this.loader = loader;
+        this.ttl = ttl;
+        this.pendingTimeout = pendingTimeout;
+    }
+
+    /**
+     * Returns the current snapshot, loaded if needed.
+     *
+     * @return Snapshot, null if it cannot be loaded
+     */
+    public T get() {
+        T current = value;
+        if (current == null || System.currentTimeMillis() - loadTime > ttl) {
+            current = load();
+        }
+        return current;
+    }
+
+    /**
+     * Invalidate the snapshot, called in the transaction changing the data.
+     * The snapshot is invalidated again when the transaction completes.
+     */
+    public void invalidate() {
+        long pendingGeneration;
+        synchronized (this) {
+            pendingGeneration = ++generation;
+            pendingMap.put(pendingGeneration, System.currentTimeMillis());
+            value = null;
+        }
+
+        TransactionUtil.afterCompletion(() -> {
+            synchronized (this) {
+                pendingMap.remove(pendingGeneration);
+                generation++;
+                value = null;
+            }
+        });
+    }
+
+    /**
+     * Load the snapshot from the database.
+     * It is shared only if no change is pending, otherwise it is used for the current request only.
+     *
+     * @return Snapshot, null if it cannot be loaded
+     */
+    private T load() {
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+
+        long startTime = System.currentTimeMillis();
+        T loaded = loader.get();
+        if (loaded == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            pendingMap.values().removeIf(pendingTime -> startTime - pendingTime > pendingTimeout);
+            if (pendingMap.isEmpty() && generation == loadGeneration) {
+                value = loaded;
+                loadTime = startTime;
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.WebhookEvent;
+import com.sismics.docs.core.dao.WebhookDao;
+import com.sismics.docs.core.dao.criteria.WebhookCriteria;
+import com.sismics.docs.core.dao.dto.WebhookDto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory snapshot of the active webhooks, to find the webhooks of an event without querying the database.
+ * The snapshot is dropped when the webhooks change and is not rebuilt until the changing transactions complete.
+ * It also expires shortly, to see the changes made by other nodes.
+ */
+public class WebhookCache {
+    /**
+     * Time to live of the snapshot in milliseconds.
+     */
+    private static final long TTL = TimeUnit.SECONDS.toMillis(Math.max(ConfigUtil.getEnvLongValue(Constants.WEBHOOK_CACHE_TTL_ENV, 60), 0));
+
+    /**
+     * Active webhooks.
+     */
+    private static final TransactionalSnapshot<Snapshot> snapshot = new TransactionalSnapshot<>(WebhookCache::load, TTL);
+
+    /**
+     * Returns the active webhooks of an event.
+     *
+     * @param event Event
+     * @return Webhooks
+     */
+    public static List<WebhookDto> getByEvent(WebhookEvent event) {
+        return getSnapshot().webhookListMap.getOrDefault(event.name(), ImmutableList.of());
+    }
+
+    /**
+     * Returns an active webhook.
+     *
+     * @param id Webhook ID
+     * @return Webhook or null if it doesn't exist or is deleted
+     */
+    public static WebhookDto getById(String id) {
+        return getSnapshot().webhookMap.get(id);
+    }
+
+    /**
+     * Invalidate the snapshot, called in the transaction changing the webhooks.
+     * The snapshot is invalidated again when the transaction completes.
+     */
+    public static void invalidate() {
+        snapshot.invalidate();
+    }
+
+    /**
+     * Returns the current snapshot.
+     * If the webhooks cannot be loaded, there are none until the next call.
+     *
+     * @return Snapshot
+     */
+    private static Snapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        return current == null ? new Snapshot(ImmutableList.of()) : current;
+    }
+
+    /**
+     * Build the snapshot from the database.
+     *
+     * @return Snapshot, null if the webhooks cannot be loaded
+     */
+    private static Snapshot load() {
+        // Called by the event listeners, which are outside of a transaction
+        AtomicReference<List<WebhookDto>> webhookList = new AtomicReference<>();
+        TransactionUtil.handle(() -> webhookList.set(new WebhookDao().findByCriteria(new WebhookCriteria(), null)));
+        return webhookList.get() == null ? null : new Snapshot(webhookList.get());
+    }
+
+    /**
+     * Snapshot of the active webhooks.
+     */
+    private static class Snapshot {
+        /**
+         * Webhooks by ID.
+         */
+        private final Map<String, WebhookDto> webhookMap;
+
+        /**
+         * Webhooks by event name.
+         */
+        private final Map<String, List<WebhookDto>> webhookListMap;
+
+        /**
+         * Constructor.
+         *
+         * @param webhookList Active webhooks
+         */
+        private Snapshot(List<WebhookDto> webhookList) {
+            webhookMap = webhookList.stream()
+                    .collect(ImmutableMap.toImmutableMap(WebhookDto::getId, webhookDto -> webhookDto));
+            webhookListMap = ImmutableMap.copyOf(webhookList.stream()
+                    .collect(Collectors.groupingBy(WebhookDto::getEvent, ImmutableList.toImmutableList())));
+        }
+    }
+}
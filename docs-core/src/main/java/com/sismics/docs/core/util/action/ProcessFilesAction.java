@@ -1,15 +1,13 @@
 package com.sismics.docs.core.util.action;
 
+import com.sismics.docs.core.constant.FileProcessingLane;
 import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.dao.dto.DocumentDto;
 import com.sismics.docs.core.event.FileUpdatedAsyncEvent;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
-import com.sismics.docs.core.util.DirectoryUtil;
-import com.sismics.docs.core.util.EncryptionUtil;
 import com.sismics.docs.core.util.FileUtil;
-import com.sismics.util.context.ThreadLocalContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,17 +38,16 @@ public class ProcessFilesAction implements Action {
                 User user = userDao.getById(file.getUserId());
 
                 // Decrypt the file
-                Path storedFile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-                Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
+                Path unencryptedFile = FileUtil.decryptFile(file.getStorageId(), user.getPrivateKey());
 
                 // Start the asynchronous processing
-                FileUtil.startProcessingFile(file.getId());
                 FileUpdatedAsyncEvent event = new FileUpdatedAsyncEvent();
                 event.setUserId("admin");
                 event.setLanguage(documentDto.getLanguage());
                 event.setFileId(file.getId());
                 event.setUnencryptedFile(unencryptedFile);
-                ThreadLocalContext.get().addAsyncEvent(event);
+                event.setLane(FileProcessingLane.BULK);
+                FileUtil.startProcessingFile(event);
             }
         } catch (Exception e) {
             log.error("Error processing a file", e);
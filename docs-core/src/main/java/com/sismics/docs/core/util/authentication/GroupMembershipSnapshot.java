@@ -0,0 +1,48 @@
+package com.sismics.docs.core.util.authentication;
+
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.dao.GroupDao;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.TransactionalSnapshot;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory snapshot of the effective groups of each user, including parent groups at any depth.
+ * Built from the group closure table, the snapshot is dropped when the groups or memberships change
+ * and is not rebuilt until the changing transactions complete, so that it never holds uncommitted data.
+ * It also expires shortly, to see the changes made by other nodes.
+ */
+public class GroupMembershipSnapshot {
+    /**
+     * Time to live of the snapshot in milliseconds.
+     */
+    private static final long TTL = TimeUnit.SECONDS.toMillis(Math.max(ConfigUtil.getEnvLongValue(Constants.GROUP_MEMBERSHIP_CACHE_TTL_ENV, 60), 0));
+
+    /**
+     * Effective group IDs by user ID.
+     */
+    private static final TransactionalSnapshot<Map<String, Set<String>>> snapshot =
+            new TransactionalSnapshot<>(() -> new GroupDao().findEffectiveGroupIdMap(), TTL);
+
+    /**
+     * Returns the effective group IDs of a user.
+     *
+     * @param userId User ID
+     * @return Group IDs, including parent groups
+     */
+    public static Set<String> getGroupIdSet(String userId) {
+        return snapshot.get().getOrDefault(userId, Collections.emptySet());
+    }
+
+    /**
+     * Invalidate the snapshot, called in the transaction changing the groups or memberships.
+     * The snapshot is invalidated again when the transaction completes.
+     */
+    public static void invalidate() {
+        snapshot.invalidate();
+    }
+}
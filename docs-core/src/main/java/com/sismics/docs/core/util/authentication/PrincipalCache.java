@@ -0,0 +1,216 @@
+package com.sismics.docs.core.util.authentication;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the authenticated principals, by authentication token.
+ * Resolving the groups and base functions of a user takes several queries, this avoids running them on every request.
+ * Entries are invalidated when the tokens, users or group memberships change, and expire shortly anyway.
+ * The invalidation is repeated when the changing transaction completes,
+ * and a principal resolved before an invalidation is not cached, so that the old state is never cached again.
+ */
+public class PrincipalCache {
+    /**
+     * Time to live of the entries in seconds.
+     */
+    private static final long TTL = ConfigUtil.getEnvLongValue(Constants.PRINCIPAL_CACHE_TTL_ENV, 60);
+
+    /**
+     * Principals by authentication token.
+     */
+    private static final Cache<String, Entry> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(TTL > 0 ? ConfigUtil.getEnvLongValue(Constants.PRINCIPAL_CACHE_SIZE_ENV, 10000) : 0)
+            .expireAfterWrite(Math.max(TTL, 0), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+
+    /**
+     * Incremented on each invalidation, to discard the principals resolved concurrently.
+     */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /**
+     * Returns a cached principal.
+     *
+     * @param token Authentication token
+     * @return Principal or null if not cached
+     */
+    public static Entry get(String token) {
+        return CACHE.getIfPresent(token);
+    }
+
+    /**
+     * Returns the current invalidation generation, to be read before resolving a principal.
+     *
+     * @return Invalidation generation
+     */
+    public static long getGeneration() {
+        return GENERATION.get();
+    }
+
+    /**
+     * Cache a principal, unless an invalidation happened since it has been resolved.
+     *
+     * @param token Authentication token
+     * @param entry Principal
+     * @param generation Invalidation generation read before resolving the principal
+     */
+    public static void put(String token, Entry entry, long generation) {
+        CACHE.put(token, entry);
+        if (GENERATION.get() != generation) {
+            CACHE.invalidate(token);
+        }
+    }
+
+    /**
+     * Invalidate the principal of an authentication token.
+     *
+     * @param token Authentication token
+     */
+    public static void invalidateToken(String token) {
+        invalidate(() -> CACHE.invalidate(token));
+    }
+
+    /**
+     * Invalidate the principals of a user.
+     *
+     * @param userId User ID
+     */
+    public static void invalidateUser(String userId) {
+        invalidate(() -> CACHE.asMap().values().removeIf(entry -> entry.getUserId().equals(userId)));
+    }
+
+    /**
+     * Invalidate all the principals.
+     */
+    public static void invalidateAll() {
+        invalidate(CACHE::invalidateAll);
+    }
+
+    /**
+     * Run an invalidation now and again when the current transaction completes,
+     * since the principals resolved in the meantime still see the old state.
+     *
+     * @param invalidation Invalidation
+     */
+    private static void invalidate(Runnable invalidation) {
+        GENERATION.incrementAndGet();
+        invalidation.run();
+        TransactionUtil.afterCompletion(() -> {
+            GENERATION.incrementAndGet();
+            invalidation.run();
+        });
+    }
+
+    /**
+     * Returns the statistics of the principal cache.
+     *
+     * @return Cache statistics
+     */
+    public static CacheStats getStats() {
+        return CACHE.stats();
+    }
+
+    /**
+     * Returns the number of cached principals.
+     *
+     * @return Number of principals
+     */
+    public static long getSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * Authenticated principal.
+     */
+    public static class Entry {
+        /**
+         * User ID.
+         */
+        private final String userId;
+
+        /**
+         * Username.
+         */
+        private final String username;
+
+        /**
+         * User email.
+         */
+        private final String email;
+
+        /**
+         * IDs of the groups of the user, including parent groups.
+         */
+        private final Set<String> groupIdSet;
+
+        /**
+         * Base functions of the user.
+         */
+        private final Set<String> baseFunctionSet;
+
+        /**
+         * Expiry date of the authentication, null if it doesn't expire.
+         */
+        private final Date expiryDate;
+
+        /**
+         * Constructor.
+         *
+         * @param userId User ID
+         * @param username Username
+         * @param email User email
+         * @param groupIdSet IDs of the groups of the user, including parent groups
+         * @param baseFunctionSet Base functions of the user
+         * @param expiryDate Expiry date of the authentication, null if it doesn't expire
+         */
+        public Entry(String userId, String username, String email, Set<String> groupIdSet, Set<String> baseFunctionSet, Date expiryDate) {
+            this.userId = userId;
+            this.username = username;
+            this.email = email;
+            this.groupIdSet = ImmutableSet.copyOf(groupIdSet);
+            this.baseFunctionSet = ImmutableSet.copyOf(baseFunctionSet);
+            this.expiryDate = expiryDate;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public Set<String> getGroupIdSet() {
+            return groupIdSet;
+        }
+
+        public Set<String> getBaseFunctionSet() {
+            return baseFunctionSet;
+        }
+
+        /**
+         * Returns true if the authentication is expired.
+         *
+         * @return Authentication expired
+         */
+        public boolean isExpired() {
+            return expiryDate != null && new Date().getTime() >= expiryDate.getTime();
+        }
+    }
+}
@@ -40,6 +40,34 @@ public interface FormatHandler {
      */
     String extractContent(String language, Path file) throws Exception;
 
+    /**
+     * Open a processing session on a file, to generate its thumbnail and extract its content
+     * while parsing the file once.
+     * By default, the session generates the thumbnail and extracts the content from the file separately.
+     *
+     * @param file File
+     * @return Processing session, to close after use
+     * @throws Exception e
+     */
+    default FormatHandlerSession openSession(Path file) throws Exception {
+        return new FormatHandlerSession() {
+            @Override
+            public BufferedImage generateThumbnail() throws Exception {
+                return FormatHandler.this.generateThumbnail(file);
+            }
+
+            @Override
+            public String extractContent(String language) throws Exception {
+                return FormatHandler.this.extractContent(language, file);
+            }
+
+            @Override
+            public void close() {
+                // NOP
+            }
+        };
+    }
+
     /**
      * Append to a PDF.
      *
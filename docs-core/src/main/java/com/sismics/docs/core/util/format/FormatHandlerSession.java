@@ -0,0 +1,26 @@
+package com.sismics.docs.core.util.format;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A processing session on a file, opened by its format handler.
+ * The file is parsed once and shared by the thumbnail generation and the content extraction.
+ */
+public interface FormatHandlerSession extends AutoCloseable {
+    /**
+     * Generate a thumbnail.
+     *
+     * @return Thumbnail
+     * @throws Exception e
+     */
+    BufferedImage generateThumbnail() throws Exception;
+
+    /**
+     * Extract text content.
+     *
+     * @param language Language
+     * @return Text content
+     * @throws Exception e
+     */
+    String extractContent(String language) throws Exception;
+}
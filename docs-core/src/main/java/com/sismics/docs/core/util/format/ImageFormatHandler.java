@@ -4,7 +4,9 @@ import com.google.common.io.Closer;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.util.FileUtil;
 import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.ThumbnailUtil;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.util.ImageUtil;
 import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -39,9 +41,8 @@ public class ImageFormatHandler implements FormatHandler {
 
     @Override
     public BufferedImage generateThumbnail(Path file) throws Exception {
-        try (InputStream inputStream = Files.newInputStream(file)) {
-            return ImageIO.read(inputStream);
-        }
+        // Large photos are subsampled while decoding, only the "web" image size is needed
+        return ImageUtil.readImage(file, ThumbnailUtil.WEB_SIZE);
     }
 
     @Override
@@ -43,6 +43,12 @@ public class OdtFormatHandler implements FormatHandler {
         return new PdfFormatHandler().extractContent(language, getGeneratedPdf(file));
     }
 
+    @Override
+    public FormatHandlerSession openSession(Path file) throws Exception {
+        // Convert once, then use the PDF format handler
+        return new PdfFormatHandler().openSession(getGeneratedPdf(file));
+    }
+
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception {
         // Use the PDF format handler
@@ -4,10 +4,13 @@ import com.google.common.io.Closer;
 import com.sismics.docs.core.util.FileUtil;
 import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.context.PageOcrExecutor;
 import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.text.PDFTextStripper;
@@ -15,9 +18,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
-import java.io.InputStream;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * PDF format handler.
@@ -30,6 +36,16 @@ public class PdfFormatHandler implements FormatHandler {
      */
     private static final Logger log = LoggerFactory.getLogger(PdfFormatHandler.class);
 
+    /**
+     * Resolution of the pages rendered for OCR.
+     */
+    private static final int OCR_DPI = 300;
+
+    /**
+     * Maximum main memory used by a parsed PDF, the rest is stored in temporary files.
+     */
+    private static final long MAX_MAIN_MEMORY = 16 * 1024 * 1024;
+
     @Override
     public boolean accept(String mimeType) {
         return mimeType.equals(MimeType.APPLICATION_PDF);
@@ -37,18 +53,55 @@ public class PdfFormatHandler implements FormatHandler {
 
     @Override
     public BufferedImage generateThumbnail(Path file) throws Exception {
-        try (InputStream inputStream = Files.newInputStream(file);
-             PDDocument pdfDocument = PDDocument.load(inputStream)) {
-            PDFRenderer renderer = new PDFRenderer(pdfDocument);
-            return renderer.renderImage(0);
+        try (FormatHandlerSession session = openSession(file)) {
+            return session.generateThumbnail();
         }
     }
 
     @Override
     public String extractContent(String language, Path file) {
+        try (FormatHandlerSession session = openSession(file)) {
+            return session.extractContent(language);
+        } catch (Exception e) {
+            log.error("Error while extracting text from the PDF", e);
+            return null;
+        }
+    }
+
+    @Override
+    public FormatHandlerSession openSession(Path file) throws Exception {
+        // The PDF is parsed once, large documents spill to temporary files
+        PDDocument pdfDocument = PDDocument.load(file.toFile(), MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY));
+        PDFRenderer renderer = new PDFRenderer(pdfDocument);
+        return new FormatHandlerSession() {
+            @Override
+            public BufferedImage generateThumbnail() throws IOException {
+                return renderer.renderImage(0);
+            }
+
+            @Override
+            public String extractContent(String language) {
+                return PdfFormatHandler.this.extractContent(language, pdfDocument, renderer);
+            }
+
+            @Override
+            public void close() throws IOException {
+                pdfDocument.close();
+            }
+        };
+    }
+
+    /**
+     * Extract text content from a parsed PDF, OCR-izing its pages if it contains only images.
+     *
+     * @param language Language
+     * @param pdfDocument PDF document
+     * @param renderer Renderer of the PDF document
+     * @return Text content
+     */
+    private String extractContent(String language, PDDocument pdfDocument, PDFRenderer renderer) {
         String content = null;
-        try (InputStream inputStream = Files.newInputStream(file);
-             PDDocument pdfDocument = PDDocument.load(inputStream)) {
+        try {
             content = new PDFTextStripper().getText(pdfDocument);
         } catch (Exception e) {
             log.error("Error while extracting text from the PDF", e);
@@ -56,17 +109,43 @@ public class PdfFormatHandler implements FormatHandler {
 
         // No text content, try to OCR it
         if (language != null && content != null && content.trim().isEmpty() && ConfigUtil.getConfigBooleanValue(ConfigType.OCR_ENABLED, true)) {
-            StringBuilder sb = new StringBuilder();
-            try (InputStream inputStream = Files.newInputStream(file);
-                 PDDocument pdfDocument = PDDocument.load(inputStream)) {
-                PDFRenderer renderer = new PDFRenderer(pdfDocument);
-                for (int pageIndex = 0; pageIndex < pdfDocument.getNumberOfPages(); pageIndex++) {
-                    log.info("OCR page " + (pageIndex + 1) + "/" + pdfDocument.getNumberOfPages() + " of PDF file containing only images");
+            PageOcrExecutor pageOcrExecutor = AppContext.getInstance().getPageOcrExecutor();
+            List<Future<String>> pageList = new ArrayList<>();
+            try {
+                // Pages are rendered one after the other, the renderer is not thread-safe,
+                // while the previous pages are OCR-ized in parallel
+                int pageCount = pdfDocument.getNumberOfPages();
+                for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+                    PDRectangle cropBox = pdfDocument.getPage(pageIndex).getCropBox();
+                    int reservation = pageOcrExecutor.reserve(PageOcrExecutor.estimateMemory(
+                            Math.round(cropBox.getWidth() / 72 * OCR_DPI), Math.round(cropBox.getHeight() / 72 * OCR_DPI)));
+                    log.info("OCR page " + (pageIndex + 1) + "/" + pageCount + " of PDF file containing only images");
+                    long startTime = System.nanoTime();
+                    BufferedImage image;
+                    try {
+                        image = renderer.renderImageWithDPI(pageIndex, OCR_DPI, ImageType.GRAY);
+                    } catch (Exception e) {
+                        pageOcrExecutor.release(reservation);
+                        throw e;
+                    }
+                    pageList.add(pageOcrExecutor.submit(language, image, reservation, System.nanoTime() - startTime));
+                }
+
+                // Assemble the pages in order, a page which failed is left empty
+                StringBuilder sb = new StringBuilder();
+                for (int pageIndex = 0; pageIndex < pageList.size(); pageIndex++) {
                     sb.append(" ");
-                    sb.append(FileUtil.ocrFile(language, renderer.renderImageWithDPI(pageIndex, 300, ImageType.GRAY)));
+                    try {
+                        sb.append(pageList.get(pageIndex).get());
+                    } catch (ExecutionException e) {
+                        log.error("Error while OCR-izing the page " + (pageIndex + 1) + " of the PDF", e.getCause());
+                    }
                 }
                 return sb.toString();
             } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
                 log.error("Error while OCR-izing the PDF", e);
             }
         }
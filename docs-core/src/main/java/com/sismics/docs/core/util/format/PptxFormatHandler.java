@@ -16,6 +16,7 @@ import org.apache.poi.xslf.usermodel.XSLFSlide;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -53,6 +54,28 @@ public class PptxFormatHandler implements FormatHandler {
         return new SlideShowExtractor<>(pptx).getText();
     }
 
+    @Override
+    public FormatHandlerSession openSession(Path file) throws Exception {
+        XMLSlideShow pptx = loadPPtxFile(file);
+        return new FormatHandlerSession() {
+            @Override
+            public BufferedImage generateThumbnail() {
+                return pptx.getSlides().size() > 0 ? generateImageFromSlide(pptx, 0) : null;
+            }
+
+            @Override
+            public String extractContent(String language) {
+                return new SlideShowExtractor<>(pptx).getText();
+            }
+
+            @Override
+            public void close() throws IOException {
+                pptx.close();
+                slideShow = null;
+            }
+        };
+    }
+
     @Override
     public void appendToPdf(Path file, PDDocument doc, boolean fitImageToPage, int margin, MemoryUsageSetting memUsageSettings, Closer closer) throws Exception {
         XMLSlideShow pptx = loadPPtxFile(file);
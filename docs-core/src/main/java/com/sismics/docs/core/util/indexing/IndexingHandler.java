@@ -36,23 +36,49 @@ public interface IndexingHandler {
     void shutDown();
 
     /**
-     * Clear the index.
+     * Start rebuilding the index.
+     * The current index is still searched until the rebuild is finished,
+     * and an interrupted rebuild is resumed from its saved progress.
+     *
+     * @return Rebuild progress, null if a rebuild is already running
+     * @throws Exception e
+     */
+    RebuildIndexProgress startRebuild() throws Exception;
+
+    /**
+     * Index a page of documents in the index being rebuilt.
+     *
+     * @param documentList Documents, ordered by ID
+     * @throws Exception e
+     */
+    void rebuildDocuments(List<Document> documentList) throws Exception;
+
+    /**
+     * Index a page of files in the index being rebuilt.
+     *
+     * @param fileList Files, ordered by ID
+     * @throws Exception e
      */
-    void clearIndex();
+    void rebuildFiles(List<File> fileList) throws Exception;
 
     /**
-     * Index a list of documents.
+     * Replace the current index with the rebuilt one.
      *
-     * @param documentList All documents
+     * @throws Exception e
+     */
+    void finishRebuild() throws Exception;
+
+    /**
+     * Stop the rebuild, keeping its saved progress.
      */
-    void createDocuments(List<Document> documentList);
+    void abortRebuild();
 
     /**
-     * Index a list of files.
+     * Returns the progress of the running rebuild.
      *
-     * @param fileList All files
+     * @return Rebuild progress, null if no rebuild is running
      */
-    void createFiles(List<File> fileList);
+    RebuildIndexProgress getRebuildProgress();
 
     /**
      * Index a new document.
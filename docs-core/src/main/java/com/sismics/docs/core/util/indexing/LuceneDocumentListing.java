@@ -0,0 +1,253 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.google.common.collect.Sets;
+import com.sismics.docs.core.constant.AclTargetType;
+import com.sismics.docs.core.constant.PermType;
+import com.sismics.docs.core.dao.AclDao;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.RouteStepDao;
+import com.sismics.docs.core.dao.TagDao;
+import com.sismics.docs.core.dao.criteria.DocumentCriteria;
+import com.sismics.docs.core.dao.criteria.TagCriteria;
+import com.sismics.docs.core.dao.dto.AclDto;
+import com.sismics.docs.core.dao.dto.RouteStepDto;
+import com.sismics.docs.core.dao.dto.TagDto;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.util.SecurityUtil;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Document listing in Lucene.
+ * Permissions, tags, dates and other listing criteria are indexed on documents,
+ * so that filtering, sorting and counting documents can be done in the index.
+ */
+public class LuceneDocumentListing {
+    /**
+     * Commit user data key marking an index built with the listing fields.
+     */
+    static final String COMMIT_DATA_KEY = "listing";
+
+    /**
+     * Listing fields.
+     */
+    private static final String READER_ID = "reader_id";
+    private static final String TAG_ID = "tag_id";
+    private static final String CREATE_DATE = "create_date";
+    private static final String UPDATE_DATE = "update_date";
+    private static final String LANGUAGE = "language";
+    private static final String CREATOR_ID = "creator_id";
+    private static final String MIME_TYPE = "mime_type";
+    private static final String TITLE_EXACT = "title_exact";
+    private static final String SHARED = "shared";
+    private static final String ROUTE_TARGET_ID = "route_target_id";
+
+    /**
+     * Add the listing fields to an indexed document.
+     * The database is read, so this must be called in a transactional context.
+     *
+     * @param luceneDocument Lucene document
+     * @param document Document
+     */
+    static void addFields(org.apache.lucene.document.Document luceneDocument, Document document) {
+        // Readers, and shared status
+        AclDao aclDao = new AclDao();
+        boolean shared = false;
+        for (AclDto aclDto : aclDao.getBySourceId(document.getId(), null)) {
+            if (aclDto.getPerm() == PermType.READ) {
+                luceneDocument.add(new StringField(READER_ID, aclDto.getTargetId(), Field.Store.NO));
+            }
+            if (AclTargetType.SHARE.name().equals(aclDto.getTargetType())) {
+                shared = true;
+            }
+        }
+        if (shared) {
+            luceneDocument.add(new StringField(SHARED, "true", Field.Store.NO));
+        }
+
+        // Tags
+        TagDao tagDao = new TagDao();
+        for (TagDto tagDto : tagDao.findByCriteria(new TagCriteria().setDocumentId(document.getId()), null)) {
+            luceneDocument.add(new StringField(TAG_ID, tagDto.getId(), Field.Store.NO));
+        }
+
+        // MIME types of the files
+        FileDao fileDao = new FileDao();
+        Set<String> mimeTypeSet = Sets.newHashSet();
+        for (File file : fileDao.getByDocumentId(null, document.getId())) {
+            if (file.getMimeType() != null && mimeTypeSet.add(file.getMimeType())) {
+                luceneDocument.add(new StringField(MIME_TYPE, file.getMimeType(), Field.Store.NO));
+            }
+        }
+
+        // Target of the current route step
+        RouteStepDao routeStepDao = new RouteStepDao();
+        RouteStepDto routeStepDto = routeStepDao.getCurrentStep(document.getId());
+        if (routeStepDto != null) {
+            luceneDocument.add(new StringField(ROUTE_TARGET_ID, routeStepDto.getTargetId(), Field.Store.NO));
+        }
+
+        // Document fields
+        addDateField(luceneDocument, CREATE_DATE, document.getCreateDate());
+        addDateField(luceneDocument, UPDATE_DATE, document.getUpdateDate());
+        luceneDocument.add(new StringField(LANGUAGE, document.getLanguage(), Field.Store.NO));
+        luceneDocument.add(new SortedDocValuesField(LANGUAGE, new BytesRef(document.getLanguage())));
+        luceneDocument.add(new StringField(CREATOR_ID, document.getUserId(), Field.Store.NO));
+        luceneDocument.add(new StringField(TITLE_EXACT, document.getTitle(), Field.Store.NO));
+        luceneDocument.add(new SortedDocValuesField(TITLE_EXACT, new BytesRef(document.getTitle())));
+    }
+
+    /**
+     * Add an indexed and sortable date field.
+     *
+     * @param luceneDocument Lucene document
+     * @param name Field name
+     * @param date Date
+     */
+    private static void addDateField(org.apache.lucene.document.Document luceneDocument, String name, Date date) {
+        luceneDocument.add(new LongPoint(name, date.getTime()));
+        luceneDocument.add(new NumericDocValuesField(name, date.getTime()));
+    }
+
+    /**
+     * Returns the sort matching the SQL sort criteria, or null if the column cannot be sorted in the index.
+     *
+     * @param sortCriteria Sort criteria
+     * @return Sort or null
+     */
+    static Sort getSort(SortCriteria sortCriteria) {
+        if (sortCriteria == null) {
+            return Sort.INDEXORDER;
+        }
+
+        boolean reverse = !sortCriteria.isAsc();
+        SortField sortField;
+        switch (sortCriteria.getColumn()) {
+            case 1:
+                sortField = new SortField(TITLE_EXACT, SortField.Type.STRING, reverse);
+                break;
+            case 3:
+                sortField = new SortField(CREATE_DATE, SortField.Type.LONG, reverse);
+                break;
+            case 4:
+                sortField = new SortField(LANGUAGE, SortField.Type.STRING, reverse);
+                break;
+            case 8:
+                sortField = new SortField(UPDATE_DATE, SortField.Type.LONG, reverse);
+                break;
+            default:
+                return null;
+        }
+        return new Sort(sortField, SortField.FIELD_DOC);
+    }
+
+    /**
+     * Build the listing query on documents.
+     *
+     * @param criteria Search criteria
+     * @param documentIdSet IDs of the documents matching the fulltext search, null if no fulltext search
+     * @return Query
+     */
+    static Query buildQuery(DocumentCriteria criteria, Set<String> documentIdSet) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("doctype", "document")), BooleanClause.Occur.FILTER);
+
+        // Read permission is enough for searching, directly or through a tag
+        if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
+            TagDao tagDao = new TagDao();
+            List<String> readableTagIdList = tagDao.findByCriteria(new TagCriteria().setTargetIdList(criteria.getTargetIdList()), null)
+                    .stream()
+                    .map(TagDto::getId)
+                    .collect(Collectors.toList());
+            builder.add(new BooleanQuery.Builder()
+                    .add(termInSet(READER_ID, criteria.getTargetIdList()), BooleanClause.Occur.SHOULD)
+                    .add(termInSet(TAG_ID, readableTagIdList), BooleanClause.Occur.SHOULD)
+                    .setMinimumNumberShouldMatch(1)
+                    .build(), BooleanClause.Occur.FILTER);
+        }
+        if (documentIdSet != null) {
+            builder.add(termInSet("id", documentIdSet), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getCreateDateMin() != null || criteria.getCreateDateMax() != null) {
+            builder.add(dateRange(CREATE_DATE, criteria.getCreateDateMin(), criteria.getCreateDateMax()), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getUpdateDateMin() != null || criteria.getUpdateDateMax() != null) {
+            builder.add(dateRange(UPDATE_DATE, criteria.getUpdateDateMin(), criteria.getUpdateDateMax()), BooleanClause.Occur.FILTER);
+        }
+        if (!criteria.getTitleList().isEmpty()) {
+            builder.add(termInSet(TITLE_EXACT, criteria.getTitleList()), BooleanClause.Occur.FILTER);
+        }
+        for (List<String> tagIdList : criteria.getTagIdList()) {
+            builder.add(termInSet(TAG_ID, tagIdList), BooleanClause.Occur.FILTER);
+        }
+        for (List<String> tagIdList : criteria.getExcludedTagIdList()) {
+            for (String tagId : tagIdList) {
+                builder.add(new TermQuery(new Term(TAG_ID, tagId)), BooleanClause.Occur.MUST_NOT);
+            }
+        }
+        if (criteria.getShared() != null && criteria.getShared()) {
+            builder.add(new TermQuery(new Term(SHARED, "true")), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getMimeType() != null) {
+            builder.add(new TermQuery(new Term(MIME_TYPE, criteria.getMimeType())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getLanguage() != null) {
+            builder.add(new TermQuery(new Term(LANGUAGE, criteria.getLanguage())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getCreatorId() != null) {
+            builder.add(new TermQuery(new Term(CREATOR_ID, criteria.getCreatorId())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getActiveRoute() != null && criteria.getActiveRoute()) {
+            builder.add(termInSet(ROUTE_TARGET_ID, criteria.getTargetIdList()), BooleanClause.Occur.FILTER);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Build a query matching any of the values.
+     *
+     * @param field Field
+     * @param valueList Values
+     * @return Query
+     */
+    private static Query termInSet(String field, Collection<String> valueList) {
+        return new TermInSetQuery(field, valueList.stream()
+                .map(BytesRef::new)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Build an inclusive date range query.
+     *
+     * @param field Field
+     * @param min Minimum date, can be null
+     * @param max Maximum date, can be null
+     * @return Query
+     */
+    private static Query dateRange(String field, Date min, Date max) {
+        return LongPoint.newRangeQuery(field,
+                min == null ? Long.MIN_VALUE : min.getTime(),
+                max == null ? Long.MAX_VALUE : max.getTime());
+    }
+}
@@ -0,0 +1,342 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.util.TransactionUtil;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NoLockFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Index rebuild into a shadow index.
+ * Lucene documents are built in parallel and committed in large batches along with the progress,
+ * so that an interrupted rebuild can be resumed from the last commit.
+ * Documents changed in the current index during the rebuild are tracked, to be reindexed once the shadow index is swapped in.
+ */
+class LuceneIndexRebuild {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(LuceneIndexRebuild.class);
+
+    /**
+     * Commit user data key of the IDs changed during the rebuild.
+     */
+    private static final String DIRTY_ID_KEY = "rebuild_dirty_ids";
+
+    /**
+     * Path of the shadow index, null if stored in memory.
+     */
+    private final Path path;
+
+    /**
+     * Shadow index directory.
+     */
+    private final Directory directory;
+
+    /**
+     * Shadow index writer.
+     */
+    private final IndexWriter indexWriter;
+
+    /**
+     * Rebuild progress.
+     */
+    private final RebuildIndexProgress progress;
+
+    /**
+     * Listing mode of the shadow index.
+     */
+    private final boolean listingEnabled;
+
+    /**
+     * Number of changes triggering a commit.
+     */
+    private final int commitSize;
+
+    /**
+     * Number of changes since the last commit.
+     */
+    private int uncommittedCount;
+
+    /**
+     * IDs changed in the current index during the rebuild.
+     */
+    private final Set<String> dirtyIdSet = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Executor building the Lucene documents.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int threadCount;
+
+    /**
+     * Open a shadow index, resuming the previous rebuild if its progress is saved.
+     *
+     * @param path Path of the shadow index, null to store it in memory
+     * @param listingEnabled Listing mode of the shadow index
+     * @param threadCount Number of worker threads
+     * @param commitSize Number of changes triggering a commit
+     * @throws IOException e
+     */
+    LuceneIndexRebuild(Path path, boolean listingEnabled, int threadCount, int commitSize) throws IOException {
+        this.path = path;
+        this.listingEnabled = listingEnabled;
+        this.threadCount = Math.max(threadCount, 1);
+        this.commitSize = Math.max(commitSize, 1);
+        directory = path == null ? new ByteBuffersDirectory() : new NIOFSDirectory(path, NoLockFactory.INSTANCE);
+
+        // Resume from the last commit if it has been made in the same listing mode
+        RebuildIndexProgress savedProgress = null;
+        if (DirectoryReader.indexExists(directory)) {
+            Map<String, String> commitData = SegmentInfos.readLatestCommit(directory).getUserData();
+            if (Boolean.toString(listingEnabled).equals(commitData.get(LuceneDocumentListing.COMMIT_DATA_KEY))) {
+                savedProgress = RebuildIndexProgress.fromCommitData(commitData);
+            }
+            if (savedProgress != null && commitData.containsKey(DIRTY_ID_KEY)) {
+                dirtyIdSet.addAll(Splitter.on(',').omitEmptyStrings().splitToList(commitData.get(DIRTY_ID_KEY)));
+            }
+        }
+        progress = savedProgress == null ? new RebuildIndexProgress() : savedProgress;
+
+        // Large buffers, merges are done while indexing
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setOpenMode(savedProgress == null ? IndexWriterConfig.OpenMode.CREATE : IndexWriterConfig.OpenMode.APPEND);
+        config.setRAMBufferSizeMB(128);
+        config.setCommitOnClose(false);
+        indexWriter = new IndexWriter(directory, config);
+
+        executor = Executors.newFixedThreadPool(this.threadCount, new ThreadFactoryBuilder()
+                .setNameFormat("lucene-rebuild-%d")
+                .setDaemon(true)
+                .build());
+
+        if (savedProgress != null) {
+            log.info("Resuming the index rebuild started on {}, {} documents and {} files already indexed",
+                    progress.getStartDate(), progress.getDocumentCount(), progress.getFileCount());
+        }
+    }
+
+    /**
+     * Returns true if an interrupted rebuild is saved in a shadow index.
+     *
+     * @param path Path of the shadow index
+     * @return True if a rebuild can be resumed
+     */
+    static boolean isResumable(Path path) {
+        try (Directory directory = new NIOFSDirectory(path, NoLockFactory.INSTANCE)) {
+            return DirectoryReader.indexExists(directory)
+                    && RebuildIndexProgress.fromCommitData(SegmentInfos.readLatestCommit(directory).getUserData()) != null;
+        } catch (Exception e) {
+            log.warn("Unable to read the shadow index, it will be discarded", e);
+            return false;
+        }
+    }
+
+    /**
+     * Delete the files of a shadow index.
+     *
+     * @param path Path of the shadow index
+     * @throws IOException e
+     */
+    static void delete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(path)) {
+            stream.sorted(Comparator.reverseOrder())
+                    .filter(p -> !p.equals(path))
+                    .map(Path::toFile)
+                    .forEach(java.io.File::delete);
+        }
+    }
+
+    /**
+     * Build Lucene documents in parallel and add them to the shadow index.
+     * The database is read in a transaction per worker.
+     *
+     * @param entityList Entities to index
+     * @param converter Lucene document builder
+     * @param <T> Entity type
+     * @throws Exception e
+     */
+    <T> void index(List<T> entityList, Function<T, org.apache.lucene.document.Document> converter) throws Exception {
+        if (entityList.isEmpty()) {
+            return;
+        }
+
+        List<Future<Exception>> futureList = new ArrayList<>();
+        int chunkSize = (entityList.size() + threadCount - 1) / threadCount;
+        for (List<T> chunk : Lists.partition(entityList, chunkSize)) {
+            futureList.add(executor.submit(() -> {
+                Exception[] error = new Exception[1];
+                TransactionUtil.handle(() -> {
+                    for (T entity : chunk) {
+                        try {
+                            indexWriter.addDocument(converter.apply(entity));
+                        } catch (IOException e) {
+                            // The writer cannot be used anymore
+                            error[0] = e;
+                            return;
+                        } catch (Exception e) {
+                            log.error("Error indexing " + entity, e);
+                        }
+                    }
+                });
+                return error[0];
+            }));
+        }
+        for (Future<Exception> future : futureList) {
+            Exception e = future.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Count indexed changes, and commit them with the progress if enough are pending.
+     *
+     * @param count Number of changes
+     * @throws IOException e
+     */
+    void onIndexed(int count) throws IOException {
+        uncommittedCount += count;
+        if (uncommittedCount >= commitSize) {
+            commit();
+        }
+    }
+
+    /**
+     * Commit the shadow index with the progress.
+     *
+     * @throws IOException e
+     */
+    void commit() throws IOException {
+        Map<String, String> commitData = progress.toCommitData();
+        commitData.put(LuceneDocumentListing.COMMIT_DATA_KEY, Boolean.toString(listingEnabled));
+        commitData.put(DIRTY_ID_KEY, Joiner.on(',').join(dirtyIdSet));
+        indexWriter.setLiveCommitData(commitData.entrySet());
+        indexWriter.commit();
+        uncommittedCount = 0;
+        log.info("Index rebuild progress: {}/{} documents, {}/{} files", progress.getDocumentCount(), progress.getDocumentTotal(),
+                progress.getFileCount(), progress.getFileTotal());
+    }
+
+    /**
+     * Track a change made to the current index during the rebuild.
+     *
+     * @param id Document or file ID
+     */
+    void markDirty(String id) {
+        dirtyIdSet.add(id);
+    }
+
+    /**
+     * Returns the IDs changed in the current index during the rebuild.
+     *
+     * @return Document and file IDs
+     */
+    Set<String> getDirtyIdSet() {
+        return dirtyIdSet;
+    }
+
+    /**
+     * Commit and close the shadow index writer, the shadow directory stays open to be copied.
+     *
+     * @throws IOException e
+     */
+    void finish() throws IOException {
+        shutDownExecutor();
+        commit();
+        indexWriter.close();
+    }
+
+    /**
+     * Close the shadow index without committing, the progress of the last commit is kept.
+     */
+    void abort() {
+        shutDownExecutor();
+        try {
+            if (indexWriter.isOpen()) {
+                indexWriter.rollback();
+            }
+        } catch (IOException e) {
+            log.error("Error closing the shadow index writer", e);
+        }
+        closeDirectory();
+    }
+
+    /**
+     * Close and delete the shadow index.
+     *
+     * @throws IOException e
+     */
+    void close() throws IOException {
+        closeDirectory();
+        if (path != null) {
+            delete(path);
+        }
+    }
+
+    /**
+     * Close the shadow directory.
+     */
+    private void closeDirectory() {
+        try {
+            directory.close();
+        } catch (IOException e) {
+            log.error("Error closing the shadow index directory", e);
+        }
+    }
+
+    /**
+     * Stop the worker threads.
+     */
+    private void shutDownExecutor() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            // NOP
+        }
+    }
+
+    Directory getDirectory() {
+        return directory;
+    }
+
+    RebuildIndexProgress getProgress() {
+        return progress;
+    }
+}
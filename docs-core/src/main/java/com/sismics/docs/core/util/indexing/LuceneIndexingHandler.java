@@ -4,9 +4,14 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.criteria.DocumentCriteria;
 import com.sismics.docs.core.dao.dto.DocumentDto;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
@@ -14,13 +19,18 @@ import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Config;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.SecurityUtil;
+import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
 import com.sismics.docs.core.util.jpa.QueryParam;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.ClasspathScanner;
+import com.sismics.util.EnvironmentUtil;
+import com.sismics.util.jpa.EMF;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Field;
@@ -36,15 +46,15 @@ import org.apache.lucene.queryparser.simple.SimpleQueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.QueryScorer;
 import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
 import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
-import org.apache.lucene.search.spell.LuceneDictionary;
-import org.apache.lucene.search.suggest.Lookup;
-import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.NoLockFactory;
@@ -57,16 +67,27 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Lucene indexing handler.
- * Documents and files are indexed in Lucene, but only used for fulltext search.
- * Other search criteria are still using the database.
+ * Documents and files are indexed in Lucene, by default only used for fulltext search,
+ * other search criteria are still using the database.
+ * In listing mode, all search criteria are applied in Lucene and the database is only
+ * used to fetch the documents of the returned page.
+ * Searches are served by a near-real-time searcher refreshed in background,
+ * and commits to the directory are batched according to the durability mode.
  *
  * @author bgamard
  */
@@ -77,20 +98,90 @@ public class LuceneIndexingHandler implements IndexingHandler {
      */
     private static final Logger log = LoggerFactory.getLogger(LuceneIndexingHandler.class);
 
+    /**
+     * Stored fields needed to identify a hit.
+     */
+    private static final Set<String> ID_FIELD_SET = Sets.newHashSet("id", "doctype", "document_id");
+
+    /**
+     * Stored fields needed to highlight a hit.
+     */
+    private static final Set<String> CONTENT_FIELD_SET = Sets.newHashSet("content");
+
     /**
      * Lucene directory.
      */
     private Directory directory;
 
     /**
-     * Directory reader.
+     * Index writer, reopened if a swap fails.
+     */
+    private volatile IndexWriter indexWriter;
+
+    /**
+     * Near-real-time searcher manager, fed from the index writer.
+     */
+    private volatile SearcherManager searcherManager;
+
+    /**
+     * Executor refreshing the searcher manager and committing the index writer periodically.
+     */
+    private ScheduledExecutorService maintenanceExecutor;
+
+    /**
+     * Lock preventing refreshes and commits while the index is swapped with a rebuilt one.
+     */
+    private final ReentrantLock swapLock = new ReentrantLock();
+
+    /**
+     * Index rebuild in progress, null if none.
+     */
+    private volatile LuceneIndexRebuild rebuild;
+
+    /**
+     * Path of the index being rebuilt, null if stored in memory.
+     */
+    private Path rebuildPath;
+
+    /**
+     * Suggester on document titles.
+     */
+    private TitleSuggester titleSuggester;
+
+    /**
+     * Durability mode.
+     */
+    private Durability durability;
+
+    /**
+     * True if documents are filtered, sorted and counted in the index.
+     */
+    private boolean listingEnabled;
+
+    /**
+     * Maximum number of hits collected by a fulltext search.
+     */
+    private int maxHits;
+
+    /**
+     * Number of uncommitted changes triggering a commit.
+     */
+    private int commitMaxChanges;
+
+    /**
+     * Number of changes since the last commit.
+     */
+    private final AtomicInteger uncommittedChangeCount = new AtomicInteger();
+
+    /**
+     * Number of threads building Lucene documents during a rebuild.
      */
-    private DirectoryReader directoryReader;
+    private int rebuildThreadCount;
 
     /**
-     * Index writer.
+     * Number of Lucene documents committed at once during a rebuild.
      */
-    private IndexWriter indexWriter;
+    private int rebuildCommitSize;
 
     @Override
     public boolean accept() {
@@ -102,6 +193,20 @@ public class LuceneIndexingHandler implements IndexingHandler {
     public void startUp() throws Exception {
         try {
             initLucene();
+
+            if (rebuildPath != null && LuceneIndexRebuild.isResumable(rebuildPath)) {
+                // A rebuild has been interrupted, resume it
+                log.info("An index rebuild has been interrupted, scheduling its resumption");
+                RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
+                AppContext.getInstance().getAsyncEventBus().post(rebuildIndexAsyncEvent);
+            } else if (listingEnabled && !isListingIndexed()) {
+                // An index built without the listing fields needs to be rebuilt
+                log.info("The index doesn't contain the listing fields, scheduling a full reindex");
+                RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
+                AppContext.getInstance().getAsyncEventBus().post(rebuildIndexAsyncEvent);
+            } else if (!listingEnabled) {
+                setListingIndexed(false);
+            }
         } catch (Exception e) {
             // An error occurred initializing Lucene, the index is out of date or broken, delete everything
             log.info("Unable to initialize Lucene, cleaning up the index: " + e.getMessage());
@@ -126,18 +231,17 @@ public class LuceneIndexingHandler implements IndexingHandler {
         // RAM directory storage by default
         if (luceneStorage == null || luceneStorage.equals("RAM")) {
             directory = new RAMDirectory();
+            rebuildPath = null;
             log.info("Using RAM Lucene storage");
         } else if (luceneStorage.equals("FILE")) {
             Path luceneDirectory = DirectoryUtil.getLuceneDirectory();
             log.info("Using file Lucene storage: {}", luceneDirectory);
             directory = new NIOFSDirectory(luceneDirectory, NoLockFactory.INSTANCE);
+            rebuildPath = DirectoryUtil.getLuceneRebuildDirectory();
         }
 
         // Create an index writer
-        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
-        config.setCommitOnClose(true);
-        config.setMergeScheduler(new ConcurrentMergeScheduler());
-        indexWriter = new IndexWriter(directory, config);
+        indexWriter = newIndexWriter();
 
         // Check index version and rebuild it if necessary
         if (DirectoryReader.indexExists(directory)) {
@@ -149,15 +253,74 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 }
             }
         }
+
+        // Changes must be visible immediately in unit tests
+        durability = EnvironmentUtil.isUnitTest() ? Durability.SYNC
+                : ConfigUtil.getEnvEnumValue(Constants.LUCENE_DURABILITY_ENV, Durability.BATCH);
+        commitMaxChanges = ConfigUtil.getEnvIntegerValue(Constants.LUCENE_COMMIT_MAX_CHANGES_ENV, 1000);
+        maxHits = Math.max(ConfigUtil.getEnvIntegerValue(Constants.LUCENE_MAX_HITS_ENV, 10000), 1);
+        listingEnabled = ConfigUtil.getEnvBooleanValue(Constants.LUCENE_LISTING_ENV, false);
+        long maxStaleness = ConfigUtil.getEnvLongValue(Constants.LUCENE_MAX_STALENESS_ENV, 1000);
+        long commitInterval = ConfigUtil.getEnvLongValue(Constants.LUCENE_COMMIT_INTERVAL_ENV, 10);
+        rebuildThreadCount = ConfigUtil.getEnvIntegerValue(Constants.LUCENE_REBUILD_THREADS_ENV, Runtime.getRuntime().availableProcessors());
+        rebuildCommitSize = ConfigUtil.getEnvIntegerValue(Constants.LUCENE_REBUILD_COMMIT_SIZE_ENV, 50000);
+        log.info("Lucene durability mode: {}, max staleness: {}ms, commit interval: {}s, commit max changes: {}, listing: {}",
+                durability, maxStaleness, commitInterval, commitMaxChanges, listingEnabled);
+
+        // Start the near-real-time searcher and refresh it in background
+        searcherManager = new SearcherManager(indexWriter, null);
+        maintenanceExecutor = Executors.newScheduledThreadPool(2, new ThreadFactoryBuilder()
+                .setNameFormat("lucene-maintenance-%d")
+                .setDaemon(true)
+                .build());
+        maxStaleness = Math.max(maxStaleness, 1);
+        maintenanceExecutor.scheduleWithFixedDelay(this::refresh, maxStaleness, maxStaleness, TimeUnit.MILLISECONDS);
+
+        // Commit the pending changes periodically
+        if (durability == Durability.BATCH) {
+            maintenanceExecutor.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, TimeUnit.SECONDS);
+        }
+
+        // Build the title suggester in background
+        titleSuggester = new TitleSuggester(() -> searcherManager,
+                ConfigUtil.getEnvIntegerValue(Constants.LUCENE_SUGGESTER_REBUILD_THRESHOLD_ENV, 100),
+                ConfigUtil.getEnvLongValue(Constants.LUCENE_SUGGESTER_MAX_MEMORY_ENV, 64) * 1024 * 1024,
+                EnvironmentUtil.isUnitTest());
+        titleSuggester.startUp();
+    }
+
+    /**
+     * Open an index writer on the last commit of the directory.
+     *
+     * @return Index writer
+     * @throws IOException e
+     */
+    private IndexWriter newIndexWriter() throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setCommitOnClose(true);
+        config.setMergeScheduler(new ConcurrentMergeScheduler());
+        return new IndexWriter(directory, config);
     }
 
     @Override
     public void shutDown() {
-        if (directoryReader != null) {
+        abortRebuild();
+        if (titleSuggester != null) {
+            titleSuggester.shutDown();
+        }
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdown();
             try {
-                directoryReader.close();
+                maintenanceExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // NOP
+            }
+        }
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
             } catch (IOException e) {
-                log.error("Error closing the index reader", e);
+                log.error("Error closing the searcher manager", e);
             }
         }
         if (indexWriter != null) {
@@ -177,33 +340,170 @@ public class LuceneIndexingHandler implements IndexingHandler {
     }
 
     @Override
-    public void clearIndex() {
-        handle(IndexWriter::deleteAll);
+    public synchronized RebuildIndexProgress startRebuild() throws Exception {
+        if (rebuild != null) {
+            return null;
+        }
+
+        rebuild = new LuceneIndexRebuild(rebuildPath, listingEnabled, rebuildThreadCount, rebuildCommitSize);
+        return rebuild.getProgress();
+    }
+
+    @Override
+    public void rebuildDocuments(List<Document> documentList) throws Exception {
+        LuceneIndexRebuild rebuild = getRebuild();
+        rebuild.index(documentList, this::getDocumentFromDocument);
+        if (!documentList.isEmpty()) {
+            rebuild.getProgress().setLastDocumentId(documentList.get(documentList.size() - 1).getId());
+            rebuild.getProgress().addDocumentCount(documentList.size());
+        }
+        rebuild.onIndexed(documentList.size());
     }
 
     @Override
-    public void createDocuments(List<Document> documentList) {
-        handle(indexWriter -> {
-            for (Document document : documentList) {
-                org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
-                indexWriter.addDocument(luceneDocument);
-            }
-        });
+    public void rebuildFiles(List<File> fileList) throws Exception {
+        LuceneIndexRebuild rebuild = getRebuild();
+        rebuild.index(fileList, this::getDocumentFromFile);
+        if (!fileList.isEmpty()) {
+            rebuild.getProgress().setLastFileId(fileList.get(fileList.size() - 1).getId());
+            rebuild.getProgress().addFileCount(fileList.size());
+        }
+        rebuild.onIndexed(fileList.size());
     }
 
     @Override
-    public void createFiles(List<File> fileList) {
-        handle(indexWriter -> {
-            for (File file : fileList) {
-                org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
-                indexWriter.addDocument(luceneDocument);
+    public void finishRebuild() throws Exception {
+        LuceneIndexRebuild rebuild = getRebuild();
+        rebuild.getProgress().setPhase(RebuildIndexProgress.Phase.SWAP);
+        rebuild.finish();
+
+        // Searchers keep using the current index until the rebuilt one is fully copied
+        long startTime = System.currentTimeMillis();
+        Set<String> dirtyIdSet = rebuild.getDirtyIdSet();
+        swapLock.lock();
+        try {
+            // The pending changes are committed first, a failed swap is rolled back to this commit
+            uncommittedChangeCount.set(0);
+            indexWriter.commit();
+
+            replaceIndex(indexWriter, rebuild.getDirectory());
+            setListingIndexed(listingEnabled);
+
+            // Changes made during the rebuild may be missing from the rebuilt index, reindex them
+            reindex(dirtyIdSet);
+
+            indexWriter.commit();
+            searcherManager.maybeRefreshBlocking();
+            log.info("Rebuilt index swapped in {}ms, {} changes reindexed", System.currentTimeMillis() - startTime, dirtyIdSet.size());
+        } catch (Exception e) {
+            log.error("Error swapping the rebuilt index, restoring the current index", e);
+            restoreIndex();
+
+            // Changes made during the swap have been rolled back with it
+            this.rebuild = null;
+            reindex(dirtyIdSet);
+
+            // The shadow index is kept to retry the swap
+            rebuild.abort();
+            throw e;
+        } finally {
+            this.rebuild = null;
+            swapLock.unlock();
+        }
+        rebuild.close();
+        titleSuggester.onIndexReplaced();
+    }
+
+    /**
+     * Replace the documents of the current index with the ones of the rebuilt index, without committing.
+     *
+     * @param indexWriter Index writer of the current index
+     * @param rebuiltDirectory Directory of the rebuilt index
+     * @throws IOException e
+     */
+    void replaceIndex(IndexWriter indexWriter, Directory rebuiltDirectory) throws IOException {
+        indexWriter.deleteAll();
+        indexWriter.addIndexes(rebuiltDirectory);
+    }
+
+    /**
+     * Discard the uncommitted changes of the index writer, and reopen it with its searcher manager on the last commit.
+     */
+    private void restoreIndex() {
+        try {
+            indexWriter.rollback();
+            SearcherManager previousSearcherManager = searcherManager;
+            indexWriter = newIndexWriter();
+            searcherManager = new SearcherManager(indexWriter, null);
+            previousSearcherManager.close();
+        } catch (IOException e) {
+            log.error("Error restoring the index, a full reindex is needed", e);
+        }
+    }
+
+    @Override
+    public synchronized void abortRebuild() {
+        LuceneIndexRebuild rebuild = this.rebuild;
+        if (rebuild != null) {
+            this.rebuild = null;
+            rebuild.abort();
+        }
+    }
+
+    @Override
+    public RebuildIndexProgress getRebuildProgress() {
+        LuceneIndexRebuild rebuild = this.rebuild;
+        return rebuild == null ? null : rebuild.getProgress();
+    }
+
+    /**
+     * Returns the rebuild in progress.
+     *
+     * @return Index rebuild
+     */
+    private LuceneIndexRebuild getRebuild() {
+        LuceneIndexRebuild rebuild = this.rebuild;
+        if (rebuild == null) {
+            throw new IllegalStateException("No index rebuild in progress");
+        }
+        return rebuild;
+    }
+
+    /**
+     * Reindex documents or files from the database.
+     *
+     * @param idSet Document or file IDs
+     */
+    private void reindex(Set<String> idSet) {
+        TransactionUtil.handle(() -> {
+            for (String id : idSet) {
+                reindex(id);
             }
         });
     }
 
+    /**
+     * Reindex a document or a file from the database.
+     *
+     * @param id Document or file ID
+     */
+    private void reindex(String id) {
+        Document document = new DocumentDao().getById(id);
+        if (document != null) {
+            updateDocument(document);
+            return;
+        }
+        File file = new FileDao().getActiveById(id);
+        if (file != null) {
+            updateFile(file);
+            return;
+        }
+        deleteDocument(id);
+    }
+
     @Override
     public void createDocument(final Document document) {
-        handle(indexWriter -> {
+        handle(document.getId(), indexWriter -> {
             org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
             indexWriter.addDocument(luceneDocument);
         });
@@ -211,7 +511,7 @@ public class LuceneIndexingHandler implements IndexingHandler {
 
     @Override
     public void createFile(final File file) {
-        handle(indexWriter -> {
+        handle(file.getId(), indexWriter -> {
             org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
             indexWriter.addDocument(luceneDocument);
         });
@@ -219,7 +519,7 @@ public class LuceneIndexingHandler implements IndexingHandler {
 
     @Override
     public void updateFile(final File file) {
-        handle(indexWriter -> {
+        handle(file.getId(), indexWriter -> {
             org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
             indexWriter.updateDocument(new Term("id", file.getId()), luceneDocument);
         });
@@ -227,7 +527,7 @@ public class LuceneIndexingHandler implements IndexingHandler {
 
     @Override
     public void updateDocument(final Document document) {
-        handle(indexWriter -> {
+        handle(document.getId(), indexWriter -> {
             org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
             indexWriter.updateDocument(new Term("id", document.getId()), luceneDocument);
         });
@@ -235,37 +535,75 @@ public class LuceneIndexingHandler implements IndexingHandler {
 
     @Override
     public void deleteDocument(final String id) {
-        handle(indexWriter -> indexWriter.deleteDocuments(new Term("id", id)));
+        handle(id, indexWriter -> indexWriter.deleteDocuments(new Term("id", id)));
     }
 
     @Override
     public void createAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateDocumentAcl(sourceId);
     }
 
     @Override
     public void deleteAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateDocumentAcl(sourceId);
+    }
+
+    /**
+     * Reindex a document after its ACLs changed.
+     * Permissions given through tags are resolved at search time, so only documents are concerned.
+     *
+     * @param sourceId ACL source ID
+     */
+    private void updateDocumentAcl(String sourceId) {
+        if (!listingEnabled) {
+            // ACLs are only indexed in listing mode
+            return;
+        }
+
+        DocumentDao documentDao = new DocumentDao();
+        Document document = documentDao.getById(sourceId);
+        if (document != null) {
+            updateDocument(document);
+        }
     }
 
     @Override
     public void findByCriteria(PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        // The same searcher is used for searching and highlighting the page
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            findByCriteria(searcher, paginatedList, suggestionList, criteria, sortCriteria);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Searches documents by criteria using a specific searcher.
+     *
+     * @param searcher Index searcher
+     * @param paginatedList List of documents (updated by side effects)
+     * @param suggestionList Suggestion of search query (updated by side effects)
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @throws Exception e
+     */
+    private void findByCriteria(IndexSearcher searcher, PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        if (listingEnabled) {
+            Sort sort = LuceneDocumentListing.getSort(sortCriteria);
+            if (sort != null) {
+                findByCriteriaInIndex(searcher, paginatedList, suggestionList, criteria, sort);
+                return;
+            }
+        }
+
         Map<String, Object> parameterMap = new HashMap<>();
         List<String> criteriaList = new ArrayList<>();
-        Map<String, String> documentSearchMap = Maps.newHashMap();
+        Map<String, Integer> documentSearchMap = Maps.newHashMap();
+        Analyzer analyzer = new StandardAnalyzer();
+        Highlighter highlighter = null;
 
-        StringBuilder sb = new StringBuilder("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
-        sb.append(" s.count c5, ");
-        sb.append(" rs2.RTP_ID_C c7, rs2.RTP_NAME_C, d.DOC_UPDATEDATE_D c8 ");
-        sb.append(" from T_DOCUMENT d ");
-        sb.append(" left join (SELECT count(s.SHA_ID_C) count, ac.ACL_SOURCEID_C " +
-                "   FROM T_SHARE s, T_ACL ac " +
-                "   WHERE ac.ACL_TARGETID_C = s.SHA_ID_C AND ac.ACL_DELETEDATE_D IS NULL AND " +
-                "         s.SHA_DELETEDATE_D IS NULL group by ac.ACL_SOURCEID_C) s on s.ACL_SOURCEID_C = d.DOC_ID_C ");
-        sb.append(" left join (select rs.*, rs3.idDocument " +
-                "from T_ROUTE_STEP rs " +
-                "join (select r.RTE_IDDOCUMENT_C idDocument, rs.RTP_IDROUTE_C idRoute, min(rs.RTP_ORDER_N) minOrder from T_ROUTE_STEP rs join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C and r.RTE_DELETEDATE_D is null where rs.RTP_DELETEDATE_D is null and rs.RTP_ENDDATE_D is null group by rs.RTP_IDROUTE_C, r.RTE_IDDOCUMENT_C) rs3 on rs.RTP_IDROUTE_C = rs3.idRoute and rs.RTP_ORDER_N = rs3.minOrder " +
-                "where rs.RTP_IDTARGET_C in (:targetIdList)) rs2 on rs2.idDocument = d.DOC_ID_C ");
+        StringBuilder sb = buildSelectQuery();
 
         // Add search criterias
         if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
@@ -277,13 +615,21 @@ public class LuceneIndexingHandler implements IndexingHandler {
         }
         parameterMap.put("targetIdList", criteria.getTargetIdList());
         if (!Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch())) {
-            documentSearchMap = search(criteria.getSimpleSearch(), criteria.getFullSearch());
+            Query query = buildSearchQuery(analyzer, criteria.getSimpleSearch(), criteria.getFullSearch());
+            documentSearchMap = search(searcher, query);
             if (documentSearchMap.isEmpty()) {
                 // If the search doesn't find any document, the request should return nothing
                 documentSearchMap.put(UUID.randomUUID().toString(), null);
             }
-            criteriaList.add("d.DOC_ID_C in :documentIdList");
-            parameterMap.put("documentIdList", documentSearchMap.keySet());
+            if (EMF.isDriverPostgresql()) {
+                // Send the IDs as a single array parameter instead of a giant IN list
+                criteriaList.add("d.DOC_ID_C = any(string_to_array(:documentIdList, ','))");
+                parameterMap.put("documentIdList", Joiner.on(',').join(documentSearchMap.keySet()));
+            } else {
+                criteriaList.add("d.DOC_ID_C in :documentIdList");
+                parameterMap.put("documentIdList", documentSearchMap.keySet());
+            }
+            highlighter = new Highlighter(new SimpleHTMLFormatter("<strong>", "</strong>"), new SimpleHTMLEncoder(), new QueryScorer(query));
 
             suggestSearchTerms(criteria.getFullSearch(), suggestionList);
         }
@@ -365,26 +711,130 @@ public class LuceneIndexingHandler implements IndexingHandler {
         // Assemble results
         List<DocumentDto> documentDtoList = new ArrayList<>();
         for (Object[] o : l) {
-            int i = 0;
-            DocumentDto documentDto = new DocumentDto();
-            documentDto.setId((String) o[i++]);
-            documentDto.setTitle((String) o[i++]);
-            documentDto.setDescription((String) o[i++]);
-            documentDto.setCreateTimestamp(((Timestamp) o[i++]).getTime());
-            documentDto.setLanguage((String) o[i++]);
-            documentDto.setFileId((String) o[i++]);
-            Number shareCount = (Number) o[i++];
-            documentDto.setShared(shareCount != null && shareCount.intValue() > 0);
-            documentDto.setActiveRoute(o[i++] != null);
-            documentDto.setCurrentStepName((String) o[i++]);
-            documentDto.setUpdateTimestamp(((Timestamp) o[i]).getTime());
-            documentDto.setHighlight(documentSearchMap.get(documentDto.getId()));
+            DocumentDto documentDto = toDocumentDto(o);
+            if (highlighter != null) {
+                // Only the documents of the current page are highlighted
+                documentDto.setHighlight(highlight(searcher, highlighter, analyzer, documentSearchMap.get(documentDto.getId())));
+            }
+            documentDtoList.add(documentDto);
+        }
+
+        paginatedList.setResultList(documentDtoList);
+    }
+
+    /**
+     * Searches documents by criteria entirely in the index.
+     * Only the documents of the returned page are read from the database.
+     *
+     * @param searcher Index searcher
+     * @param paginatedList List of documents (updated by side effects)
+     * @param suggestionList Suggestion of search query (updated by side effects)
+     * @param criteria Search criteria
+     * @param sort Sort
+     * @throws Exception e
+     */
+    private void findByCriteriaInIndex(IndexSearcher searcher, PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, Sort sort) throws Exception {
+        Map<String, Integer> documentSearchMap = null;
+        Analyzer analyzer = new StandardAnalyzer();
+        Highlighter highlighter = null;
+        if (!Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch())) {
+            Query query = buildSearchQuery(analyzer, criteria.getSimpleSearch(), criteria.getFullSearch());
+            documentSearchMap = search(searcher, query);
+            highlighter = new Highlighter(new SimpleHTMLFormatter("<strong>", "</strong>"), new SimpleHTMLEncoder(), new QueryScorer(query));
+
+            suggestSearchTerms(criteria.getFullSearch(), suggestionList);
+        }
+
+        // Filter, count and sort in the index
+        Query listingQuery = LuceneDocumentListing.buildQuery(criteria, documentSearchMap == null ? null : documentSearchMap.keySet());
+        int resultCount = searcher.count(listingQuery);
+        paginatedList.setResultCount(resultCount);
+        List<String> pageIdList = new ArrayList<>();
+        int pageEnd = Math.min(paginatedList.getOffset() + paginatedList.getLimit(), resultCount);
+        if (pageEnd > paginatedList.getOffset()) {
+            TopDocs topDocs = searcher.search(listingQuery, pageEnd, sort);
+            for (int i = paginatedList.getOffset(); i < topDocs.scoreDocs.length; i++) {
+                pageIdList.add(searcher.doc(topDocs.scoreDocs[i].doc, ID_FIELD_SET).get("id"));
+            }
+        }
+
+        // Read the documents of the page, keeping the index order
+        Map<String, DocumentDto> documentDtoMap = new HashMap<>();
+        if (!pageIdList.isEmpty()) {
+            Map<String, Object> parameterMap = new HashMap<>();
+            parameterMap.put("targetIdList", criteria.getTargetIdList());
+            parameterMap.put("documentIdList", pageIdList);
+            StringBuilder sb = buildSelectQuery();
+            sb.append(" where d.DOC_ID_C in :documentIdList and d.DOC_DELETEDATE_D is null ");
+            @SuppressWarnings("unchecked")
+            List<Object[]> l = QueryUtil.getNativeQuery(new QueryParam(sb.toString(), parameterMap)).getResultList();
+            for (Object[] o : l) {
+                DocumentDto documentDto = toDocumentDto(o);
+                documentDtoMap.put(documentDto.getId(), documentDto);
+            }
+        }
+
+        // Assemble results
+        List<DocumentDto> documentDtoList = new ArrayList<>();
+        for (String documentId : pageIdList) {
+            DocumentDto documentDto = documentDtoMap.get(documentId);
+            if (documentDto == null) {
+                // Document deleted since it was indexed
+                continue;
+            }
+            if (highlighter != null) {
+                documentDto.setHighlight(highlight(searcher, highlighter, analyzer, documentSearchMap.get(documentId)));
+            }
             documentDtoList.add(documentDto);
         }
 
         paginatedList.setResultList(documentDtoList);
     }
 
+    /**
+     * Build the select part of a documents query.
+     *
+     * @return Query string builder
+     */
+    private StringBuilder buildSelectQuery() {
+        StringBuilder sb = new StringBuilder("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
+        sb.append(" s.count c5, ");
+        sb.append(" rs2.RTP_ID_C c7, rs2.RTP_NAME_C, d.DOC_UPDATEDATE_D c8 ");
+        sb.append(" from T_DOCUMENT d ");
+        sb.append(" left join (SELECT count(s.SHA_ID_C) count, ac.ACL_SOURCEID_C " +
+                "   FROM T_SHARE s, T_ACL ac " +
+                "   WHERE ac.ACL_TARGETID_C = s.SHA_ID_C AND ac.ACL_DELETEDATE_D IS NULL AND " +
+                "         s.SHA_DELETEDATE_D IS NULL group by ac.ACL_SOURCEID_C) s on s.ACL_SOURCEID_C = d.DOC_ID_C ");
+        sb.append(" left join (select rs.*, rs3.idDocument " +
+                "from T_ROUTE_STEP rs " +
+                "join (select r.RTE_IDDOCUMENT_C idDocument, rs.RTP_IDROUTE_C idRoute, min(rs.RTP_ORDER_N) minOrder from T_ROUTE_STEP rs join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C and r.RTE_DELETEDATE_D is null where rs.RTP_DELETEDATE_D is null and rs.RTP_ENDDATE_D is null group by rs.RTP_IDROUTE_C, r.RTE_IDDOCUMENT_C) rs3 on rs.RTP_IDROUTE_C = rs3.idRoute and rs.RTP_ORDER_N = rs3.minOrder " +
+                "where rs.RTP_IDTARGET_C in (:targetIdList)) rs2 on rs2.idDocument = d.DOC_ID_C ");
+        return sb;
+    }
+
+    /**
+     * Assemble a document DTO from a documents query row.
+     *
+     * @param o Row
+     * @return Document DTO
+     */
+    private DocumentDto toDocumentDto(Object[] o) {
+        int i = 0;
+        DocumentDto documentDto = new DocumentDto();
+        documentDto.setId((String) o[i++]);
+        documentDto.setTitle((String) o[i++]);
+        documentDto.setDescription((String) o[i++]);
+        documentDto.setCreateTimestamp(((Timestamp) o[i++]).getTime());
+        documentDto.setLanguage((String) o[i++]);
+        documentDto.setFileId((String) o[i++]);
+        Number shareCount = (Number) o[i++];
+        documentDto.setShared(shareCount != null && shareCount.intValue() > 0);
+        documentDto.setActiveRoute(o[i++] != null);
+        documentDto.setCurrentStepName((String) o[i++]);
+        documentDto.setUpdateTimestamp(((Timestamp) o[i]).getTime());
+        return documentDto;
+    }
+
     /**
      * Suggest search terms according to the user query.
      *
@@ -393,39 +843,25 @@ public class LuceneIndexingHandler implements IndexingHandler {
      * @throws Exception e
      */
     private void suggestSearchTerms(String search, List<String> suggestionList) throws Exception {
-        DirectoryReader directoryReader = getDirectoryReader();
-        if (directoryReader == null) {
-            return;
-        }
-
-        FuzzySuggester suggester = new FuzzySuggester(directory, "", new StandardAnalyzer());
-        LuceneDictionary dictionary = new LuceneDictionary(directoryReader, "title");
-        suggester.build(dictionary);
         int lastIndex = search.lastIndexOf(' ');
         String suggestQuery = search.substring(Math.max(lastIndex, 0));
-        List<Lookup.LookupResult> lookupResultList = suggester.lookup(suggestQuery, false, 10);
-        for (Lookup.LookupResult lookupResult : lookupResultList) {
-            suggestionList.add(lookupResult.key.toString());
-        }
+        suggestionList.addAll(titleSuggester.lookup(suggestQuery, 10));
     }
 
     /**
-     * Fulltext search in files and documents.
+     * Build the fulltext query on files and documents.
      *
+     * @param analyzer Analyzer
      * @param simpleSearchQuery Search query on metadatas
      * @param fullSearchQuery Search query on all fields
-     * @return Map of document IDs as key and highlight as value
-     * @throws Exception e
+     * @return Query
      */
-    private Map<String, String> search(String simpleSearchQuery, String fullSearchQuery) throws Exception {
+    private Query buildSearchQuery(Analyzer analyzer, String simpleSearchQuery, String fullSearchQuery) {
         // The fulltext query searches in all fields
         String searchQuery = simpleSearchQuery + " " + fullSearchQuery;
 
-        // Build search query
-        Analyzer analyzer = new StandardAnalyzer();
-
         // Search on documents and files
-        BooleanQuery query = new BooleanQuery.Builder()
+        return new BooleanQuery.Builder()
                 .add(buildQueryParser(analyzer, "title").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "description").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "subject").parse(searchQuery), BooleanClause.Occur.SHOULD)
@@ -439,46 +875,62 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 .add(buildQueryParser(analyzer, "filename").parse(searchQuery), BooleanClause.Occur.SHOULD)
                 .add(buildQueryParser(analyzer, "content").parse(fullSearchQuery), BooleanClause.Occur.SHOULD)
                 .build();
+    }
 
-        // Search
-        DirectoryReader directoryReader = getDirectoryReader();
-        Map<String, String> documentMap = Maps.newHashMap();
-        if (directoryReader == null) {
-            // The directory reader is not yet initialized (probably because there is nothing indexed)
-            return documentMap;
+    /**
+     * Fulltext search in files and documents.
+     * Only the top hits are collected, and only the identifier fields are loaded.
+     *
+     * @param searcher Index searcher
+     * @param query Fulltext query
+     * @return Map of document IDs as key and the best matching file Lucene ID as value (null if no file matched)
+     * @throws Exception e
+     */
+    private Map<String, Integer> search(IndexSearcher searcher, Query query) throws Exception {
+        Map<String, Integer> documentMap = Maps.newHashMap();
+        TopDocs topDocs = searcher.search(query, maxHits);
+        if (topDocs.totalHits.value > maxHits) {
+            log.info("Fulltext search truncated to the {} best hits out of {}", maxHits, topDocs.totalHits.value);
         }
-        IndexSearcher searcher = new IndexSearcher(directoryReader);
-        TopDocs topDocs = searcher.search(query, Integer.MAX_VALUE);
-        ScoreDoc[] docs = topDocs.scoreDocs;
-
-        SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<strong>", "</strong>");
-        SimpleHTMLEncoder simpleHTMLEncoder = new SimpleHTMLEncoder();
-        Highlighter highlighter = new Highlighter(simpleHTMLFormatter, simpleHTMLEncoder, new QueryScorer(query));
 
-        // Extract document IDs and highlights
-        for (ScoreDoc doc : docs) {
-            org.apache.lucene.document.Document document = searcher.doc(doc.doc);
+        // Extract document IDs and the best matching file for highlighting, hits are sorted by score
+        for (ScoreDoc doc : topDocs.scoreDocs) {
+            org.apache.lucene.document.Document document = searcher.doc(doc.doc, ID_FIELD_SET);
             String type = document.get("doctype");
-            String documentId = null;
-            String highlight = null;
             if (type.equals("document")) {
-                documentId = document.get("id");
+                documentMap.putIfAbsent(document.get("id"), null);
             } else if (type.equals("file")) {
-                documentId = document.get("document_id");
-                String content = document.get("content");
-                if (content != null) {
-                    highlight = highlighter.getBestFragment(analyzer, "content", content);
+                String documentId = document.get("document_id");
+                if (documentId != null && documentMap.get(documentId) == null) {
+                    documentMap.put(documentId, doc.doc);
                 }
             }
-
-            if (documentId != null) {
-                documentMap.put(documentId, highlight);
-            }
         }
 
         return documentMap;
     }
 
+    /**
+     * Highlight the content of a matching file.
+     *
+     * @param searcher Index searcher
+     * @param highlighter Highlighter
+     * @param analyzer Analyzer
+     * @param luceneId Lucene ID of the matching file, can be null
+     * @return Highlight or null if nothing to highlight
+     * @throws Exception e
+     */
+    private String highlight(IndexSearcher searcher, Highlighter highlighter, Analyzer analyzer, Integer luceneId) throws Exception {
+        if (luceneId == null) {
+            return null;
+        }
+        String content = searcher.doc(luceneId, CONTENT_FIELD_SET).get("content");
+        if (content == null) {
+            return null;
+        }
+        return highlighter.getBestFragment(analyzer, "content", content);
+    }
+
     /**
      * Build a query parser for searching.
      *
@@ -530,6 +982,9 @@ public class LuceneIndexingHandler implements IndexingHandler {
         if (document.getRights() != null) {
             luceneDocument.add(new TextField("rights", document.getRights(), Field.Store.NO));
         }
+        if (listingEnabled) {
+            LuceneDocumentListing.addFields(luceneDocument, document);
+        }
 
         return luceneDocument;
     }
@@ -558,55 +1013,119 @@ public class LuceneIndexingHandler implements IndexingHandler {
     }
 
     /**
-     * Returns a valid directory reader.
-     * Take care of reopening the reader if the index has changed
-     * and closing the previous one.
+     * Encapsulate a process into a Lucene context.
+     * Changes are committed right away in SYNC mode,
+     * or when enough changes are pending in BATCH mode.
      *
-     * @return the directoryReader
+     * @param id ID of the changed document or file
+     * @param runnable Runnable
      */
-    private DirectoryReader getDirectoryReader() {
-        if (directoryReader == null) {
-            try {
-                if (!DirectoryReader.indexExists(directory)) {
-                    return null;
-                }
-                directoryReader = DirectoryReader.open(directory);
-            } catch (IOException e) {
-                log.error("Error creating the directory reader", e);
-            }
-        } else {
-            try {
-                DirectoryReader newReader = DirectoryReader.openIfChanged(directoryReader);
-                if (newReader != null) {
-                    directoryReader.close();
-                    directoryReader = newReader;
-                }
-            } catch (IOException e) {
-                log.error("Error while reopening the directory reader", e);
+    private void handle(String id, LuceneRunnable runnable) {
+        // Track the change to apply it to the index being rebuilt
+        LuceneIndexRebuild rebuild = this.rebuild;
+        if (rebuild != null) {
+            rebuild.markDirty(id);
+        }
+
+        try {
+            runnable.run(indexWriter);
+        } catch (Exception e) {
+            log.error("Error in running index writing", e);
+        }
+
+        if (durability == Durability.SYNC) {
+            commit();
+            refresh();
+        } else if (uncommittedChangeCount.incrementAndGet() >= commitMaxChanges) {
+            commit();
+        }
+
+        if (titleSuggester != null) {
+            titleSuggester.onIndexChanged(1);
+        }
+    }
+
+    /**
+     * Returns true if the documents in the index contain the listing fields.
+     *
+     * @return True if the listing fields are indexed
+     */
+    private boolean isListingIndexed() {
+        Iterable<Map.Entry<String, String>> commitData = indexWriter.getLiveCommitData();
+        if (commitData == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : commitData) {
+            if (LuceneDocumentListing.COMMIT_DATA_KEY.equals(entry.getKey())) {
+                return Boolean.parseBoolean(entry.getValue());
             }
         }
-        return directoryReader;
+        return false;
     }
 
     /**
-     * Encapsulate a process into a Lucene context.
+     * Mark the documents in the index as containing the listing fields or not.
      *
-     * @param runnable Runnable
+     * @param listingIndexed True if the listing fields are indexed
      */
-    private void handle(LuceneRunnable runnable) {
-        try {
-            runnable.run(indexWriter);
-        } catch (Exception e) {
-            log.error("Error in running index writing", e);
+    private void setListingIndexed(boolean listingIndexed) {
+        indexWriter.setLiveCommitData(Collections.singletonMap(LuceneDocumentListing.COMMIT_DATA_KEY, Boolean.toString(listingIndexed)).entrySet());
+    }
+
+    /**
+     * Commit the pending changes of the index writer.
+     */
+    private void commit() {
+        // The index is committed at the end of the swap
+        if (!swapLock.tryLock()) {
+            return;
         }
 
         try {
-            indexWriter.commit();
+            uncommittedChangeCount.set(0);
+            if (indexWriter.hasUncommittedChanges()) {
+                indexWriter.commit();
+            }
         } catch (IOException e) {
             log.error("Cannot commit index writer", e);
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    /**
+     * Refresh the searcher with the latest changes of the index writer.
+     */
+    private void refresh() {
+        // The searcher is refreshed at the end of the swap
+        if (!swapLock.tryLock()) {
+            return;
+        }
+
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            log.error("Cannot refresh the index searcher", e);
+        } finally {
+            swapLock.unlock();
         }
     }
 
+    /**
+     * Index durability mode.
+     */
+    private enum Durability {
+        /**
+         * Commit after each change, the searcher is refreshed immediately.
+         */
+        SYNC,
+
+        /**
+         * Commit periodically or when enough changes are pending, the searcher is refreshed in background.
+         */
+        BATCH
+    }
+
     /**
      * Lucene runnable.
      *
@@ -0,0 +1,204 @@
+package com.sismics.docs.core.util.indexing;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of an index rebuild.
+ * Documents are indexed first, then files, both in ID order, so the last indexed IDs
+ * are enough to resume an interrupted rebuild.
+ */
+public class RebuildIndexProgress {
+    /**
+     * Commit user data keys.
+     */
+    private static final String PHASE_KEY = "rebuild_phase";
+    private static final String LAST_DOCUMENT_ID_KEY = "rebuild_last_document_id";
+    private static final String LAST_FILE_ID_KEY = "rebuild_last_file_id";
+    private static final String DOCUMENT_COUNT_KEY = "rebuild_document_count";
+    private static final String FILE_COUNT_KEY = "rebuild_file_count";
+    private static final String START_DATE_KEY = "rebuild_start_date";
+
+    /**
+     * Current phase.
+     */
+    private volatile Phase phase = Phase.DOCUMENTS;
+
+    /**
+     * ID of the last indexed document.
+     */
+    private volatile String lastDocumentId;
+
+    /**
+     * ID of the last indexed file.
+     */
+    private volatile String lastFileId;
+
+    /**
+     * Number of indexed documents.
+     */
+    private final AtomicLong documentCount = new AtomicLong();
+
+    /**
+     * Number of indexed files.
+     */
+    private final AtomicLong fileCount = new AtomicLong();
+
+    /**
+     * Number of documents to index.
+     */
+    private volatile long documentTotal;
+
+    /**
+     * Number of files to index.
+     */
+    private volatile long fileTotal;
+
+    /**
+     * Start date of the rebuild.
+     */
+    private Date startDate = new Date();
+
+    /**
+     * True if this rebuild has been resumed from a previous one.
+     */
+    private boolean resumed;
+
+    /**
+     * Restore the progress saved in the commit user data of a shadow index.
+     *
+     * @param commitData Commit user data
+     * @return Progress or null if no progress is saved
+     */
+    static RebuildIndexProgress fromCommitData(Map<String, String> commitData) {
+        String phase = commitData.get(PHASE_KEY);
+        if (phase == null) {
+            return null;
+        }
+
+        RebuildIndexProgress progress = new RebuildIndexProgress();
+        progress.phase = Phase.valueOf(phase);
+        progress.lastDocumentId = commitData.get(LAST_DOCUMENT_ID_KEY);
+        progress.lastFileId = commitData.get(LAST_FILE_ID_KEY);
+        progress.documentCount.set(Long.parseLong(commitData.get(DOCUMENT_COUNT_KEY)));
+        progress.fileCount.set(Long.parseLong(commitData.get(FILE_COUNT_KEY)));
+        progress.startDate = new Date(Long.parseLong(commitData.get(START_DATE_KEY)));
+        progress.resumed = true;
+        return progress;
+    }
+
+    /**
+     * Save the progress in commit user data.
+     *
+     * @param commitData Commit user data (updated by side effects)
+     */
+    void toCommitData(Map<String, String> commitData) {
+        commitData.put(PHASE_KEY, phase.name());
+        if (lastDocumentId != null) {
+            commitData.put(LAST_DOCUMENT_ID_KEY, lastDocumentId);
+        }
+        if (lastFileId != null) {
+            commitData.put(LAST_FILE_ID_KEY, lastFileId);
+        }
+        commitData.put(DOCUMENT_COUNT_KEY, Long.toString(documentCount.get()));
+        commitData.put(FILE_COUNT_KEY, Long.toString(fileCount.get()));
+        commitData.put(START_DATE_KEY, Long.toString(startDate.getTime()));
+    }
+
+    /**
+     * Returns the progress saved as commit user data.
+     *
+     * @return Commit user data
+     */
+    Map<String, String> toCommitData() {
+        Map<String, String> commitData = new HashMap<>();
+        toCommitData(commitData);
+        return commitData;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public String getLastDocumentId() {
+        return lastDocumentId;
+    }
+
+    void setLastDocumentId(String lastDocumentId) {
+        this.lastDocumentId = lastDocumentId;
+    }
+
+    public String getLastFileId() {
+        return lastFileId;
+    }
+
+    void setLastFileId(String lastFileId) {
+        this.lastFileId = lastFileId;
+    }
+
+    public long getDocumentCount() {
+        return documentCount.get();
+    }
+
+    void addDocumentCount(long count) {
+        documentCount.addAndGet(count);
+    }
+
+    public long getFileCount() {
+        return fileCount.get();
+    }
+
+    void addFileCount(long count) {
+        fileCount.addAndGet(count);
+    }
+
+    public long getDocumentTotal() {
+        return documentTotal;
+    }
+
+    public void setDocumentTotal(long documentTotal) {
+        this.documentTotal = documentTotal;
+    }
+
+    public long getFileTotal() {
+        return fileTotal;
+    }
+
+    public void setFileTotal(long fileTotal) {
+        this.fileTotal = fileTotal;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Rebuild phase.
+     */
+    public enum Phase {
+        /**
+         * Indexing documents.
+         */
+        DOCUMENTS,
+
+        /**
+         * Indexing files.
+         */
+        FILES,
+
+        /**
+         * Replacing the current index with the rebuilt one.
+         */
+        SWAP
+    }
+}
@@ -0,0 +1,230 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.spell.LuceneDictionary;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Long-lived suggester on document titles.
+ * The suggester is built once, then rebuilt in background when enough changes
+ * have been made to the index, and swapped atomically with the previous one.
+ *
+ * @author bgamard
+ */
+public class TitleSuggester {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TitleSuggester.class);
+
+    /**
+     * Maximum delay before pending changes under the threshold trigger a rebuild.
+     */
+    private static final long MAX_REBUILD_DELAY = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Supplier of the current searcher manager, used to read the titles.
+     */
+    private final Supplier<SearcherManager> searcherManagerSupplier;
+
+    /**
+     * Number of index changes triggering a rebuild.
+     */
+    private final int rebuildThreshold;
+
+    /**
+     * Maximum memory used by the suggester in bytes.
+     */
+    private final long maxMemory;
+
+    /**
+     * True to build the suggester in the calling thread.
+     */
+    private final boolean synchronous;
+
+    /**
+     * Current suggester, null if not built or over the memory budget.
+     */
+    private final AtomicReference<Lookup> lookupReference = new AtomicReference<>();
+
+    /**
+     * Number of index changes since the last build.
+     */
+    private final AtomicInteger changeCount = new AtomicInteger();
+
+    /**
+     * True if a build is in progress or scheduled.
+     */
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    /**
+     * Time of the last build.
+     */
+    private volatile long lastBuildTime;
+
+    /**
+     * Executor building the suggester.
+     */
+    private final ExecutorService buildExecutor;
+
+    /**
+     * Constructor.
+     *
+     * @param searcherManagerSupplier Supplier of the current searcher manager, used to read the titles
+     * @param rebuildThreshold Number of index changes triggering a rebuild
+     * @param maxMemory Maximum memory used by the suggester in bytes
+     * @param synchronous True to build the suggester in the calling thread
+     */
+    public TitleSuggester(Supplier<SearcherManager> searcherManagerSupplier, int rebuildThreshold, long maxMemory, boolean synchronous) {
+        this.searcherManagerSupplier = searcherManagerSupplier;
+        this.rebuildThreshold = Math.max(rebuildThreshold, 1);
+        this.maxMemory = maxMemory;
+        this.synchronous = synchronous;
+        this.buildExecutor = synchronous ? null : Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("lucene-suggester")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Schedule the initial build of the suggester.
+     */
+    public void startUp() {
+        scheduleBuild();
+    }
+
+    /**
+     * Stop building the suggester.
+     */
+    public void shutDown() {
+        if (buildExecutor != null) {
+            buildExecutor.shutdownNow();
+            try {
+                buildExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // NOP
+            }
+        }
+        lookupReference.set(null);
+    }
+
+    /**
+     * Notify the suggester that the index has changed.
+     *
+     * @param count Number of changes
+     */
+    public void onIndexChanged(int count) {
+        if (changeCount.addAndGet(count) >= rebuildThreshold) {
+            scheduleBuild();
+        }
+    }
+
+    /**
+     * Notify the suggester that the index has been replaced.
+     * The current suggestions are kept until the new suggester is built.
+     */
+    public void onIndexReplaced() {
+        changeCount.addAndGet(rebuildThreshold);
+        scheduleBuild();
+    }
+
+    /**
+     * Suggest titles for a query.
+     *
+     * @param query Query
+     * @param count Maximum number of suggestions
+     * @return List of suggestions
+     * @throws Exception e
+     */
+    public List<String> lookup(String query, int count) throws Exception {
+        List<String> suggestionList = new ArrayList<>();
+        if (changeCount.get() > 0 && (synchronous || System.currentTimeMillis() - lastBuildTime > MAX_REBUILD_DELAY)) {
+            scheduleBuild();
+        }
+        Lookup lookup = lookupReference.get();
+        if (lookup == null || query.isEmpty()) {
+            return suggestionList;
+        }
+
+        for (Lookup.LookupResult lookupResult : lookup.lookup(query, false, count)) {
+            suggestionList.add(lookupResult.key.toString());
+        }
+        return suggestionList;
+    }
+
+    /**
+     * Build the suggester, or schedule it if asynchronous.
+     * Only one build can be running or scheduled at a time.
+     */
+    private void scheduleBuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (synchronous) {
+            build();
+            return;
+        }
+
+        try {
+            buildExecutor.submit(this::build);
+        } catch (RejectedExecutionException e) {
+            building.set(false);
+        }
+    }
+
+    /**
+     * Build a new suggester from the current index and swap it with the previous one.
+     */
+    private void build() {
+        try {
+            changeCount.set(0);
+            long startTime = System.currentTimeMillis();
+            lastBuildTime = startTime;
+            FuzzySuggester suggester = new FuzzySuggester(new ByteBuffersDirectory(), "suggest", new StandardAnalyzer());
+            SearcherManager searcherManager = searcherManagerSupplier.get();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                suggester.build(new LuceneDictionary(searcher.getIndexReader(), "title"));
+            } finally {
+                searcherManager.release(searcher);
+            }
+
+            long memory = suggester.ramBytesUsed();
+            if (memory > maxMemory) {
+                log.warn("Title suggester uses {} bytes, over the budget of {} bytes, suggestions are disabled", memory, maxMemory);
+                lookupReference.set(null);
+            } else {
+                lookupReference.set(suggester);
+                log.info("Title suggester built in {}ms using {} bytes", System.currentTimeMillis() - startTime, memory);
+            }
+        } catch (Exception e) {
+            log.error("Error building the title suggester", e);
+        } finally {
+            building.set(false);
+        }
+
+        // Changes made during the build may need another one
+        if (!synchronous && changeCount.get() >= rebuildThreshold) {
+            scheduleBuild();
+        }
+    }
+}
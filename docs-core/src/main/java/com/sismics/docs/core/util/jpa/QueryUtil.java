@@ -29,6 +29,16 @@ public class QueryUtil {
         return query;
     }
     
+    /**
+     * Detach all the entities of the persistence context, after pending changes are written.
+     * Bulk updates and deletes bypass the persistence context, so its entities would be outdated.
+     */
+    public static void clearPersistenceContext() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.flush();
+        em.clear();
+    }
+
     /**
      * Returns sorted query parameters.
      * 
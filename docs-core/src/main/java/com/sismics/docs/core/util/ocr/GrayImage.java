@@ -0,0 +1,58 @@
+package com.sismics.docs.core.util.ocr;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 8 bits grayscale pixels of an image, as given to tesseract.
+ */
+class GrayImage {
+    /**
+     * Width in pixels.
+     */
+    final int width;
+
+    /**
+     * Height in pixels.
+     */
+    final int height;
+
+    /**
+     * Pixels, one byte per pixel, line by line.
+     */
+    final byte[] pixels;
+
+    /**
+     * Constructor.
+     *
+     * @param image Image
+     */
+    GrayImage(BufferedImage image) {
+        width = image.getWidth();
+        height = image.getHeight();
+        BufferedImage grayImage = image;
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY
+                || image.getRaster().getDataBuffer().getSize() != width * height) {
+            grayImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D graphics = grayImage.createGraphics();
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+        }
+        pixels = ((DataBufferByte) grayImage.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Write the image in the binary PGM format.
+     *
+     * @param outputStream Output stream
+     * @throws IOException e
+     */
+    void writePgm(OutputStream outputStream) throws IOException {
+        outputStream.write(("P5\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        outputStream.write(pixels);
+    }
+}
@@ -0,0 +1,203 @@
+package com.sismics.docs.core.util.ocr;
+
+import com.sun.jna.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * OCR engine calling the tesseract library in process.
+ * Initializing tesseract loads the language models, so the initialized instances are kept
+ * in a pool per language and reused from one image to the next.
+ */
+public class LibraryOcrEngine implements OcrEngine {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(LibraryOcrEngine.class);
+
+    /**
+     * Resolution of the images, they are rendered or upscaled for the OCR.
+     */
+    private static final int RESOLUTION = 300;
+
+    /**
+     * Tesseract API.
+     */
+    private final TesseractApi api;
+
+    /**
+     * Maximum number of tesseract instances per language.
+     */
+    private final int maxWorkers;
+
+    /**
+     * Maximum time in seconds for an image, including the wait for a free instance.
+     */
+    private final long timeout;
+
+    /**
+     * Instances by language.
+     */
+    private final Map<String, WorkerPool> workerPoolMap = new ConcurrentHashMap<>();
+
+    /**
+     * True if the engine is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param maxWorkers Maximum number of tesseract instances per language
+     * @param timeout Maximum time in seconds for an image
+     * @throws UnsatisfiedLinkError If the tesseract library is not installed
+     */
+    public LibraryOcrEngine(int maxWorkers, long timeout) {
+        this.api = TesseractApi.load();
+        this.maxWorkers = maxWorkers;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String ocr(String language, BufferedImage image) throws Exception {
+        GrayImage grayImage = new GrayImage(image);
+        WorkerPool workerPool = workerPoolMap.computeIfAbsent(language, WorkerPool::new);
+
+        long startTime = System.currentTimeMillis();
+        Pointer handle = workerPool.acquire();
+        Pointer monitor = api.TessMonitorCreate();
+        try {
+            api.TessBaseAPISetImage(handle, grayImage.pixels, grayImage.width, grayImage.height, 1, grayImage.width);
+            api.TessBaseAPISetSourceResolution(handle, RESOLUTION);
+
+            // The recognition is cancelled by tesseract itself when the deadline is reached
+            long remaining = TimeUnit.SECONDS.toMillis(timeout) - (System.currentTimeMillis() - startTime);
+            api.TessMonitorSetDeadlineMSecs(monitor, (int) Math.min(Math.max(remaining, 1), Integer.MAX_VALUE));
+            if (api.TessBaseAPIRecognize(handle, monitor) != 0) {
+                throw new TimeoutException("OCR timed out or failed after " + (System.currentTimeMillis() - startTime) + "ms");
+            }
+
+            Pointer text = api.TessBaseAPIGetUTF8Text(handle);
+            if (text == null) {
+                return null;
+            }
+            try {
+                return text.getString(0, "UTF-8");
+            } finally {
+                api.TessDeleteText(text);
+            }
+        } finally {
+            api.TessMonitorDelete(monitor);
+            api.TessBaseAPIClear(handle);
+            workerPool.release(handle);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (WorkerPool workerPool : workerPoolMap.values()) {
+            workerPool.close();
+        }
+    }
+
+    /**
+     * Delete a tesseract instance.
+     *
+     * @param handle Tesseract instance
+     */
+    private void delete(Pointer handle) {
+        api.TessBaseAPIEnd(handle);
+        api.TessBaseAPIDelete(handle);
+    }
+
+    /**
+     * Pool of tesseract instances of a language.
+     */
+    private class WorkerPool {
+        /**
+         * Language.
+         */
+        private final String language;
+
+        /**
+         * Instances available.
+         */
+        private final Queue<Pointer> idleQueue = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Permits to use an instance.
+         */
+        private final Semaphore permits = new Semaphore(maxWorkers, true);
+
+        /**
+         * Constructor.
+         *
+         * @param language Language
+         */
+        WorkerPool(String language) {
+            this.language = language;
+        }
+
+        /**
+         * Take an instance, initializing a new one if none is available.
+         *
+         * @return Tesseract instance
+         * @throws Exception e
+         */
+        Pointer acquire() throws Exception {
+            if (!permits.tryAcquire(timeout, TimeUnit.SECONDS)) {
+                throw new TimeoutException("No OCR worker available for " + language + " after " + timeout + "s");
+            }
+
+            Pointer handle = idleQueue.poll();
+            if (handle != null) {
+                return handle;
+            }
+
+            // Load the language models
+            long startTime = System.currentTimeMillis();
+            handle = api.TessBaseAPICreate();
+            if (api.TessBaseAPIInit3(handle, null, language) != 0) {
+                api.TessBaseAPIDelete(handle);
+                permits.release();
+                throw new IOException("Unable to initialize tesseract for the language: " + language);
+            }
+            log.info("OCR worker for {} initialized in {}ms", language, System.currentTimeMillis() - startTime);
+            return handle;
+        }
+
+        /**
+         * Give back an instance.
+         *
+         * @param handle Tesseract instance
+         */
+        void release(Pointer handle) {
+            if (closed) {
+                delete(handle);
+            } else {
+                idleQueue.offer(handle);
+            }
+            permits.release();
+        }
+
+        /**
+         * Delete the available instances.
+         */
+        void close() {
+            for (Pointer handle = idleQueue.poll(); handle != null; handle = idleQueue.poll()) {
+                delete(handle);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.sismics.docs.core.util.ocr;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An OCR engine.
+ */
+public interface OcrEngine extends AutoCloseable {
+    /**
+     * Optical character recognition on an image.
+     *
+     * @param language Language to OCR
+     * @param image Image, prepared for the OCR (upscaled, grayscale, deskewed)
+     * @return Content extracted
+     * @throws Exception e
+     */
+    String ocr(String language, BufferedImage image) throws Exception;
+
+    /**
+     * Release the resources of the engine.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,109 @@
+package com.sismics.docs.core.util.ocr;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sismics.docs.core.model.context.AppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * OCR engine running a tesseract process per image.
+ * The image is piped to the process, which is killed if it runs for too long.
+ */
+public class ProcessOcrEngine implements OcrEngine {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ProcessOcrEngine.class);
+
+    /**
+     * Maximum time in seconds for an image.
+     */
+    private final long timeout;
+
+    /**
+     * Kills the processes running for too long.
+     */
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ocr-watchdog-%d").setDaemon(true).build());
+
+    /**
+     * Constructor.
+     *
+     * @param timeout Maximum time in seconds for an image
+     */
+    public ProcessOcrEngine(long timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String ocr(String language, BufferedImage image) throws Exception {
+        GrayImage grayImage = new GrayImage(image);
+        ProcessBuilder pb = new ProcessBuilder("tesseract", "stdin", "stdout", "-l", language);
+        // Parallelism comes from the OCR of several pages at once, tesseract's own threads would oversubscribe the CPU
+        pb.environment().put("OMP_THREAD_LIMIT", "1");
+        // The error output goes to a file, a full pipe would block the process while its output is read
+        Path errorFile = AppContext.getInstance().getFileService().createTemporaryFile();
+        pb.redirectError(errorFile.toFile());
+        Process process;
+        try {
+            process = pb.start();
+        } catch (IOException e) {
+            Files.deleteIfExists(errorFile);
+            throw e;
+        }
+        ScheduledFuture<?> kill = watchdog.schedule(process::destroyForcibly, timeout, TimeUnit.SECONDS);
+        try {
+            // The whole image is read before the recognition starts
+            IOException writeException = null;
+            try (OutputStream outputStream = process.getOutputStream()) {
+                grayImage.writePgm(outputStream);
+            } catch (IOException e) {
+                // The process stopped early, its error output tells why
+                writeException = e;
+            }
+
+            String content;
+            try (InputStream inputStream = process.getInputStream()) {
+                content = new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+            }
+            int exitCode = process.waitFor();
+            String error = new String(Files.readAllBytes(errorFile), StandardCharsets.UTF_8);
+            if (kill.isDone()) {
+                throw new TimeoutException("OCR timed out after " + timeout + "s");
+            }
+            if (exitCode != 0) {
+                throw new IOException("tesseract exited with code " + exitCode + ": " + error.trim());
+            }
+            if (writeException != null) {
+                throw writeException;
+            }
+            if (log.isDebugEnabled() && !error.isEmpty()) {
+                log.debug("tesseract: " + error.trim());
+            }
+            return content;
+        } finally {
+            kill.cancel(false);
+            process.destroy();
+            Files.deleteIfExists(errorFile);
+        }
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+    }
+}
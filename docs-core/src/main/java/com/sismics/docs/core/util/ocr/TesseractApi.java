@@ -0,0 +1,45 @@
+package com.sismics.docs.core.util.ocr;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Binding of the tesseract C API, see tesseract/capi.h.
+ */
+interface TesseractApi extends Library {
+    /**
+     * Load the tesseract library.
+     *
+     * @return Tesseract API
+     */
+    static TesseractApi load() {
+        return Native.load("tesseract", TesseractApi.class);
+    }
+
+    Pointer TessBaseAPICreate();
+
+    int TessBaseAPIInit3(Pointer handle, String datapath, String language);
+
+    void TessBaseAPISetImage(Pointer handle, byte[] imagedata, int width, int height, int bytesPerPixel, int bytesPerLine);
+
+    void TessBaseAPISetSourceResolution(Pointer handle, int ppi);
+
+    int TessBaseAPIRecognize(Pointer handle, Pointer monitor);
+
+    Pointer TessBaseAPIGetUTF8Text(Pointer handle);
+
+    void TessDeleteText(Pointer text);
+
+    void TessBaseAPIClear(Pointer handle);
+
+    void TessBaseAPIEnd(Pointer handle);
+
+    void TessBaseAPIDelete(Pointer handle);
+
+    Pointer TessMonitorCreate();
+
+    void TessMonitorSetDeadlineMSecs(Pointer monitor, int deadline);
+
+    void TessMonitorDelete(Pointer monitor);
+}
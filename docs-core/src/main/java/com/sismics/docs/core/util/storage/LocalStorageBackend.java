@@ -0,0 +1,250 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+import java.util.stream.Stream;
+
+/**
+ * Storage in a directory of the local filesystem, one file per object.
+ * Objects are spread in two levels of directories by the hash of their ID.
+ * Objects stored flat in the directory by older versions are still served until they are migrated.
+ */
+public class LocalStorageBackend implements StorageBackend {
+    /**
+     * Length of the name of a shard directory.
+     */
+    private static final int SHARD_LENGTH = 2;
+
+    /**
+     * Storage directory.
+     */
+    private final Path directory;
+
+    /**
+     * Constructor.
+     *
+     * @param directory Storage directory
+     */
+    public LocalStorageBackend(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public OutputStream put(String key) throws IOException {
+        Path path = getShardedPath(key);
+        Files.createDirectories(path.getParent());
+        return Files.newOutputStream(path);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return read(key, Files::newInputStream);
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        SeekableByteChannel channel = read(key, Files::newByteChannel);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return ByteStreams.limit(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        try {
+            BasicFileAttributes attributes = read(key, path -> Files.readAttributes(path, BasicFileAttributes.class));
+            return new StorageObject(key, attributes.size(), new Date(attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        Path targetPath = getShardedPath(targetKey);
+        Files.createDirectories(targetPath.getParent());
+        read(sourceKey, path -> Files.move(path, targetPath, StandardCopyOption.ATOMIC_MOVE));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        // The flat object first, so that it can't be migrated after the sharded one is deleted
+        Files.deleteIfExists(directory.resolve(key));
+        Files.deleteIfExists(getShardedPath(key));
+    }
+
+    @Override
+    public Stream<String> list() throws IOException {
+        return listDirectory(directory).flatMap(name -> {
+            if (name.length() != SHARD_LENGTH) {
+                return Stream.of(name);
+            }
+            Path shardPath = directory.resolve(name);
+            return listDirectoryUnchecked(shardPath).flatMap(subName -> listDirectoryUnchecked(shardPath.resolve(subName)));
+        });
+    }
+
+    /**
+     * List the keys of the objects not migrated to the sharded layout yet.
+     * The stream must be closed.
+     *
+     * @return Object keys
+     * @throws IOException e
+     */
+    public Stream<String> listUnsharded() throws IOException {
+        return listDirectory(directory).filter(name -> name.length() != SHARD_LENGTH);
+    }
+
+    /**
+     * Move an object from the flat layout to the sharded layout.
+     * The object is linked to its new path before its flat path is removed, so it stays readable,
+     * and an object written to the sharded layout in the meantime is never replaced.
+     *
+     * @param key Object key
+     * @return True if the object was migrated, false if it was deleted in the meantime
+     * @throws IOException e
+     */
+    public boolean migrate(String key) throws IOException {
+        Path flatPath = directory.resolve(key);
+        Path shardedPath = getShardedPath(key);
+        Files.createDirectories(shardedPath.getParent());
+        try {
+            Files.createLink(shardedPath, flatPath);
+        } catch (FileAlreadyExistsException e) {
+            // The sharded object is more recent
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Hard links are not supported by this filesystem
+            try {
+                Files.move(flatPath, shardedPath);
+                return true;
+            } catch (FileAlreadyExistsException e1) {
+                // The sharded object is more recent
+            } catch (NoSuchFileException e1) {
+                return false;
+            }
+        }
+        Files.deleteIfExists(flatPath);
+        return true;
+    }
+
+    /**
+     * Returns the path of an object, in the layout where it is currently stored.
+     * Objects not stored yet are resolved in the sharded layout.
+     *
+     * @param key Object key
+     * @return Path of the object
+     */
+    public Path resolve(String key) {
+        Path shardedPath = getShardedPath(key);
+        if (Files.exists(shardedPath)) {
+            return shardedPath;
+        }
+        Path flatPath = directory.resolve(key);
+        return Files.exists(flatPath) ? flatPath : shardedPath;
+    }
+
+    /**
+     * Returns the path of an object in the sharded layout.
+     * The directories are named after the hash of the ID before the first underscore,
+     * so that the variants of a content are stored together.
+     *
+     * @param key Object key
+     * @return Path of the object
+     */
+    private Path getShardedPath(String key) {
+        int index = key.indexOf('_');
+        String hash = Hashing.murmur3_32_fixed().hashString(index < 0 ? key : key.substring(0, index), StandardCharsets.UTF_8).toString();
+        return directory.resolve(hash.substring(0, SHARD_LENGTH))
+                .resolve(hash.substring(SHARD_LENGTH, SHARD_LENGTH * 2))
+                .resolve(key);
+    }
+
+    /**
+     * Apply an operation on the path of an existing object.
+     * The sharded layout is tried first, then the flat layout,
+     * then the sharded layout again in case the object was migrated in the meantime.
+     *
+     * @param key Object key
+     * @param operation Operation
+     * @return Result of the operation
+     * @throws NoSuchFileException If the object doesn't exist
+     * @throws IOException e
+     */
+    private <T> T read(String key, PathOperation<T> operation) throws IOException {
+        Path shardedPath = getShardedPath(key);
+        try {
+            return operation.apply(shardedPath);
+        } catch (NoSuchFileException e) {
+            // Not migrated yet
+        }
+        try {
+            return operation.apply(directory.resolve(key));
+        } catch (NoSuchFileException e) {
+            return operation.apply(shardedPath);
+        }
+    }
+
+    /**
+     * List the names of the entries of a directory.
+     *
+     * @param path Directory
+     * @return Names
+     * @throws IOException e
+     */
+    private static Stream<String> listDirectory(Path path) throws IOException {
+        return Files.list(path).map(entry -> entry.getFileName().toString());
+    }
+
+    /**
+     * List the names of the entries of a directory, in a stream operation.
+     *
+     * @param path Directory
+     * @return Names
+     */
+    private static Stream<String> listDirectoryUnchecked(Path path) {
+        try {
+            return listDirectory(path);
+        } catch (NoSuchFileException e) {
+            return Stream.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // NOP
+    }
+
+    /**
+     * Operation on a path.
+     *
+     * @param <T> Result type
+     */
+    @FunctionalInterface
+    private interface PathOperation<T> {
+        T apply(Path path) throws IOException;
+    }
+}
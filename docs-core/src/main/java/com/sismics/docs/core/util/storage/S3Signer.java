@@ -0,0 +1,147 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Signs S3 requests with AWS Signature Version 4.
+ */
+class S3Signer {
+    /**
+     * Payload hash of the requests whose payload is not signed.
+     */
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    /**
+     * Access key.
+     */
+    private final String accessKey;
+
+    /**
+     * Secret key.
+     */
+    private final String secretKey;
+
+    /**
+     * Region.
+     */
+    private final String region;
+
+    /**
+     * Constructor.
+     *
+     * @param accessKey Access key
+     * @param secretKey Secret key
+     * @param region Region
+     */
+    S3Signer(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    /**
+     * Returns the Authorization header of a request.
+     *
+     * @param method HTTP method
+     * @param path Encoded path
+     * @param queryMap Query parameters, not encoded
+     * @param headerMap Headers to sign, including host, x-amz-content-sha256 and x-amz-date
+     * @param amzDate Request date, in the x-amz-date format
+     * @return Authorization header
+     */
+    String sign(String method, String path, Map<String, String> queryMap, Map<String, String> headerMap, String amzDate) {
+        // Canonical request
+        SortedMap<String, String> canonicalQueryMap = new TreeMap<>();
+        for (Map.Entry<String, String> entry : queryMap.entrySet()) {
+            canonicalQueryMap.put(encode(entry.getKey()), encode(entry.getValue()));
+        }
+        List<String> queryList = new ArrayList<>();
+        for (Map.Entry<String, String> entry : canonicalQueryMap.entrySet()) {
+            queryList.add(entry.getKey() + "=" + entry.getValue());
+        }
+        SortedMap<String, String> canonicalHeaderMap = new TreeMap<>();
+        for (Map.Entry<String, String> entry : headerMap.entrySet()) {
+            canonicalHeaderMap.put(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue().trim());
+        }
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> entry : canonicalHeaderMap.entrySet()) {
+            canonicalHeaders.append(entry.getKey()).append(':').append(entry.getValue()).append('\n');
+        }
+        String signedHeaders = Joiner.on(';').join(canonicalHeaderMap.keySet());
+        String canonicalRequest = method + "\n" +
+                path + "\n" +
+                Joiner.on('&').join(queryList) + "\n" +
+                canonicalHeaders + "\n" +
+                signedHeaders + "\n" +
+                canonicalHeaderMap.getOrDefault("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+
+        // String to sign
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" +
+                amzDate + "\n" +
+                scope + "\n" +
+                Hashing.sha256().hashString(canonicalRequest, StandardCharsets.UTF_8);
+
+        // Signature
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String signature = BaseEncoding.base16().lowerCase().encode(hmac(key, stringToSign));
+
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope +
+                ", SignedHeaders=" + signedHeaders +
+                ", Signature=" + signature;
+    }
+
+    /**
+     * URI-encode a string, as required by the signature.
+     *
+     * @param value String
+     * @return Encoded string
+     */
+    static String encode(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                sb.append(c);
+            } else {
+                sb.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compute a HMAC-SHA256.
+     *
+     * @param key Key
+     * @param data Data
+     * @return HMAC
+     */
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.collect.ImmutableMap;
+import okhttp3.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Storage in a bucket of an S3-compatible object store, addressed in path style.
+ * Objects are written in a single request, or with a multipart upload once they exceed the part size.
+ */
+public class S3StorageBackend implements StorageBackend {
+    /**
+     * Format of the x-amz-date header.
+     */
+    private static final DateTimeFormatter AMZ_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    /**
+     * Minimum size of a part, except the last one.
+     */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * Endpoint URL.
+     */
+    private final HttpUrl endpoint;
+
+    /**
+     * Bucket.
+     */
+    private final String bucket;
+
+    /**
+     * Prefix of the object names.
+     */
+    private final String prefix;
+
+    /**
+     * Size of the parts of a multipart upload.
+     */
+    private final int partSize;
+
+    /**
+     * Request signer.
+     */
+    private final S3Signer signer;
+
+    /**
+     * HTTP client.
+     */
+    private final OkHttpClient client;
+
+    /**
+     * Constructor.
+     *
+     * @param endpoint Endpoint URL
+     * @param region Region
+     * @param bucket Bucket
+     * @param prefix Prefix of the object names, can be empty
+     * @param accessKey Access key
+     * @param secretKey Secret key
+     * @param partSize Size of the parts of a multipart upload
+     */
+    public S3StorageBackend(String endpoint, String region, String bucket, String prefix,
+                            String accessKey, String secretKey, int partSize) {
+        this.endpoint = HttpUrl.get(endpoint);
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.signer = new S3Signer(accessKey, secretKey, region);
+        this.client = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public OutputStream put(String key) {
+        return new S3OutputStream(key);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return get(key, null);
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return get(key, "bytes=" + offset + "-" + (offset + length - 1));
+    }
+
+    /**
+     * Read an object, or a range of an object.
+     *
+     * @param key Object key
+     * @param range Range header, can be null
+     * @return Input stream, releasing the connection when closed
+     * @throws IOException e
+     */
+    private InputStream get(String key, String range) throws IOException {
+        Response response = execute("GET", key, ImmutableMap.of(),
+                range == null ? ImmutableMap.of() : ImmutableMap.of("range", range), null);
+        if (response.code() == 404) {
+            response.close();
+            throw new NoSuchFileException(key);
+        }
+        checkSuccessful(response, "Error reading the object " + key);
+        return new FilterInputStream(response.body().byteStream()) {
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+    }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        try (Response response = execute("HEAD", key, ImmutableMap.of(), ImmutableMap.of(), null)) {
+            if (response.code() == 404) {
+                return null;
+            }
+            checkSuccessful(response, "Error reading the metadata of the object " + key);
+            String contentLength = response.header("Content-Length");
+            Date lastModified = response.headers().getDate("Last-Modified");
+            return new StorageObject(key, contentLength == null ? 0 : Long.parseLong(contentLength),
+                    lastModified == null ? new Date(0) : lastModified);
+        }
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        // Objects can't be renamed, they are copied by the object store
+        try (Response response = execute("PUT", targetKey, ImmutableMap.of(),
+                ImmutableMap.of("x-amz-copy-source", "/" + bucket + "/" + encodePath(prefix + sourceKey)),
+                RequestBody.create(new byte[0], null))) {
+            checkSuccessful(response, "Error copying the object " + sourceKey);
+            parseXml(response);
+        }
+        delete(sourceKey);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try (Response response = execute("DELETE", key, ImmutableMap.of(), ImmutableMap.of(), null)) {
+            if (response.code() != 404) {
+                checkSuccessful(response, "Error deleting the object " + key);
+            }
+        }
+    }
+
+    @Override
+    public Stream<String> list() {
+        Iterator<String> iterator = new Iterator<>() {
+            private Iterator<String> page = Collections.emptyIterator();
+            private String continuationToken;
+            private boolean truncated = true;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && truncated) {
+                    try {
+                        fetchPage();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+
+            private void fetchPage() throws IOException {
+                Map<String, String> queryMap = new HashMap<>();
+                queryMap.put("list-type", "2");
+                queryMap.put("prefix", prefix);
+                if (continuationToken != null) {
+                    queryMap.put("continuation-token", continuationToken);
+                }
+                try (Response response = execute("GET", null, queryMap, ImmutableMap.of(), null)) {
+                    checkSuccessful(response, "Error listing the objects");
+                    Document document = parseXml(response);
+                    List<String> keyList = new ArrayList<>();
+                    NodeList keyNodeList = document.getElementsByTagName("Key");
+                    for (int i = 0; i < keyNodeList.getLength(); i++) {
+                        keyList.add(keyNodeList.item(i).getTextContent().substring(prefix.length()));
+                    }
+                    page = keyList.iterator();
+                    truncated = "true".equals(getText(document, "IsTruncated"));
+                    continuationToken = getText(document, "NextContinuationToken");
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    /**
+     * Execute a signed request.
+     *
+     * @param method HTTP method
+     * @param key Object key, null for a request on the bucket
+     * @param queryMap Query parameters
+     * @param headerMap Additional headers, signed
+     * @param body Request body, can be null
+     * @return Response, to close
+     * @throws IOException e
+     */
+    private Response execute(String method, String key, Map<String, String> queryMap, Map<String, String> headerMap,
+                             RequestBody body) throws IOException {
+        HttpUrl.Builder urlBuilder = endpoint.newBuilder()
+                .addPathSegment(bucket);
+        if (key != null) {
+            urlBuilder.addEncodedPathSegments(encodePath(prefix + key));
+        }
+        for (Map.Entry<String, String> entry : queryMap.entrySet()) {
+            urlBuilder.addQueryParameter(entry.getKey(), entry.getValue());
+        }
+        HttpUrl url = urlBuilder.build();
+
+        Map<String, String> signedHeaderMap = new HashMap<>(headerMap);
+        String amzDate = AMZ_DATE_FORMAT.format(new Date().toInstant());
+        signedHeaderMap.put("host", url.port() == HttpUrl.defaultPort(url.scheme()) ? url.host() : url.host() + ":" + url.port());
+        signedHeaderMap.put("x-amz-date", amzDate);
+        signedHeaderMap.put("x-amz-content-sha256", S3Signer.UNSIGNED_PAYLOAD);
+
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(url)
+                .method(method, body)
+                .header("Authorization", signer.sign(method, url.encodedPath(), queryMap, signedHeaderMap, amzDate));
+        for (Map.Entry<String, String> entry : signedHeaderMap.entrySet()) {
+            if (!entry.getKey().equals("host")) {
+                requestBuilder.header(entry.getKey(), entry.getValue());
+            }
+        }
+        return client.newCall(requestBuilder.build()).execute();
+    }
+
+    /**
+     * Throw an exception if a request failed.
+     *
+     * @param response Response
+     * @param message Error message
+     * @throws IOException e
+     */
+    private static void checkSuccessful(Response response, String message) throws IOException {
+        if (!response.isSuccessful()) {
+            String body = response.body() == null ? "" : response.body().string();
+            throw new IOException(message + ": HTTP " + response.code() + " " + body);
+        }
+    }
+
+    /**
+     * Parse the XML body of a response.
+     * Some requests return an error in the body of a successful response.
+     *
+     * @param response Response
+     * @return XML document
+     * @throws IOException e
+     */
+    private static Document parseXml(Response response) throws IOException {
+        String body = response.body() == null ? "" : response.body().string();
+        if (body.isEmpty()) {
+            return null;
+        }
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+            if ("Error".equals(document.getDocumentElement().getTagName())) {
+                throw new IOException("Object store error: " + body);
+            }
+            return document;
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Error parsing the object store response: " + body, e);
+        }
+    }
+
+    /**
+     * Returns the text of the first element with a name.
+     *
+     * @param document XML document
+     * @param tagName Element name
+     * @return Text or null if not found
+     */
+    private static String getText(Document document, String tagName) {
+        NodeList nodeList = document.getElementsByTagName(tagName);
+        return nodeList.getLength() == 0 ? null : nodeList.item(0).getTextContent();
+    }
+
+    /**
+     * URI-encode an object name, keeping its slashes.
+     *
+     * @param name Object name
+     * @return Encoded object name
+     */
+    private static String encodePath(String name) {
+        StringJoiner joiner = new StringJoiner("/");
+        for (String segment : name.split("/", -1)) {
+            joiner.add(S3Signer.encode(segment));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Output stream writing an object, in parts once it exceeds the part size.
+     */
+    private class S3OutputStream extends OutputStream {
+        /**
+         * Object key.
+         */
+        private final String key;
+
+        /**
+         * Current part.
+         */
+        private final byte[] buffer = new byte[partSize];
+
+        /**
+         * Number of bytes in the current part.
+         */
+        private int count = 0;
+
+        /**
+         * Multipart upload ID, null until the first part is full.
+         */
+        private String uploadId;
+
+        /**
+         * Entity tags of the uploaded parts.
+         */
+        private final List<String> etagList = new ArrayList<>();
+
+        /**
+         * True if the stream is closed.
+         */
+        private boolean closed = false;
+
+        /**
+         * Constructor.
+         *
+         * @param key Object key
+         */
+        private S3OutputStream(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                int length = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, length);
+                count += length;
+                off += length;
+                len -= length;
+                if (count == buffer.length) {
+                    uploadPart();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (uploadId == null) {
+                // Small object written at once
+                try (Response response = execute("PUT", key, ImmutableMap.of(), ImmutableMap.of(),
+                        RequestBody.create(buffer, null, 0, count))) {
+                    checkSuccessful(response, "Error writing the object " + key);
+                }
+                return;
+            }
+
+            try {
+                if (count > 0) {
+                    uploadPart();
+                }
+                completeUpload();
+            } catch (IOException e) {
+                abortUpload();
+                throw e;
+            }
+        }
+
+        /**
+         * Upload the current part, starting the multipart upload if needed.
+         *
+         * @throws IOException e
+         */
+        private void uploadPart() throws IOException {
+            try {
+                if (uploadId == null) {
+                    try (Response response = execute("POST", key, ImmutableMap.of("uploads", ""), ImmutableMap.of(),
+                            RequestBody.create(new byte[0], null))) {
+                        checkSuccessful(response, "Error starting the upload of the object " + key);
+                        uploadId = getText(parseXml(response), "UploadId");
+                    }
+                }
+
+                Map<String, String> queryMap = ImmutableMap.of(
+                        "partNumber", Integer.toString(etagList.size() + 1),
+                        "uploadId", uploadId);
+                try (Response response = execute("PUT", key, queryMap, ImmutableMap.of(),
+                        RequestBody.create(buffer, null, 0, count))) {
+                    checkSuccessful(response, "Error writing a part of the object " + key);
+                    etagList.add(response.header("ETag"));
+                }
+                count = 0;
+            } catch (IOException e) {
+                closed = true;
+                abortUpload();
+                throw e;
+            }
+        }
+
+        /**
+         * Complete the multipart upload.
+         *
+         * @throws IOException e
+         */
+        private void completeUpload() throws IOException {
+            StringBuilder sb = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etagList.size(); i++) {
+                sb.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etagList.get(i).replace("&", "&amp;").replace("<", "&lt;"))
+                        .append("</ETag></Part>");
+            }
+            sb.append("</CompleteMultipartUpload>");
+            try (Response response = execute("POST", key, ImmutableMap.of("uploadId", uploadId), ImmutableMap.of(),
+                    RequestBody.create(sb.toString(), MediaType.get("application/xml")))) {
+                checkSuccessful(response, "Error completing the upload of the object " + key);
+                parseXml(response);
+            }
+        }
+
+        /**
+         * Abort the multipart upload, releasing the uploaded parts.
+         */
+        private void abortUpload() {
+            if (uploadId == null) {
+                return;
+            }
+            try (Response response = execute("DELETE", key, ImmutableMap.of("uploadId", uploadId), ImmutableMap.of(), null)) {
+                // The parts are released by the object store
+            } catch (IOException e) {
+                // The parts are released by the lifecycle rules of the bucket
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sismics.docs.core.util.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Storage of the file contents and their thumbnails, as objects addressed by a key.
+ * The contents are encrypted before being stored.
+ */
+public interface StorageBackend extends AutoCloseable {
+    /**
+     * Write an object, replacing the existing one.
+     * The object is visible once the stream is closed.
+     *
+     * @param key Object key
+     * @return Output stream
+     * @throws IOException e
+     */
+    OutputStream put(String key) throws IOException;
+
+    /**
+     * Read an object.
+     *
+     * @param key Object key
+     * @return Input stream
+     * @throws java.nio.file.NoSuchFileException If the object doesn't exist
+     * @throws IOException e
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Read a range of an object.
+     *
+     * @param key Object key
+     * @param offset Offset of the first byte
+     * @param length Number of bytes to read
+     * @return Input stream
+     * @throws java.nio.file.NoSuchFileException If the object doesn't exist
+     * @throws IOException e
+     */
+    InputStream get(String key, long offset, long length) throws IOException;
+
+    /**
+     * Returns the metadata of an object.
+     *
+     * @param key Object key
+     * @return Object metadata or null if the object doesn't exist
+     * @throws IOException e
+     */
+    StorageObject stat(String key) throws IOException;
+
+    /**
+     * Move an object to another key, replacing the existing one.
+     *
+     * @param sourceKey Object key
+     * @param targetKey New object key
+     * @throws IOException e
+     */
+    void move(String sourceKey, String targetKey) throws IOException;
+
+    /**
+     * Delete an object, if it exists.
+     *
+     * @param key Object key
+     * @throws IOException e
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * List the keys of all objects.
+     * The stream must be closed.
+     *
+     * @return Object keys
+     * @throws IOException e
+     */
+    Stream<String> list() throws IOException;
+
+    /**
+     * Release the resources of the backend.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,58 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Date;
+
+/**
+ * Metadata of a stored object.
+ */
+public class StorageObject {
+    /**
+     * Object key.
+     */
+    private final String key;
+
+    /**
+     * Size in bytes.
+     */
+    private final long size;
+
+    /**
+     * Last modification date.
+     */
+    private final Date lastModified;
+
+    /**
+     * Constructor.
+     *
+     * @param key Object key
+     * @param size Size in bytes
+     * @param lastModified Last modification date
+     */
+    public StorageObject(String key, long size, Date lastModified) {
+        this.key = key;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("key", key)
+                .add("size", size)
+                .toString();
+    }
+}
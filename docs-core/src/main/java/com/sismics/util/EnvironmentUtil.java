@@ -1,5 +1,8 @@
 package com.sismics.util;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
 /**
  * Environment properties utilities.
  *
@@ -22,6 +25,11 @@ public class EnvironmentUtil {
      */
     private static boolean webappContext;
 
+    /**
+     * Name of this node.
+     */
+    private static String nodeId;
+
     /**
      * Returns true if running under Microsoft Windows.
      *
@@ -111,4 +119,21 @@ public class EnvironmentUtil {
     public static void setWebappContext(boolean webappContext) {
         EnvironmentUtil.webappContext = webappContext;
     }
+
+    /**
+     * Returns the name of this node, identifying it among the nodes sharing the database.
+     * The host name is used so that a restarted node recognizes its own work.
+     *
+     * @return Node name
+     */
+    public static String getNodeId() {
+        if (nodeId == null) {
+            try {
+                nodeId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                nodeId = "localhost";
+            }
+        }
+        return nodeId;
+    }
 }
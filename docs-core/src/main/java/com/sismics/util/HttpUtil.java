@@ -1,6 +1,9 @@
 package com.sismics.util;
 
 import java.text.SimpleDateFormat;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.Locale;
 
@@ -24,4 +27,61 @@ public class HttpUtil {
     public static String buildExpiresHeader(long futureTime) {
         return EXPIRES_FORMAT.format(new Date().getTime() + futureTime);
     }
+
+    /**
+     * Parse an HTTP date header.
+     *
+     * @param value Header value
+     * @return Date or null if not a valid date
+     */
+    public static Date parseDate(String value) {
+        try {
+            return Date.from(ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a Range HTTP header.
+     * Only a single byte range is supported, otherwise the whole content should be sent.
+     *
+     * @param range Header value, can be null
+     * @param length Content length
+     * @return First and last byte positions (inclusive), or null to send the whole content.
+     * The first position is after the end of the content if the range cannot be satisfied.
+     */
+    public static long[] parseRange(String range, long length) {
+        if (range == null || !range.startsWith("bytes=") || range.contains(",")) {
+            return null;
+        }
+
+        String spec = range.substring("bytes=".length()).trim();
+        int dashIndex = spec.indexOf('-');
+        if (dashIndex < 0) {
+            return null;
+        }
+        String first = spec.substring(0, dashIndex).trim();
+        String last = spec.substring(dashIndex + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                // Last bytes of the content
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength <= 0) {
+                    return new long[] { length, length - 1 };
+                }
+                return new long[] { Math.max(length - suffixLength, 0), length - 1 };
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start < length && end < start) {
+                // Invalid range, ignored
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
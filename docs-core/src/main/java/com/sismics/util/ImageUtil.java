@@ -4,8 +4,11 @@ import com.google.common.hash.Hashing;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -13,6 +16,7 @@ import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Iterator;
 
 /**
@@ -21,6 +25,38 @@ import java.util.Iterator;
  * @author jtremeaux
  */
 public class ImageUtil {
+    /**
+     * Read an image, subsampled while decoding if it is much larger than needed.
+     * The longest side of the returned image is at least the requested size, unless the image is smaller.
+     *
+     * @param file Image file
+     * @param minSize Minimum size of the longest side
+     * @return Image, or null if the format is not supported
+     * @throws IOException e
+     */
+    public static BufferedImage readImage(Path file, int minSize) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> iter = imageInputStream == null ? null : ImageIO.getImageReaders(imageInputStream);
+            if (iter == null || !iter.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = iter.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(reader.getWidth(0), reader.getHeight(0)) / minSize;
+                if (subsampling > 1) {
+                    // Decode one pixel out of n, in both directions
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
     /**
      * Write a high quality JPEG.
      * 
@@ -29,6 +65,18 @@ public class ImageUtil {
      * @throws IOException e
      */
     public static void writeJpeg(BufferedImage image, OutputStream outputStream) throws IOException {
+        writeJpeg(image, outputStream, 1.f);
+    }
+
+    /**
+     * Write a JPEG.
+     *
+     * @param image Image
+     * @param outputStream Output stream
+     * @param quality Compression quality, between 0 and 1
+     * @throws IOException e
+     */
+    public static void writeJpeg(BufferedImage image, OutputStream outputStream, float quality) throws IOException {
         Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("jpeg");
         ImageWriter writer = null;
         ImageOutputStream imageOutputStream = null;
@@ -36,7 +84,7 @@ public class ImageUtil {
             writer = iter.next();
             ImageWriteParam iwp = writer.getDefaultWriteParam();
             iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            iwp.setCompressionQuality(1.f);
+            iwp.setCompressionQuality(quality);
             imageOutputStream = ImageIO.createImageOutputStream(outputStream);
             writer.setOutput(imageOutputStream);
 
@@ -1,11 +1,18 @@
 package com.sismics.util.context;
 
 import com.google.common.collect.Lists;
+import com.sismics.docs.core.event.DocumentUpdatedAsyncEvent;
+import com.sismics.docs.core.event.FileEvent;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.service.FileProcessingJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Context associated to a user request, and stored in a ThreadLocal.
@@ -13,6 +20,11 @@ import java.util.List;
  * @author jtremeaux
  */
 public class ThreadLocalContext {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ThreadLocalContext.class);
+
     /**
      * ThreadLocal to store the context.
      */
@@ -28,6 +40,11 @@ public class ThreadLocalContext {
      */
     private List<Object> asyncEventList = Lists.newArrayList();
 
+    /**
+     * True if this context serves an HTTP request.
+     */
+    private boolean requestThread;
+
     /**
      * Private constructor.
      */
@@ -58,15 +75,12 @@ public class ThreadLocalContext {
     
     /**
      * Getter of entityManager.
+     * The persistence context lives as long as the request: pending changes are flushed
+     * before the queries they affect and at commit.
      *
      * @return entityManager
      */
     public EntityManager getEntityManager() {
-        if (entityManager != null && entityManager.isOpen()) {
-            // This disables the L1 cache
-            entityManager.flush();
-            entityManager.clear();
-        }
         return entityManager;
     }
 
@@ -79,6 +93,24 @@ public class ThreadLocalContext {
         this.entityManager = entityManager;
     }
 
+    /**
+     * Getter of requestThread.
+     *
+     * @return requestThread
+     */
+    public boolean isRequestThread() {
+        return requestThread;
+    }
+
+    /**
+     * Setter of requestThread.
+     *
+     * @param requestThread requestThread
+     */
+    public void setRequestThread(boolean requestThread) {
+        this.requestThread = requestThread;
+    }
+
     /**
      * Add an async event to the queue to be fired after the current request.
      *
@@ -92,11 +124,44 @@ public class ThreadLocalContext {
      * Fire all pending async events.
      */
     public void fireAllAsyncEvents() {
+        List<String> postponedJobIdList = new ArrayList<>();
         Iterator<Object> iterator = asyncEventList.iterator();
         while (iterator.hasNext()) {
             Object asyncEvent = iterator.next();
             iterator.remove();
-            AppContext.getInstance().getAsyncEventBus().post(asyncEvent);
+            if (asyncEvent instanceof FileEvent) {
+                if (!postFileEvent((FileEvent) asyncEvent) && ((FileEvent) asyncEvent).getJobId() != null) {
+                    postponedJobIdList.add(((FileEvent) asyncEvent).getJobId());
+                }
+            } else if (asyncEvent instanceof DocumentUpdatedAsyncEvent) {
+                AppContext.getInstance().getDocumentUpdatedCoalescer().submit((DocumentUpdatedAsyncEvent) asyncEvent);
+            } else {
+                AppContext.getInstance().getAsyncEventBus().post(asyncEvent);
+            }
+        }
+
+        // The rejected files are processed by the job poller
+        if (!postponedJobIdList.isEmpty()) {
+            FileProcessingJobService.postpone(postponedJobIdList);
+        }
+    }
+
+    /**
+     * Post a file event to the generic bus for the webhooks,
+     * and to the file processing bus of its lane.
+     * Waits for room if the processing queue is full.
+     *
+     * @param fileEvent File event
+     * @return False if the processing queue is full
+     */
+    private boolean postFileEvent(FileEvent fileEvent) {
+        AppContext.getInstance().getAsyncEventBus().post(fileEvent);
+        try {
+            AppContext.getInstance().getFileProcessingEventBus(fileEvent.getLane()).post(fileEvent);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("File processing postponed: " + fileEvent, e);
+            return false;
         }
     }
 }
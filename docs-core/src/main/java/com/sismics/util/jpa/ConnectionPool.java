@@ -0,0 +1,131 @@
+package com.sismics.util.jpa;
+
+import com.sismics.docs.core.util.ConfigUtil;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+
+/**
+ * Database connection pool.
+ * Connections are pooled by HikariCP, configured by the DATABASE_POOL_* environment variables.
+ */
+public final class ConnectionPool {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /**
+     * Name of the application pool.
+     */
+    private static final String POOL_NAME = "docs";
+
+    /**
+     * Name of the pool used to update the database schema.
+     */
+    private static final String SETUP_POOL_NAME = "docs-setup";
+
+    /**
+     * Prefix of the HikariCP properties.
+     */
+    private static final String HIKARI_PREFIX = "hibernate.hikari.";
+
+    /**
+     * Maximum number of connections environment variable.
+     */
+    private static final String POOL_SIZE_ENV = "DATABASE_POOL_SIZE";
+
+    /**
+     * Minimum number of idle connections environment variable.
+     */
+    private static final String POOL_MIN_IDLE_ENV = "DATABASE_POOL_MIN_IDLE";
+
+    /**
+     * Maximum time waiting for a connection in milliseconds environment variable.
+     */
+    private static final String POOL_TIMEOUT_ENV = "DATABASE_POOL_TIMEOUT";
+
+    /**
+     * Time in milliseconds after which a connection not returned to the pool is logged as a possible leak environment variable.
+     */
+    private static final String POOL_LEAK_DETECTION_ENV = "DATABASE_POOL_LEAK_DETECTION";
+
+    /**
+     * Number of prepared statements cached per connection environment variable (PostgreSQL only).
+     */
+    private static final String STATEMENT_CACHE_SIZE_ENV = "DATABASE_STATEMENT_CACHE_SIZE";
+
+    /**
+     * Private constructor.
+     */
+    private ConnectionPool() {
+    }
+
+    /**
+     * Configure the connection pool in the entity manager properties.
+     * An explicitly configured connection provider is kept.
+     *
+     * @param properties Entity manager properties (updated by side effects)
+     */
+    static void configure(Properties properties) {
+        if (properties.containsKey(AvailableSettings.CONNECTION_PROVIDER)) {
+            return;
+        }
+
+        int maxSize = ConfigUtil.getEnvIntegerValue(POOL_SIZE_ENV,
+                Integer.parseInt(properties.getProperty(AvailableSettings.POOL_SIZE, "10")));
+        int minIdle = Math.min(ConfigUtil.getEnvIntegerValue(POOL_MIN_IDLE_ENV, maxSize), maxSize);
+        long timeout = ConfigUtil.getEnvLongValue(POOL_TIMEOUT_ENV, 30000);
+        long leakDetection = ConfigUtil.getEnvLongValue(POOL_LEAK_DETECTION_ENV, 0);
+
+        properties.remove(AvailableSettings.POOL_SIZE);
+        properties.remove("hibernate.connection.initial_pool_size");
+        properties.remove("hibernate.connection.pool_validation_interval");
+        properties.put(AvailableSettings.CONNECTION_PROVIDER, "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+
+        // Transactions are always demarcated by Hibernate
+        properties.put(AvailableSettings.AUTOCOMMIT, "false");
+        properties.put(AvailableSettings.CONNECTION_PROVIDER_DISABLES_AUTOCOMMIT, "true");
+
+        properties.put(HIKARI_PREFIX + "poolName", POOL_NAME);
+        properties.put(HIKARI_PREFIX + "maximumPoolSize", Integer.toString(maxSize));
+        properties.put(HIKARI_PREFIX + "minimumIdle", Integer.toString(minIdle));
+        properties.put(HIKARI_PREFIX + "connectionTimeout", Long.toString(timeout));
+        properties.put(HIKARI_PREFIX + "leakDetectionThreshold", Long.toString(leakDetection));
+        properties.put(HIKARI_PREFIX + "metricsTrackerFactory", ConnectionPoolMetrics.class.getName());
+
+        // The PostgreSQL driver prepares the statements executed often on the server
+        String driver = properties.getProperty(AvailableSettings.DRIVER, "");
+        if (driver.contains("postgresql")) {
+            properties.put(HIKARI_PREFIX + "dataSource.preparedStatementCacheQueries",
+                    Integer.toString(ConfigUtil.getEnvIntegerValue(STATEMENT_CACHE_SIZE_ENV, 256)));
+        }
+
+        log.info("Connection pool: {} to {} connections, {}ms timeout", minIdle, maxSize, timeout);
+    }
+
+    /**
+     * Returns the properties used to update the database schema, with a single connection pooled.
+     *
+     * @param properties Entity manager properties
+     * @return Schema update properties
+     */
+    static Properties getSetupProperties(Properties properties) {
+        Properties setupProperties = new Properties();
+        setupProperties.putAll(properties);
+        if (setupProperties.containsKey(HIKARI_PREFIX + "poolName")) {
+            setupProperties.put(HIKARI_PREFIX + "poolName", SETUP_POOL_NAME);
+            setupProperties.put(HIKARI_PREFIX + "maximumPoolSize", "1");
+            setupProperties.put(HIKARI_PREFIX + "minimumIdle", "1");
+        }
+        return setupProperties;
+    }
+
+    /**
+     * Returns the metrics of the application pool.
+     *
+     * @return Metrics or null if the connections are not pooled by HikariCP
+     */
+    public static ConnectionPoolMetrics.PoolMetrics getMetrics() {
+        return ConnectionPoolMetrics.get(POOL_NAME);
+    }
+}
@@ -0,0 +1,169 @@
+package com.sismics.util.jpa;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the database connection pools.
+ * Instantiated by HikariCP, the metrics of each pool are registered by pool name.
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+    /**
+     * Metrics by pool name.
+     */
+    private static final Map<String, PoolMetrics> POOL_METRICS_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the metrics of a pool.
+     *
+     * @param poolName Pool name
+     * @return Metrics or null if the pool is not running
+     */
+    public static PoolMetrics get(String poolName) {
+        return POOL_METRICS_MAP.get(poolName);
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        PoolMetrics poolMetrics = new PoolMetrics(poolName, poolStats);
+        POOL_METRICS_MAP.put(poolName, poolMetrics);
+        return poolMetrics;
+    }
+
+    /**
+     * Metrics of a pool.
+     */
+    public static class PoolMetrics implements IMetricsTracker {
+        /**
+         * Pool name.
+         */
+        private final String poolName;
+
+        /**
+         * Connection statistics maintained by the pool.
+         */
+        private final PoolStats poolStats;
+
+        /**
+         * Number of acquired connections.
+         */
+        private final LongAdder acquireCount = new LongAdder();
+
+        /**
+         * Total time waiting for a connection in nanoseconds.
+         */
+        private final LongAdder acquireNanos = new LongAdder();
+
+        /**
+         * Longest time waiting for a connection in nanoseconds.
+         */
+        private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Total time connections have been used in milliseconds.
+         */
+        private final LongAdder usageMillis = new LongAdder();
+
+        /**
+         * Number of connection requests timed out.
+         */
+        private final LongAdder timeoutCount = new LongAdder();
+
+        /**
+         * Constructor.
+         *
+         * @param poolName Pool name
+         * @param poolStats Connection statistics maintained by the pool
+         */
+        private PoolMetrics(String poolName, PoolStats poolStats) {
+            this.poolName = poolName;
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireCount.increment();
+            acquireNanos.add(elapsedAcquiredNanos);
+            maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageMillis.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeoutCount.increment();
+        }
+
+        @Override
+        public void close() {
+            POOL_METRICS_MAP.remove(poolName, this);
+        }
+
+        public int getActiveConnections() {
+            return poolStats.getActiveConnections();
+        }
+
+        public int getIdleConnections() {
+            return poolStats.getIdleConnections();
+        }
+
+        public int getTotalConnections() {
+            return poolStats.getTotalConnections();
+        }
+
+        public int getMaxConnections() {
+            return poolStats.getMaxConnections();
+        }
+
+        public int getPendingThreads() {
+            return poolStats.getPendingThreads();
+        }
+
+        public long getAcquireCount() {
+            return acquireCount.sum();
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount.sum();
+        }
+
+        /**
+         * Returns the average time waiting for a connection.
+         *
+         * @return Time in milliseconds
+         */
+        public double getAverageAcquireMillis() {
+            long count = acquireCount.sum();
+            return count == 0 ? 0 : (double) acquireNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * Returns the longest time waiting for a connection.
+         *
+         * @return Time in milliseconds
+         */
+        public double getMaxAcquireMillis() {
+            return (double) maxAcquireNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * Returns the average time a connection is used.
+         *
+         * @return Time in milliseconds
+         */
+        public double getAverageUsageMillis() {
+            long count = acquireCount.sum();
+            return count == 0 ? 0 : (double) usageMillis.sum() / count;
+        }
+    }
+}
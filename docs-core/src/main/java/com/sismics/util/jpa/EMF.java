@@ -2,9 +2,11 @@ package com.sismics.util.jpa;
 
 import com.google.common.base.Strings;
 import com.sismics.docs.core.util.DirectoryUtil;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.internal.util.config.ConfigurationHelper;
-import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,9 +35,12 @@ public final class EMF {
     static {
         try {
             properties = getEntityManagerProperties();
+            ConnectionPool.configure(properties);
 
             ConfigurationHelper.resolvePlaceHolders(properties);
-            ServiceRegistry reg = new StandardServiceRegistryBuilder().applySettings(properties).build();
+            StandardServiceRegistry reg = new StandardServiceRegistryBuilder()
+                    .applySettings(ConnectionPool.getSetupProperties(properties))
+                    .build();
 
             DbOpenHelper openHelper = new DbOpenHelper(reg) {
                 @Override
@@ -52,8 +57,13 @@ public final class EMF {
             };
             openHelper.open();
             
-            emfInstance = Persistence.createEntityManagerFactory("transactions-optional", getEntityManagerProperties());
-            
+            Properties emfProperties = new Properties();
+            emfProperties.putAll(properties);
+            EntityCache.configure(emfProperties);
+            emfInstance = Persistence.createEntityManagerFactory("transactions-optional", emfProperties);
+
+            // Close the schema update connection, the application pool is open now
+            StandardServiceRegistryBuilder.destroy(reg);
         } catch (Throwable t) {
             log.error("Error creating EMF", t);
         }
@@ -79,10 +89,6 @@ public final class EMF {
         String databaseUrl = System.getenv("DATABASE_URL");
         String databaseUsername = System.getenv("DATABASE_USER");
         String databasePassword = System.getenv("DATABASE_PASSWORD");
-        String databasePoolSize = System.getenv("DATABASE_POOL_SIZE");
-        if(databasePoolSize == null) {
-            databasePoolSize = "10";
-        }
 
         log.info("Configuring EntityManager from environment parameters");
         Properties props = new Properties();
@@ -106,9 +112,6 @@ public final class EMF {
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.max_fetch_depth", "5");
         props.put("hibernate.cache.use_second_level_cache", "false");
-        props.put("hibernate.connection.initial_pool_size", "1");
-        props.put("hibernate.connection.pool_size", databasePoolSize);
-        props.put("hibernate.connection.pool_validation_interval", "5");
         return props;
     }
     
@@ -127,6 +130,15 @@ public final class EMF {
         return emfInstance;
     }
 
+    /**
+     * Returns the statistics of the entity manager factory, collected if the second-level cache is enabled.
+     *
+     * @return Statistics
+     */
+    public static Statistics getStatistics() {
+        return emfInstance.unwrap(SessionFactory.class).getStatistics();
+    }
+
     public static boolean isDriverH2() {
         String driver = getDriver();
         return driver.contains("h2");
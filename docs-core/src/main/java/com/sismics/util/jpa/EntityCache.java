@@ -0,0 +1,133 @@
+package com.sismics.util.jpa;
+
+import com.google.common.collect.ImmutableMap;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.util.ConfigUtil;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Second-level cache of the entities and queries.
+ * Regions are held in memory by Ehcache, each with its own maximum size and time to live.
+ * The cache is local to this instance, it must stay disabled if the database is shared by several instances.
+ */
+public final class EntityCache {
+    private static final Logger log = LoggerFactory.getLogger(EntityCache.class);
+
+    /**
+     * Entity regions.
+     */
+    public static final String USER = "user";
+    public static final String CONFIG = "config";
+    public static final String ROLE = "role";
+    public static final String GROUP = "group";
+    public static final String TAG = "tag";
+    public static final String VOCABULARY = "vocabulary";
+    public static final String METADATA = "metadata";
+
+    /**
+     * Region of the query results.
+     */
+    private static final String QUERY = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+
+    /**
+     * Region of the last update timestamps of the tables, checked before using query results.
+     */
+    private static final String TIMESTAMPS = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    /**
+     * Suffix of the environment variables configuring a region, by region name.
+     */
+    private static final Map<String, String> REGION_ENV_MAP = ImmutableMap.<String, String>builder()
+            .put(USER, "USER")
+            .put(CONFIG, "CONFIG")
+            .put(ROLE, "ROLE")
+            .put(GROUP, "GROUP")
+            .put(TAG, "TAG")
+            .put(VOCABULARY, "VOCABULARY")
+            .put(METADATA, "METADATA")
+            .put(QUERY, "QUERY")
+            .build();
+
+    /**
+     * Default maximum number of entries per region.
+     */
+    private static final long DEFAULT_SIZE = 10000;
+
+    /**
+     * Default time to live of the entries in seconds.
+     * Entries are invalidated on changes, this only limits how long changes made outside of Hibernate stay unseen.
+     */
+    private static final long DEFAULT_TTL = 600;
+
+    /**
+     * True if the second-level cache is enabled.
+     */
+    private static boolean enabled;
+
+    /**
+     * Private constructor.
+     */
+    private EntityCache() {
+    }
+
+    /**
+     * Configure the second-level cache in the entity manager properties.
+     * The cache is enabled by an environment variable, or in hibernate.properties.
+     *
+     * @param properties Entity manager properties (updated by side effects)
+     */
+    static void configure(Properties properties) {
+        enabled = ConfigUtil.getEnvBooleanValue(Constants.ENTITY_CACHE_ENV,
+                Boolean.parseBoolean(properties.getProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE)));
+        if (!enabled) {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+            properties.put(AvailableSettings.USE_QUERY_CACHE, "false");
+            return;
+        }
+
+        CacheManager cacheManager = Caching.getCachingProvider(EhcacheCachingProvider.class.getName()).getCacheManager();
+        long defaultSize = ConfigUtil.getEnvLongValue(Constants.ENTITY_CACHE_SIZE_ENV, DEFAULT_SIZE);
+        long defaultTtl = ConfigUtil.getEnvLongValue(Constants.ENTITY_CACHE_TTL_ENV, DEFAULT_TTL);
+        for (Map.Entry<String, String> region : REGION_ENV_MAP.entrySet()) {
+            long size = ConfigUtil.getEnvLongValue(Constants.ENTITY_CACHE_SIZE_ENV + "_" + region.getValue(), defaultSize);
+            long ttl = ConfigUtil.getEnvLongValue(Constants.ENTITY_CACHE_TTL_ENV + "_" + region.getValue(), defaultTtl);
+            cacheManager.createCache(region.getKey(), Eh107Configuration.fromEhcacheCacheConfiguration(
+                    CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(size))
+                            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttl)))));
+            log.info("Cache region {}: {} entries, {}s time to live", region.getKey(), size, ttl);
+        }
+
+        // One timestamp per table, they must not expire before the query results
+        cacheManager.createCache(TIMESTAMPS, Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(1000))));
+
+        properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        properties.put(AvailableSettings.USE_QUERY_CACHE, "true");
+        properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+        properties.put("hibernate.javax.cache.cache_manager", cacheManager);
+        properties.put(AvailableSettings.GENERATE_STATISTICS, "true");
+    }
+
+    /**
+     * Returns true if the second-level cache is enabled.
+     *
+     * @return True if enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+}
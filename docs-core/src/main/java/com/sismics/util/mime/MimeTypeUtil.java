@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * Utility to check MIME types.
@@ -11,6 +12,14 @@ import java.nio.file.Path;
  * @author bgamard
  */
 public class MimeTypeUtil {
+    /**
+     * Leading bytes of the formats recognized by their content.
+     */
+    private static final byte[] PDF_SIGNATURE = { '%', 'P', 'D', 'F', '-' };
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] JPEG_SIGNATURE = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+    private static final byte[] GIF_SIGNATURE = { 'G', 'I', 'F', '8' };
+
     /**
      * Try to guess the MIME type of a file.
      * 
@@ -32,6 +41,45 @@ public class MimeTypeUtil {
 
         return mimeType;
     }
+
+    /**
+     * Try to guess the MIME type of a file from its leading bytes, then from its name.
+     *
+     * @param header Leading bytes of the file
+     * @param file File to inspect
+     * @param name File name
+     * @return MIME type
+     * @throws IOException e
+     */
+    public static String guessMimeType(byte[] header, Path file, String name) throws IOException {
+        if (startsWith(header, PDF_SIGNATURE)) {
+            return MimeType.APPLICATION_PDF;
+        }
+        if (startsWith(header, PNG_SIGNATURE)) {
+            return MimeType.IMAGE_PNG;
+        }
+        if (startsWith(header, JPEG_SIGNATURE)) {
+            return MimeType.IMAGE_JPEG;
+        }
+        if (startsWith(header, GIF_SIGNATURE)) {
+            return MimeType.IMAGE_GIF;
+        }
+
+        // Formats sharing a container, like ZIP, are told apart by their name
+        return guessMimeType(file, name);
+    }
+
+    /**
+     * Returns true if some bytes start with a signature.
+     *
+     * @param header Bytes
+     * @param signature Signature
+     * @return True if the bytes start with the signature
+     */
+    private static boolean startsWith(byte[] header, byte[] signature) {
+        return header.length >= signature.length
+                && Arrays.equals(header, 0, signature.length, signature, 0, signature.length);
+    }
     
     /**
      * Get a file extension linked to a MIME type.
@@ -0,0 +1,18 @@
+-- DBUPDATE-032-0.SQL
+
+-- Transitive closure of the group hierarchy: each active group is linked to itself and all its ancestors
+create cached table T_GROUP_CLOSURE ( GCL_IDGROUP_C varchar(36) not null, GCL_IDANCESTOR_C varchar(36) not null, GCL_DEPTH_N int not null, primary key (GCL_IDGROUP_C, GCL_IDANCESTOR_C) );
+create index IDX_GCL_IDANCESTOR_C on T_GROUP_CLOSURE (GCL_IDANCESTOR_C);
+
+-- Fill the closure from the existing groups, each pass doubles the depth covered (up to 64 levels)
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select g.GRP_ID_C, g.GRP_ID_C, 0 from T_GROUP g where g.GRP_DELETEDATE_D is null;
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select g.GRP_ID_C, gp.GRP_ID_C, 1 from T_GROUP g join T_GROUP gp on gp.GRP_ID_C = g.GRP_IDPARENT_C and gp.GRP_DELETEDATE_D is null where g.GRP_DELETEDATE_D is null and g.GRP_IDPARENT_C <> g.GRP_ID_C;
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C, min(c1.GCL_DEPTH_N + c2.GCL_DEPTH_N) from T_GROUP_CLOSURE c1 join T_GROUP_CLOSURE c2 on c2.GCL_IDGROUP_C = c1.GCL_IDANCESTOR_C and c2.GCL_DEPTH_N > 0 where c1.GCL_DEPTH_N > 0 and not exists (select 1 from T_GROUP_CLOSURE c3 where c3.GCL_IDGROUP_C = c1.GCL_IDGROUP_C and c3.GCL_IDANCESTOR_C = c2.GCL_IDANCESTOR_C) group by c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C;
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C, min(c1.GCL_DEPTH_N + c2.GCL_DEPTH_N) from T_GROUP_CLOSURE c1 join T_GROUP_CLOSURE c2 on c2.GCL_IDGROUP_C = c1.GCL_IDANCESTOR_C and c2.GCL_DEPTH_N > 0 where c1.GCL_DEPTH_N > 0 and not exists (select 1 from T_GROUP_CLOSURE c3 where c3.GCL_IDGROUP_C = c1.GCL_IDGROUP_C and c3.GCL_IDANCESTOR_C = c2.GCL_IDANCESTOR_C) group by c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C;
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C, min(c1.GCL_DEPTH_N + c2.GCL_DEPTH_N) from T_GROUP_CLOSURE c1 join T_GROUP_CLOSURE c2 on c2.GCL_IDGROUP_C = c1.GCL_IDANCESTOR_C and c2.GCL_DEPTH_N > 0 where c1.GCL_DEPTH_N > 0 and not exists (select 1 from T_GROUP_CLOSURE c3 where c3.GCL_IDGROUP_C = c1.GCL_IDGROUP_C and c3.GCL_IDANCESTOR_C = c2.GCL_IDANCESTOR_C) group by c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C;
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C, min(c1.GCL_DEPTH_N + c2.GCL_DEPTH_N) from T_GROUP_CLOSURE c1 join T_GROUP_CLOSURE c2 on c2.GCL_IDGROUP_C = c1.GCL_IDANCESTOR_C and c2.GCL_DEPTH_N > 0 where c1.GCL_DEPTH_N > 0 and not exists (select 1 from T_GROUP_CLOSURE c3 where c3.GCL_IDGROUP_C = c1.GCL_IDGROUP_C and c3.GCL_IDANCESTOR_C = c2.GCL_IDANCESTOR_C) group by c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C;
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C, min(c1.GCL_DEPTH_N + c2.GCL_DEPTH_N) from T_GROUP_CLOSURE c1 join T_GROUP_CLOSURE c2 on c2.GCL_IDGROUP_C = c1.GCL_IDANCESTOR_C and c2.GCL_DEPTH_N > 0 where c1.GCL_DEPTH_N > 0 and not exists (select 1 from T_GROUP_CLOSURE c3 where c3.GCL_IDGROUP_C = c1.GCL_IDGROUP_C and c3.GCL_IDANCESTOR_C = c2.GCL_IDANCESTOR_C) group by c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C;
+insert into T_GROUP_CLOSURE (GCL_IDGROUP_C, GCL_IDANCESTOR_C, GCL_DEPTH_N) select c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C, min(c1.GCL_DEPTH_N + c2.GCL_DEPTH_N) from T_GROUP_CLOSURE c1 join T_GROUP_CLOSURE c2 on c2.GCL_IDGROUP_C = c1.GCL_IDANCESTOR_C and c2.GCL_DEPTH_N > 0 where c1.GCL_DEPTH_N > 0 and not exists (select 1 from T_GROUP_CLOSURE c3 where c3.GCL_IDGROUP_C = c1.GCL_IDGROUP_C and c3.GCL_IDANCESTOR_C = c2.GCL_IDANCESTOR_C) group by c1.GCL_IDGROUP_C, c2.GCL_IDANCESTOR_C;
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '32' where CFG_ID_C = 'DB_VERSION';
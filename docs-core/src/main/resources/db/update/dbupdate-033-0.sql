@@ -0,0 +1,9 @@
+-- DBUPDATE-033-0.SQL
+
+-- Durable file processing jobs
+create cached table T_FILE_PROCESSING_JOB ( FPJ_ID_C varchar(36) not null, FPJ_IDFILE_C varchar(36) not null, FPJ_IDUSER_C varchar(36) not null, FPJ_LANGUAGE_C varchar(7), FPJ_LANE_C varchar(20) not null, FPJ_FILECREATED_B bit not null, FPJ_STATUS_C varchar(20) not null, FPJ_ATTEMPTS_N int not null default 0, FPJ_LEASEOWNER_C varchar(200), FPJ_LEASEDATE_D datetime, FPJ_NEXTDATE_D datetime not null, FPJ_ERROR_C varchar(4000), FPJ_CREATEDATE_D datetime not null, FPJ_UPDATEDATE_D datetime not null, primary key (FPJ_ID_C) );
+create index IDX_FPJ_STATUS_C on T_FILE_PROCESSING_JOB (FPJ_STATUS_C, FPJ_NEXTDATE_D);
+create index IDX_FPJ_IDFILE_C on T_FILE_PROCESSING_JOB (FPJ_IDFILE_C);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '33' where CFG_ID_C = 'DB_VERSION';
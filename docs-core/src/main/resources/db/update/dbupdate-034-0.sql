@@ -0,0 +1,12 @@
+-- DBUPDATE-034-0.SQL
+
+-- Webhooks receiving their events in batches
+alter table T_WEBHOOK add column WHK_BATCH_B bit not null default 0;
+
+-- Outbox of the webhook deliveries
+create cached table T_WEBHOOK_DELIVERY ( WHD_ID_C varchar(36) not null, WHD_IDWEBHOOK_C varchar(36) not null, WHD_EVENT_C varchar(50) not null, WHD_ENTITYID_C varchar(36) not null, WHD_STATUS_C varchar(20) not null, WHD_ATTEMPTS_N int not null default 0, WHD_LEASE_C varchar(36), WHD_NEXTDATE_D datetime not null, WHD_RESPONSECODE_N int, WHD_DURATION_N bigint, WHD_ERROR_C varchar(4000), WHD_CREATEDATE_D datetime not null, WHD_UPDATEDATE_D datetime not null, primary key (WHD_ID_C) );
+create index IDX_WHD_STATUS_C on T_WEBHOOK_DELIVERY (WHD_STATUS_C, WHD_NEXTDATE_D);
+create index IDX_WHD_IDWEBHOOK_C on T_WEBHOOK_DELIVERY (WHD_IDWEBHOOK_C, WHD_CREATEDATE_D);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '34' where CFG_ID_C = 'DB_VERSION';
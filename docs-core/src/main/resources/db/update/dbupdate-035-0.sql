@@ -0,0 +1,10 @@
+-- DBUPDATE-035-0.SQL
+
+-- Stored contents shared by the files with the same content
+create cached table T_FILE_BLOB ( FBL_ID_C varchar(36) not null, FBL_IDUSER_C varchar(36) not null, FBL_HASH_C varchar(64) not null, FBL_SIZE_N bigint not null, FBL_REFERENCES_N int not null, FBL_CREATEDATE_D datetime not null, FBL_DELETEDATE_D datetime, primary key (FBL_ID_C) );
+create index IDX_FBL_HASH_C on T_FILE_BLOB (FBL_IDUSER_C, FBL_HASH_C);
+alter table T_FILE add column FIL_IDBLOB_C varchar(36);
+create index IDX_FIL_IDBLOB_C on T_FILE (FIL_IDBLOB_C);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '35' where CFG_ID_C = 'DB_VERSION';
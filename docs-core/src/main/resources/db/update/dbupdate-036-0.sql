@@ -0,0 +1,7 @@
+-- DBUPDATE-036-0.SQL
+
+-- Hash of the unencrypted content of the files, recorded when they are uploaded
+alter table T_FILE add column FIL_HASH_C varchar(64);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '36' where CFG_ID_C = 'DB_VERSION';
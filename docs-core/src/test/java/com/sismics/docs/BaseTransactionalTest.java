@@ -1,11 +1,12 @@
 package com.sismics.docs;
 
+import com.google.common.io.ByteStreams;
 import com.sismics.BaseTest;
 import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
-import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.EMF;
@@ -19,9 +20,7 @@ import jakarta.persistence.EntityTransaction;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import java.io.InputStream;
-import java.nio.file.Files;
-
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import java.io.OutputStream;
 
 /**
  * Base class of tests with a transactional context.
@@ -67,7 +66,9 @@ public abstract class BaseTransactionalTest extends BaseTest {
             file.setSize(fileSize);
             String fileId = fileDao.create(file, user.getId());
             Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-            Files.copy(new CipherInputStream(inputStream, cipher), DirectoryUtil.getStorageDirectory().resolve(fileId), REPLACE_EXISTING);
+            try (OutputStream outputStream = AppContext.getInstance().getStorageBackend().put(fileId)) {
+                ByteStreams.copy(new CipherInputStream(inputStream, cipher), outputStream);
+            }
             return file;
         }
     }
@@ -0,0 +1,38 @@
+package com.sismics.docs.core.dao.jpa;
+
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.FileBlobDao;
+import com.sismics.docs.core.model.jpa.FileBlob;
+import com.sismics.docs.core.model.jpa.User;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the reference counting of the file blobs.
+ */
+public class TestFileBlobDao extends BaseTransactionalTest {
+    @Test
+    public void referenceTest() throws Exception {
+        User user = createUser("referenceTest");
+        FileBlobDao fileBlobDao = new FileBlobDao();
+        String blobId = fileBlobDao.create(new FileBlob()
+                .setUserId(user.getId())
+                .setHash("a948904f2f0f479b8f8197694b30184b0d2ed1c1cd2a1ec0fb85d299a192a447")
+                .setSize(12L));
+
+        // The blob is found by its content, for its user only
+        Assert.assertEquals(1, fileBlobDao.findByHash(user.getId(), "a948904f2f0f479b8f8197694b30184b0d2ed1c1cd2a1ec0fb85d299a192a447").size());
+        Assert.assertTrue(fileBlobDao.findByHash("admin", "a948904f2f0f479b8f8197694b30184b0d2ed1c1cd2a1ec0fb85d299a192a447").isEmpty());
+
+        // The blob is deleted once its last reference is removed
+        Assert.assertTrue(fileBlobDao.addReference(blobId));
+        Assert.assertEquals(2, fileBlobDao.getActiveById(blobId).getReferenceCount());
+        Assert.assertFalse(fileBlobDao.removeReference(blobId));
+        Assert.assertTrue(fileBlobDao.removeReference(blobId));
+        Assert.assertNull(fileBlobDao.getActiveById(blobId));
+        Assert.assertTrue(fileBlobDao.findByHash(user.getId(), "a948904f2f0f479b8f8197694b30184b0d2ed1c1cd2a1ec0fb85d299a192a447").isEmpty());
+
+        // A deleted blob cannot be referenced again
+        Assert.assertFalse(fileBlobDao.addReference(blobId));
+    }
+}
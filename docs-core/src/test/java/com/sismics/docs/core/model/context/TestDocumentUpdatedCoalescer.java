@@ -0,0 +1,94 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.collect.Sets;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.sismics.docs.core.event.DocumentUpdatedAsyncEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TestDocumentUpdatedCoalescer {
+    @Test
+    public void coalesceTest() throws Exception {
+        BlockingQueue<DocumentUpdatedAsyncEvent> postedQueue = new LinkedBlockingQueue<>();
+        EventBus eventBus = new EventBus();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void on(DocumentUpdatedAsyncEvent event) {
+                postedQueue.add(event);
+            }
+        });
+        DocumentUpdatedCoalescer coalescer = new DocumentUpdatedCoalescer(eventBus, 100);
+
+        try {
+            // A burst of updates is posted once
+            coalescer.submit(newEvent("document1", "user1"));
+            coalescer.submit(newEvent("document1", "user2"));
+            coalescer.submit(newEvent("document1", "user1"));
+            coalescer.submit(newEvent("document2", "user1"));
+            DocumentUpdatedAsyncEvent posted1 = postedQueue.poll(10, TimeUnit.SECONDS);
+            DocumentUpdatedAsyncEvent posted2 = postedQueue.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(posted1);
+            Assert.assertNotNull(posted2);
+            if (posted1.getDocumentId().equals("document2")) {
+                DocumentUpdatedAsyncEvent swap = posted1;
+                posted1 = posted2;
+                posted2 = swap;
+            }
+            Assert.assertEquals("document1", posted1.getDocumentId());
+            Assert.assertEquals(Sets.newHashSet("user1", "user2"), posted1.getUserIdSet());
+            Assert.assertEquals("document2", posted2.getDocumentId());
+            Assert.assertEquals(Sets.newHashSet("user1"), posted2.getUserIdSet());
+            Assert.assertEquals(2, coalescer.getPendingCount());
+            coalescer.complete(posted2);
+            Assert.assertEquals(1, coalescer.getPendingCount());
+
+            // The updates received while processing are posted once completed
+            coalescer.submit(newEvent("document1", "user3"));
+            coalescer.submit(newEvent("document1", "user3"));
+            Assert.assertNull(postedQueue.poll(300, TimeUnit.MILLISECONDS));
+            coalescer.complete(posted1);
+            DocumentUpdatedAsyncEvent posted3 = postedQueue.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(posted3);
+            Assert.assertEquals(Sets.newHashSet("user3"), posted3.getUserIdSet());
+            coalescer.complete(posted3);
+            Assert.assertEquals(0, coalescer.getPendingCount());
+            Assert.assertEquals(6, coalescer.getSubmittedCount());
+            Assert.assertEquals(3, coalescer.getPostedCount());
+        } finally {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownTest() throws Exception {
+        BlockingQueue<DocumentUpdatedAsyncEvent> postedQueue = new LinkedBlockingQueue<>();
+        EventBus eventBus = new EventBus();
+        eventBus.register(new Object() {
+            @Subscribe
+            public void on(DocumentUpdatedAsyncEvent event) {
+                postedQueue.add(event);
+            }
+        });
+        DocumentUpdatedCoalescer coalescer = new DocumentUpdatedCoalescer(eventBus, 1000);
+
+        // The pending updates are posted before termination, the next ones immediately
+        coalescer.submit(newEvent("document1", "user1"));
+        coalescer.shutdown();
+        coalescer.submit(newEvent("document2", "user1"));
+        Assert.assertEquals("document2", postedQueue.take().getDocumentId());
+        Assert.assertTrue(coalescer.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals("document1", postedQueue.take().getDocumentId());
+    }
+
+    private DocumentUpdatedAsyncEvent newEvent(String documentId, String userId) {
+        DocumentUpdatedAsyncEvent event = new DocumentUpdatedAsyncEvent();
+        event.setDocumentId(documentId);
+        event.setUserId(userId);
+        return event;
+    }
+}
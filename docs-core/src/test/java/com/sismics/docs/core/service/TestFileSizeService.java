@@ -15,8 +15,15 @@ public class TestFileSizeService extends BaseTransactionalTest {
 
         FileDao fileDao = new FileDao();
         File file = createFile(user, File.UNKNOWN_SIZE);
-        FileSizeService fileSizeService = new FileSizeService();
+        FileSizeService fileSizeService = new FileSizeService(1);
         fileSizeService.processFile(file);
         Assert.assertEquals(fileDao.getFile(file.getId()).getSize(), Long.valueOf(FILE_JPG_SIZE));
+        Assert.assertEquals(1, fileSizeService.getProcessedCount());
+
+        // The content of a file may be missing
+        File missingFile = new File();
+        missingFile.setId("missing");
+        fileSizeService.processFile(missingFile);
+        Assert.assertEquals(1, fileSizeService.getFailedCount());
     }
 }
@@ -8,7 +8,9 @@ import org.junit.Test;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Test of the encryption utilities.
@@ -48,4 +50,19 @@ public class TestEncryptUtil extends BaseTest {
         
         Assert.assertEquals(encryptedData.length, assertData.length);
     }
+
+    @Test
+    public void decryptStreamOffsetTest() throws Exception {
+        byte[] data = ByteStreams.toByteArray(getSystemResourceAsStream(FILE_PDF));
+        byte[] encryptedData = ByteStreams.toByteArray(new CipherInputStream(getSystemResourceAsStream(FILE_PDF),
+                EncryptionUtil.getEncryptionCipher("OnceUponATime")));
+
+        // Decrypt from the start of a block and from the middle of a block
+        for (long offset : new long[] { 0, 1024, 1000 }) {
+            InputStream encryptedInputStream = new ByteArrayInputStream(encryptedData);
+            ByteStreams.skipFully(encryptedInputStream, offset);
+            byte[] decryptedData = ByteStreams.toByteArray(EncryptionUtil.decryptInputStream(encryptedInputStream, "OnceUponATime", offset));
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) offset, data.length), decryptedData);
+        }
+    }
 }
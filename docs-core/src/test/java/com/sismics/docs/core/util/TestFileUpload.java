@@ -0,0 +1,69 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.sismics.BaseTest;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import com.sismics.util.mime.MimeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Test of the files received in a single pass.
+ */
+public class TestFileUpload extends BaseTest {
+    @Test
+    public void receiveTest() throws Exception {
+        byte[] data = ByteStreams.toByteArray(getSystemResourceAsStream(FILE_PDF));
+        FileUpload upload;
+        try (InputStream inputStream = getSystemResourceAsStream(FILE_PDF)) {
+            upload = FileUpload.receive(inputStream, "document.bin", "OnceUponATime");
+        }
+
+        // Measured, hashed and sniffed while received
+        Assert.assertEquals(data.length, upload.getSize());
+        Assert.assertEquals(Hashing.sha256().hashBytes(data).toString(), upload.getHash());
+        Assert.assertEquals(MimeType.APPLICATION_PDF, upload.getMimeType());
+        Assert.assertArrayEquals(data, Files.readAllBytes(upload.getUnencryptedFile()));
+
+        // Encrypted to the storage
+        String fileId = UUID.randomUUID().toString();
+        upload.store(fileId);
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        try (InputStream inputStream = EncryptionUtil.decryptInputStream(storageBackend.get(fileId), "OnceUponATime")) {
+            Assert.assertArrayEquals(data, ByteStreams.toByteArray(inputStream));
+        } finally {
+            storageBackend.delete(fileId);
+        }
+    }
+
+    @Test
+    public void discardTest() throws Exception {
+        Path unencryptedFile = Files.createTempFile("sismics_docs", ".txt");
+        Files.write(unencryptedFile, "Hello".getBytes());
+        long storedCount;
+        try {
+            FileUpload upload = FileUpload.of(unencryptedFile, "hello.txt", "OnceUponATime");
+            Assert.assertEquals(5, upload.getSize());
+            Assert.assertEquals(MimeType.TEXT_PLAIN, upload.getMimeType());
+            try (Stream<String> stream = AppContext.getInstance().getStorageBackend().list()) {
+                storedCount = stream.count();
+            }
+
+            // Nothing is left in the storage
+            upload.discard();
+            try (Stream<String> stream = AppContext.getInstance().getStorageBackend().list()) {
+                Assert.assertEquals(storedCount - 1, stream.count());
+            }
+        } finally {
+            Files.delete(unencryptedFile);
+        }
+    }
+}
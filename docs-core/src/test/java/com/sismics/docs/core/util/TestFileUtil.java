@@ -1,9 +1,11 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
 import com.sismics.BaseTest;
 import com.sismics.docs.core.dao.dto.DocumentDto;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.util.format.*;
 import com.sismics.util.mime.MimeType;
@@ -12,11 +14,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.Date;
 
 /**
@@ -65,6 +67,18 @@ public class TestFileUtil extends BaseTest {
         Assert.assertTrue(content.contains("All human beings are born free and equal in dignity and rights."));
     }
 
+    @Test
+    public void processingSessionPdf() throws Exception {
+        Path path = Paths.get(getResource(FILE_PDF).toURI());
+        FormatHandler formatHandler = FormatHandlerUtil.find(MimeTypeUtil.guessMimeType(path, FILE_PDF));
+        Assert.assertNotNull(formatHandler);
+        try (FormatHandlerSession session = formatHandler.openSession(path)) {
+            Assert.assertNotNull(session.generateThumbnail());
+            String content = session.extractContent("eng");
+            Assert.assertTrue(content.contains("All human beings are born free and equal in dignity and rights."));
+        }
+    }
+
     @Test
     public void extractContentScannedPdf() throws Exception {
         Path path = Paths.get(getResource("scanned.pdf").toURI());
@@ -99,38 +113,38 @@ public class TestFileUtil extends BaseTest {
             documentDto.setCreateTimestamp(new Date().getTime());
             
             // First file
-            Files.copy(inputStream0, DirectoryUtil.getStorageDirectory().resolve("apollo_landscape"), StandardCopyOption.REPLACE_EXISTING);
+            store(inputStream0, "apollo_landscape");
             File file0 = new File();
             file0.setId("apollo_landscape");
             file0.setMimeType(MimeType.IMAGE_JPEG);
             
             // Second file
-            Files.copy(inputStream1, DirectoryUtil.getStorageDirectory().resolve("apollo_portrait"), StandardCopyOption.REPLACE_EXISTING);
+            store(inputStream1, "apollo_portrait");
             File file1 = new File();
             file1.setId("apollo_portrait");
             file1.setMimeType(MimeType.IMAGE_JPEG);
             
             // Third file
-            Files.copy(inputStream2, DirectoryUtil.getStorageDirectory().resolve("udhr"), StandardCopyOption.REPLACE_EXISTING);
+            store(inputStream2, "udhr");
             File file2 = new File();
             file2.setId("udhr");
             file2.setPrivateKey("OnceUponATime");
             file2.setMimeType(MimeType.APPLICATION_PDF);
             
             // Fourth file
-            Files.copy(inputStream3, DirectoryUtil.getStorageDirectory().resolve("document_docx"), StandardCopyOption.REPLACE_EXISTING);
+            store(inputStream3, "document_docx");
             File file3 = new File();
             file3.setId("document_docx");
             file3.setMimeType(MimeType.OFFICE_DOCUMENT);
             
             // Fifth file
-            Files.copy(inputStream4, DirectoryUtil.getStorageDirectory().resolve("document_odt"), StandardCopyOption.REPLACE_EXISTING);
+            store(inputStream4, "document_odt");
             File file4 = new File();
             file4.setId("document_odt");
             file4.setMimeType(MimeType.OPEN_DOCUMENT_TEXT);
 
             // Sixth file
-            Files.copy(inputStream5, DirectoryUtil.getStorageDirectory().resolve("document_pptx"), StandardCopyOption.REPLACE_EXISTING);
+            store(inputStream5, "document_pptx");
             File file5 = new File();
             file5.setId("document_pptx");
             file5.setMimeType(MimeType.OFFICE_PRESENTATION);
@@ -140,4 +154,17 @@ public class TestFileUtil extends BaseTest {
             Assert.assertTrue(outputStream.toByteArray().length > 0);
         }
     }
+
+    /**
+     * Store a content in the storage.
+     *
+     * @param inputStream Content
+     * @param key Object key
+     * @throws IOException e
+     */
+    private static void store(InputStream inputStream, String key) throws IOException {
+        try (OutputStream outputStream = AppContext.getInstance().getStorageBackend().put(key)) {
+            ByteStreams.copy(inputStream, outputStream);
+        }
+    }
 }
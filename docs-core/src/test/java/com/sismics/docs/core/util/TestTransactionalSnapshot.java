@@ -0,0 +1,51 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.docs.BaseTransactionalTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test of the snapshots invalidated by transactions.
+ */
+public class TestTransactionalSnapshot extends BaseTransactionalTest {
+    @Test
+    public void pendingTest() {
+        AtomicInteger loadCount = new AtomicInteger();
+        TransactionalSnapshot<Integer> snapshot = new TransactionalSnapshot<>(loadCount::incrementAndGet, Long.MAX_VALUE);
+        Assert.assertEquals(1, (int) snapshot.get());
+        Assert.assertEquals(1, (int) snapshot.get());
+
+        // Not shared until the changing transaction completes
+        snapshot.invalidate();
+        Assert.assertEquals(2, (int) snapshot.get());
+        Assert.assertEquals(3, (int) snapshot.get());
+    }
+
+    @Test
+    public void pendingTimeoutTest() {
+        AtomicInteger loadCount = new AtomicInteger();
+        TransactionalSnapshot<Integer> snapshot = new TransactionalSnapshot<>(loadCount::incrementAndGet, Long.MAX_VALUE, -1);
+        Assert.assertEquals(1, (int) snapshot.get());
+
+        // A transaction which doesn't complete in time no longer prevents the sharing
+        snapshot.invalidate();
+        Assert.assertEquals(2, (int) snapshot.get());
+        Assert.assertEquals(2, (int) snapshot.get());
+    }
+
+    @Test
+    public void completedTest() {
+        AtomicInteger loadCount = new AtomicInteger();
+        TransactionalSnapshot<Integer> snapshot = new TransactionalSnapshot<>(loadCount::incrementAndGet, Long.MAX_VALUE);
+        Assert.assertEquals(1, (int) snapshot.get());
+
+        // Shared again once the changing transaction completes
+        snapshot.invalidate();
+        Assert.assertEquals(2, (int) snapshot.get());
+        TransactionUtil.commit();
+        Assert.assertEquals(3, (int) snapshot.get());
+        Assert.assertEquals(3, (int) snapshot.get());
+    }
+}
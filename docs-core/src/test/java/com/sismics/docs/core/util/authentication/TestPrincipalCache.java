@@ -0,0 +1,40 @@
+package com.sismics.docs.core.util.authentication;
+
+import com.google.common.collect.Sets;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.util.TransactionUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * Test of the principal cache.
+ */
+public class TestPrincipalCache extends BaseTransactionalTest {
+    @Test
+    public void invalidateTest() {
+        PrincipalCache.Entry entry = new PrincipalCache.Entry("user1", "username1", "user1@docs.com", Sets.newHashSet(), Sets.newHashSet(), null);
+
+        // A principal resolved before an invalidation is not cached
+        long generation = PrincipalCache.getGeneration();
+        PrincipalCache.invalidateUser("user1");
+        PrincipalCache.put("token1", entry, generation);
+        Assert.assertNull(PrincipalCache.get("token1"));
+
+        // A principal cached before the commit is invalidated again
+        PrincipalCache.put("token1", entry, PrincipalCache.getGeneration());
+        Assert.assertNotNull(PrincipalCache.get("token1"));
+        TransactionUtil.commit();
+        Assert.assertNull(PrincipalCache.get("token1"));
+    }
+
+    @Test
+    public void expiryTest() {
+        Assert.assertFalse(new PrincipalCache.Entry("user1", "username1", "user1@docs.com", Sets.newHashSet(), Sets.newHashSet(), null).isExpired());
+        Assert.assertFalse(new PrincipalCache.Entry("user1", "username1", "user1@docs.com", Sets.newHashSet(), Sets.newHashSet(),
+                new Date(new Date().getTime() + 60000)).isExpired());
+        Assert.assertTrue(new PrincipalCache.Entry("user1", "username1", "user1@docs.com", Sets.newHashSet(), Sets.newHashSet(),
+                new Date(new Date().getTime() - 1)).isExpired());
+    }
+}
@@ -0,0 +1,91 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.model.jpa.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Test of the Lucene indexing handler.
+ */
+public class TestLuceneIndexingHandler extends BaseTransactionalTest {
+    @Test
+    public void failedSwapTest() throws Exception {
+        FailingSwapIndexingHandler indexingHandler = new FailingSwapIndexingHandler();
+        indexingHandler.startUp();
+        try {
+            indexingHandler.createDocument(newDocument("document1"));
+
+            // The swap fails after the current index has been replaced
+            indexingHandler.failing = true;
+            indexingHandler.startRebuild();
+            indexingHandler.rebuildDocuments(Arrays.asList(newDocument("document2"), newDocument("document3")));
+            try {
+                indexingHandler.finishRebuild();
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertEquals("Swap failed", e.getMessage());
+            }
+            Assert.assertNull(indexingHandler.getRebuildProgress());
+
+            // The current index is restored and still writable
+            indexingHandler.createDocument(newDocument("document4"));
+            indexingHandler.failing = false;
+            indexingHandler.startRebuild();
+            indexingHandler.rebuildDocuments(Arrays.asList(newDocument("document2"), newDocument("document3")));
+            indexingHandler.finishRebuild();
+            Assert.assertEquals(2, indexingHandler.swappedDocCount);
+            Assert.assertEquals(2, indexingHandler.previousDocCount);
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    /**
+     * Create a document to index.
+     *
+     * @param id Document ID
+     * @return Document
+     */
+    private static Document newDocument(String id) {
+        Document document = new Document();
+        document.setId(id);
+        document.setTitle("Title of " + id);
+        return document;
+    }
+
+    /**
+     * Indexing handler failing the swap of the rebuilt index on demand.
+     */
+    private static class FailingSwapIndexingHandler extends LuceneIndexingHandler {
+        /**
+         * True to fail the next swap after replacing the documents.
+         */
+        private boolean failing;
+
+        /**
+         * Number of documents in the current index before the last swap.
+         */
+        private int previousDocCount;
+
+        /**
+         * Number of documents in the current index after the last swap.
+         */
+        private int swappedDocCount;
+
+        @Override
+        void replaceIndex(IndexWriter indexWriter, Directory rebuiltDirectory) throws IOException {
+            previousDocCount = indexWriter.getDocStats().numDocs;
+            super.replaceIndex(indexWriter, rebuiltDirectory);
+            swappedDocCount = indexWriter.getDocStats().numDocs;
+            if (failing) {
+                throw new IOException("Swap failed");
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test of the local storage backend and of its sharded layout.
+ */
+public class TestLocalStorageBackend {
+    /**
+     * Storage directory.
+     */
+    private Path directory;
+
+    /**
+     * Backend tested.
+     */
+    private LocalStorageBackend storageBackend;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("sismics_docs_storage");
+        storageBackend = new LocalStorageBackend(directory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MoreFiles.deleteRecursively(directory, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    @Test
+    public void shardedTest() throws Exception {
+        put("file1", "content");
+        put("file1_web", "web");
+
+        // Stored in two levels of directories, with its variants
+        Path path = storageBackend.resolve("file1");
+        Assert.assertEquals(directory, path.getParent().getParent().getParent());
+        Assert.assertEquals(path.getParent(), storageBackend.resolve("file1_web").getParent());
+        Assert.assertFalse(Files.exists(directory.resolve("file1")));
+        Assert.assertEquals("content", get("file1"));
+        try (InputStream inputStream = storageBackend.get("file1", 2, 3)) {
+            Assert.assertEquals("nte", new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+
+        // Moved and deleted
+        storageBackend.move("file1", "file2");
+        Assert.assertNull(storageBackend.stat("file1"));
+        Assert.assertEquals(7, storageBackend.stat("file2").getSize());
+        storageBackend.delete("file2");
+        Assert.assertNull(storageBackend.stat("file2"));
+    }
+
+    @Test
+    public void migrationTest() throws Exception {
+        // Objects stored flat by older versions
+        Files.write(directory.resolve("file1"), "old".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("file2"), "old".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("file3"), "old".getBytes(StandardCharsets.UTF_8));
+        put("file4", "new");
+
+        // Served from both layouts
+        Assert.assertEquals("old", get("file1"));
+        Assert.assertEquals(3, storageBackend.stat("file1").getSize());
+        Assert.assertEquals(directory.resolve("file1"), storageBackend.resolve("file1"));
+        try (Stream<String> stream = storageBackend.list()) {
+            Assert.assertEquals(Arrays.asList("file1", "file2", "file3", "file4"), stream.sorted().collect(Collectors.toList()));
+        }
+        try (Stream<String> stream = storageBackend.listUnsharded()) {
+            Assert.assertEquals(Arrays.asList("file1", "file2", "file3"), stream.sorted().collect(Collectors.toList()));
+        }
+
+        // An object rewritten before its migration is not replaced by the old content
+        put("file2", "new");
+        storageBackend.delete("file3");
+        Assert.assertTrue(storageBackend.migrate("file1"));
+        Assert.assertTrue(storageBackend.migrate("file2"));
+        Assert.assertFalse(storageBackend.migrate("file3"));
+        Assert.assertEquals("old", get("file1"));
+        Assert.assertEquals("new", get("file2"));
+        Assert.assertNull(storageBackend.stat("file3"));
+        try (Stream<String> stream = storageBackend.listUnsharded()) {
+            Assert.assertEquals(0, stream.count());
+        }
+        try (Stream<String> stream = storageBackend.list()) {
+            Assert.assertEquals(Arrays.asList("file1", "file2", "file4"), stream.sorted().collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Write an object.
+     *
+     * @param key Object key
+     * @param content Content
+     * @throws Exception e
+     */
+    private void put(String key, String content) throws Exception {
+        try (OutputStream outputStream = storageBackend.put(key)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Read an object.
+     *
+     * @param key Object key
+     * @return Content
+     * @throws Exception e
+     */
+    private String get(String key) throws Exception {
+        try (InputStream inputStream = storageBackend.get(key)) {
+            return new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.sismics.docs.core.util.storage;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test of the S3 storage backend, against an in-memory object store.
+ */
+public class TestS3StorageBackend {
+    /**
+     * Objects of the in-memory object store.
+     */
+    private final Map<String, byte[]> objectMap = new ConcurrentHashMap<>();
+
+    /**
+     * Parts of the multipart uploads in progress, by upload ID.
+     */
+    private final Map<String, SortedMap<Integer, byte[]>> uploadMap = new ConcurrentHashMap<>();
+
+    /**
+     * In-memory object store.
+     */
+    private HttpServer server;
+
+    /**
+     * Backend tested.
+     */
+    private S3StorageBackend storageBackend;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bucket", this::handle);
+        server.start();
+        storageBackend = new S3StorageBackend("http://127.0.0.1:" + server.getAddress().getPort(), "us-east-1",
+                "bucket", "docs/", "access", "secret", S3StorageBackend.MIN_PART_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        storageBackend.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void objectTest() throws Exception {
+        // Write a small object at once
+        try (OutputStream outputStream = storageBackend.put("file1")) {
+            outputStream.write("0123456789".getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertTrue(objectMap.containsKey("docs/file1"));
+        Assert.assertTrue(uploadMap.isEmpty());
+
+        // Read it, in full or a range
+        try (InputStream inputStream = storageBackend.get("file1")) {
+            Assert.assertEquals("0123456789", new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+        try (InputStream inputStream = storageBackend.get("file1", 2, 5)) {
+            Assert.assertEquals("23456", new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(10, storageBackend.stat("file1").getSize());
+
+        // Move it
+        storageBackend.move("file1", "file2");
+        Assert.assertNull(storageBackend.stat("file1"));
+        Assert.assertEquals(10, storageBackend.stat("file2").getSize());
+        try {
+            storageBackend.get("file1");
+            Assert.fail();
+        } catch (NoSuchFileException e) {
+            // Expected
+        }
+
+        // Delete it, twice
+        storageBackend.delete("file2");
+        storageBackend.delete("file2");
+        Assert.assertTrue(objectMap.isEmpty());
+    }
+
+    @Test
+    public void multipartTest() throws Exception {
+        // Write an object larger than the part size
+        byte[] data = new byte[S3StorageBackend.MIN_PART_SIZE * 2 + 1000];
+        new Random(42).nextBytes(data);
+        try (OutputStream outputStream = storageBackend.put("large")) {
+            for (int i = 0; i < data.length; i += 100_000) {
+                outputStream.write(data, i, Math.min(100_000, data.length - i));
+            }
+        }
+        Assert.assertArrayEquals(data, objectMap.get("docs/large"));
+        Assert.assertTrue(uploadMap.isEmpty());
+
+        // Read the range across the parts
+        try (InputStream inputStream = storageBackend.get("large", S3StorageBackend.MIN_PART_SIZE - 10, 20)) {
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, S3StorageBackend.MIN_PART_SIZE - 10, S3StorageBackend.MIN_PART_SIZE + 10),
+                    ByteStreams.toByteArray(inputStream));
+        }
+    }
+
+    @Test
+    public void listTest() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            try (OutputStream outputStream = storageBackend.put("file" + i)) {
+                outputStream.write(i);
+            }
+        }
+        objectMap.put("other/file", new byte[0]);
+
+        // The keys are listed across the pages, without the prefix
+        try (Stream<String> stream = storageBackend.list()) {
+            Assert.assertEquals(Arrays.asList("file0", "file1", "file2", "file3", "file4"), stream.collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Handle a request to the in-memory object store.
+     * The listings are paginated by 2 objects.
+     *
+     * @param exchange Exchange
+     * @throws IOException e
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        Assert.assertTrue(exchange.getRequestHeaders().getFirst("Authorization").startsWith("AWS4-HMAC-SHA256 Credential=access/"));
+        Map<String, String> queryMap = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                String[] parameterArray = parameter.split("=", 2);
+                queryMap.put(parameterArray[0], parameterArray.length > 1 ? URLDecoder.decode(parameterArray[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8);
+        String key = path.length() > "/bucket/".length() ? path.substring("/bucket/".length()) : null;
+        byte[] body = ByteStreams.toByteArray(exchange.getRequestBody());
+
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+                if (queryMap.containsKey("uploadId")) {
+                    uploadMap.get(queryMap.get("uploadId")).put(Integer.parseInt(queryMap.get("partNumber")), body);
+                    exchange.getResponseHeaders().add("ETag", "\"" + queryMap.get("partNumber") + "\"");
+                    send(exchange, 200, "");
+                } else if (copySource != null) {
+                    objectMap.put(key, objectMap.get(URLDecoder.decode(copySource, StandardCharsets.UTF_8).substring("/bucket/".length())));
+                    send(exchange, 200, "<CopyObjectResult></CopyObjectResult>");
+                } else {
+                    objectMap.put(key, body);
+                    send(exchange, 200, "");
+                }
+                break;
+            case "POST":
+                if (queryMap.containsKey("uploads")) {
+                    String uploadId = UUID.randomUUID().toString();
+                    uploadMap.put(uploadId, new TreeMap<>());
+                    send(exchange, 200, "<InitiateMultipartUploadResult><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                } else {
+                    SortedMap<Integer, byte[]> partMap = uploadMap.remove(queryMap.get("uploadId"));
+                    Matcher matcher = Pattern.compile("<PartNumber>(\\d+)</PartNumber>").matcher(new String(body, StandardCharsets.UTF_8));
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    while (matcher.find()) {
+                        outputStream.write(partMap.get(Integer.parseInt(matcher.group(1))));
+                    }
+                    objectMap.put(key, outputStream.toByteArray());
+                    send(exchange, 200, "<CompleteMultipartUploadResult></CompleteMultipartUploadResult>");
+                }
+                break;
+            case "DELETE":
+                if (queryMap.containsKey("uploadId")) {
+                    uploadMap.remove(queryMap.get("uploadId"));
+                } else {
+                    objectMap.remove(key);
+                }
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                break;
+            case "HEAD":
+                if (!objectMap.containsKey(key)) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    exchange.getResponseHeaders().add("Content-Length", Integer.toString(objectMap.get(key).length));
+                    exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                exchange.close();
+                break;
+            default:
+                if (key == null) {
+                    List<String> keyList = objectMap.keySet().stream()
+                            .filter(k -> k.startsWith(queryMap.get("prefix")))
+                            .sorted()
+                            .collect(Collectors.toList());
+                    int start = Integer.parseInt(queryMap.getOrDefault("continuation-token", "0"));
+                    int end = Math.min(start + 2, keyList.size());
+                    StringBuilder sb = new StringBuilder("<ListBucketResult><IsTruncated>").append(end < keyList.size()).append("</IsTruncated>");
+                    for (String k : keyList.subList(start, end)) {
+                        sb.append("<Contents><Key>").append(k).append("</Key></Contents>");
+                    }
+                    if (end < keyList.size()) {
+                        sb.append("<NextContinuationToken>").append(end).append("</NextContinuationToken>");
+                    }
+                    send(exchange, 200, sb.append("</ListBucketResult>").toString());
+                } else if (!objectMap.containsKey(key)) {
+                    send(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                } else {
+                    byte[] data = objectMap.get(key);
+                    String range = exchange.getRequestHeaders().getFirst("Range");
+                    if (range == null) {
+                        send(exchange, 200, data);
+                    } else {
+                        String[] rangeArray = range.substring("bytes=".length()).split("-");
+                        send(exchange, 206, Arrays.copyOfRange(data, Integer.parseInt(rangeArray[0]), Integer.parseInt(rangeArray[1]) + 1));
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Send a response.
+     *
+     * @param exchange Exchange
+     * @param status HTTP status
+     * @param body Response body
+     * @throws IOException e
+     */
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a response.
+     *
+     * @param exchange Exchange
+     * @param status HTTP status
+     * @param body Response body
+     * @throws IOException e
+     */
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.sismics.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test of the HTTP utilities.
+ */
+public class TestHttpUtil {
+    @Test
+    public void testParseRange() {
+        // Whole content
+        Assert.assertNull(HttpUtil.parseRange(null, 1000));
+        Assert.assertNull(HttpUtil.parseRange("items=0-10", 1000));
+        Assert.assertNull(HttpUtil.parseRange("bytes=0-10,20-30", 1000));
+        Assert.assertNull(HttpUtil.parseRange("bytes=abc", 1000));
+        Assert.assertNull(HttpUtil.parseRange("bytes=20-10", 1000));
+
+        // Single range
+        Assert.assertArrayEquals(new long[] { 0, 99 }, HttpUtil.parseRange("bytes=0-99", 1000));
+        Assert.assertArrayEquals(new long[] { 500, 999 }, HttpUtil.parseRange("bytes=500-", 1000));
+        Assert.assertArrayEquals(new long[] { 500, 999 }, HttpUtil.parseRange("bytes=500-5000", 1000));
+        Assert.assertArrayEquals(new long[] { 900, 999 }, HttpUtil.parseRange("bytes=-100", 1000));
+        Assert.assertArrayEquals(new long[] { 0, 999 }, HttpUtil.parseRange("bytes=-5000", 1000));
+
+        // Not satisfiable
+        Assert.assertTrue(HttpUtil.parseRange("bytes=1000-", 1000)[0] >= 1000);
+        Assert.assertTrue(HttpUtil.parseRange("bytes=-0", 1000)[0] >= 1000);
+    }
+
+    @Test
+    public void testParseDate() {
+        Assert.assertEquals(784111777000L, HttpUtil.parseDate("Sun, 06 Nov 1994 08:49:37 GMT").getTime());
+        Assert.assertNull(HttpUtil.parseDate("\"etag\""));
+    }
+}
@@ -3,6 +3,12 @@ package com.sismics.util;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /**
  * Test of the image utilities.
  * 
@@ -14,4 +20,39 @@ public class TestImageUtil {
     public void computeGravatarTest() {
         Assert.assertEquals("0bc83cb571cd1c50ba6f3e8a78ef1346", ImageUtil.computeGravatar("MyEmailAddress@example.com "));
     }
+
+    @Test
+    public void readImageTest() throws Exception {
+        Path file = Files.createTempFile("image", ".png");
+        try {
+            ImageIO.write(new BufferedImage(3000, 2000, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+
+            // Subsampled to the closest size above the requested one
+            BufferedImage image = ImageUtil.readImage(file, 1280);
+            Assert.assertEquals(1500, image.getWidth());
+            Assert.assertEquals(1000, image.getHeight());
+
+            // Not upscaled
+            image = ImageUtil.readImage(file, 4000);
+            Assert.assertEquals(3000, image.getWidth());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void writeJpegTest() throws Exception {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, x * y);
+            }
+        }
+
+        ByteArrayOutputStream highQuality = new ByteArrayOutputStream();
+        ImageUtil.writeJpeg(image, highQuality);
+        ByteArrayOutputStream lowQuality = new ByteArrayOutputStream();
+        ImageUtil.writeJpeg(image, lowQuality, 0.5f);
+        Assert.assertTrue(lowQuality.size() < highQuality.size());
+    }
 }
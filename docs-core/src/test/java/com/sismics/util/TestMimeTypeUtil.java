@@ -6,8 +6,10 @@ import com.sismics.util.mime.MimeTypeUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * Test of the utilities to check MIME types.
@@ -69,4 +71,21 @@ public class TestMimeTypeUtil extends BaseTest {
         path = Paths.get(getResource(FILE_MP4).toURI());
         Assert.assertEquals(MimeType.VIDEO_MP4, MimeTypeUtil.guessMimeType(path, FILE_MP4));
     }
+
+    @Test
+    public void headerTest() throws Exception {
+        // Detect PDF files by their content
+        Path path = Paths.get(getResource(FILE_PDF).toURI());
+        byte[] header = Arrays.copyOf(Files.readAllBytes(path), 16);
+        Path txtPath = Paths.get(getResource(FILE_TXT).toURI());
+        Assert.assertEquals(MimeType.APPLICATION_PDF, MimeTypeUtil.guessMimeType(header, txtPath, FILE_TXT));
+
+        // Detect DOCX files by their name
+        path = Paths.get(getResource(FILE_DOCX).toURI());
+        header = Arrays.copyOf(Files.readAllBytes(path), 16);
+        Assert.assertEquals(MimeType.OFFICE_DOCUMENT, MimeTypeUtil.guessMimeType(header, path, FILE_DOCX));
+
+        // Detect empty files by their name
+        Assert.assertEquals(MimeType.TEXT_PLAIN, MimeTypeUtil.guessMimeType(new byte[0], txtPath, FILE_TXT));
+    }
 }
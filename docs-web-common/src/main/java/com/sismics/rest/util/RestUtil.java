@@ -1,8 +1,9 @@
 package com.sismics.rest.util;
 
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
-import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.storage.StorageObject;
 import com.sismics.rest.exception.ServerException;
 import com.sismics.util.JsonUtil;
 
@@ -10,7 +11,7 @@ import jakarta.json.Json;
 import jakarta.json.JsonObjectBuilder;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 
 /**
  * Rest utilities.
@@ -20,14 +21,21 @@ import java.nio.file.Files;
 public class RestUtil {
     /**
      * Transform a File into its JSON representation.
-     * If the file size it is not stored in the database the size can be wrong
-     * because the encrypted file size is used.
+     * If the file size is not stored in the database, the size of the stored content is used,
+     * the encryption doesn't change the size.
      * @param fileDb a file
      * @return the JSON
      */
     public static JsonObjectBuilder fileToJsonObjectBuilder(File fileDb) {
         try {
-            long fileSize = fileDb.getSize().equals(File.UNKNOWN_SIZE) ? Files.size(DirectoryUtil.getStorageDirectory().resolve(fileDb.getId())) : fileDb.getSize();
+            long fileSize = fileDb.getSize();
+            if (fileDb.getSize().equals(File.UNKNOWN_SIZE)) {
+                StorageObject storageObject = AppContext.getInstance().getStorageBackend().stat(fileDb.getStorageId());
+                if (storageObject == null) {
+                    throw new NoSuchFileException(fileDb.getStorageId());
+                }
+                fileSize = storageObject.getSize();
+            }
             return Json.createObjectBuilder()
                     .add("id", fileDb.getId())
                     .add("processing", FileUtil.isProcessingFile(fileDb.getId()))
@@ -81,6 +81,7 @@ public class RequestContextFilter implements Filter {
         }
         ThreadLocalContext context = ThreadLocalContext.get();
         context.setEntityManager(em);
+        context.setRequestThread(true);
         EntityTransaction tx = em.getTransaction();
         tx.begin();
         
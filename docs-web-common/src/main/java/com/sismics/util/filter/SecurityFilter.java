@@ -7,6 +7,7 @@ import com.sismics.docs.core.dao.RoleBaseFunctionDao;
 import com.sismics.docs.core.dao.criteria.GroupCriteria;
 import com.sismics.docs.core.dao.dto.GroupDto;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.authentication.PrincipalCache;
 import com.sismics.security.AnonymousPrincipal;
 import com.sismics.security.UserPrincipal;
 import org.joda.time.DateTimeZone;
@@ -16,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -34,6 +36,11 @@ public abstract class SecurityFilter implements Filter {
      */
     public static final String PRINCIPAL_ATTRIBUTE = "principal";
 
+    /**
+     * Name of the attribute containing the expiry date of the authentication, set by the authentication if it expires.
+     */
+    protected static final String PRINCIPAL_EXPIRY_DATE_ATTRIBUTE = "principal_expiry_date";
+
     /**
      * Logger.
      */
@@ -54,26 +61,31 @@ public abstract class SecurityFilter implements Filter {
      *
      * @param request HTTP request
      * @param user nullable User to inject
+     * @param cacheKey Key of the principal in the cache, null if it must not be cached
+     * @param cacheGeneration Invalidation generation of the cache read before the authentication
      */
-    private void injectUser(HttpServletRequest request, User user) {
+    private void injectUser(HttpServletRequest request, User user, String cacheKey, long cacheGeneration) {
         // Check if the user is still valid
         if (user != null && user.getDeleteDate() == null && user.getDisableDate() == null) {
-            injectAuthenticatedUser(request, user);
+            PrincipalCache.Entry principal = resolvePrincipal(user, (Date) request.getAttribute(PRINCIPAL_EXPIRY_DATE_ATTRIBUTE));
+            if (cacheKey != null) {
+                PrincipalCache.put(cacheKey, principal, cacheGeneration);
+            }
+            injectAuthenticatedUser(request, principal);
         } else {
             injectAnonymousUser(request);
         }
     }
 
     /**
-     * Inject an authenticated user into the request attributes.
+     * Resolve the groups and base functions of a user.
      *
-     * @param request HTTP request
-     * @param user User to inject
+     * @param user User
+     * @param expiryDate Expiry date of the authentication, null if it doesn't expire
+     * @return Principal
      */
-    private void injectAuthenticatedUser(HttpServletRequest request, User user) {
-        UserPrincipal userPrincipal = new UserPrincipal(user.getId(), user.getUsername());
-
-        // Add groups
+    private PrincipalCache.Entry resolvePrincipal(User user, Date expiryDate) {
+        // Groups
         GroupDao groupDao = new GroupDao();
         Set<String> groupRoleIdSet = new HashSet<>();
         List<GroupDto> groupDtoList = groupDao.findByCriteria(new GroupCriteria()
@@ -86,16 +98,26 @@ public abstract class SecurityFilter implements Filter {
                 groupRoleIdSet.add(groupDto.getRoleId());
             }
         }
-        userPrincipal.setGroupIdSet(groupIdSet);
 
-        // Add base functions
+        // Base functions
         groupRoleIdSet.add(user.getRoleId());
         RoleBaseFunctionDao userBaseFunction = new RoleBaseFunctionDao();
         Set<String> baseFunctionSet = userBaseFunction.findByRoleId(groupRoleIdSet);
-        userPrincipal.setBaseFunctionSet(baseFunctionSet);
 
-        // Add email
-        userPrincipal.setEmail(user.getEmail());
+        return new PrincipalCache.Entry(user.getId(), user.getUsername(), user.getEmail(), groupIdSet, baseFunctionSet, expiryDate);
+    }
+
+    /**
+     * Inject an authenticated user into the request attributes.
+     *
+     * @param request HTTP request
+     * @param principal Resolved principal of the user
+     */
+    private void injectAuthenticatedUser(HttpServletRequest request, PrincipalCache.Entry principal) {
+        UserPrincipal userPrincipal = new UserPrincipal(principal.getUserId(), principal.getUsername());
+        userPrincipal.setGroupIdSet(principal.getGroupIdSet());
+        userPrincipal.setBaseFunctionSet(principal.getBaseFunctionSet());
+        userPrincipal.setEmail(principal.getEmail());
 
         request.setAttribute(PRINCIPAL_ATTRIBUTE, userPrincipal);
     }
@@ -127,8 +149,20 @@ public abstract class SecurityFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) req;
 
         if (!hasIdentifiedUser(request)) {
-            User user = authenticate(request);
-            injectUser(request, user);
+            String cacheKey = getPrincipalCacheKey(request);
+            PrincipalCache.Entry principal = cacheKey == null ? null : PrincipalCache.get(cacheKey);
+            if (principal != null && principal.isExpired()) {
+                // The authentication expired since it has been cached, check it again
+                PrincipalCache.invalidateToken(cacheKey);
+                principal = null;
+            }
+            if (principal != null) {
+                injectAuthenticatedUser(request, principal);
+            } else {
+                long cacheGeneration = PrincipalCache.getGeneration();
+                User user = authenticate(request);
+                injectUser(request, user, cacheKey, cacheGeneration);
+            }
         }
 
         filterChain.doFilter(request, response);
@@ -142,4 +176,15 @@ public abstract class SecurityFilter implements Filter {
      */
     protected abstract User authenticate(HttpServletRequest request);
 
+    /**
+     * Returns the key of the authenticated principal in the cache.
+     * The principal is resolved again on each request if there is no key.
+     *
+     * @param request HTTP request
+     * @return nullable cache key
+     */
+    protected String getPrincipalCacheKey(HttpServletRequest request) {
+        return null;
+    }
+
 }
\ No newline at end of file
@@ -67,20 +67,19 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
     }
 
     /**
-     * Returns true if the token is expired.
-     * 
+     * Returns the expiry date of the token.
+     *
      * @param authenticationToken Authentication token
-     * @return Token expired
+     * @return Expiry date
      */
-    private boolean isTokenExpired(AuthenticationToken authenticationToken) {
-        final long now = new Date().getTime();
+    private Date getTokenExpiryDate(AuthenticationToken authenticationToken) {
         final long creationDate = authenticationToken.getCreationDate().getTime();
         if (authenticationToken.isLongLasted()) {
-            return now >= creationDate + ((long) TOKEN_LONG_LIFETIME) * 1000L;
+            return new Date(creationDate + ((long) TOKEN_LONG_LIFETIME) * 1000L);
         } else {
             long date = authenticationToken.getLastConnectionDate() != null ?
                     authenticationToken.getLastConnectionDate().getTime() : creationDate;
-            return now >= date + ((long) TOKEN_SESSION_LIFETIME) * 1000L;
+            return new Date(date + ((long) TOKEN_SESSION_LIFETIME) * 1000L);
         }
     }
 
@@ -99,11 +98,18 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
             return null;
         }
 
-        if (isTokenExpired(authToken)) {
+        Date expiryDate = getTokenExpiryDate(authToken);
+        if (new Date().getTime() >= expiryDate.getTime()) {
             handleExpiredToken(authTokenDao, authTokenId);
             return null;
         }
+        request.setAttribute(PRINCIPAL_EXPIRY_DATE_ATTRIBUTE, expiryDate);
 
         return new UserDao().getById(authToken.getUserId());
     }
+
+    @Override
+    protected String getPrincipalCacheKey(HttpServletRequest request) {
+        return extractAuthToken(request.getCookies());
+    }
 }
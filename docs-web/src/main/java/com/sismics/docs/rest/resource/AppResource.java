@@ -1,21 +1,34 @@
 package com.sismics.docs.rest.resource;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.constant.FileProcessingLane;
 import com.sismics.docs.core.dao.ConfigDao;
 import com.sismics.docs.core.dao.DocumentDao;
 import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.context.DocumentUpdatedCoalescer;
+import com.sismics.docs.core.model.context.FileProcessingExecutor;
+import com.sismics.docs.core.model.context.PageOcrExecutor;
 import com.sismics.docs.core.model.jpa.Config;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.service.FileSizeService;
 import com.sismics.docs.core.service.InboxService;
+import com.sismics.docs.core.service.StorageMigrationService;
+import com.sismics.docs.core.service.WebhookService;
 import com.sismics.docs.core.util.ConfigUtil;
-import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.EncryptionUtil;
+import com.sismics.docs.core.util.FileUpload;
+import com.sismics.docs.core.util.authentication.PrincipalCache;
+import com.sismics.docs.core.util.indexing.RebuildIndexProgress;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import com.sismics.docs.core.util.storage.StorageObject;
 import com.sismics.docs.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
@@ -23,6 +36,10 @@ import com.sismics.rest.exception.ServerException;
 import com.sismics.rest.util.ValidationUtil;
 import com.sismics.util.JsonUtil;
 import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.ConnectionPool;
+import com.sismics.util.jpa.ConnectionPoolMetrics;
+import com.sismics.util.jpa.EMF;
+import com.sismics.util.jpa.EntityCache;
 import com.sismics.util.log4j.LogCriteria;
 import com.sismics.util.log4j.LogEntry;
 import com.sismics.util.log4j.MemoryAppender;
@@ -36,14 +53,16 @@ import jakarta.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Appender;
 import org.apache.log4j.Level;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * General app REST resource.
@@ -114,6 +133,228 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response.build()).build();
     }
 
+    /**
+     * Returns the internal metrics of the application.
+     *
+     * @api {get} /app/metrics Get the internal metrics
+     * @apiName GetAppMetrics
+     * @apiGroup App
+     * @apiSuccess {Object} key_cache Cache of the keys derived from user private keys
+     * @apiSuccess {Number} key_cache.size Number of cached keys
+     * @apiSuccess {Number} key_cache.hit_count Number of cache hits
+     * @apiSuccess {Number} key_cache.miss_count Number of cache misses
+     * @apiSuccess {Number} key_cache.hit_rate Ratio of cache hits
+     * @apiSuccess {Number} key_cache.eviction_count Number of evicted keys
+     * @apiSuccess {Object} principal_cache Cache of the authenticated principals
+     * @apiSuccess {Number} principal_cache.size Number of cached principals
+     * @apiSuccess {Number} principal_cache.hit_count Number of cache hits
+     * @apiSuccess {Number} principal_cache.miss_count Number of cache misses
+     * @apiSuccess {Number} principal_cache.hit_rate Ratio of cache hits
+     * @apiSuccess {Object} entity_cache Second-level cache of the entities and queries
+     * @apiSuccess {Boolean} entity_cache.enabled True if the cache is enabled
+     * @apiSuccess {Number} entity_cache.hit_count Number of entity cache hits
+     * @apiSuccess {Number} entity_cache.miss_count Number of entity cache misses
+     * @apiSuccess {Number} entity_cache.put_count Number of entities put in the cache
+     * @apiSuccess {Number} entity_cache.query_hit_count Number of query cache hits
+     * @apiSuccess {Number} entity_cache.query_miss_count Number of query cache misses
+     * @apiSuccess {Object[]} entity_cache.regions Cache regions
+     * @apiSuccess {String} entity_cache.regions.name Region name
+     * @apiSuccess {Number} entity_cache.regions.size Number of entries
+     * @apiSuccess {Number} entity_cache.regions.hit_count Number of hits
+     * @apiSuccess {Number} entity_cache.regions.miss_count Number of misses
+     * @apiSuccess {Number} entity_cache.regions.put_count Number of entries put
+     * @apiSuccess {Object} connection_pool Database connection pool, if the connections are pooled by HikariCP
+     * @apiSuccess {Number} connection_pool.active Number of connections in use
+     * @apiSuccess {Number} connection_pool.idle Number of idle connections
+     * @apiSuccess {Number} connection_pool.total Number of open connections
+     * @apiSuccess {Number} connection_pool.max Maximum number of connections
+     * @apiSuccess {Number} connection_pool.waiting Number of threads waiting for a connection
+     * @apiSuccess {Number} connection_pool.acquire_count Number of acquired connections
+     * @apiSuccess {Number} connection_pool.timeout_count Number of connection requests timed out
+     * @apiSuccess {Number} connection_pool.acquire_time_avg Average time waiting for a connection in milliseconds
+     * @apiSuccess {Number} connection_pool.acquire_time_max Longest time waiting for a connection in milliseconds
+     * @apiSuccess {Number} connection_pool.usage_time_avg Average time a connection is used in milliseconds
+     * @apiSuccess {Object} file_processing File processing lanes, empty if the files are processed synchronously
+     * @apiSuccess {Object} file_processing.lane File processing lane (interactive or bulk)
+     * @apiSuccess {Number} file_processing.lane.threads Number of threads
+     * @apiSuccess {Number} file_processing.lane.active Number of files processing
+     * @apiSuccess {Number} file_processing.lane.queued Number of files waiting to be processed
+     * @apiSuccess {Number} file_processing.lane.capacity Maximum number of files waiting to be processed
+     * @apiSuccess {Number} file_processing.lane.submitted_count Number of files submitted
+     * @apiSuccess {Number} file_processing.lane.processed_count Number of files processed
+     * @apiSuccess {Number} file_processing.lane.rejected_count Number of files rejected because the queue was full
+     * @apiSuccess {Number} file_processing.lane.wait_time_avg Average time waiting in the queue in milliseconds
+     * @apiSuccess {Number} file_processing.lane.wait_time_max Longest time waiting in the queue in milliseconds
+     * @apiSuccess {Number} file_processing.lane.processing_time_avg Average processing time in milliseconds
+     * @apiSuccess {Object} page_ocr OCR of document pages
+     * @apiSuccess {Number} page_ocr.threads Number of threads
+     * @apiSuccess {Number} page_ocr.active Number of pages being OCR-ized
+     * @apiSuccess {Number} page_ocr.queued Number of rendered pages waiting to be OCR-ized
+     * @apiSuccess {Number} page_ocr.memory_used Memory reserved by the pages in flight in bytes
+     * @apiSuccess {Number} page_ocr.memory_budget Maximum memory used by the pages in flight in bytes
+     * @apiSuccess {Number} page_ocr.page_count Number of OCR-ized pages
+     * @apiSuccess {Number} page_ocr.error_count Number of pages which failed
+     * @apiSuccess {Number} page_ocr.admission_time_avg Average time waiting for memory in milliseconds
+     * @apiSuccess {Number} page_ocr.render_time_avg Average page rendering time in milliseconds
+     * @apiSuccess {Number} page_ocr.ocr_time_avg Average page OCR time in milliseconds
+     * @apiSuccess {Number} page_ocr.ocr_time_max Longest page OCR time in milliseconds
+     * @apiSuccess {Object} webhook Webhook calls
+     * @apiSuccess {Number} webhook.in_flight Number of calls in flight
+     * @apiSuccess {Number} webhook.call_count Number of calls
+     * @apiSuccess {Number} webhook.error_count Number of calls which failed
+     * @apiSuccess {Number} webhook.delivered_count Number of events delivered
+     * @apiSuccess {Number} webhook.call_time_avg Average call time in milliseconds
+     * @apiSuccess {Number} webhook.call_time_max Longest call time in milliseconds
+     * @apiSuccess {Object} document_updated Document updates coalescing
+     * @apiSuccess {Number} document_updated.submitted_count Number of document updates
+     * @apiSuccess {Number} document_updated.posted_count Number of document updates processed after coalescing
+     * @apiSuccess {Number} document_updated.pending Number of documents with updates not processed yet
+     * @apiSuccess {Object} storage_migration Migration of the stored files to the sharded layout
+     * @apiSuccess {Boolean} storage_migration.running True if the migration is running
+     * @apiSuccess {Number} storage_migration.migrated_count Number of stored files moved
+     * @apiSuccess {Number} storage_migration.failed_count Number of stored files which couldn't be moved
+     * @apiSuccess {Object} file_size Storage of the sizes of the files uploaded by older versions
+     * @apiSuccess {Boolean} file_size.running True if the sizes are being stored
+     * @apiSuccess {Number} file_size.total_count Number of files without size at startup
+     * @apiSuccess {Number} file_size.processed_count Number of files whose size is now stored
+     * @apiSuccess {Number} file_size.failed_count Number of files whose content is not found
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @return Response
+     */
+    @GET
+    @Path("metrics")
+    public Response metrics() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        CacheStats keyCacheStats = EncryptionUtil.getKeyCacheStats();
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("key_cache", Json.createObjectBuilder()
+                        .add("size", EncryptionUtil.getKeyCacheSize())
+                        .add("hit_count", keyCacheStats.hitCount())
+                        .add("miss_count", keyCacheStats.missCount())
+                        .add("hit_rate", keyCacheStats.hitRate())
+                        .add("eviction_count", keyCacheStats.evictionCount()));
+
+        CacheStats principalCacheStats = PrincipalCache.getStats();
+        response.add("principal_cache", Json.createObjectBuilder()
+                .add("size", PrincipalCache.getSize())
+                .add("hit_count", principalCacheStats.hitCount())
+                .add("miss_count", principalCacheStats.missCount())
+                .add("hit_rate", principalCacheStats.hitRate()));
+
+        // Second-level cache statistics, collected only if the cache is enabled
+        Statistics statistics = EMF.getStatistics();
+        JsonArrayBuilder regions = Json.createArrayBuilder();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(regionName);
+            if (regionStatistics != null) {
+                regions.add(Json.createObjectBuilder()
+                        .add("name", regionName)
+                        .add("size", regionStatistics.getElementCountInMemory())
+                        .add("hit_count", regionStatistics.getHitCount())
+                        .add("miss_count", regionStatistics.getMissCount())
+                        .add("put_count", regionStatistics.getPutCount()));
+            }
+        }
+        response.add("entity_cache", Json.createObjectBuilder()
+                .add("enabled", EntityCache.isEnabled())
+                .add("hit_count", statistics.getSecondLevelCacheHitCount())
+                .add("miss_count", statistics.getSecondLevelCacheMissCount())
+                .add("put_count", statistics.getSecondLevelCachePutCount())
+                .add("query_hit_count", statistics.getQueryCacheHitCount())
+                .add("query_miss_count", statistics.getQueryCacheMissCount())
+                .add("regions", regions));
+
+        // Connection pool statistics
+        ConnectionPoolMetrics.PoolMetrics poolMetrics = ConnectionPool.getMetrics();
+        if (poolMetrics != null) {
+            response.add("connection_pool", Json.createObjectBuilder()
+                    .add("active", poolMetrics.getActiveConnections())
+                    .add("idle", poolMetrics.getIdleConnections())
+                    .add("total", poolMetrics.getTotalConnections())
+                    .add("max", poolMetrics.getMaxConnections())
+                    .add("waiting", poolMetrics.getPendingThreads())
+                    .add("acquire_count", poolMetrics.getAcquireCount())
+                    .add("timeout_count", poolMetrics.getTimeoutCount())
+                    .add("acquire_time_avg", poolMetrics.getAverageAcquireMillis())
+                    .add("acquire_time_max", poolMetrics.getMaxAcquireMillis())
+                    .add("usage_time_avg", poolMetrics.getAverageUsageMillis()));
+        }
+
+        // File processing lanes
+        JsonObjectBuilder fileProcessing = Json.createObjectBuilder();
+        for (Map.Entry<FileProcessingLane, FileProcessingExecutor> entry : AppContext.getInstance().getFileProcessingExecutorMap().entrySet()) {
+            FileProcessingExecutor executor = entry.getValue();
+            fileProcessing.add(entry.getKey().name().toLowerCase(), Json.createObjectBuilder()
+                    .add("threads", executor.getMaximumPoolSize())
+                    .add("active", executor.getActiveCount())
+                    .add("queued", executor.getQueueSize())
+                    .add("capacity", executor.getQueueCapacity())
+                    .add("submitted_count", executor.getSubmittedCount())
+                    .add("processed_count", executor.getProcessedCount())
+                    .add("rejected_count", executor.getRejectedCount())
+                    .add("wait_time_avg", executor.getAverageWaitMillis())
+                    .add("wait_time_max", executor.getMaxWaitMillis())
+                    .add("processing_time_avg", executor.getAverageRunMillis()));
+        }
+        response.add("file_processing", fileProcessing);
+
+        // OCR of document pages
+        PageOcrExecutor pageOcrExecutor = AppContext.getInstance().getPageOcrExecutor();
+        response.add("page_ocr", Json.createObjectBuilder()
+                .add("threads", pageOcrExecutor.getMaximumPoolSize())
+                .add("active", pageOcrExecutor.getActiveCount())
+                .add("queued", pageOcrExecutor.getQueue().size())
+                .add("memory_used", pageOcrExecutor.getMemoryUsed())
+                .add("memory_budget", pageOcrExecutor.getMemoryBudget())
+                .add("page_count", pageOcrExecutor.getPageCount())
+                .add("error_count", pageOcrExecutor.getErrorCount())
+                .add("admission_time_avg", pageOcrExecutor.getAverageAdmissionMillis())
+                .add("render_time_avg", pageOcrExecutor.getAverageRenderMillis())
+                .add("ocr_time_avg", pageOcrExecutor.getAverageOcrMillis())
+                .add("ocr_time_max", pageOcrExecutor.getMaxOcrMillis()));
+
+        // Webhook calls
+        WebhookService webhookService = AppContext.getInstance().getWebhookService();
+        response.add("webhook", Json.createObjectBuilder()
+                .add("in_flight", webhookService.getInFlightCount())
+                .add("call_count", webhookService.getCallCount())
+                .add("error_count", webhookService.getErrorCount())
+                .add("delivered_count", webhookService.getDeliveredCount())
+                .add("call_time_avg", webhookService.getAverageCallMillis())
+                .add("call_time_max", webhookService.getMaxCallMillis()));
+
+        // Document updates coalescing
+        DocumentUpdatedCoalescer documentUpdatedCoalescer = AppContext.getInstance().getDocumentUpdatedCoalescer();
+        response.add("document_updated", Json.createObjectBuilder()
+                .add("submitted_count", documentUpdatedCoalescer.getSubmittedCount())
+                .add("posted_count", documentUpdatedCoalescer.getPostedCount())
+                .add("pending", documentUpdatedCoalescer.getPendingCount()));
+
+        // Storage migration
+        StorageMigrationService storageMigrationService = AppContext.getInstance().getStorageMigrationService();
+        response.add("storage_migration", Json.createObjectBuilder()
+                .add("running", storageMigrationService != null && storageMigrationService.isRunning())
+                .add("migrated_count", storageMigrationService == null ? 0 : storageMigrationService.getMigratedCount())
+                .add("failed_count", storageMigrationService == null ? 0 : storageMigrationService.getFailedCount()));
+
+        // File sizes
+        FileSizeService fileSizeService = AppContext.getInstance().getFileSizeService();
+        response.add("file_size", Json.createObjectBuilder()
+                .add("running", fileSizeService.isRunning())
+                .add("total_count", fileSizeService.getTotalCount())
+                .add("processed_count", fileSizeService.getProcessedCount())
+                .add("failed_count", fileSizeService.getFailedCount()));
+
+        return Response.ok().entity(response.build()).build();
+    }
+
     /**
      * Enable/disable guest login.
      *
@@ -602,7 +843,9 @@ public class AppResource extends BaseResource {
     }
 
     /**
-     * Destroy and rebuild the search index.
+     * Rebuild the search index.
+     * The current index is searched until the rebuilt one replaces it,
+     * and an interrupted rebuild is resumed.
      *
      * @api {post} /app/batch/reindex Rebuild the search index
      * @apiName PostAppBatchReindex
@@ -632,6 +875,49 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response.build()).build();
     }
 
+    /**
+     * Get the progress of the search index rebuild.
+     *
+     * @api {get} /app/batch/reindex Get the progress of the search index rebuild
+     * @apiName GetAppBatchReindex
+     * @apiGroup App
+     * @apiSuccess {Boolean} running True if the index is being rebuilt
+     * @apiSuccess {String="DOCUMENTS","FILES","SWAP"} phase Current phase
+     * @apiSuccess {Number} start_date Start date (timestamp)
+     * @apiSuccess {Boolean} resumed True if resumed from an interrupted rebuild
+     * @apiSuccess {Number} document_count Number of indexed documents
+     * @apiSuccess {Number} document_total Number of documents to index
+     * @apiSuccess {Number} file_count Number of indexed files
+     * @apiSuccess {Number} file_total Number of files to index
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @return Response
+     */
+    @GET
+    @Path("batch/reindex")
+    public Response getBatchReindex() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        RebuildIndexProgress progress = AppContext.getInstance().getIndexingHandler().getRebuildProgress();
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("running", progress != null);
+        if (progress != null) {
+            response.add("phase", progress.getPhase().name())
+                    .add("start_date", progress.getStartDate().getTime())
+                    .add("resumed", progress.isResumed())
+                    .add("document_count", progress.getDocumentCount())
+                    .add("document_total", progress.getDocumentTotal())
+                    .add("file_count", progress.getFileCount())
+                    .add("file_total", progress.getFileTotal());
+        }
+        return Response.ok().entity(response.build()).build();
+    }
+
     /**
      * Clean storage.
      *
@@ -660,20 +946,34 @@ public class AppResource extends BaseResource {
         Map<String, File> fileMap = new HashMap<>();
         for (File file : fileList) {
             fileMap.put(file.getId(), file);
+            if (file.getBlobId() != null) {
+                // The stored content is shared with other files
+                fileMap.put(file.getBlobId(), file);
+            }
         }
         log.info("Checking {} files", fileMap.size());
 
         // Check if each stored file is valid
-        try (DirectoryStream<java.nio.file.Path> storedFileList = Files.newDirectoryStream(DirectoryUtil.getStorageDirectory())) {
-            for (java.nio.file.Path storedFile : storedFileList) {
-                String fileName = storedFile.getFileName().toString();
-                String[] fileNameArray = fileName.split("_");
-                if (!fileMap.containsKey(fileNameArray[0])) {
-                    log.info("Deleting orphan files at this location: {}", storedFile);
-                    Files.delete(storedFile);
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        try (Stream<String> storageKeyStream = storageBackend.list()) {
+            for (String storageKey : (Iterable<String>) storageKeyStream::iterator) {
+                if (storageKey.endsWith(FileUpload.STORED_KEY_SUFFIX)) {
+                    // Uploads in progress are not linked to their file yet, only the abandoned ones are deleted
+                    StorageObject storageObject = storageBackend.stat(storageKey);
+                    if (storageObject != null && System.currentTimeMillis() - storageObject.getLastModified().getTime() > FileUpload.STORED_KEY_EXPIRATION) {
+                        log.info("Deleting abandoned upload: {}", storageKey);
+                        storageBackend.delete(storageKey);
+                    }
+                    continue;
+                }
+
+                String[] storageKeyArray = storageKey.split("_");
+                if (!fileMap.containsKey(storageKeyArray[0])) {
+                    log.info("Deleting orphan stored content: {}", storageKey);
+                    storageBackend.delete(storageKey);
                 }
             }
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new ServerException("FileError", "Error deleting orphan files", e);
         }
 
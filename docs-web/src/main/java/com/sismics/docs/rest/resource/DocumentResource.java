@@ -957,7 +957,7 @@ public class DocumentResource extends BaseResource {
         // Add files to the document
         try {
             for (EmailUtil.FileContent fileContent : mailContent.getFileContentList()) {
-                FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(), fileContent.getSize(),
+                FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(),
                         document.getLanguage(), principal.getId(), document.getId());
             }
         } catch (IOException e) {
@@ -1013,6 +1013,7 @@ public class DocumentResource extends BaseResource {
             fileDeletedAsyncEvent.setUserId(principal.getId());
             fileDeletedAsyncEvent.setFileId(file.getId());
             fileDeletedAsyncEvent.setFileSize(file.getSize());
+            fileDeletedAsyncEvent.setBlobId(file.getBlobId());
             ThreadLocalContext.get().addAsyncEvent(fileDeletedAsyncEvent);
         }
 
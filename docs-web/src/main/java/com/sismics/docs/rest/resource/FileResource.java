@@ -3,6 +3,7 @@ package com.sismics.docs.rest.resource;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
+import com.sismics.docs.core.constant.FileProcessingLane;
 import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.AclDao;
 import com.sismics.docs.core.dao.DocumentDao;
@@ -15,9 +16,11 @@ import com.sismics.docs.core.event.FileUpdatedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
-import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
+import com.sismics.docs.core.util.FileUpload;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.storage.StorageBackend;
+import com.sismics.docs.core.util.storage.StorageObject;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
@@ -34,20 +37,20 @@ import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObjectBuilder;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import jakarta.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
+import java.util.Date;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -77,7 +80,7 @@ public class FileResource extends BaseResource {
      * @apiError (client) ValidationError Validation error
      * @apiError (client) NotFound Document not found
      * @apiError (server) StreamError Error reading the input file
-     * @apiError (server) ErrorGuessMime Error guessing mime type
+     * @apiError (client) ErrorGuessMime Error guessing mime type
      * @apiError (client) QuotaReached Quota limit reached
      * @apiError (server) FileError Error adding a file
      * @apiPermission user
@@ -112,28 +115,31 @@ public class FileResource extends BaseResource {
             }
         }
         
-        // Keep unencrypted data temporary on disk
+        // Receive the file in a single pass, keeping unencrypted data temporary on disk
         String name = fileBodyPart.getContentDisposition() != null ?
                 URLDecoder.decode(fileBodyPart.getContentDisposition().getFileName(), StandardCharsets.UTF_8) : null;
-        java.nio.file.Path unencryptedFile;
-        long fileSize;
+        User user = new UserDao().getById(principal.getId());
+        FileUpload upload;
         try {
-            unencryptedFile = AppContext.getInstance().getFileService().createTemporaryFile(name);
-            Files.copy(fileBodyPart.getValueAs(InputStream.class), unencryptedFile, StandardCopyOption.REPLACE_EXISTING);
-            fileSize = Files.size(unencryptedFile);
+            upload = FileUpload.receive(fileBodyPart.getValueAs(InputStream.class), name, user.getPrivateKey());
         } catch (IOException e) {
+            if ("ErrorGuessMime".equals(e.getMessage())) {
+                throw new ClientException(e.getMessage(), e.getMessage(), e);
+            }
+            throw new ServerException("StreamError", "Error reading the input file", e);
+        } catch (Exception e) {
             throw new ServerException("StreamError", "Error reading the input file", e);
         }
 
         try {
-            String fileId = FileUtil.createFile(name, previousFileId, unencryptedFile, fileSize, documentDto == null ?
-                    null : documentDto.getLanguage(), principal.getId(), documentId);
+            String fileId = FileUtil.createFile(upload, previousFileId, documentDto == null ?
+                    null : documentDto.getLanguage(), principal.getId(), documentId, FileProcessingLane.INTERACTIVE);
 
             // Always return OK
             JsonObjectBuilder response = Json.createObjectBuilder()
                     .add("status", "ok")
                     .add("id", fileId)
-                    .add("size", fileSize);
+                    .add("size", upload.getSize());
             return Response.ok().entity(response.build()).build();
         } catch (IOException e) {
             throw new ClientException(e.getMessage(), e.getMessage(), e);
@@ -198,15 +204,13 @@ public class FileResource extends BaseResource {
         
         // Raise a new file updated event and document updated event (it wasn't sent during file creation)
         try {
-            java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
-            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
-            FileUtil.startProcessingFile(id);
+            java.nio.file.Path unencryptedFile = FileUtil.decryptFile(file.getStorageId(), user.getPrivateKey());
             FileUpdatedAsyncEvent fileUpdatedAsyncEvent = new FileUpdatedAsyncEvent();
             fileUpdatedAsyncEvent.setUserId(principal.getId());
             fileUpdatedAsyncEvent.setLanguage(documentDto.getLanguage());
             fileUpdatedAsyncEvent.setFileId(file.getId());
             fileUpdatedAsyncEvent.setUnencryptedFile(unencryptedFile);
-            ThreadLocalContext.get().addAsyncEvent(fileUpdatedAsyncEvent);
+            FileUtil.startProcessingFile(fileUpdatedAsyncEvent);
             
             DocumentUpdatedAsyncEvent documentUpdatedAsyncEvent = new DocumentUpdatedAsyncEvent();
             documentUpdatedAsyncEvent.setUserId(principal.getId());
@@ -306,15 +310,14 @@ public class FileResource extends BaseResource {
 
         // Start the processing asynchronously
         try {
-            java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
-            java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
-            FileUtil.startProcessingFile(id);
+            java.nio.file.Path unencryptedFile = FileUtil.decryptFile(file.getStorageId(), user.getPrivateKey());
             FileUpdatedAsyncEvent event = new FileUpdatedAsyncEvent();
             event.setUserId(principal.getId());
             event.setLanguage(documentDto.getLanguage());
             event.setFileId(file.getId());
             event.setUnencryptedFile(unencryptedFile);
-            ThreadLocalContext.get().addAsyncEvent(event);
+            event.setLane(FileProcessingLane.BULK);
+            FileUtil.startProcessingFile(event);
         } catch (Exception e) {
             throw new ServerException("ProcessingError", "Error processing this file", e);
         }
@@ -526,6 +529,7 @@ public class FileResource extends BaseResource {
         fileDeletedAsyncEvent.setUserId(principal.getId());
         fileDeletedAsyncEvent.setFileId(file.getId());
         fileDeletedAsyncEvent.setFileSize(file.getSize());
+        fileDeletedAsyncEvent.setBlobId(file.getBlobId());
         ThreadLocalContext.get().addAsyncEvent(fileDeletedAsyncEvent);
         
         if (file.getDocumentId() != null) {
@@ -551,15 +555,23 @@ public class FileResource extends BaseResource {
      * @apiParam {String} id File ID
      * @apiParam {String} share Share ID
      * @apiParam {String="web","thumb","content"} [size] Size variation
-     * @apiSuccess {Object} file The file data is the whole response
+     * @apiHeader {String} [Range] Single byte range to return
+     * @apiHeader {String} [If-Range] Return the range only if the file has not changed
+     * @apiSuccess {Object} file The file data is the whole response, or the requested range with a 206 status
      * @apiError (client) SizeError Size must be web or thumb
      * @apiError (client) ForbiddenError Access denied or document not visible
      * @apiError (client) NotFound File not found
+     * @apiError (client) RangeNotSatisfiable The range is outside the file
      * @apiError (server) ServiceUnavailable Error reading the file
      * @apiPermission none
      * @apiVersion 1.5.0
      *
      * @param fileId File ID
+     * @param shareId Share ID
+     * @param size Size variation
+     * @param range Range header
+     * @param ifRange If-Range header
+     * @param restRequest Request, to evaluate the preconditions
      * @return Response
      */
     @GET
@@ -568,7 +580,10 @@ public class FileResource extends BaseResource {
     public Response data(
             @PathParam("id") final String fileId,
             @QueryParam("share") String shareId,
-            @QueryParam("size") String size) {
+            @QueryParam("size") String size,
+            @HeaderParam("Range") String range,
+            @HeaderParam("If-Range") String ifRange,
+            @Context Request restRequest) {
         authenticate();
         
         if (size != null && !Lists.newArrayList("web", "thumb", "content").contains(size)) {
@@ -578,11 +593,11 @@ public class FileResource extends BaseResource {
         // Get the file
         File file = findFile(fileId, shareId);
 
-        // Get the stored file
+        // Get the stored content
         UserDao userDao = new UserDao();
-        java.nio.file.Path storedFile;
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        String storageKey;
         String mimeType;
-        boolean decrypt;
         if (size != null) {
             if (size.equals("content")) {
                 return Response.ok(Strings.nullToEmpty(file.getContent()))
@@ -590,36 +605,58 @@ public class FileResource extends BaseResource {
                         .build();
             }
 
-            storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId + "_" + size);
+            storageKey = file.getStorageId() + "_" + size;
             mimeType = MimeType.IMAGE_JPEG; // Thumbnails are JPEG
-            decrypt = true; // Thumbnails are encrypted
-            if (!Files.exists(storedFile)) {
-                try {
-                    storedFile = Paths.get(getClass().getResource("/image/file-" + size + ".png").toURI());
-                } catch (URISyntaxException e) {
-                    // Ignore
-                }
-                mimeType = MimeType.IMAGE_PNG;
-                decrypt = false;
-            }
         } else {
-            storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
+            storageKey = file.getStorageId();
             mimeType = file.getMimeType();
-            decrypt = true; // Original files are encrypted
         }
         
-        // Stream the output and decrypt it if necessary
+        // Validators, a stored content is rewritten when it changes
+        StorageObject storageObject;
+        try {
+            storageObject = storageBackend.stat(storageKey);
+        } catch (IOException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        }
+        if (storageObject == null) {
+            if (size == null) {
+                return Response.status(Status.SERVICE_UNAVAILABLE).build();
+            }
+            return sendPlaceholder(file, size);
+        }
+        long length = storageObject.getSize();
+        Date lastModified = storageObject.getLastModified();
+        EntityTag entityTag = new EntityTag(fileId + (size == null ? "" : "-" + size) + "-" + lastModified.getTime());
+        Response.ResponseBuilder notModifiedBuilder = restRequest.evaluatePreconditions(lastModified, entityTag);
+        if (notModifiedBuilder != null) {
+            return notModifiedBuilder.tag(entityTag).build();
+        }
+
+        // Only a range of a file not modified since the client got its validator is sent
+        long[] byteRange = null;
+        if (isRangeValid(ifRange, entityTag, lastModified)) {
+            byteRange = HttpUtil.parseRange(range, length);
+        }
+        if (byteRange != null && byteRange[0] >= length) {
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + length)
+                    .build();
+        }
+        long start = byteRange == null ? 0 : byteRange[0];
+        long count = byteRange == null ? length : byteRange[1] - byteRange[0] + 1;
+
+        // Stream the output and decrypt it
         StreamingOutput stream;
         
         // A file is always encrypted by the creator of it
         User user = userDao.getById(file.getUserId());
         
-        // Write the decrypted file to the output
+        // Write the decrypted file to the output, the encrypted file is read from the start of the range
         try {
-            InputStream fileInputStream = Files.newInputStream(storedFile);
-            final InputStream responseInputStream = decrypt ?
-                    EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey()) : fileInputStream;
-                    
+            InputStream fileInputStream = storageBackend.get(storageKey, start, count);
+            final InputStream responseInputStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey(), start);
+
             stream = outputStream -> {
                 try {
                     ByteStreams.copy(responseInputStream, outputStream);
@@ -636,19 +673,66 @@ public class FileResource extends BaseResource {
             return Response.status(Status.SERVICE_UNAVAILABLE).build();
         }
 
-        Response.ResponseBuilder builder = Response.ok(stream)
+        Response.ResponseBuilder builder = Response.status(byteRange == null ? Status.OK : Status.PARTIAL_CONTENT)
+                .entity(stream)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFullName("data") + "\"")
-                .header(HttpHeaders.CONTENT_TYPE, mimeType);
-        if (decrypt) {
-            // Cache real files
-            builder.header(HttpHeaders.CACHE_CONTROL, "private")
-                    .header(HttpHeaders.EXPIRES, HttpUtil.buildExpiresHeader(3_600_000L * 24L * 365L));
-        } else {
-            // Do not cache the temporary thumbnail
-            builder.header(HttpHeaders.CACHE_CONTROL, "no-store, must-revalidate")
-                    .header(HttpHeaders.EXPIRES, "0");
+                .header(HttpHeaders.CONTENT_TYPE, mimeType)
+                .header(HttpHeaders.CONTENT_LENGTH, count);
+        if (byteRange != null) {
+            builder.header("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + length);
+        }
+
+        // Cache real files, and let clients revalidate them or request ranges
+        return builder.header(HttpHeaders.CACHE_CONTROL, "private")
+                .header(HttpHeaders.EXPIRES, HttpUtil.buildExpiresHeader(3_600_000L * 24L * 365L))
+                .header("Accept-Ranges", "bytes")
+                .tag(entityTag)
+                .lastModified(lastModified)
+                .build();
+    }
+
+    /**
+     * Send the placeholder of a thumbnail not generated yet.
+     *
+     * @param file File
+     * @param size Thumbnail size
+     * @return Response
+     */
+    private Response sendPlaceholder(File file, String size) {
+        byte[] placeholder;
+        try (InputStream inputStream = getClass().getResourceAsStream("/image/file-" + size + ".png")) {
+            placeholder = ByteStreams.toByteArray(inputStream);
+        } catch (IOException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        }
+
+        // Do not cache the temporary thumbnail
+        return Response.ok(placeholder)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFullName("data") + "\"")
+                .header(HttpHeaders.CONTENT_TYPE, MimeType.IMAGE_PNG)
+                .header(HttpHeaders.CONTENT_LENGTH, placeholder.length)
+                .header(HttpHeaders.CACHE_CONTROL, "no-store, must-revalidate")
+                .header(HttpHeaders.EXPIRES, "0")
+                .build();
+    }
+
+    /**
+     * Returns true if a range can be sent according to the If-Range header.
+     *
+     * @param ifRange If-Range header, can be null
+     * @param entityTag Current entity tag
+     * @param lastModified Current last modification date
+     * @return True if the range can be sent
+     */
+    private boolean isRangeValid(String ifRange, EntityTag entityTag, Date lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(entityTag.toString());
         }
-        return builder.build();
+        Date date = HttpUtil.parseDate(ifRange);
+        return date != null && date.getTime() / 1000 == lastModified.getTime() / 1000;
     }
 
     /**
@@ -729,8 +813,7 @@ public class FileResource extends BaseResource {
                 // Add each file to the ZIP stream
                 int index = 0;
                 for (File file : fileList) {
-                    java.nio.file.Path storedfile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-                    InputStream fileInputStream = Files.newInputStream(storedfile);
+                    InputStream fileInputStream = AppContext.getInstance().getStorageBackend().get(file.getStorageId());
 
                     // Add the decrypted file to the ZIP stream
                     // Files are encrypted by the creator of them
@@ -108,6 +108,7 @@ public class GroupResource extends BaseResource {
      * @apiError (client) ValidationError Validation error
      * @apiError (client) GroupAlreadyExists This group already exists
      * @apiError (client) ParentGroupNotFound Parent group not found
+     * @apiError (client) ParentGroupCycle The parent group is this group or one of its sub-groups
      * @apiError (client) NotFound Group not found
      * @apiPermission admin
      * @apiVersion 1.5.0
@@ -149,6 +150,9 @@ public class GroupResource extends BaseResource {
                 throw new ClientException("ParentGroupNotFound", MessageFormat.format("This group does not exists: {0}", parentName));
             }
             parentId = parentGroup.getId();
+            if (groupDao.isAncestor(group.getId(), parentId)) {
+                throw new ClientException("ParentGroupCycle", MessageFormat.format("This group cannot be the parent group: {0}", parentName));
+            }
         }
 
         // Check that this group is not used in any workflow in case of renaming
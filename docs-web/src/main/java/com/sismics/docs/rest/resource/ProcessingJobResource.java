@@ -0,0 +1,194 @@
+package com.sismics.docs.rest.resource;
+
+import com.sismics.docs.core.constant.FileProcessingJobStatus;
+import com.sismics.docs.core.dao.FileProcessingJobDao;
+import com.sismics.docs.core.dao.criteria.FileProcessingJobCriteria;
+import com.sismics.docs.core.dao.dto.FileProcessingJobDto;
+import com.sismics.docs.core.model.jpa.FileProcessingJob;
+import com.sismics.docs.core.util.jpa.PaginatedList;
+import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import com.sismics.docs.rest.constant.BaseFunction;
+import com.sismics.rest.exception.ClientException;
+import com.sismics.rest.exception.ForbiddenClientException;
+import com.sismics.util.JsonUtil;
+import org.apache.commons.lang3.StringUtils;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * File processing job REST resources.
+ */
+@Path("/processingjob")
+public class ProcessingJobResource extends BaseResource {
+    /**
+     * Returns the file processing jobs, most recent first.
+     *
+     * @api {get} /processingjob Get file processing jobs
+     * @apiName GetProcessingJob
+     * @apiGroup ProcessingJob
+     * @apiParam {String="PENDING","PROCESSING","DONE","FAILED","CANCELLED"} [status] Filter on status
+     * @apiParam {String} [file] Filter on file ID
+     * @apiParam {Number} [limit] Page limit
+     * @apiParam {Number} [offset] Page offset
+     * @apiSuccess {Number} total Total number of jobs
+     * @apiSuccess {Object[]} jobs List of jobs
+     * @apiSuccess {String} jobs.id ID
+     * @apiSuccess {String} jobs.file_id File ID
+     * @apiSuccess {String} jobs.file_name File name
+     * @apiSuccess {String="INTERACTIVE","BULK"} jobs.lane Processing lane
+     * @apiSuccess {String} jobs.status Status
+     * @apiSuccess {Number} jobs.attempts Number of attempts
+     * @apiSuccess {String} jobs.node Node processing the job
+     * @apiSuccess {String} jobs.error Last error
+     * @apiSuccess {Number} jobs.create_date Create date (timestamp)
+     * @apiSuccess {Number} jobs.update_date Update date (timestamp)
+     * @apiError (client) ForbiddenError Access denied
+     * @apiError (client) ValidationError Validation error
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @param statusStr Filter on status
+     * @param fileId Filter on file ID
+     * @param limit Page limit
+     * @param offset Page offset
+     * @return Response
+     */
+    @GET
+    public Response list(
+            @QueryParam("status") String statusStr,
+            @QueryParam("file") String fileId,
+            @QueryParam("limit") Integer limit,
+            @QueryParam("offset") Integer offset) {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        // Validate input
+        FileProcessingJobCriteria criteria = new FileProcessingJobCriteria()
+                .setFileId(StringUtils.stripToNull(fileId));
+        statusStr = StringUtils.stripToNull(statusStr);
+        if (statusStr != null) {
+            try {
+                criteria.setStatus(FileProcessingJobStatus.valueOf(statusStr));
+            } catch (IllegalArgumentException e) {
+                throw new ClientException("ValidationError", "Invalid status: " + statusStr);
+            }
+        }
+
+        // Find the jobs
+        PaginatedList<FileProcessingJobDto> paginatedList = PaginatedLists.create(limit, offset);
+        new FileProcessingJobDao().findByCriteria(paginatedList, criteria, new SortCriteria(8, false));
+        JsonArrayBuilder jobs = Json.createArrayBuilder();
+        for (FileProcessingJobDto jobDto : paginatedList.getResultList()) {
+            jobs.add(Json.createObjectBuilder()
+                    .add("id", jobDto.getId())
+                    .add("file_id", jobDto.getFileId())
+                    .add("file_name", JsonUtil.nullable(jobDto.getFileName()))
+                    .add("lane", jobDto.getLane())
+                    .add("status", jobDto.getStatus())
+                    .add("attempts", jobDto.getAttempts())
+                    .add("node", JsonUtil.nullable(jobDto.getLeaseOwner()))
+                    .add("error", JsonUtil.nullable(jobDto.getError()))
+                    .add("create_date", jobDto.getCreateTimestamp())
+                    .add("update_date", jobDto.getUpdateTimestamp()));
+        }
+
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("total", paginatedList.getResultCount())
+                .add("jobs", jobs);
+        return Response.ok().entity(response.build()).build();
+    }
+
+    /**
+     * Process a failed or cancelled file processing job again.
+     *
+     * @api {post} /processingjob/:id/retry Retry a file processing job
+     * @apiName PostProcessingJobRetry
+     * @apiGroup ProcessingJob
+     * @apiParam {String} id Job ID
+     * @apiSuccess {String} status Status OK
+     * @apiError (client) ForbiddenError Access denied
+     * @apiError (client) NotFound Job not found
+     * @apiError (client) IllegalJobStatus The job is not failed or cancelled
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @param id Job ID
+     * @return Response
+     */
+    @POST
+    @Path("{id: [a-z0-9\\-]+}/retry")
+    public Response retry(@PathParam("id") String id) {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        // Get the job
+        FileProcessingJobDao fileProcessingJobDao = new FileProcessingJobDao();
+        FileProcessingJob job = fileProcessingJobDao.getById(id);
+        if (job == null) {
+            throw new NotFoundException();
+        }
+
+        // Put it back in the queue, it will be processed by the next poll
+        if (!fileProcessingJobDao.retry(id)) {
+            throw new ClientException("IllegalJobStatus", "Only failed or cancelled jobs can be retried: " + job.getStatus());
+        }
+
+        // Always return OK
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("status", "ok");
+        return Response.ok().entity(response.build()).build();
+    }
+
+    /**
+     * Cancel a file processing job not completed yet.
+     * A job already being processed still completes, but it is not processed again.
+     *
+     * @api {post} /processingjob/:id/cancel Cancel a file processing job
+     * @apiName PostProcessingJobCancel
+     * @apiGroup ProcessingJob
+     * @apiParam {String} id Job ID
+     * @apiSuccess {String} status Status OK
+     * @apiError (client) ForbiddenError Access denied
+     * @apiError (client) NotFound Job not found
+     * @apiError (client) IllegalJobStatus The job is already done or cancelled
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @param id Job ID
+     * @return Response
+     */
+    @POST
+    @Path("{id: [a-z0-9\\-]+}/cancel")
+    public Response cancel(@PathParam("id") String id) {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        // Get the job
+        FileProcessingJobDao fileProcessingJobDao = new FileProcessingJobDao();
+        FileProcessingJob job = fileProcessingJobDao.getById(id);
+        if (job == null) {
+            throw new NotFoundException();
+        }
+
+        // Cancel the job
+        if (!fileProcessingJobDao.cancel(id, "Cancelled by " + principal.getName())) {
+            throw new ClientException("IllegalJobStatus", "The job is already done or cancelled: " + job.getStatus());
+        }
+
+        // Always return OK
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("status", "ok");
+        return Response.ok().entity(response.build()).build();
+    }
+}
@@ -1138,6 +1138,7 @@ public class UserResource extends BaseResource {
             fileDeletedAsyncEvent.setUserId(principal.getId());
             fileDeletedAsyncEvent.setFileId(file.getId());
             fileDeletedAsyncEvent.setFileSize(file.getSize());
+            fileDeletedAsyncEvent.setBlobId(file.getBlobId());
             ThreadLocalContext.get().addAsyncEvent(fileDeletedAsyncEvent);
         }
     }
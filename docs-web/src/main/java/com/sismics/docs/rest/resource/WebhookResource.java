@@ -1,14 +1,24 @@
 package com.sismics.docs.rest.resource;
 
+import com.sismics.docs.core.constant.WebhookDeliveryStatus;
 import com.sismics.docs.core.constant.WebhookEvent;
 import com.sismics.docs.core.dao.WebhookDao;
+import com.sismics.docs.core.dao.WebhookDeliveryDao;
 import com.sismics.docs.core.dao.criteria.WebhookCriteria;
+import com.sismics.docs.core.dao.criteria.WebhookDeliveryCriteria;
+import com.sismics.docs.core.dao.dto.WebhookDeliveryDto;
+import com.sismics.docs.core.dao.dto.WebhookDeliveryStatsDto;
 import com.sismics.docs.core.dao.dto.WebhookDto;
 import com.sismics.docs.core.model.jpa.Webhook;
+import com.sismics.docs.core.util.jpa.PaginatedList;
+import com.sismics.docs.core.util.jpa.PaginatedLists;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.docs.rest.constant.BaseFunction;
+import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.util.ValidationUtil;
+import com.sismics.util.JsonUtil;
+import org.apache.commons.lang3.StringUtils;
 
 import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
@@ -16,6 +26,7 @@ import jakarta.json.JsonObjectBuilder;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Response;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Webhook REST resources.
@@ -34,9 +45,16 @@ public class WebhookResource extends BaseResource {
      * @apiSuccess {String} webhooks.id ID
      * @apiSuccess {String} webhooks.event Event
      * @apiSuccess {String} webhooks.url URL
+     * @apiSuccess {Boolean} webhooks.batch True if the events are sent in batches
+     * @apiSuccess {Number} webhooks.create_date Create date (timestamp)
+     * @apiSuccess {Number} webhooks.pending_count Number of events waiting to be delivered
+     * @apiSuccess {Number} webhooks.delivered_count Number of events delivered
+     * @apiSuccess {Number} webhooks.failed_count Number of events which could not be delivered
+     * @apiSuccess {Number} webhooks.delivery_time_avg Average delivery time in milliseconds
+     * @apiSuccess {Number} webhooks.last_delivery_date Date of the last delivery (timestamp)
      * @apiError (client) ForbiddenError Access denied
      * @apiPermission admin
-     * @apiVersion 1.6.0
+     * @apiVersion 1.12.0
      *
      * @return Response
      */
@@ -50,12 +68,20 @@ public class WebhookResource extends BaseResource {
         WebhookDao webhookDao = new WebhookDao();
         JsonArrayBuilder webhooks = Json.createArrayBuilder();
         List<WebhookDto> webhookDtoList = webhookDao.findByCriteria(new WebhookCriteria(), new SortCriteria(2, true));
+        Map<String, WebhookDeliveryStatsDto> statsMap = new WebhookDeliveryDao().getStats();
         for (WebhookDto webhookDto : webhookDtoList) {
+            WebhookDeliveryStatsDto stats = statsMap.getOrDefault(webhookDto.getId(), new WebhookDeliveryStatsDto());
             webhooks.add(Json.createObjectBuilder()
                     .add("id", webhookDto.getId())
                     .add("event", webhookDto.getEvent())
                     .add("url", webhookDto.getUrl())
-                    .add("create_date", webhookDto.getCreateTimestamp()));
+                    .add("batch", webhookDto.isBatch())
+                    .add("create_date", webhookDto.getCreateTimestamp())
+                    .add("pending_count", stats.getPendingCount())
+                    .add("delivered_count", stats.getDeliveredCount())
+                    .add("failed_count", stats.getFailedCount())
+                    .add("delivery_time_avg", stats.getAverageDuration())
+                    .add("last_delivery_date", JsonUtil.nullable(stats.getLastDeliveryTimestamp())));
         }
 
         JsonObjectBuilder response = Json.createObjectBuilder()
@@ -67,22 +93,26 @@ public class WebhookResource extends BaseResource {
      * Add a webhook.
      *
      * @api {put} /webhook Add a webhook
-     * @apiDescription Each time the specified event is raised, the webhook URL will be POST-ed with the following JSON payload: {"event": "Event name", "id": "ID of the document or file"}
+     * @apiDescription Each time the specified event is raised, the webhook URL will be POST-ed with the following JSON payload: {"event": "Event name", "id": "ID of the document or file"}.
+     * Batched webhooks are POST-ed periodically with all the events raised meanwhile: {"events": [{"event": "Event name", "id": "ID of the document or file"}]}.
+     * Failed calls are retried with an exponential backoff.
      * @apiName PutWebhook
      * @apiGroup Webhook
      * @apiParam {String="DOCUMENT_CREATED","DOCUMENT_UPDATED","DOCUMENT_DELETED","FILE_CREATED","FILE_UPDATED","FILE_DELETED"} event Event
      * @apiParam {String} url URL
+     * @apiParam {Boolean} [batch=false] If true, the events are sent in batches
      * @apiSuccess {String} status Status OK
      * @apiError (client) ForbiddenError Access denied
      * @apiError (client) ValidationError Validation error
      * @apiPermission admin
-     * @apiVersion 1.6.0
+     * @apiVersion 1.12.0
      *
      * @return Response
      */
     @PUT
     public Response add(@FormParam("event") String eventStr,
-                        @FormParam("url") String url) {
+                        @FormParam("url") String url,
+                        @FormParam("batch") Boolean batch) {
         if (!authenticate()) {
             throw new ForbiddenClientException();
         }
@@ -96,7 +126,8 @@ public class WebhookResource extends BaseResource {
         WebhookDao webhookDao = new WebhookDao();
         webhookDao.create(new Webhook()
                 .setUrl(url)
-                .setEvent(event));
+                .setEvent(event)
+                .setBatch(Boolean.TRUE.equals(batch)));
 
         // Always return OK
         JsonObjectBuilder response = Json.createObjectBuilder()
@@ -142,4 +173,85 @@ public class WebhookResource extends BaseResource {
                 .add("status", "ok");
         return Response.ok().entity(response.build()).build();
     }
+
+    /**
+     * Returns the delivery history of a webhook, most recent first.
+     *
+     * @api {get} /webhook/:id/delivery Get the deliveries of a webhook
+     * @apiName GetWebhookDelivery
+     * @apiGroup Webhook
+     * @apiParam {String} id Webhook ID
+     * @apiParam {String="PENDING","SENDING","DELIVERED","FAILED"} [status] Filter on status
+     * @apiParam {Number} [limit] Page limit
+     * @apiParam {Number} [offset] Page offset
+     * @apiSuccess {Number} total Total number of deliveries
+     * @apiSuccess {Object[]} deliveries List of deliveries
+     * @apiSuccess {String} deliveries.id ID
+     * @apiSuccess {String} deliveries.event Event
+     * @apiSuccess {String} deliveries.entity_id ID of the document or file
+     * @apiSuccess {String} deliveries.status Status
+     * @apiSuccess {Number} deliveries.attempts Number of attempts
+     * @apiSuccess {Number} deliveries.response_code HTTP status code of the last attempt
+     * @apiSuccess {Number} deliveries.duration Duration of the last attempt in milliseconds
+     * @apiSuccess {String} deliveries.error Last error
+     * @apiSuccess {Number} deliveries.create_date Create date (timestamp)
+     * @apiSuccess {Number} deliveries.update_date Update date (timestamp)
+     * @apiError (client) ForbiddenError Access denied
+     * @apiError (client) ValidationError Validation error
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @param id Webhook ID
+     * @param statusStr Filter on status
+     * @param limit Page limit
+     * @param offset Page offset
+     * @return Response
+     */
+    @GET
+    @Path("{id: [a-z0-9\\-]+}/delivery")
+    public Response delivery(
+            @PathParam("id") String id,
+            @QueryParam("status") String statusStr,
+            @QueryParam("limit") Integer limit,
+            @QueryParam("offset") Integer offset) {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        // Validate input
+        WebhookDeliveryCriteria criteria = new WebhookDeliveryCriteria()
+                .setWebhookId(id);
+        statusStr = StringUtils.stripToNull(statusStr);
+        if (statusStr != null) {
+            try {
+                criteria.setStatus(WebhookDeliveryStatus.valueOf(statusStr));
+            } catch (IllegalArgumentException e) {
+                throw new ClientException("ValidationError", "Invalid status: " + statusStr);
+            }
+        }
+
+        // Find the deliveries
+        PaginatedList<WebhookDeliveryDto> paginatedList = PaginatedLists.create(limit, offset);
+        new WebhookDeliveryDao().findByCriteria(paginatedList, criteria, new SortCriteria(9, false));
+        JsonArrayBuilder deliveries = Json.createArrayBuilder();
+        for (WebhookDeliveryDto deliveryDto : paginatedList.getResultList()) {
+            deliveries.add(Json.createObjectBuilder()
+                    .add("id", deliveryDto.getId())
+                    .add("event", deliveryDto.getEvent())
+                    .add("entity_id", deliveryDto.getEntityId())
+                    .add("status", deliveryDto.getStatus())
+                    .add("attempts", deliveryDto.getAttempts())
+                    .add("response_code", JsonUtil.nullable(deliveryDto.getResponseCode()))
+                    .add("duration", JsonUtil.nullable(deliveryDto.getDuration()))
+                    .add("error", JsonUtil.nullable(deliveryDto.getError()))
+                    .add("create_date", deliveryDto.getCreateTimestamp())
+                    .add("update_date", deliveryDto.getUpdateTimestamp()));
+        }
+
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("total", paginatedList.getResultCount())
+                .add("deliveries", deliveries);
+        return Response.ok().entity(response.build()).build();
+    }
 }
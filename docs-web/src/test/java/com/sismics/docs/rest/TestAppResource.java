@@ -7,6 +7,7 @@ import com.icegreen.greenmail.util.GreenMail;
 import com.icegreen.greenmail.util.GreenMailUtil;
 import com.icegreen.greenmail.util.ServerSetup;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.storage.LocalStorageBackend;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
@@ -26,6 +27,11 @@ import org.apache.directory.server.protocol.shared.transport.TcpTransport;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
 
 /**
  * Test the app resource.
@@ -43,7 +49,7 @@ public class TestAppResource extends BaseJerseyTest {
     private static boolean configLdapChanged = false;
 
     @Test
-    public void testAppResource() {
+    public void testAppResource() throws Exception {
         // Login admin
         String adminToken = adminToken();
 
@@ -63,17 +69,53 @@ public class TestAppResource extends BaseJerseyTest {
         Assert.assertTrue(json.containsKey("global_storage_current"));
         Assert.assertTrue(json.getJsonNumber("active_user_count").longValue() > 0);
 
+        // Check the internal metrics
+        json = target().path("/app/metrics").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertTrue(json.getJsonObject("key_cache").containsKey("hit_rate"));
+        Assert.assertTrue(json.getJsonObject("principal_cache").containsKey("hit_rate"));
+        Assert.assertTrue(json.getJsonObject("entity_cache").getBoolean("enabled"));
+        Assert.assertFalse(json.getJsonObject("entity_cache").getJsonArray("regions").isEmpty());
+        Assert.assertTrue(json.getJsonObject("connection_pool").getInt("max") > 0);
+        Assert.assertTrue(json.containsKey("file_processing"));
+        Assert.assertTrue(json.containsKey("page_ocr"));
+        Assert.assertTrue(json.containsKey("webhook"));
+        Assert.assertTrue(json.containsKey("document_updated"));
+        Assert.assertFalse(json.getJsonObject("storage_migration").getBoolean("running"));
+        Assert.assertTrue(json.containsKey("file_size"));
+
         // Rebuild Lucene index
         Response response = target().path("/app/batch/reindex").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
                 .post(Entity.form(new Form()));
         Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
 
+        // Check the reindex progress, the rebuild is already done in tests
+        json = target().path("/app/batch/reindex").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("running"));
+
+        // Store an orphan content, an upload in progress and an abandoned upload
+        LocalStorageBackend storageBackend = (LocalStorageBackend) AppContext.getInstance().getStorageBackend();
+        for (String storageKey : new String[] { "orphan", "inprogress_upload", "abandoned_upload" }) {
+            try (OutputStream outputStream = storageBackend.put(storageKey)) {
+                outputStream.write(0);
+            }
+        }
+        Files.setLastModifiedTime(storageBackend.resolve("abandoned_upload"),
+                FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+
         // Clean storage
         response = target().path("/app/batch/clean_storage").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
                 .post(Entity.form(new Form()));
         Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertNull(storageBackend.stat("orphan"));
+        Assert.assertNotNull(storageBackend.stat("inprogress_upload"));
+        Assert.assertNull(storageBackend.stat("abandoned_upload"));
+        storageBackend.delete("inprogress_upload");
 
         // Change the default language
         response = target().path("/app/config").request()
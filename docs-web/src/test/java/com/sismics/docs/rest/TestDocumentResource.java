@@ -2,7 +2,8 @@ package com.sismics.docs.rest;
 
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
-import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.storage.StorageBackend;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
@@ -418,12 +419,10 @@ public class TestDocumentResource extends BaseJerseyTest {
         Assert.assertEquals(Status.NOT_FOUND, Status.fromStatusCode(response.getStatus()));
 
         // Check that the associated files are deleted from FS
-        java.io.File storedFile = DirectoryUtil.getStorageDirectory().resolve(file1Id).toFile();
-        java.io.File webFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_web").toFile();
-        java.io.File thumbnailFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_thumb").toFile();
-        Assert.assertFalse(storedFile.exists());
-        Assert.assertFalse(webFile.exists());
-        Assert.assertFalse(thumbnailFile.exists());
+        StorageBackend storageBackend = AppContext.getInstance().getStorageBackend();
+        Assert.assertNull(storageBackend.stat(file1Id));
+        Assert.assertNull(storageBackend.stat(file1Id + "_web"));
+        Assert.assertNull(storageBackend.stat(file1Id + "_thumb"));
         
         // Get a document (KO)
         response = target().path("/document/" + document1Id).request()
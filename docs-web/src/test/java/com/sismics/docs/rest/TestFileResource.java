@@ -2,7 +2,8 @@ package com.sismics.docs.rest;
 
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
-import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.storage.LocalStorageBackend;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import com.sismics.util.mime.MimeType;
 import com.sismics.util.mime.MimeTypeUtil;
@@ -16,12 +17,12 @@ import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.zip.ZipInputStream;
 
@@ -58,7 +59,42 @@ public class TestFileResource extends BaseJerseyTest {
         InputStream is = (InputStream) response.getEntity();
         byte[] fileBytes = ByteStreams.toByteArray(is);
         Assert.assertTrue(fileBytes.length > 0);
-        
+        String etag = response.getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag);
+        Assert.assertNotNull(response.getHeaderString(HttpHeaders.LAST_MODIFIED));
+
+        // Get a range of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=1000-1999")
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals("bytes 1000-1999/" + fileBytes.length, response.getHeaderString("Content-Range"));
+        Assert.assertArrayEquals(Arrays.copyOfRange(fileBytes, 1000, 2000), ByteStreams.toByteArray((InputStream) response.getEntity()));
+
+        // Get a range of a modified file data, the whole file is returned
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=1000-1999")
+                .header("If-Range", "\"outdated\"")
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals(fileBytes.length, ByteStreams.toByteArray((InputStream) response.getEntity()).length);
+
+        // Get a range outside the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=" + fileBytes.length + "-")
+                .get();
+        Assert.assertEquals(Status.REQUESTED_RANGE_NOT_SATISFIABLE, Status.fromStatusCode(response.getStatus()));
+
+        // Revalidate the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get();
+        Assert.assertEquals(Status.NOT_MODIFIED, Status.fromStatusCode(response.getStatus()));
+
         // Get the thumbnail data
         response = target().path("/file/" + file1Id + "/data")
                 .queryParam("size", "thumb")
@@ -90,8 +126,8 @@ public class TestFileResource extends BaseJerseyTest {
         Assert.assertTrue(fileBytes.length > 0);
         
         // Check that the files are not readable directly from FS
-        Path storedFile = DirectoryUtil.getStorageDirectory().resolve(file1Id);
-        Assert.assertEquals(MimeType.DEFAULT, MimeTypeUtil.guessMimeType(storedFile, null));
+        LocalStorageBackend storageBackend = (LocalStorageBackend) AppContext.getInstance().getStorageBackend();
+        Assert.assertEquals(MimeType.DEFAULT, MimeTypeUtil.guessMimeType(storageBackend.resolve(file1Id), null));
 
         // Get all files from a document
         JsonObject json = target().path("/file/list")
@@ -168,12 +204,9 @@ public class TestFileResource extends BaseJerseyTest {
         Assert.assertEquals(Status.NOT_FOUND, Status.fromStatusCode(response.getStatus()));
         
         // Check that files are deleted from FS
-        storedFile = DirectoryUtil.getStorageDirectory().resolve(file1Id);
-        Path webFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_web");
-        Path thumbnailFile = DirectoryUtil.getStorageDirectory().resolve(file1Id + "_thumb");
-        Assert.assertFalse(Files.exists(storedFile));
-        Assert.assertFalse(Files.exists(webFile));
-        Assert.assertFalse(Files.exists(thumbnailFile));
+        Assert.assertNull(storageBackend.stat(file1Id));
+        Assert.assertNull(storageBackend.stat(file1Id + "_web"));
+        Assert.assertNull(storageBackend.stat(file1Id + "_thumb"));
         
         // Get all files from a document
         json = target().path("/file/list")
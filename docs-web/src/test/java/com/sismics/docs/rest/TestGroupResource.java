@@ -132,7 +132,17 @@ public class TestGroupResource extends BaseJerseyTest {
         Assert.assertEquals(2, groups.size());
         Assert.assertEquals("g112", groups.getString(0));
         Assert.assertEquals("g12new", groups.getString(1));
-        
+
+        // Move group g1 under its sub-group g112
+        Response response = target().path("/group/g1").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()
+                        .param("name", "g1")
+                        .param("parent", "g112")));
+        Assert.assertEquals(Response.Status.BAD_REQUEST, Response.Status.fromStatusCode(response.getStatus()));
+        json = response.readEntity(JsonObject.class);
+        Assert.assertEquals("ParentGroupCycle", json.getString("type"));
+
         // Get group g12new
         json = target().path("/group/g12new").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
@@ -168,7 +178,7 @@ public class TestGroupResource extends BaseJerseyTest {
                 .delete(JsonObject.class);
 
         // Delete group administrators
-        Response response = target().path("/group/administrators").request()
+        response = target().path("/group/administrators").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
                 .delete();
         Assert.assertEquals(Response.Status.BAD_REQUEST, Response.Status.fromStatusCode(response.getStatus()));
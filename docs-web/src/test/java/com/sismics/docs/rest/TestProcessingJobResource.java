@@ -0,0 +1,123 @@
+package com.sismics.docs.rest;
+
+import com.sismics.util.filter.TokenBasedSecurityFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.Response;
+
+
+/**
+ * Test the file processing job resource.
+ */
+public class TestProcessingJobResource extends BaseJerseyTest {
+    /**
+     * Test the file processing job resource.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testProcessingJobResource() throws Exception {
+        // Login admin
+        String adminToken = adminToken();
+
+        // Login job1
+        clientUtil.createUser("job1");
+        String job1Token = clientUtil.login("job1");
+
+        // Create a document with a file
+        String document1Id = clientUtil.createDocument(job1Token);
+        String file1Id = clientUtil.addFileToDocument(FILE_PIA_00452_JPG, job1Token, document1Id);
+
+        // Get the jobs of the file
+        JsonObject json = target().path("/processingjob")
+                .queryParam("file", file1Id)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertEquals(1, json.getInt("total"));
+        JsonArray jobs = json.getJsonArray("jobs");
+        Assert.assertEquals(1, jobs.size());
+        JsonObject job = jobs.getJsonObject(0);
+        String job1Id = job.getString("id");
+        Assert.assertEquals(file1Id, job.getString("file_id"));
+        Assert.assertEquals("PIA00452.jpg", job.getString("file_name"));
+        Assert.assertEquals("INTERACTIVE", job.getString("lane"));
+        Assert.assertEquals("DONE", job.getString("status"));
+        Assert.assertEquals(1, job.getInt("attempts"));
+
+        // The file is not processing anymore
+        json = target().path("/file/list")
+                .queryParam("id", document1Id)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, job1Token)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getJsonArray("files").getJsonObject(0).getBoolean("processing"));
+
+        // Process the file again
+        target().path("/file/" + file1Id + "/process").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, job1Token)
+                .post(Entity.form(new Form()), JsonObject.class);
+
+        // Get the done jobs of the file
+        json = target().path("/processingjob")
+                .queryParam("file", file1Id)
+                .queryParam("status", "DONE")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertEquals(2, json.getInt("total"));
+        jobs = json.getJsonArray("jobs");
+        Assert.assertEquals("BULK", jobs.getJsonObject(0).getString("lane"));
+
+        // Get the failed jobs of the file
+        json = target().path("/processingjob")
+                .queryParam("file", file1Id)
+                .queryParam("status", "FAILED")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertEquals(0, json.getInt("total"));
+
+        // Filter on an invalid status
+        Response response = target().path("/processingjob")
+                .queryParam("status", "UNKNOWN")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get();
+        Assert.assertEquals(Response.Status.BAD_REQUEST, Response.Status.fromStatusCode(response.getStatus()));
+
+        // Retry a done job
+        response = target().path("/processingjob/" + job1Id + "/retry").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()));
+        Assert.assertEquals(Response.Status.BAD_REQUEST, Response.Status.fromStatusCode(response.getStatus()));
+        json = response.readEntity(JsonObject.class);
+        Assert.assertEquals("IllegalJobStatus", json.getString("type"));
+
+        // Cancel a done job
+        response = target().path("/processingjob/" + job1Id + "/cancel").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()));
+        Assert.assertEquals(Response.Status.BAD_REQUEST, Response.Status.fromStatusCode(response.getStatus()));
+        json = response.readEntity(JsonObject.class);
+        Assert.assertEquals("IllegalJobStatus", json.getString("type"));
+
+        // Cancel an unknown job
+        response = target().path("/processingjob/69b8c5c6-4fa8-4b5a-9b1c-4d0e1b9c0f00/cancel").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()));
+        Assert.assertEquals(Response.Status.NOT_FOUND, Response.Status.fromStatusCode(response.getStatus()));
+
+        // The jobs are visible to administrators only
+        response = target().path("/processingjob")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, job1Token)
+                .get();
+        Assert.assertEquals(Response.Status.FORBIDDEN, Response.Status.fromStatusCode(response.getStatus()));
+    }
+}
@@ -9,6 +9,7 @@ import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.Response;
 import java.util.Date;
 
 
@@ -70,7 +71,74 @@ public class TestWebhookResource extends BaseJerseyTest {
         String webhookId = webhook.getString("id");
         Assert.assertEquals("DOCUMENT_CREATED", webhook.getString("event"));
         Assert.assertEquals("http://localhost:" + getPort() + "/docs/thirdpartywebhook", webhook.getString("url"));
+        Assert.assertFalse(webhook.getBoolean("batch"));
         Assert.assertNotNull(webhook.getJsonNumber("create_date"));
+        Assert.assertEquals(1, webhook.getInt("delivered_count"));
+        Assert.assertEquals(0, webhook.getInt("pending_count"));
+        Assert.assertEquals(0, webhook.getInt("failed_count"));
+        Assert.assertNotNull(webhook.getJsonNumber("last_delivery_date"));
+
+        // Get the deliveries of the webhook
+        json = target().path("/webhook/" + webhookId + "/delivery")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertEquals(1, json.getInt("total"));
+        JsonObject delivery = json.getJsonArray("deliveries").getJsonObject(0);
+        Assert.assertEquals("DOCUMENT_CREATED", delivery.getString("event"));
+        Assert.assertEquals(document1Id, delivery.getString("entity_id"));
+        Assert.assertEquals("DELIVERED", delivery.getString("status"));
+        Assert.assertEquals(1, delivery.getInt("attempts"));
+        Assert.assertEquals(200, delivery.getInt("response_code"));
+
+        // Create a batched webhook
+        target().path("/webhook").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .put(Entity.form(new Form()
+                        .param("event", "DOCUMENT_UPDATED")
+                        .param("url", "http://localhost:" + getPort() + "/docs/thirdpartywebhook")
+                        .param("batch", "true")), JsonObject.class);
+        json = target().path("/webhook")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        webhooks = json.getJsonArray("webhooks");
+        Assert.assertEquals(2, webhooks.size());
+        String batchWebhookId = null;
+        for (int i = 0; i < webhooks.size(); i++) {
+            if (webhooks.getJsonObject(i).getBoolean("batch")) {
+                batchWebhookId = webhooks.getJsonObject(i).getString("id");
+            }
+        }
+        Assert.assertNotNull(batchWebhookId);
+
+        // Update the document, the event is queued for the batched webhook
+        target().path("/document/" + document1Id).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, webhook1Token)
+                .post(Entity.form(new Form()
+                        .param("title", "Webhook document 1 updated")
+                        .param("language", "eng")), JsonObject.class);
+        json = target().path("/webhook/" + batchWebhookId + "/delivery")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertEquals(1, json.getInt("total"));
+        delivery = json.getJsonArray("deliveries").getJsonObject(0);
+        Assert.assertEquals("DOCUMENT_UPDATED", delivery.getString("event"));
+        Assert.assertEquals(document1Id, delivery.getString("entity_id"));
+
+        // Filter the deliveries on an invalid status
+        Response response = target().path("/webhook/" + batchWebhookId + "/delivery")
+                .queryParam("status", "UNKNOWN")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get();
+        Assert.assertEquals(Response.Status.BAD_REQUEST, Response.Status.fromStatusCode(response.getStatus()));
+
+        // Delete the batched webhook
+        target().path("/webhook/" + batchWebhookId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .delete(JsonObject.class);
 
         // Delete a webhook
         target().path("/webhook/" + webhookId).request()
@@ -90,4 +158,50 @@ public class TestWebhookResource extends BaseJerseyTest {
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
                 .delete();
     }
+
+    /**
+     * Test the webhooks triggered by files.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testFileWebhook() throws Exception {
+        // Login admin
+        String adminToken = adminToken();
+
+        // Login webhook2
+        clientUtil.createUser("webhook2");
+        String webhook2Token = clientUtil.login("webhook2");
+
+        // Create a webhook
+        target().path("/webhook").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .put(Entity.form(new Form()
+                        .param("event", "FILE_CREATED")
+                        .param("url", "http://localhost:" + getPort() + "/docs/thirdpartywebhook")), JsonObject.class);
+        JsonObject json = target().path("/webhook")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        String webhookId = json.getJsonArray("webhooks").getJsonObject(0).getString("id");
+
+        // Add a file, it is processed on its lane and delivered to the webhook
+        String documentId = clientUtil.createDocument(webhook2Token);
+        String fileId = clientUtil.addFileToDocument(FILE_PIA_00452_JPG, webhook2Token, documentId);
+
+        // Check the webhook payload
+        JsonObject payload = ThirdPartyWebhookResource.getLastPayload();
+        Assert.assertEquals("FILE_CREATED", payload.getString("event"));
+        Assert.assertEquals(fileId, payload.getString("id"));
+
+        // Delete the webhook
+        target().path("/webhook/" + webhookId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .delete(JsonObject.class);
+
+        // Deletes webhook2
+        target().path("/user/webhook2").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .delete();
+    }
 }